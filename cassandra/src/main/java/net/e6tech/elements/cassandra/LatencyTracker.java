@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Per node response time statistics of a SessionProvider.  It is fed by the driver's request tracker and used
+ * for percentile based speculative execution and for slow replica avoidance: a node whose moving average exceeds
+ * exclusionThreshold times the fastest node's average is moved to the end of a query plan.
+ */
+public class LatencyTracker {
+    private final Map<String, NodeLatency> nodes = new ConcurrentHashMap<>();
+    private double exclusionThreshold = 2.0d;
+    private long minSamples = 50;
+    private long window = 60000L;
+
+    public double getExclusionThreshold() {
+        return exclusionThreshold;
+    }
+
+    public void setExclusionThreshold(double exclusionThreshold) {
+        this.exclusionThreshold = exclusionThreshold;
+    }
+
+    public long getMinSamples() {
+        return minSamples;
+    }
+
+    public void setMinSamples(long minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+    public Map<String, NodeLatency> getNodes() {
+        return Collections.unmodifiableMap(nodes);
+    }
+
+    public NodeLatency node(String node) {
+        return nodes.computeIfAbsent(node, n -> new NodeLatency(n, window, 0.1d));
+    }
+
+    public void record(String node, long nanos) {
+        node(node).record(nanos);
+    }
+
+    public void error(String node) {
+        node(node).error();
+    }
+
+    /**
+     * @return percentile in milliseconds across all nodes, or a negative number if there are fewer than minSamples samples.
+     */
+    public double getPercentile(double percentile) {
+        long[] histogram = new long[NodeLatency.BUCKETS];
+        long total = 0;
+        for (NodeLatency latency : nodes.values())
+            latency.addTo(histogram);
+        for (long c : histogram)
+            total += c;
+        if (total < minSamples)
+            return -1d;
+        return NodeLatency.percentile(histogram, percentile);
+    }
+
+    public boolean isSlow(String node) {
+        return isSlow(node, fastest());
+    }
+
+    private double fastest() {
+        double fastest = Double.MAX_VALUE;
+        for (NodeLatency latency : nodes.values()) {
+            if (latency.getCount() >= minSamples && latency.getAverage() >= 0)
+                fastest = Math.min(fastest, latency.getAverage());
+        }
+        return fastest;
+    }
+
+    private boolean isSlow(String node, double fastest) {
+        NodeLatency latency = nodes.get(node);
+        if (latency == null || latency.getCount() < minSamples || fastest == Double.MAX_VALUE)
+            return false;
+        return latency.getAverage() > fastest * exclusionThreshold;
+    }
+
+    /**
+     * Moves slow nodes to the end of the list while keeping the relative order, e.g. token awareness, of the rest.
+     */
+    public <T> List<T> order(List<T> list, Function<T, String> nodeId) {
+        double fastest = fastest();
+        if (fastest == Double.MAX_VALUE)
+            return list;
+        List<T> fast = new ArrayList<>(list.size());
+        List<T> slow = null;
+        for (T t : list) {
+            if (isSlow(nodeId.apply(t), fastest)) {
+                if (slow == null)
+                    slow = new ArrayList<>(2);
+                slow.add(t);
+            } else {
+                fast.add(t);
+            }
+        }
+        if (slow == null)
+            return list;
+        fast.addAll(slow);
+        return fast;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("LatencyTracker");
+        for (NodeLatency latency : nodes.values())
+            builder.append("\n  ").append(latency);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Response time statistics of one node.  The average is an exponentially weighted moving average so that it
+ * follows a replica that slows down, e.g. during compaction.  Percentiles come from a histogram with exponentially
+ * growing buckets covering the current and the previous window.
+ */
+public class NodeLatency {
+    static final int BUCKETS = 64;
+    private static final double BASE = 0.1d;      // upper bound of the first bucket in ms
+    private static final double GROWTH = 1.25d;   // 0.1ms * 1.25^63 is a little over two minutes.
+    private static final double LOG_GROWTH = Math.log(GROWTH);
+
+    private final String node;
+    private final long window;
+    private final double alpha;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile double average = -1d;
+    private volatile AtomicLongArray current = new AtomicLongArray(BUCKETS);
+    private volatile AtomicLongArray previous = new AtomicLongArray(BUCKETS);
+    private volatile long windowStart = System.currentTimeMillis();
+
+    public NodeLatency(String node) {
+        this(node, 60000L, 0.1d);
+    }
+
+    /**
+     * @param window in milliseconds, how long samples contribute to percentiles, i.e. between one and two windows.
+     * @param alpha weight of a new sample in the moving average.
+     */
+    public NodeLatency(String node, long window, double alpha) {
+        this.node = node;
+        this.window = window;
+        this.alpha = alpha;
+    }
+
+    static int bucket(double millis) {
+        if (millis <= BASE)
+            return 0;
+        int index = (int) Math.ceil(Math.log(millis / BASE) / LOG_GROWTH);
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    static double upperBound(int bucket) {
+        return BASE * Math.pow(GROWTH, bucket);
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public void record(long nanos) {
+        double millis = nanos / 1000000d;
+        rotate();
+        current.incrementAndGet(bucket(millis));
+        count.increment();
+        double avg = average;
+        average = (avg < 0) ? millis : avg + alpha * (millis - avg);  // races only lose a sample.
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    private void rotate() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart < window)
+            return;
+        synchronized (this) {
+            if (now - windowStart < window)
+                return;
+            previous = current;
+            current = new AtomicLongArray(BUCKETS);
+            windowStart = now;
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return moving average in milliseconds, or a negative number if no response has been recorded.
+     */
+    public double getAverage() {
+        return average;
+    }
+
+    /**
+     * @return number of samples in the current and previous windows.
+     */
+    public long getSamples() {
+        long total = 0;
+        AtomicLongArray cur = current;
+        AtomicLongArray prev = previous;
+        for (int i = 0; i < BUCKETS; i++)
+            total += cur.get(i) + prev.get(i);
+        return total;
+    }
+
+    void addTo(long[] histogram) {
+        AtomicLongArray cur = current;
+        AtomicLongArray prev = previous;
+        for (int i = 0; i < BUCKETS; i++)
+            histogram[i] += cur.get(i) + prev.get(i);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound in milliseconds of the bucket containing the percentile, or a negative number if there are no samples.
+     */
+    public double getPercentile(double percentile) {
+        long[] histogram = new long[BUCKETS];
+        addTo(histogram);
+        return percentile(histogram, percentile);
+    }
+
+    static double percentile(long[] histogram, double percentile) {
+        long total = 0;
+        for (long c : histogram)
+            total += c;
+        if (total == 0)
+            return -1d;
+        long rank = (long) Math.ceil(percentile / 100d * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= rank && histogram[i] > 0)
+                return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s count=%d errors=%d avg=%.2fms p50=%.2fms p99=%.2fms",
+                node, getCount(), getErrors(), getAverage(), getPercentile(50), getPercentile(99));
+    }
+}
@@ -21,6 +21,7 @@ import net.e6tech.elements.common.util.SystemException;
 @SuppressWarnings({"squid:S2975", "squid:S1845", "squid:ClassVariableVisibilityCheck"})
 public class ReadOptions implements Cloneable {
     public Consistency consistency;
+    public Boolean idempotent; // reads are only retried or speculatively executed when idempotent
 
     public static ReadOptions from(ReadOptions from) {
         if (from == null)
@@ -34,6 +35,8 @@ public class ReadOptions implements Cloneable {
             return this;
         if (options.consistency != null)
             consistency = options.consistency;
+        if (options.idempotent != null)
+            idempotent = options.idempotent;
         return this;
     }
 
@@ -57,4 +60,17 @@ public class ReadOptions implements Cloneable {
         this.consistency = c;
         return this;
     }
+
+    public Boolean getIdempotent() {
+        return idempotent;
+    }
+
+    public void setIdempotent(Boolean idempotent) {
+        this.idempotent = idempotent;
+    }
+
+    public ReadOptions idempotent(Boolean idempotent) {
+        this.idempotent = idempotent;
+        return this;
+    }
 }
@@ -70,6 +70,7 @@ public class Schema {
     private int threadSize = 1;
     private long validationWait = 1000L;
     private int tableCreationAsyncSize = 0;
+    private boolean prepareStatements = true; // prepare get, save and delete statements after tables are created
 
     public int getThreadSize() {
         return threadSize;
@@ -105,6 +106,14 @@ public class Schema {
         return this;
     }
 
+    public boolean isPrepareStatements() {
+        return prepareStatements;
+    }
+
+    public void setPrepareStatements(boolean prepareStatements) {
+        this.prepareStatements = prepareStatements;
+    }
+
     public List<Map<String, String>> getCodecs() {
         return codecs;
     }
@@ -201,6 +210,15 @@ public class Schema {
         });
 
         validateTables(keyspace, classes);
+
+        if (prepareStatements) {
+            List<Class> tables = new ArrayList<>(classes.length);
+            for (Class cls : classes) {
+                if (getTableName(cls) != null)
+                    tables.add(cls);
+            }
+            provision.getInstance(SessionProvider.class).prepareStatements(keyspace, tables.toArray(new Class[0]));
+        }
     }
 
     protected List<TableGenerator> asyncTableGen(Resources resources, String keyspace, Class ... classes) {
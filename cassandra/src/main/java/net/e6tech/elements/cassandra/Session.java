@@ -20,7 +20,9 @@ import net.e6tech.elements.cassandra.driver.cql.AsyncResultSet;
 import net.e6tech.elements.cassandra.driver.cql.Bound;
 import net.e6tech.elements.cassandra.driver.cql.Prepared;
 import net.e6tech.elements.cassandra.driver.cql.ResultSet;
+import net.e6tech.elements.cassandra.driver.metadata.TokenRange;
 
+import java.util.List;
 import java.util.concurrent.Future;
 
 public interface Session {
@@ -38,5 +40,12 @@ public interface Session {
     Future<AsyncResultSet> executeAsync(Bound bound);
 
     Prepared prepare(String query);
+
+    /**
+     * Returns the token ring as non-wrapping ranges, each range owned by the same replicas, optionally split further.
+     * @param keyspace keyspace for determining replicas, null for the session's keyspace
+     * @param splitsPerRange number of sub-ranges for each range of the ring
+     */
+    List<TokenRange> getTokenRanges(String keyspace, int splitsPerRange);
 }
 
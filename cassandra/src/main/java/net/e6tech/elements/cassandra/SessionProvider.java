@@ -62,7 +62,14 @@ public abstract class SessionProvider implements ResourceProvider, Initializable
     private Class<? extends LastUpdate> lastUpdateClass = LastUpdate.class;
     private Map<String, Session> sessions = new HashMap<>();
     private WriteOptions defaultWriteOptions = new WriteOptions().consistency(Consistency.LOCAL_QUORUM).saveNullFields(false);
-    private ReadOptions defaultReadOptions = new ReadOptions().consistency(Consistency.LOCAL_SERIAL);
+    private ReadOptions defaultReadOptions = new ReadOptions().consistency(Consistency.LOCAL_SERIAL).idempotent(true);
+    private StatementRegistry statementRegistry = new StatementRegistry();
+    private SpeculativeExecution speculativeExecution = SpeculativeExecution.NONE;
+    private int speculativeMaxExecutions = 2;
+    private long speculativeDelay = 100L; // for CONSTANT, and for PERCENTILE until there are enough samples
+    private double speculativePercentile = 99.0d;
+    private boolean latencyAware = false; // move slow replicas to the end of query plans
+    private LatencyTracker latencyTracker = new LatencyTracker();
 
     private boolean sharedSession = false;
 
@@ -220,6 +227,69 @@ public abstract class SessionProvider implements ResourceProvider, Initializable
         this.defaultReadOptions = defaultReadOptions;
     }
 
+    public StatementRegistry getStatementRegistry() {
+        return statementRegistry;
+    }
+
+    public void setStatementRegistry(StatementRegistry statementRegistry) {
+        this.statementRegistry = statementRegistry;
+    }
+
+    public SpeculativeExecution getSpeculativeExecution() {
+        return speculativeExecution;
+    }
+
+    public void setSpeculativeExecution(SpeculativeExecution speculativeExecution) {
+        this.speculativeExecution = speculativeExecution;
+    }
+
+    public int getSpeculativeMaxExecutions() {
+        return speculativeMaxExecutions;
+    }
+
+    public void setSpeculativeMaxExecutions(int speculativeMaxExecutions) {
+        this.speculativeMaxExecutions = speculativeMaxExecutions;
+    }
+
+    public long getSpeculativeDelay() {
+        return speculativeDelay;
+    }
+
+    public void setSpeculativeDelay(long speculativeDelay) {
+        this.speculativeDelay = speculativeDelay;
+    }
+
+    public double getSpeculativePercentile() {
+        return speculativePercentile;
+    }
+
+    public void setSpeculativePercentile(double speculativePercentile) {
+        this.speculativePercentile = speculativePercentile;
+    }
+
+    public boolean isLatencyAware() {
+        return latencyAware;
+    }
+
+    public void setLatencyAware(boolean latencyAware) {
+        this.latencyAware = latencyAware;
+    }
+
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    public void setLatencyTracker(LatencyTracker latencyTracker) {
+        this.latencyTracker = latencyTracker;
+    }
+
+    /**
+     * @return response time statistics keyed by node.
+     */
+    public Map<String, NodeLatency> getNodeLatencies() {
+        return latencyTracker.getNodes();
+    }
+
     public boolean isSharedSession() {
         return sharedSession;
     }
@@ -262,6 +332,14 @@ public abstract class SessionProvider implements ResourceProvider, Initializable
         postInit();
     }
 
+    /**
+     * Prepares the get, save and delete statements of the entity classes ahead of their first use.
+     * Called by Schema after tables are created.  The default implementation does nothing.
+     */
+    public void prepareStatements(String keyspaceIn, Class... classes) {
+        // to be overridden by subclass
+    }
+
     public Inspector getInspector(Class cls) {
         Callable<Inspector> loader = () -> {
             Inspector inspector = new Inspector(cls, getGenerator());
@@ -16,41 +16,39 @@
 
 package net.e6tech.elements.cassandra;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import net.e6tech.elements.cassandra.async.Async;
 import net.e6tech.elements.cassandra.async.AsyncFutures;
+import net.e6tech.elements.cassandra.async.AsyncPipeline;
 import net.e6tech.elements.cassandra.async.AsyncPrepared;
 import net.e6tech.elements.cassandra.driver.cql.BaseResultSet;
 import net.e6tech.elements.cassandra.driver.cql.Bound;
 import net.e6tech.elements.cassandra.driver.cql.Prepared;
 import net.e6tech.elements.cassandra.driver.cql.ResultSet;
+import net.e6tech.elements.cassandra.driver.cql.Row;
 import net.e6tech.elements.cassandra.etl.Inspector;
 import net.e6tech.elements.cassandra.etl.PrimaryKey;
 import net.e6tech.elements.cassandra.generator.Generator;
+import net.e6tech.elements.cassandra.query.PagedResult;
 import net.e6tech.elements.common.inject.Inject;
-import net.e6tech.elements.common.resources.Provision;
 import net.e6tech.elements.common.resources.Resources;
 
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 @SuppressWarnings("unchecked")
 public abstract class Sibyl {
 
-    private static Cache<String, Prepared> preparedStatementCache = CacheBuilder.newBuilder()
-            .concurrencyLevel(Provision.cacheBuilderConcurrencyLevel)
-            .initialCapacity(200)
-            .maximumSize(500)
-            .build();
-
     private Resources resources;
-    private ReadOptions readOptions = new ReadOptions().consistency(Consistency.LOCAL_SERIAL);
+    private ReadOptions readOptions = new ReadOptions().consistency(Consistency.LOCAL_SERIAL).idempotent(true);
     private WriteOptions writeOptions = new WriteOptions().consistency(Consistency.LOCAL_QUORUM).saveNullFields(false);
+    private int maxInFlight = 256;  // maximum outstanding statements for collection operations
+    private int maxRetries = 0;  // retries of failed pipeline items, only safe for idempotent statements
+    private int pageSize = 5000;  // rows per page for paged queries
 
     public <T> T computeIfAbsent(String key, Function<String, T> mappingFunction) {
         return resources.configurator().computeIfAbsent(key, mappingFunction);
@@ -72,6 +70,30 @@ public abstract class Sibyl {
         this.writeOptions = writeOptions;
     }
 
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
     public Resources getResources() {
         return resources;
     }
@@ -93,48 +115,75 @@ public abstract class Sibyl {
         return getResources().newInstance(Async.class);
     }
 
+    public <T, D> AsyncPipeline<T, D> createPipeline() {
+        return new AsyncPipeline<T, D>(maxInFlight).maxRetries(maxRetries);
+    }
+
     public <D> AsyncPrepared<D> createAsync(String query) {
-        Prepared pstmt;
-        try {
-            pstmt = preparedStatementCache.get(query, () -> getSession().prepare(query));
-        } catch (ExecutionException e) {
-            pstmt = getSession().prepare(query);
-        }
-        return getResources().newInstance(AsyncPrepared.class).prepare(pstmt);
+        return getResources().newInstance(AsyncPrepared.class).prepare(prepare(query));
     }
 
     public <D> AsyncPrepared<D> createAsync(Prepared stmt) {
         return getResources().newInstance(AsyncPrepared.class).prepare(stmt);
     }
 
+    public StatementRegistry getStatementRegistry() {
+        return getResources().getInstance(SessionProvider.class).getStatementRegistry();
+    }
+
+    public Prepared prepare(String query) {
+        return getStatementRegistry().prepare(getSession(), getKeyspace(), query);
+    }
+
     public ResultSet execute(String query, Map<String, Object> map) {
-        Prepared pstmt ;
-        try {
-            pstmt = preparedStatementCache.get(query, () -> getSession().prepare(query));
-        } catch (ExecutionException e) {
-            pstmt = getSession().prepare(query);
-        }
-        return execute(pstmt, map);
+        return execute(prepare(query), map);
     }
 
     protected ResultSet execute(Prepared pstmt, Map<String, Object> map) {
+        return getSession().execute(bind(pstmt, map));
+    }
+
+    /**
+     * Executes the query one page at a time, mapping rows as they are consumed.
+     * @param pageSize rows per page, non-positive for the default page size.
+     * @param cursor returned by PagedResult.getCursor() to resume a previous query, or null to start from the beginning.
+     */
+    public <X> PagedResult<X> page(Class<X> cls, String query, Map<String, Object> map, int pageSize, String cursor) {
+        Bound bound = bind(prepare(query), map);
+        bound.setPageSize(pageSize > 0 ? pageSize : this.pageSize);
+        ByteBuffer pagingState = PagedResult.pagingState(cursor);
+        if (pagingState != null)
+            bound.setPagingState(pagingState);
+        return new PagedResult<>(getSession().executeAsync(bound), cursor, rowMapper(cls));
+    }
+
+    /**
+     * Streaming counterpart of all().  The stream should be closed if it is not fully consumed.
+     */
+    public <X> Stream<X> stream(Class<X> cls, String query, Map<String, Object> map) {
+        return page(cls, query, map, 0, null).stream();
+    }
+
+    protected Bound bind(Prepared pstmt, Map<String, Object> map) {
         Bound bound = pstmt.bind();
         for (Map.Entry<String, Object> entry : map.entrySet()) {
-            if (entry.getValue() == null) {
+            Object value = entry.getValue();
+            if (value == null) {
                 bound.setToNull(entry.getKey());
+            } else if (!(value instanceof Collection) && !(value instanceof Map)) {
+                // scalars are by far the most common.
+                bound.set(entry.getKey(), value, (Class) value.getClass());
+            } else if (value instanceof List) {
+                bound.setList(entry.getKey(), (List) value);
+            } else if (value instanceof Set) {
+                bound.setSet(entry.getKey(), (Set) value);
+            } else if (value instanceof Map) {
+                bound.setMap(entry.getKey(), (Map) value);
             } else {
-                if (entry.getValue() instanceof List) {
-                    bound.setList(entry.getKey(), (List) entry.getValue());
-                } else if (entry.getValue() instanceof Set) {
-                    bound.setSet(entry.getKey(), (Set) entry.getValue());
-                } else if (entry.getValue() instanceof Map) {
-                    bound.setMap(entry.getKey(), (Map) entry.getValue());
-                } else {
-                    bound.set(entry.getKey(), entry.getValue(), (Class) entry.getValue().getClass());
-                }
+                bound.set(entry.getKey(), value, (Class) value.getClass());
             }
         }
-        return getSession().execute(bound);
+        return bound;
     }
 
     public abstract String getKeyspace();
@@ -161,6 +210,8 @@ public abstract class Sibyl {
 
     public abstract <X> List<X> mapAll(Class<X> cls, BaseResultSet rs);
 
+    public abstract <X> Function<Row, X> rowMapper(Class<X> cls);
+
     public Inspector getInspector(Class cls) {
         return getResources().getInstance(SessionProvider.class).getInspector(cls);
     }
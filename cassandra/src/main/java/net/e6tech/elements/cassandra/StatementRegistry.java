@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import net.e6tech.elements.cassandra.driver.cql.Prepared;
+import net.e6tech.elements.common.resources.Provision;
+import net.e6tech.elements.common.util.SystemException;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Prepared statements and generated CQL of a SessionProvider.  Entries are keyed by Shape, i.e. entity class,
+ * operation and whatever makes up the text of the statement, such as columns or IF clauses.  Options that do not
+ * change the text, e.g. consistency, are applied to the bound statement and options that vary per call, e.g. TTL
+ * and limit, are bound through bind markers, so that the number of entries stays small and statements are not
+ * re-prepared because of churn.
+ */
+public class StatementRegistry {
+    private int maxSize = 5000;
+    private Cache<Object, Object> statements = newCache(maxSize);
+
+    private static Cache<Object, Object> newCache(int maxSize) {
+        return CacheBuilder.newBuilder()
+                .concurrencyLevel(Provision.cacheBuilderConcurrencyLevel)
+                .initialCapacity(200)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        Cache<Object, Object> cache = newCache(maxSize);
+        cache.putAll(statements.asMap());
+        statements = cache;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <V> V get(Shape shape, Callable<V> loader) {
+        try {
+            return (V) statements.get(shape, loader);
+        } catch (ExecutionException e) {
+            try {
+                return loader.call();
+            } catch (Exception e1) {
+                throw new SystemException(e);
+            }
+        }
+    }
+
+    public void put(Shape shape, Object statement) {
+        statements.put(shape, statement);
+    }
+
+    /**
+     * Prepares a CQL statement once per keyspace.
+     */
+    public Prepared prepare(Session session, String keyspace, String query) {
+        return get(new Shape(null, "cql", keyspace, query), () -> session.prepare(query));
+    }
+
+    public CacheStats getStats() {
+        return statements.stats();
+    }
+
+    public double getHitRate() {
+        return statements.stats().hitRate();
+    }
+
+    public long size() {
+        return statements.size();
+    }
+
+    public void clear() {
+        statements.invalidateAll();
+    }
+
+    @Override
+    public String toString() {
+        CacheStats stats = getStats();
+        return "StatementRegistry size=" + size() + " hits=" + stats.hitCount() + " misses=" + stats.missCount()
+                + " hitRate=" + String.format("%.3f", stats.hitRate()) + " evictions=" + stats.evictionCount();
+    }
+
+    public static class Shape {
+        private final Class entityClass;
+        private final String operation;
+        private final Object[] parts;
+        private final int hash;
+
+        public Shape(Class entityClass, String operation, Object... parts) {
+            this.entityClass = entityClass;
+            this.operation = operation;
+            this.parts = parts;
+            this.hash = 31 * (31 * Objects.hashCode(entityClass) + Objects.hashCode(operation)) + Arrays.hashCode(parts);
+        }
+
+        public Class getEntityClass() {
+            return entityClass;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object)
+                return true;
+            if (!(object instanceof Shape))
+                return false;
+            Shape shape = (Shape) object;
+            return hash == shape.hash && entityClass == shape.entityClass
+                    && Objects.equals(operation, shape.operation)
+                    && Arrays.equals(parts, shape.parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return (entityClass == null ? "" : entityClass.getName() + ".") + operation + Arrays.toString(parts);
+        }
+    }
+}
@@ -27,6 +27,10 @@ public class WriteOptions implements Cloneable {
     public Boolean saveNullFields;
     public Boolean ifNotExists;
     public Long timeout; // use for save
+    public Batch batch; // grouping of collection saves into unlogged batches, null means Batch.NONE
+    public Integer batchSize; // maximum number of statements in a batch
+    public Integer batchBytes; // maximum estimated size of a batch in bytes
+    public Boolean idempotent; // writes are only retried or speculatively executed when idempotent, never for ifNotExists
 
     public static WriteOptions from(WriteOptions from) {
         if (from == null)
@@ -47,6 +51,14 @@ public class WriteOptions implements Cloneable {
             clone.saveNullFields = options.saveNullFields;
         if (options.ifNotExists != null)
             clone.ifNotExists = options.ifNotExists;
+        if (options.batch != null)
+            clone.batch = options.batch;
+        if (options.batchSize != null)
+            clone.batchSize = options.batchSize;
+        if (options.batchBytes != null)
+            clone.batchBytes = options.batchBytes;
+        if (options.idempotent != null)
+            clone.idempotent = options.idempotent;
         return clone;
     }
 
@@ -118,6 +130,72 @@ public class WriteOptions implements Cloneable {
         this.timeout = timeout;
     }
 
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public void setBatch(Batch batch) {
+        this.batch = batch;
+    }
+
+    public WriteOptions batch(Batch batch) {
+        this.batch = batch;
+        return this;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public WriteOptions batchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public Integer getBatchBytes() {
+        return batchBytes;
+    }
+
+    public void setBatchBytes(Integer batchBytes) {
+        this.batchBytes = batchBytes;
+    }
+
+    public WriteOptions batchBytes(Integer batchBytes) {
+        this.batchBytes = batchBytes;
+        return this;
+    }
+
+    public Boolean getIdempotent() {
+        return idempotent;
+    }
+
+    public void setIdempotent(Boolean idempotent) {
+        this.idempotent = idempotent;
+    }
+
+    public WriteOptions idempotent(Boolean idempotent) {
+        this.idempotent = idempotent;
+        return this;
+    }
+
+    /**
+     * @return the idempotence to set on statements, or null for the driver's default.  Conditional writes are
+     * never idempotent.
+     */
+    public Boolean idempotence() {
+        if (Boolean.TRUE.equals(ifNotExists))
+            return Boolean.FALSE;
+        return idempotent;
+    }
+
+    public boolean isBatched() {
+        return batch != null && batch != Batch.NONE && !Boolean.TRUE.equals(ifNotExists);
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(consistency, ttl, saveNullFields, ifNotExists);
@@ -133,4 +211,14 @@ public class WriteOptions implements Cloneable {
         }
         return false;
     }
+
+    /**
+     * How Sibyl.save(Collection, ...) groups rows into unlogged batches.  Batching and idempotence do not affect
+     * the prepared statement, so they are not part of equals and hashCode.
+     */
+    public enum Batch {
+        NONE,       // one statement per row
+        PARTITION,  // rows sharing the same partition key
+        REPLICA     // rows whose partitions are owned by the same replicas, falls back to PARTITION without token metadata
+    }
 }
@@ -90,6 +90,14 @@ public class Async<T, D> {
         return result;
     }
 
+    /**
+     * Returns a pipeline that limits the number of outstanding futures, for collections too large to be submitted
+     * all at once through accept.
+     */
+    public AsyncPipeline<T, D> pipeline(int maxInFlight) {
+        return new AsyncPipeline<T, D>(maxInFlight).timeout(result.getTimeout());
+    }
+
     protected void resizeFuturesData(int size) {
         int currentSize = futuresData.size();
         int totalSize = size + currentSize;
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.cassandra.async;
+
+import net.e6tech.elements.common.util.SystemException;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Executes asynchronous statements for a collection while keeping at most maxInFlight of them outstanding.
+ * Unlike Async.accept, which submits everything up front, statements are submitted as earlier ones complete and
+ * completions are handed to the consumer, on the calling thread, as they arrive so that memory use and load on the
+ * driver do not depend on the size of the collection.
+ *
+ * Failed items are retried up to maxRetries times.  Items that still fail are collected in the returned Result
+ * instead of aborting the remaining work.
+ *
+ * T is the type of value from future.get()
+ * D is the associated type of data
+ */
+public class AsyncPipeline<T, D> {
+    private int maxInFlight = 256;
+    private int maxRetries = 0;
+    private long timeout = 0;  // maximum time waiting for a completion, 0 means no limit.
+
+    public AsyncPipeline() {
+    }
+
+    public AsyncPipeline(int maxInFlight) {
+        setMaxInFlight(maxInFlight);
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0)
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        this.maxInFlight = maxInFlight;
+    }
+
+    public AsyncPipeline<T, D> maxInFlight(int maxInFlight) {
+        setMaxInFlight(maxInFlight);
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public AsyncPipeline<T, D> maxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+        return this;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public AsyncPipeline<T, D> timeout(long timeout) {
+        setTimeout(timeout);
+        return this;
+    }
+
+    public Result<D> execute(Collection<D> collection, Function<D, Future<T>> function) {
+        return execute(collection, function, null);
+    }
+
+    /**
+     * @param collection items to process
+     * @param function submits the statement for an item
+     * @param consumer receives each item and its value as it completes, may be null.
+     */
+    @SuppressWarnings("squid:S3776")
+    public Result<D> execute(Collection<D> collection, Function<D, Future<T>> function, BiConsumer<D, T> consumer) {
+        Result<D> result = new Result<>();
+        Iterator<D> iterator = collection.iterator();
+        Deque<Entry<T, D>> retries = new ArrayDeque<>();
+        Deque<Entry<T, D>> blocking = new ArrayDeque<>();  // futures that are not CompletionStages
+        Set<Entry<T, D>> inFlight = Collections.newSetFromMap(new IdentityHashMap<>(maxInFlight * 2));
+        BlockingQueue<Entry<T, D>> completions = new LinkedBlockingQueue<>();
+
+        while (iterator.hasNext() || !retries.isEmpty() || !inFlight.isEmpty()) {
+            while (inFlight.size() < maxInFlight && (!retries.isEmpty() || iterator.hasNext())) {
+                Entry<T, D> entry = retries.isEmpty() ? new Entry<>(iterator.next()) : retries.poll();
+                inFlight.add(entry);
+                submit(entry, function, completions, blocking);
+            }
+
+            Entry<T, D> entry = next(completions, blocking);
+            if (entry == null) { // timed out, give up on everything outstanding
+                for (Entry<T, D> e : inFlight) {
+                    e.future.cancel(false);
+                    result.fail(e.data, new TimeoutException("No completion within " + timeout + "ms"));
+                }
+                inFlight.clear();
+                blocking.clear();
+                continue;
+            }
+
+            if (!inFlight.remove(entry)) // already timed out
+                continue;
+            if (entry.error == null) {
+                result.succeeded++;
+                if (consumer != null)
+                    consumer.accept(entry.data, entry.value);
+            } else if (entry.attempts <= maxRetries) {
+                result.retried++;
+                retries.add(entry);
+            } else {
+                result.fail(entry.data, entry.error);
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void submit(Entry<T, D> entry, Function<D, Future<T>> function,
+                        BlockingQueue<Entry<T, D>> completions, Deque<Entry<T, D>> blocking) {
+        entry.attempts++;
+        entry.value = null;
+        entry.error = null;
+        try {
+            entry.future = function.apply(entry.data);
+        } catch (Exception ex) {
+            entry.future = CompletableFuture.completedFuture(null);
+            entry.error = ex;
+            completions.add(entry);
+            return;
+        }
+
+        if (entry.future instanceof CompletionStage) {
+            ((CompletionStage<T>) entry.future).whenComplete((value, error) -> {
+                entry.value = value;
+                entry.error = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+                completions.add(entry);
+            });
+        } else {
+            blocking.add(entry);
+        }
+    }
+
+    private Entry<T, D> next(BlockingQueue<Entry<T, D>> completions, Deque<Entry<T, D>> blocking) {
+        Entry<T, D> entry = completions.poll();
+        if (entry != null)
+            return entry;
+
+        try {
+            if (!blocking.isEmpty()) {
+                entry = blocking.poll();
+                try {
+                    entry.value = (timeout > 0) ? entry.future.get(timeout, TimeUnit.MILLISECONDS) : entry.future.get();
+                } catch (ExecutionException ex) {
+                    entry.error = (ex.getCause() != null) ? ex.getCause() : ex;
+                } catch (TimeoutException ex) {
+                    entry.error = ex;
+                }
+                return entry;
+            }
+            return (timeout > 0) ? completions.poll(timeout, TimeUnit.MILLISECONDS) : completions.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SystemException(ex);
+        }
+    }
+
+    private static class Entry<T, D> {
+        private final D data;
+        private volatile Future<T> future;
+        private volatile T value;
+        private volatile Throwable error;
+        private int attempts;
+
+        Entry(D data) {
+            this.data = data;
+        }
+    }
+
+    public static class Result<D> {
+        private long succeeded;
+        private long retried;
+        private Map<D, Throwable> failures = new IdentityHashMap<>();
+
+        void fail(D data, Throwable error) {
+            failures.put(data, error);
+        }
+
+        public long getSucceeded() {
+            return succeeded;
+        }
+
+        public long getRetried() {
+            return retried;
+        }
+
+        public Map<D, Throwable> getFailures() {
+            return failures;
+        }
+
+        public boolean hasFailures() {
+            return !failures.isEmpty();
+        }
+
+        /**
+         * Throws a SystemException caused by the first failure, with the others added as suppressed exceptions.
+         */
+        public Result<D> throwIfFailed() {
+            if (failures.isEmpty())
+                return this;
+            SystemException exception = null;
+            for (Throwable th : failures.values()) {
+                if (exception == null)
+                    exception = new SystemException(failures.size() + " of " + (succeeded + failures.size()) + " items failed", th);
+                else if (exception.getSuppressed().length < 10)
+                    exception.addSuppressed(th);
+                else
+                    break;
+            }
+            throw exception;
+        }
+    }
+}
@@ -16,28 +16,34 @@
 
 package net.e6tech.elements.cassandra.async;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import net.e6tech.elements.cassandra.SessionProvider;
+import net.e6tech.elements.cassandra.StatementRegistry;
 import net.e6tech.elements.cassandra.driver.cql.AsyncResultSet;
 import net.e6tech.elements.cassandra.driver.cql.Bound;
 import net.e6tech.elements.cassandra.driver.cql.Prepared;
-import net.e6tech.elements.common.resources.Provision;
+import net.e6tech.elements.common.inject.Inject;
 
 import java.util.Collection;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 public class AsyncPrepared<D> extends Async<AsyncResultSet, D> {
 
-    private static Cache<String, Prepared> preparedStatementCache = CacheBuilder.newBuilder()
-            .concurrencyLevel(Provision.cacheBuilderConcurrencyLevel)
-            .initialCapacity(200)
-            .maximumSize(500)
-            .build();
+    // used when not created through Resources, i.e. without a SessionProvider
+    private static StatementRegistry defaultRegistry = new StatementRegistry();
 
     private Prepared prepared;
+    private SessionProvider sessionProvider;
+
+    public SessionProvider getSessionProvider() {
+        return sessionProvider;
+    }
+
+    @Inject(optional = true)
+    public void setSessionProvider(SessionProvider sessionProvider) {
+        this.sessionProvider = sessionProvider;
+    }
 
     @Override
     protected AsyncFutures<AsyncResultSet, D> createResult() {
@@ -51,11 +57,9 @@ public class AsyncPrepared<D> extends Async<AsyncResultSet, D> {
     }
 
     public AsyncPrepared<D> prepare(String stmt) {
-        try {
-            return prepare(preparedStatementCache.get(stmt, () -> session.prepare(stmt)));
-        } catch (ExecutionException e) {
-            return prepare(session.prepare(stmt));
-        }
+        if (sessionProvider != null)
+            return prepare(sessionProvider.getStatementRegistry().prepare(session, sessionProvider.getKeyspace(), stmt));
+        return prepare(defaultRegistry.prepare(session, null, stmt));
     }
 
     public AsyncPrepared<D> prepare(Prepared stmt) {
@@ -16,5 +16,22 @@
 
 package net.e6tech.elements.cassandra.driver.cql;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletionStage;
+
 public interface AsyncResultSet extends BaseResultSet {
+
+    /**
+     * @return rows of the current page only, unlike iterator() which fetches subsequent pages.
+     */
+    Iterable<Row> currentPage();
+
+    boolean hasMorePages();
+
+    CompletionStage<AsyncResultSet> fetchNextPage();
+
+    /**
+     * @return paging state for fetching the page following the current one, null if this is the last page.
+     */
+    ByteBuffer getPagingState();
 }
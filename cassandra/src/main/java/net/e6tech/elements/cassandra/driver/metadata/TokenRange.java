@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.cassandra.driver.metadata;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A non-wrapping Murmur3 token range (start, end] together with the replicas owning it.
+ */
+public class TokenRange implements Serializable, Comparable<TokenRange> {
+    private static final long serialVersionUID = -4171447542165395342L;
+
+    private final long start;
+    private final long end;
+    private final Set<String> replicas;
+
+    public TokenRange(long start, long end, Set<String> replicas) {
+        this.start = start;
+        this.end = end;
+        this.replicas = (replicas == null) ? Collections.emptySet() : Collections.unmodifiableSet(replicas);
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public Set<String> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public int compareTo(TokenRange o) {
+        return Long.compare(start, o.start);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, end);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof TokenRange))
+            return false;
+        TokenRange other = (TokenRange) obj;
+        return start == other.start && end == other.end;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + start + ", " + end + "]";
+    }
+}
@@ -21,7 +21,9 @@ import net.e6tech.elements.cassandra.driver.Wrapper;
 import net.e6tech.elements.cassandra.driver.cql.Row;
 import net.e6tech.elements.common.util.SystemException;
 
+import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.concurrent.CompletionStage;
 
 public class AsyncResultSetV4 extends Wrapper<AsyncResultSet> implements net.e6tech.elements.cassandra.driver.cql.AsyncResultSet {
 
@@ -30,6 +32,39 @@ public class AsyncResultSetV4 extends Wrapper<AsyncResultSet> implements net.e6t
         return Wrapper.wrap(new RowV4(), unwrap().one());
     }
 
+    @Override
+    public Iterable<Row> currentPage() {
+        return () -> new Iterator<Row>() {
+            Iterator<com.datastax.oss.driver.api.core.cql.Row> inner = unwrap().currentPage().iterator();
+
+            @Override
+            public boolean hasNext() {
+                return inner.hasNext();
+            }
+
+            @Override
+            public Row next() {
+                return Wrapper.wrap(new RowV4(), inner.next());
+            }
+        };
+    }
+
+    @Override
+    public boolean hasMorePages() {
+        return unwrap().hasMorePages();
+    }
+
+    @Override
+    public CompletionStage<net.e6tech.elements.cassandra.driver.cql.AsyncResultSet> fetchNextPage() {
+        return unwrap().fetchNextPage()
+                .<net.e6tech.elements.cassandra.driver.cql.AsyncResultSet>thenApply(rs -> Wrapper.wrap(new AsyncResultSetV4(), rs));
+    }
+
+    @Override
+    public ByteBuffer getPagingState() {
+        return unwrap().getExecutionInfo().getPagingState();
+    }
+
     @Override
     public Iterator<Row> iterator() {
         return new Iterator<Row>() {
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.driver.v4;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.context.DriverContext;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchType;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import net.e6tech.elements.cassandra.WriteOptions;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Groups bound statements into unlogged batches by partition key or by replica set.  A batch carries the routing
+ * key of its statements so that the token aware load balancing policy sends it to a replica, which then applies
+ * the writes locally instead of forwarding each row.  Statements without a routing key, statements too large to
+ * share a batch and groups of one are returned as single statements.
+ */
+class BatchGrouper {
+    static final int DEFAULT_BATCH_SIZE = 100;
+    static final int DEFAULT_BATCH_BYTES = 5 * 1024;  // Cassandra's default batch_size_warn_threshold
+
+    private final CqlSession session;
+    private final WriteOptions.Batch mode;
+    private final int maxSize;
+    private final int maxBytes;
+
+    BatchGrouper(CqlSession session, WriteOptions options) {
+        this.session = session;
+        this.mode = options.batch;
+        this.maxSize = (options.batchSize != null && options.batchSize > 0) ? options.batchSize : DEFAULT_BATCH_SIZE;
+        this.maxBytes = (options.batchBytes != null && options.batchBytes > 0) ? options.batchBytes : DEFAULT_BATCH_BYTES;
+    }
+
+    List<Statement<?>> group(List<BoundStatement> statements) {
+        List<Statement<?>> result = new ArrayList<>();
+        Map<Object, Group> groups = new LinkedHashMap<>();
+        DriverContext context = session.getContext();
+        TokenMap tokenMap = (mode == WriteOptions.Batch.REPLICA) ? session.getMetadata().getTokenMap().orElse(null) : null;
+
+        for (BoundStatement statement : statements) {
+            ByteBuffer routingKey = statement.getRoutingKey();
+            int bytes = statement.computeSizeInBytes(context);
+            if (routingKey == null || bytes >= maxBytes) {
+                result.add(statement);
+                continue;
+            }
+
+            Object key = groupKey(tokenMap, statement, routingKey);
+            Group group = groups.computeIfAbsent(key, k -> new Group());
+            if (group.size() >= maxSize || group.bytes + bytes > maxBytes) {
+                group.flush(result);
+            }
+            group.add(statement, bytes);
+        }
+
+        for (Group group : groups.values())
+            group.flush(result);
+        return result;
+    }
+
+    private Object groupKey(TokenMap tokenMap, BoundStatement statement, ByteBuffer routingKey) {
+        if (tokenMap == null)
+            return routingKey;
+        CqlIdentifier keyspace = statement.getRoutingKeyspace();
+        if (keyspace == null)
+            keyspace = session.getKeyspace().orElse(null);
+        if (keyspace == null)
+            return routingKey;
+        Set<Node> replicas = tokenMap.getReplicas(keyspace, routingKey);
+        return replicas.isEmpty() ? routingKey : replicas;
+    }
+
+    private static class Group {
+        List<BoundStatement> statements = new ArrayList<>();
+        int bytes;
+
+        int size() {
+            return statements.size();
+        }
+
+        void add(BoundStatement statement, int size) {
+            statements.add(statement);
+            bytes += size;
+        }
+
+        void flush(List<Statement<?>> result) {
+            if (statements.size() == 1) {
+                result.add(statements.get(0));
+            } else if (statements.size() > 1) {
+                BoundStatement first = statements.get(0);
+                BatchStatement batch = BatchStatement.newInstance(BatchType.UNLOGGED)
+                        .addAll(statements)
+                        .setRoutingKeyspace(first.getRoutingKeyspace())
+                        .setRoutingKey(first.getRoutingKey());
+                if (first.getConsistencyLevel() != null)
+                    batch = batch.setConsistencyLevel(first.getConsistencyLevel());
+                if (first.isIdempotent() != null)  // statements in a group share the same WriteOptions
+                    batch = batch.setIdempotent(first.isIdempotent());
+                result.add(batch);
+            }
+            statements = new ArrayList<>();
+            bytes = 0;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package net.e6tech.elements.cassandra.driver.v4;
 
+import com.datastax.oss.driver.api.core.cql.Row;
 import com.datastax.oss.driver.api.core.data.GettableByName;
 import com.datastax.oss.driver.api.core.data.SettableByName;
 import com.datastax.oss.driver.api.mapper.MapperContext;
@@ -34,7 +35,6 @@ import com.datastax.oss.driver.internal.mapper.entity.EntityHelperBase;
 import com.datastax.oss.driver.internal.querybuilder.update.DefaultUpdate;
 import net.e6tech.elements.cassandra.etl.Inspector;
 import net.e6tech.elements.common.logging.Logger;
-import net.e6tech.elements.common.util.SystemException;
 
 import javax.annotation.Nonnull;
 import java.util.HashSet;
@@ -46,6 +46,7 @@ public class Helper<T> extends EntityHelperBase<T> {
     private static final Logger LOG = Logger.getLogger();
     private Class<T> entityClass;
     private Inspector inspector;
+    private RowCodec<T> codec;
 
     public Helper(MapperContext context, Class<T> entityClass, Inspector inspector) {
         super(context, inspector.tableName(entityClass));
@@ -56,6 +57,11 @@ public class Helper<T> extends EntityHelperBase<T> {
 
         this.entityClass = entityClass;
         this.inspector = inspector;
+        this.codec = new RowCodec<>(inspector);
+    }
+
+    public RowCodec<T> getCodec() {
+        return codec;
     }
 
     @Override
@@ -83,13 +89,10 @@ public class Helper<T> extends EntityHelperBase<T> {
     @Nonnull
     @Override
     public T get(@Nonnull GettableByName source) {
-        T returnValue;
-        try {
-            returnValue = entityClass.getDeclaredConstructor().newInstance();
-        } catch (Exception e) {
-            throw new SystemException(e);
-        }
+        if (source instanceof Row)
+            return codec.decode((Row) source);
 
+        T returnValue = inspector.newInstance();
         for (Inspector.ColumnAccessor accessor : inspector.getColumns()) {
             accessor.set(returnValue, source.get(accessor.getColumnName(), accessor.getType()));
         }
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.driver.v4;
+
+import com.datastax.oss.driver.api.core.context.DriverContext;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.session.Request;
+import com.datastax.oss.driver.api.core.session.Session;
+import com.datastax.oss.driver.internal.core.loadbalancing.DefaultLoadBalancingPolicy;
+import net.e6tech.elements.cassandra.LatencyTracker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * DefaultLoadBalancingPolicy, i.e. token and DC aware, that moves replicas whose recent response times are much
+ * slower than the fastest node's, see LatencyTracker.exclusionThreshold, to the end of the query plan.  Slow
+ * replicas are still tried, after the others.
+ */
+public class LatencyAwareLoadBalancingPolicy extends DefaultLoadBalancingPolicy {
+    private final String sessionName;
+
+    public LatencyAwareLoadBalancingPolicy(DriverContext context, String profileName) {
+        super(context, profileName);
+        sessionName = context.getSessionName();
+    }
+
+    @Override
+    public Queue<Node> newQueryPlan(Request request, Session session) {
+        Queue<Node> plan = super.newQueryPlan(request, session);
+        LatencyTracker tracker = NodeLatencyTracker.find(sessionName);
+        if (tracker == null)
+            return plan;
+        List<Node> nodes = new ArrayList<>(plan);
+        if (nodes.size() < 2)
+            return new ConcurrentLinkedQueue<>(nodes);
+        return new ConcurrentLinkedQueue<>(tracker.order(nodes, NodeLatencyTracker::id));
+    }
+}
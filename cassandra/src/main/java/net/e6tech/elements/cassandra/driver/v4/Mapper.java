@@ -20,10 +20,13 @@ import com.datastax.oss.driver.api.core.MappedAsyncPagingIterable;
 import com.datastax.oss.driver.api.core.PagingIterable;
 import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Statement;
 import net.e6tech.elements.cassandra.ReadOptions;
 import net.e6tech.elements.cassandra.WriteOptions;
 import net.e6tech.elements.cassandra.driver.cql.Row;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletionStage;
 
 public interface Mapper<T> {
@@ -46,5 +49,13 @@ public interface Mapper<T> {
 
     CompletionStage<Void> saveAsync(WriteOptions options, T entity);
 
+    /**
+     * Returns statements for saving the entities.  When options call for batching, entities are grouped into
+     * unlogged batches; otherwise there is one statement per entity.
+     */
+    List<Statement<?>> saveStatements(WriteOptions options, Collection<T> entities);
+
+    CompletionStage<Void> executeAsync(Statement<?> statement);
+
     void delete(T entity);
 }
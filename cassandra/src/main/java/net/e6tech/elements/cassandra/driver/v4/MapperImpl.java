@@ -23,44 +23,47 @@ import com.datastax.oss.driver.api.core.PagingIterable;
 import com.datastax.oss.driver.api.core.cql.*;
 import com.datastax.oss.driver.api.mapper.MapperContext;
 import com.datastax.oss.driver.api.mapper.entity.saving.NullSavingStrategy;
+import com.datastax.oss.driver.api.querybuilder.QueryBuilder;
 import com.datastax.oss.driver.api.querybuilder.insert.Insert;
 import com.datastax.oss.driver.internal.core.util.concurrent.BlockingOperation;
 import com.datastax.oss.driver.internal.core.util.concurrent.CompletableFutures;
 import com.datastax.oss.driver.internal.mapper.DaoBase;
 import net.e6tech.elements.cassandra.ReadOptions;
+import net.e6tech.elements.cassandra.StatementRegistry;
 import net.e6tech.elements.cassandra.WriteOptions;
 import net.e6tech.elements.cassandra.etl.Inspector;
 import net.e6tech.elements.common.logging.Logger;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.ConcurrentHashMap;
 
 @SuppressWarnings("unchecked")
 public class MapperImpl<T> extends DaoBase implements Mapper<T> {
 
     private static final Logger LOG = Logger.getLogger();
+    private static final String TTL = "using_ttl";
 
     private final Helper<T> helper;
     private final PreparedStatement findByIdStatement;
     private final PreparedStatement saveStatement;
     private final PreparedStatement deleteStatement;
     private Inspector inspector;
-
-    private Map<WriteOptions, PreparedStatement> saveStatements = new ConcurrentHashMap<>();
+    private StatementRegistry registry;
 
     private MapperImpl(MapperContext context,
                        Helper helper,
                        Inspector inspector,
+                       StatementRegistry registry,
                        PreparedStatement findByIdStatement,
                        PreparedStatement saveStatement,
                        PreparedStatement deleteStatement) {
         super(context);
         this.helper = helper;
         this.inspector = inspector;
+        this.registry = registry;
         this.findByIdStatement = findByIdStatement;
         this.saveStatement = saveStatement;
         this.deleteStatement = deleteStatement;
@@ -96,18 +99,15 @@ public class MapperImpl<T> extends DaoBase implements Mapper<T> {
     }
 
     private BoundStatement getBoundStatement(ReadOptions options, Object ... keys) {
-        BoundStatementBuilder boundStatementBuilder = findByIdStatement.boundStatementBuilder();
-
-        int i = 0;
-        for (Inspector.ColumnAccessor accessor : inspector.getPrimaryKeyColumns()) {
-            boundStatementBuilder = boundStatementBuilder.set(accessor.getColumnName(), keys[i], accessor.getType());
-            i++;
-        }
-
+        BoundStatementBuilder boundStatementBuilder = helper.getCodec()
+                .bindKeys(findByIdStatement, keys, findByIdStatement.boundStatementBuilder());
         BoundStatement boundStatement =  boundStatementBuilder.build();
         if (options != null && options.consistency != null) {
             boundStatement = boundStatement.setConsistencyLevel(DefaultConsistencyLevel.valueOf(options.consistency.name()));
         }
+        if (options != null && options.idempotent != null) {
+            boundStatement = boundStatement.setIdempotent(options.idempotent);
+        }
         return boundStatement;
     }
 
@@ -125,39 +125,53 @@ public class MapperImpl<T> extends DaoBase implements Mapper<T> {
         }
     }
 
+    // Statement text only depends on whether IF NOT EXISTS and USING TTL are present; the TTL value is bound
+    // so that each TTL does not require its own prepared statement.
+    PreparedStatement saveStatement(WriteOptions options) {
+        boolean ifNotExists = options.ifNotExists != null && options.ifNotExists;
+        boolean ttl = options.ttl != null;
+        if (!ifNotExists && !ttl)
+            return saveStatement;
+        StatementRegistry.Shape shape = new StatementRegistry.Shape(helper.getEntityClass(), "save",
+                context.getKeyspaceId(), ifNotExists, ttl);
+        return registry.get(shape, () -> {
+            Insert insert = helper.insert();
+            if (ifNotExists)
+                insert = insert.ifNotExists();
+            if (ttl)
+                insert = insert.usingTtl(QueryBuilder.bindMarker(TTL));
+            return context.getSession().prepare(insert.build());
+        });
+    }
+
     @SuppressWarnings("squid:S3776")
     private BoundStatement saveBoundStatement(WriteOptions options, T entity) {
-        PreparedStatement save = (options == null) ? saveStatement
-                : saveStatements.computeIfAbsent(options, wo -> {
-                    Insert insert = helper.insert();
-                    if (options.ifNotExists != null && options.ifNotExists) {
-                        insert = insert.ifNotExists();
-                    }
-                    if (options.ttl != null) {
-                        insert = insert.usingTtl(options.ttl);
-                    }
-            SimpleStatement simple = insert.build();
-            return context.getSession().prepare(simple);
-        });
+        PreparedStatement save = (options == null) ? saveStatement : saveStatement(options);
 
+        RowCodec<T> codec = helper.getCodec();
         BoundStatementBuilder boundStatementBuilder = save.boundStatementBuilder();
+        if (options != null && options.ttl != null)
+            boundStatementBuilder = boundStatementBuilder.setInt(TTL, options.ttl);
         BoundStatement boundStatement;
         if (options != null) {
             if (options.saveNullFields != null) {
                 if (options.saveNullFields)
-                    helper.set(entity, boundStatementBuilder, NullSavingStrategy.SET_TO_NULL);
+                    boundStatementBuilder = codec.bind(save, entity, boundStatementBuilder, NullSavingStrategy.SET_TO_NULL);
                 else
-                    helper.set(entity, boundStatementBuilder, NullSavingStrategy.DO_NOT_SET);
+                    boundStatementBuilder = codec.bind(save, entity, boundStatementBuilder, NullSavingStrategy.DO_NOT_SET);
             } else {
-                helper.set(entity, boundStatementBuilder, NullSavingStrategy.DO_NOT_SET);
+                boundStatementBuilder = codec.bind(save, entity, boundStatementBuilder, NullSavingStrategy.DO_NOT_SET);
             }
 
             boundStatement = boundStatementBuilder.build();
             if (options.consistency != null) {
                 boundStatement = boundStatement.setConsistencyLevel(DefaultConsistencyLevel.valueOf(options.consistency.name()));
             }
+            if (options.idempotence() != null) {
+                boundStatement = boundStatement.setIdempotent(options.idempotence());
+            }
         } else {
-            helper.set(entity, boundStatementBuilder, NullSavingStrategy.DO_NOT_SET);
+            boundStatementBuilder = codec.bind(save, entity, boundStatementBuilder, NullSavingStrategy.DO_NOT_SET);
             boundStatement = boundStatementBuilder.build();
         }
         return boundStatement;
@@ -178,20 +192,36 @@ public class MapperImpl<T> extends DaoBase implements Mapper<T> {
     }
 
     @Override
-    public void delete(T entity) {
-        BoundStatementBuilder boundStatementBuilder = deleteStatement.boundStatementBuilder();
+    public List<Statement<?>> saveStatements(WriteOptions options, Collection<T> entities) {
+        List<BoundStatement> statements = new ArrayList<>(entities.size());
+        for (T entity : entities)
+            statements.add(saveBoundStatement(options, entity));
+
+        // conditional updates cannot be batched across partitions, see WriteOptions.isBatched
+        if (options == null || !options.isBatched())
+            return new ArrayList<>(statements);
+        return new BatchGrouper(context.getSession(), options).group(statements);
+    }
 
-        for (Inspector.ColumnAccessor accessor : inspector.getPrimaryKeyColumns()) {
-            Object key = accessor.get(entity);
-            boundStatementBuilder = boundStatementBuilder.set(accessor.getColumnName(), key, accessor.getType());
+    @Override
+    public CompletionStage<Void> executeAsync(Statement<?> statement) {
+        try {
+            return executeAsyncAndMapToVoid(statement);
+        } catch (Exception t) {
+            return CompletableFutures.failedFuture(t);
         }
+    }
 
+    @Override
+    public void delete(T entity) {
+        BoundStatementBuilder boundStatementBuilder = helper.getCodec()
+                .bindKeys(deleteStatement, entity, deleteStatement.boundStatementBuilder());
         BoundStatement boundStatement = boundStatementBuilder.build();
         execute(boundStatement);
     }
 
     @SuppressWarnings("squid:S00117")
-    public static <T> CompletableFuture<MapperImpl<T>> initAsync(MapperContext context, Class<T> cls, Inspector inspector) {
+    public static <T> CompletableFuture<MapperImpl<T>> initAsync(MapperContext context, Class<T> cls, Inspector inspector, StatementRegistry registry) {
         LOG.debug("[{}] Initializing new instance for keyspace = {} and table = {}",
                 context.getSession().getName(),
                 context.getKeyspaceId(),
@@ -228,22 +258,39 @@ public class MapperImpl<T> extends DaoBase implements Mapper<T> {
             // Initialize all method invokers
             // Build the DAO when all statements are prepared
             return CompletableFutures.allSuccessful(prepareStages)
-                    .thenApply(v -> (MapperImpl<T>) new MapperImpl<>(context,
-                            helper,
-                            inspector,
-                            CompletableFutures.getCompleted(getStatement),
-                            CompletableFutures.getCompleted(saveStatement),
-                            CompletableFutures.getCompleted(deleteStatement)))
+                    .thenApply(v -> {
+                        registry.put(new StatementRegistry.Shape(cls, "get", context.getKeyspaceId()),
+                                CompletableFutures.getCompleted(getStatement));
+                        registry.put(new StatementRegistry.Shape(cls, "save", context.getKeyspaceId(), false, false),
+                                CompletableFutures.getCompleted(saveStatement));
+                        registry.put(new StatementRegistry.Shape(cls, "delete", context.getKeyspaceId()),
+                                CompletableFutures.getCompleted(deleteStatement));
+                        return (MapperImpl<T>) new MapperImpl<>(context,
+                                helper,
+                                inspector,
+                                registry,
+                                CompletableFutures.getCompleted(getStatement),
+                                CompletableFutures.getCompleted(saveStatement),
+                                CompletableFutures.getCompleted(deleteStatement));
+                    })
                     .toCompletableFuture();
         } catch (Exception t) {
             return CompletableFutures.failedFuture(t);
         }
     }
 
+    public static <T> CompletableFuture<MapperImpl<T>> initAsync(MapperContext context, Class<T> cls, Inspector inspector) {
+        return initAsync(context, cls, inspector, new StatementRegistry());
+    }
+
     public static <T> Mapper<T> init(MapperContext context, Class<T> cls, Inspector inspector) {
+        return init(context, cls, inspector, new StatementRegistry());
+    }
+
+    public static <T> Mapper<T> init(MapperContext context, Class<T> cls, Inspector inspector, StatementRegistry registry) {
         BlockingOperation.checkNotDriverThread();
         try {
-            return CompletableFutures.getUninterruptibly(initAsync(context, cls, inspector));
+            return CompletableFutures.getUninterruptibly(initAsync(context, cls, inspector, registry));
         } catch (Exception ex) {
             LOG.error("Cannot compile statements for class {}", cls);
             throw ex;
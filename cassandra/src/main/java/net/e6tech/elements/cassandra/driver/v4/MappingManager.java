@@ -75,7 +75,7 @@ public class MappingManager {
             CqlIdentifier keyspaceId = CqlIdentifier.fromInternal(keyspace);
             DefaultMapperContext context = new DefaultMapperContext(session, defaultKeyspaceId, defaultExecutionProfileName, defaultExecutionProfile, customState)
                     .withDaoParameters(keyspaceId, tableId, null, null);
-            this.cache = new LazyReference<>(() -> MapperImpl.init(context, cls, inspector));
+            this.cache = new LazyReference<>(() -> MapperImpl.init(context, cls, inspector, sessionProvider.getStatementRegistry()));
             return this;
         }
 
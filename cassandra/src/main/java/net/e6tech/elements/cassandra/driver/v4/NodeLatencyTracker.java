@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.driver.v4;
+
+import com.datastax.oss.driver.api.core.config.DriverExecutionProfile;
+import com.datastax.oss.driver.api.core.config.DriverOption;
+import com.datastax.oss.driver.api.core.context.DriverContext;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.session.Request;
+import com.datastax.oss.driver.api.core.tracker.RequestTracker;
+import com.datastax.oss.driver.internal.core.context.InternalDriverContext;
+import com.datastax.oss.driver.internal.core.util.Reflection;
+import net.e6tech.elements.cassandra.LatencyTracker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Feeds per node response times into a SessionProvider's LatencyTracker.  The tracker and the policies using it are
+ * instantiated by the driver, so they look up the LatencyTracker by session name, see register.  A request tracker
+ * configured by the application is moved to advanced.request-tracker.delegate-class and receives every callback
+ * as well.
+ */
+public class NodeLatencyTracker implements RequestTracker {
+    private static final Map<String, LatencyTracker> trackers = new ConcurrentHashMap<>();
+
+    private final LatencyTracker tracker;
+    private final RequestTracker delegate;
+
+    public NodeLatencyTracker(DriverContext context) {
+        tracker = trackers.get(context.getSessionName());
+        delegate = Reflection.buildFromConfig((InternalDriverContext) context, Option.DELEGATE_CLASS,
+                RequestTracker.class, "com.datastax.oss.driver.internal.core.tracker").orElse(null);
+    }
+
+    public static void register(String sessionName, LatencyTracker tracker) {
+        trackers.put(sessionName, tracker);
+    }
+
+    public static LatencyTracker find(String sessionName) {
+        return trackers.get(sessionName);
+    }
+
+    public static void unregister(String sessionName) {
+        trackers.remove(sessionName);
+    }
+
+    public static String id(Node node) {
+        return node.getEndPoint().toString();
+    }
+
+    @Override
+    public void onSuccess(Request request, long latencyNanos, DriverExecutionProfile executionProfile,
+                          Node node, String requestLogPrefix) {
+        if (delegate != null)
+            delegate.onSuccess(request, latencyNanos, executionProfile, node, requestLogPrefix);
+    }
+
+    @Override
+    public void onError(Request request, Throwable error, long latencyNanos, DriverExecutionProfile executionProfile,
+                        Node node, String requestLogPrefix) {
+        if (delegate != null)
+            delegate.onError(request, error, latencyNanos, executionProfile, node, requestLogPrefix);
+    }
+
+    @Override
+    public void onNodeSuccess(Request request, long latencyNanos, DriverExecutionProfile executionProfile,
+                              Node node, String requestLogPrefix) {
+        if (tracker != null)
+            tracker.record(id(node), latencyNanos);
+        if (delegate != null)
+            delegate.onNodeSuccess(request, latencyNanos, executionProfile, node, requestLogPrefix);
+    }
+
+    @Override
+    public void onNodeError(Request request, Throwable error, long latencyNanos, DriverExecutionProfile executionProfile,
+                            Node node, String requestLogPrefix) {
+        // a node failing with timeouts or overloaded errors is slow as far as the client is concerned.
+        if (tracker != null) {
+            tracker.record(id(node), latencyNanos);
+            tracker.error(id(node));
+        }
+        if (delegate != null)
+            delegate.onNodeError(request, error, latencyNanos, executionProfile, node, requestLogPrefix);
+    }
+
+    @Override
+    public void close() throws Exception {
+        // registration is removed by SessionProviderV4 on shutdown; a session may be rebuilt with the same tracker.
+        if (delegate != null)
+            delegate.close();
+    }
+
+    public enum Option implements DriverOption {
+        DELEGATE_CLASS("advanced.request-tracker.delegate-class");
+
+        private final String path;
+
+        Option(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.driver.v4;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.config.DefaultDriverOption;
+import com.datastax.oss.driver.api.core.config.DriverExecutionProfile;
+import com.datastax.oss.driver.api.core.config.DriverOption;
+import com.datastax.oss.driver.api.core.context.DriverContext;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.session.Request;
+import com.datastax.oss.driver.api.core.specex.SpeculativeExecutionPolicy;
+import net.e6tech.elements.cassandra.LatencyTracker;
+
+/**
+ * Starts another execution of an idempotent statement once it has been outstanding longer than a percentile of
+ * recent response times, e.g. p99, as recorded by NodeLatencyTracker.  Until there are enough samples it behaves
+ * like ConstantSpeculativeExecutionPolicy, using advanced.speculative-execution-policy.delay.
+ */
+public class PercentileSpeculativeExecutionPolicy implements SpeculativeExecutionPolicy {
+    private static final long REFRESH = 1000L; // how often the percentile is recomputed, in ms.
+
+    private final String sessionName;
+    private final int maxExecutions;
+    private final long delay;
+    private final double percentile;
+    private volatile long threshold = -1;
+    private volatile long refreshed;
+
+    public PercentileSpeculativeExecutionPolicy(DriverContext context, String profileName) {
+        DriverExecutionProfile profile = context.getConfig().getProfile(profileName);
+        sessionName = context.getSessionName();
+        maxExecutions = profile.getInt(DefaultDriverOption.SPECULATIVE_EXECUTION_MAX);
+        delay = profile.getDuration(DefaultDriverOption.SPECULATIVE_EXECUTION_DELAY).toMillis();
+        percentile = profile.getDouble(Option.PERCENTILE, 99.0d);
+    }
+
+    @Override
+    public long nextExecution(Node node, CqlIdentifier keyspace, Request request, int runningExecutions) {
+        if (runningExecutions >= maxExecutions)
+            return -1;
+        long now = System.currentTimeMillis();
+        if (now - refreshed > REFRESH) {
+            refreshed = now;
+            LatencyTracker tracker = NodeLatencyTracker.find(sessionName);
+            double value = (tracker == null) ? -1 : tracker.getPercentile(percentile);
+            threshold = (value < 0) ? -1 : (long) Math.ceil(value);
+        }
+        long t = threshold;
+        return t < 0 ? delay : t;
+    }
+
+    @Override
+    public void close() {
+        // nothing to close
+    }
+
+    public enum Option implements DriverOption {
+        PERCENTILE("advanced.speculative-execution-policy.percentile");
+
+        private final String path;
+
+        Option(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+    }
+}
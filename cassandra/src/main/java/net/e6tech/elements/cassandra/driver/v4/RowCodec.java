@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.driver.v4;
+
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.data.SettableByIndex;
+import com.datastax.oss.driver.api.core.type.codec.TypeCodec;
+import com.datastax.oss.driver.api.core.type.codec.registry.CodecRegistry;
+import com.datastax.oss.driver.api.mapper.entity.saving.NullSavingStrategy;
+import net.e6tech.elements.cassandra.etl.Inspector;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Moves values between rows or bound statements and entities by index.  Column indices and codecs are resolved
+ * once per result set metadata or prepared statement instead of by name for every value.  Entities are created
+ * and populated through the Inspector's generated constructor and accessors.
+ *
+ * @param <T> entity type
+ */
+@SuppressWarnings("unchecked")
+public class RowCodec<T> {
+    private final Inspector inspector;
+    private final Inspector.ColumnAccessor[] columns;
+    private final Inspector.ColumnAccessor[] keys;
+    private volatile Layout readLayout;  // rows of a result set share the same column definitions.
+    // bind and bindKeys bind different columns into the same statement, hence separate maps.
+    private final Map<PreparedStatement, Layout> columnLayouts = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<PreparedStatement, Layout> keyLayouts = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public RowCodec(Inspector inspector) {
+        this.inspector = inspector;
+        this.columns = inspector.getColumns().toArray(new Inspector.ColumnAccessor[0]);
+        this.keys = inspector.getPrimaryKeyColumns().toArray(new Inspector.ColumnAccessor[0]);
+    }
+
+    public T decode(Row row) {
+        ColumnDefinitions definitions = row.getColumnDefinitions();
+        Layout layout = readLayout;
+        if (layout == null || layout.definitions != definitions) {
+            layout = new Layout(definitions, columns, row.codecRegistry(), false);
+            readLayout = layout;
+        }
+
+        T entity = inspector.newInstance();
+        for (int i = 0; i < columns.length; i++) {
+            int idx = layout.indices[i];
+            if (idx < 0) {
+                // not selected, let the driver report it the same way as before.
+                columns[i].set(entity, row.get(columns[i].getColumnName(), columns[i].getType()));
+            } else {
+                columns[i].set(entity, row.get(idx, layout.codecs[i]));
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * Binds all columns of the entity into a statement such as the one generated by Helper.insert().
+     */
+    public <S extends SettableByIndex<S>> S bind(PreparedStatement statement, T entity, S target, NullSavingStrategy nullSavingStrategy) {
+        Layout layout = layout(columnLayouts, statement, columns, target.codecRegistry());
+        for (int i = 0; i < columns.length; i++) {
+            Object value = columns[i].get(entity);
+            if (value != null || nullSavingStrategy == NullSavingStrategy.SET_TO_NULL) {
+                target = target.set(layout.indices[i], value, layout.codecs[i]);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Binds primary key values, in partition key then clustering key order, into a statement whose variables
+     * include the primary key columns.
+     */
+    public <S extends SettableByIndex<S>> S bindKeys(PreparedStatement statement, Object[] values, S target) {
+        Layout layout = layout(keyLayouts, statement, keys, target.codecRegistry());
+        for (int i = 0; i < keys.length; i++) {
+            target = target.set(layout.indices[i], values[i], layout.codecs[i]);
+        }
+        return target;
+    }
+
+    public <S extends SettableByIndex<S>> S bindKeys(PreparedStatement statement, T entity, S target) {
+        Layout layout = layout(keyLayouts, statement, keys, target.codecRegistry());
+        for (int i = 0; i < keys.length; i++) {
+            target = target.set(layout.indices[i], keys[i].get(entity), layout.codecs[i]);
+        }
+        return target;
+    }
+
+    private Layout layout(Map<PreparedStatement, Layout> layouts, PreparedStatement statement,
+                          Inspector.ColumnAccessor[] accessors, CodecRegistry registry) {
+        Layout layout = layouts.get(statement);
+        if (layout == null) {
+            layout = new Layout(statement.getVariableDefinitions(), accessors, registry, true);
+            layouts.put(statement, layout);
+        }
+        return layout;
+    }
+
+    private static class Layout {
+        final ColumnDefinitions definitions;
+        final int[] indices;
+        final TypeCodec[] codecs;
+
+        Layout(ColumnDefinitions definitions, Inspector.ColumnAccessor[] accessors, CodecRegistry registry, boolean required) {
+            this.definitions = definitions;
+            indices = new int[accessors.length];
+            codecs = new TypeCodec[accessors.length];
+            for (int i = 0; i < accessors.length; i++) {
+                String column = accessors[i].getColumnName();
+                indices[i] = definitions.firstIndexOf(column);
+                if (indices[i] < 0) {
+                    if (required)
+                        throw new IllegalArgumentException(column + " is not a variable in this bound statement");
+                    continue;
+                }
+                codecs[i] = registry.codecFor(definitions.get(indices[i]).getType(), (Class) accessors[i].getType());
+            }
+        }
+    }
+}
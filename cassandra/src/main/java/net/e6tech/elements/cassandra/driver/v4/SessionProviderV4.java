@@ -24,10 +24,12 @@ import com.datastax.oss.driver.api.core.config.DefaultDriverOption;
 import com.datastax.oss.driver.api.core.config.DriverConfigLoader;
 import com.datastax.oss.driver.api.core.config.ProgrammaticDriverConfigLoaderBuilder;
 import com.datastax.oss.driver.api.core.metadata.schema.KeyspaceMetadata;
+import com.datastax.oss.driver.api.core.specex.ConstantSpeculativeExecutionPolicy;
 import com.datastax.oss.driver.api.mapper.entity.naming.NamingConvention;
 import com.datastax.oss.driver.internal.core.loadbalancing.DefaultLoadBalancingPolicy;
 import net.e6tech.elements.cassandra.SessionProvider;
 import net.e6tech.elements.cassandra.Sibyl;
+import net.e6tech.elements.cassandra.SpeculativeExecution;
 import net.e6tech.elements.cassandra.driver.Wrapper;
 import net.e6tech.elements.cassandra.driver.metadata.TableMetadata;
 import net.e6tech.elements.cassandra.generator.Generator;
@@ -36,13 +38,17 @@ import net.e6tech.elements.common.resources.Resources;
 import net.e6tech.elements.common.util.TextBuilder;
 
 import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 public class SessionProviderV4 extends SessionProvider {
 
     private static Logger logger = Logger.getLogger();
+    private static final AtomicInteger sessionCount = new AtomicInteger();
 
     private Generator generator = new GeneratorV4();
     private CqlSession session;
@@ -50,6 +56,7 @@ public class SessionProviderV4 extends SessionProvider {
     private MappingManager mappingManager;
     private String namingConvention;
     private Function<CqlSessionBuilder, CqlSessionBuilder> sessionCustomizer;
+    private String sessionName;
 
     public String getNamingConvention() {
         return namingConvention;
@@ -112,10 +119,16 @@ public class SessionProviderV4 extends SessionProvider {
             configBuilder.withString(DefaultDriverOption.valueOf(entry.getKey()), "" + entry.getValue());
         }
 
+        if (tracksLatency())
+            configureLatencyTracking(configBuilder);
+
         if (driverOptions.get("LOAD_BALANCING_POLICY_CLASS") == null) {
-            configBuilder.withString(DefaultDriverOption.LOAD_BALANCING_POLICY_CLASS, DefaultLoadBalancingPolicy.class.getName());
+            Class policy = isLatencyAware() ? LatencyAwareLoadBalancingPolicy.class : DefaultLoadBalancingPolicy.class;
+            configBuilder.withString(DefaultDriverOption.LOAD_BALANCING_POLICY_CLASS, policy.getName());
         }
 
+        configureSpeculativeExecution(configBuilder);
+
         DriverConfigLoader loader = configBuilder.build();
         CqlSessionBuilder builder = CqlSession.builder()
                 .withConfigLoader(loader)
@@ -138,6 +151,51 @@ public class SessionProviderV4 extends SessionProvider {
         mappingManager = new MappingManager(this, session, getKeyspace());
     }
 
+    // response times are only needed by the latency aware load balancing and percentile speculative execution policies.
+    private boolean tracksLatency() {
+        Object balancing = driverOptions.get("LOAD_BALANCING_POLICY_CLASS");
+        if (balancing == null ? isLatencyAware() : LatencyAwareLoadBalancingPolicy.class.getName().equals(balancing.toString()))
+            return true;
+        Object speculative = driverOptions.get("SPECULATIVE_EXECUTION_POLICY_CLASS");
+        return speculative == null ? getSpeculativeExecution() == SpeculativeExecution.PERCENTILE
+                : PercentileSpeculativeExecutionPolicy.class.getName().equals(speculative.toString());
+    }
+
+    // the tracker and policies instantiated by the driver find the LatencyTracker by session name, so each session
+    // gets a unique name unless SESSION_NAME is configured.  A configured REQUEST_TRACKER_CLASS is chained.
+    private void configureLatencyTracking(ProgrammaticDriverConfigLoaderBuilder configBuilder) {
+        if (driverOptions.get("SESSION_NAME") == null) {
+            sessionName = "elements-" + sessionCount.incrementAndGet();
+            configBuilder.withString(DefaultDriverOption.SESSION_NAME, sessionName);
+        } else {
+            sessionName = "" + driverOptions.get("SESSION_NAME");
+        }
+        NodeLatencyTracker.register(sessionName, getLatencyTracker());
+
+        Object requestTracker = driverOptions.get("REQUEST_TRACKER_CLASS");
+        if (requestTracker != null)
+            configBuilder.withString(NodeLatencyTracker.Option.DELEGATE_CLASS, requestTracker.toString());
+        configBuilder.withString(DefaultDriverOption.REQUEST_TRACKER_CLASS, NodeLatencyTracker.class.getName());
+    }
+
+    // speculative executions only apply to statements marked idempotent, see ReadOptions and WriteOptions.
+    private void configureSpeculativeExecution(ProgrammaticDriverConfigLoaderBuilder configBuilder) {
+        if (getSpeculativeExecution() == null || getSpeculativeExecution() == SpeculativeExecution.NONE
+                || driverOptions.get("SPECULATIVE_EXECUTION_POLICY_CLASS") != null)
+            return;
+
+        if (getSpeculativeExecution() == SpeculativeExecution.CONSTANT) {
+            configBuilder.withString(DefaultDriverOption.SPECULATIVE_EXECUTION_POLICY_CLASS, ConstantSpeculativeExecutionPolicy.class.getName());
+        } else {
+            configBuilder.withString(DefaultDriverOption.SPECULATIVE_EXECUTION_POLICY_CLASS, PercentileSpeculativeExecutionPolicy.class.getName());
+            configBuilder.withDouble(PercentileSpeculativeExecutionPolicy.Option.PERCENTILE, getSpeculativePercentile());
+        }
+        if (driverOptions.get("SPECULATIVE_EXECUTION_MAX") == null)
+            configBuilder.withInt(DefaultDriverOption.SPECULATIVE_EXECUTION_MAX, getSpeculativeMaxExecutions());
+        if (driverOptions.get("SPECULATIVE_EXECUTION_DELAY") == null)
+            configBuilder.withDuration(DefaultDriverOption.SPECULATIVE_EXECUTION_DELAY, Duration.ofMillis(getSpeculativeDelay()));
+    }
+
     private CqlSession getSession(CqlSessionBuilder builder, String keyspace) {
         CqlSessionBuilder b = builder
                 .withKeyspace(keyspace);
@@ -147,6 +205,21 @@ public class SessionProviderV4 extends SessionProvider {
         return b.build();
     }
 
+    @Override
+    public void prepareStatements(String keyspaceIn, Class... classes) {
+        if (mappingManager == null || !Objects.equals(getKeyspace(keyspaceIn), mappingManager.getKeyspace()))
+            return;  // mappers are only created for the session keyspace.
+        for (Class cls : classes) {
+            try {
+                mappingManager.getMapper(cls);
+            } catch (Exception ex) {
+                logger.warn("Cannot prepare statements for " + cls.getName(), ex);
+            }
+        }
+        if (logger.isDebugEnabled())
+            logger.debug("Prepared statements for {} classes, {}", classes.length, getStatementRegistry());
+    }
+
     @Override
     protected void initKeyspace() {
         // initKeyspace is done in initDriver
@@ -179,5 +252,7 @@ public class SessionProviderV4 extends SessionProvider {
             session.close();
             session = null;
         }
+        if (sessionName != null)
+            NodeLatencyTracker.unregister(sessionName);
     }
 }
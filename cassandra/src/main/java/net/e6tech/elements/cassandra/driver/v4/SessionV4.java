@@ -16,18 +16,26 @@
 
 package net.e6tech.elements.cassandra.driver.v4;
 
+import com.datastax.oss.driver.api.core.CqlIdentifier;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import com.datastax.oss.driver.internal.core.metadata.token.Murmur3Token;
 import net.e6tech.elements.cassandra.driver.Wrapper;
 import net.e6tech.elements.cassandra.driver.cql.AsyncResultSet;
 import net.e6tech.elements.cassandra.driver.cql.Bound;
 import net.e6tech.elements.cassandra.driver.cql.Prepared;
 import net.e6tech.elements.cassandra.driver.cql.ResultSet;
+import net.e6tech.elements.cassandra.driver.metadata.TokenRange;
 import net.e6tech.elements.common.util.StringUtil;
+import net.e6tech.elements.common.util.SystemException;
 
+import java.util.*;
 import java.util.concurrent.*;
 
 public class SessionV4 extends Wrapper<CqlSession> implements net.e6tech.elements.cassandra.Session {
+    private static final String MURMUR3_PARTITIONER = "org.apache.cassandra.dht.Murmur3Partitioner";
 
     @Override
     public ResultSet execute(String query) {
@@ -54,18 +62,16 @@ public class SessionV4 extends Wrapper<CqlSession> implements net.e6tech.element
             return executeAsync(query);
         SimpleStatement stmt = SimpleStatement.newInstance(query);
         stmt.setKeyspace(keyspace);
-        return new FutureAsyncResultSet(unwrap().executeAsync(stmt).toCompletableFuture());
+        return wrapAsync(unwrap().executeAsync(stmt));
     }
 
     @Override
     public Future<AsyncResultSet> executeAsync(String query) {
-        return new FutureAsyncResultSet(unwrap().executeAsync(query).toCompletableFuture());
+        return wrapAsync(unwrap().executeAsync(query));
     }
 
     public Future<AsyncResultSet> executeAsync(Bound bound) {
-        CompletionStage<com.datastax.oss.driver.api.core.cql.AsyncResultSet> completionStage = unwrap().executeAsync(((BoundV4) bound).unwrap());
-        CompletableFuture<com.datastax.oss.driver.api.core.cql.AsyncResultSet> future = completionStage.toCompletableFuture();
-        return new FutureAsyncResultSet(future);
+        return wrapAsync(unwrap().executeAsync(((BoundV4) bound).unwrap()));
     }
 
     @Override
@@ -73,39 +79,38 @@ public class SessionV4 extends Wrapper<CqlSession> implements net.e6tech.element
         return Wrapper.wrap(new PreparedV4(), unwrap().prepare(query));
     }
 
-    private static class FutureAsyncResultSet implements Future<AsyncResultSet> {
-
-        CompletableFuture<com.datastax.oss.driver.api.core.cql.AsyncResultSet> future;
-
-        FutureAsyncResultSet(CompletableFuture<com.datastax.oss.driver.api.core.cql.AsyncResultSet> future) {
-            this.future = future;
-        }
-
-        @Override
-        public boolean cancel(boolean mayInterruptIfRunning) {
-            return future.cancel(mayInterruptIfRunning);
-        }
-
-        @Override
-        public boolean isCancelled() {
-            return future.isCancelled();
-        }
-
-        @Override
-        public boolean isDone() {
-            return future.isDone();
-        }
-
-        @Override
-        public net.e6tech.elements.cassandra.driver.cql.AsyncResultSet get() throws InterruptedException, ExecutionException {
-            com.datastax.oss.driver.api.core.cql.AsyncResultSet rs = future.get();
-            return Wrapper.wrap(new AsyncResultSetV4(), rs);
+    @Override
+    public List<TokenRange> getTokenRanges(String keyspace, int splitsPerRange) {
+        TokenMap tokenMap = unwrap().getMetadata().getTokenMap()
+                .orElseThrow(() -> new SystemException("Token metadata is not available"));
+        if (!MURMUR3_PARTITIONER.equals(tokenMap.getPartitionerName()))
+            throw new SystemException("Token ranges are only supported for " + MURMUR3_PARTITIONER);
+        CqlIdentifier ks = StringUtil.isNullOrEmpty(keyspace) ? unwrap().getKeyspace().orElse(null) : CqlIdentifier.fromCql(keyspace);
+
+        List<TokenRange> list = new ArrayList<>();
+        for (com.datastax.oss.driver.api.core.metadata.token.TokenRange range : tokenMap.getTokenRanges()) {
+            Set<String> replicas = new LinkedHashSet<>();
+            if (ks != null) {
+                for (Node node : tokenMap.getReplicas(ks, range))
+                    replicas.add(node.getEndPoint().toString());
+            }
+            List<com.datastax.oss.driver.api.core.metadata.token.TokenRange> splits = (splitsPerRange > 1) ?
+                    range.splitEvenly(splitsPerRange) : Collections.singletonList(range);
+            for (com.datastax.oss.driver.api.core.metadata.token.TokenRange split : splits) {
+                for (com.datastax.oss.driver.api.core.metadata.token.TokenRange r : split.unwrap()) {
+                    long start = ((Murmur3Token) r.getStart()).getValue();
+                    long end = ((Murmur3Token) r.getEnd()).getValue();
+                    // a range ending at the minimum token extends to the end of the ring.
+                    list.add(new TokenRange(start, end == Long.MIN_VALUE ? Long.MAX_VALUE : end, replicas));
+                }
+            }
         }
+        Collections.sort(list);
+        return list;
+    }
 
-        @Override
-        public AsyncResultSet get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-            com.datastax.oss.driver.api.core.cql.AsyncResultSet rs = future.get(timeout, unit);
-            return Wrapper.wrap(new AsyncResultSetV4(), rs);
-        }
+    // a CompletableFuture so that callers such as AsyncPipeline can be notified on completion.
+    private static CompletableFuture<AsyncResultSet> wrapAsync(CompletionStage<com.datastax.oss.driver.api.core.cql.AsyncResultSet> stage) {
+        return stage.toCompletableFuture().<AsyncResultSet>thenApply(rs -> Wrapper.wrap(new AsyncResultSetV4(), rs));
     }
 }
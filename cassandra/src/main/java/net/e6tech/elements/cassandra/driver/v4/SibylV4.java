@@ -16,20 +16,23 @@
 
 package net.e6tech.elements.cassandra.driver.v4;
 
+import com.datastax.oss.driver.api.core.cql.Statement;
 import net.e6tech.elements.cassandra.ReadOptions;
 import net.e6tech.elements.cassandra.Sibyl;
 import net.e6tech.elements.cassandra.WriteOptions;
 import net.e6tech.elements.cassandra.async.Async;
 import net.e6tech.elements.cassandra.async.AsyncFutures;
+import net.e6tech.elements.cassandra.async.AsyncPipeline;
 import net.e6tech.elements.cassandra.driver.cql.BaseResultSet;
 import net.e6tech.elements.cassandra.driver.cql.ResultSet;
 import net.e6tech.elements.cassandra.etl.PrimaryKey;
 import net.e6tech.elements.common.inject.Inject;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 public class SibylV4 extends Sibyl {
 
@@ -100,12 +103,28 @@ public class SibylV4 extends Sibyl {
 
     @Override
     public <X> void save(Collection<X> list, Class<X> cls, WriteOptions userOptions) {
-        Async<Void, X> async = createAsync();
         Mapper<X> mapper = mappingManager.getMapper(cls);
-        AsyncFutures futures = async.accept(list, item -> mapper.saveAsync(writeOptions(userOptions), item).toCompletableFuture());
-            if (userOptions != null && userOptions.timeout != null && userOptions.timeout > 0)
-                futures.timeout(userOptions.timeout);
-        futures.inExecutionOrder();
+        WriteOptions options = writeOptions(userOptions);
+        if (options.isBatched()) {
+            // rows sharing a partition or replicas are sent as unlogged batches
+            AsyncPipeline<Void, Statement<?>> pipeline = createPipeline(options, userOptions);
+            pipeline.execute(mapper.saveStatements(options, list), statement -> mapper.executeAsync(statement).toCompletableFuture())
+                    .throwIfFailed();
+        } else {
+            AsyncPipeline<Void, X> pipeline = createPipeline(options, userOptions);
+            pipeline.execute(list, item -> mapper.saveAsync(options, item).toCompletableFuture())
+                    .throwIfFailed();
+        }
+    }
+
+    private <D> AsyncPipeline<Void, D> createPipeline(WriteOptions options, WriteOptions userOptions) {
+        AsyncPipeline<Void, D> pipeline = createPipeline();
+        // a retried write may be applied twice
+        if (!Boolean.TRUE.equals(options.idempotent) || Boolean.TRUE.equals(options.ifNotExists))
+            pipeline.maxRetries(0);
+        if (userOptions != null && userOptions.timeout != null && userOptions.timeout > 0)
+            pipeline.timeout(userOptions.timeout);
+        return pipeline;
     }
 
     @Override
@@ -123,11 +142,16 @@ public class SibylV4 extends Sibyl {
     @Override
     public <X> List<X> mapAll(Class<X> cls, BaseResultSet resultSet) {
         Mapper<X> mapper = mappingManager.getMapper(cls);
-        List<net.e6tech.elements.cassandra.driver.cql.Row> all = resultSet.all();
-        List<X> list = new LinkedList<>();
-        for (net.e6tech.elements.cassandra.driver.cql.Row row : all) {
+        // maps while iterating so that driver rows are not copied into an intermediate list.
+        List<X> list = new ArrayList<>();
+        for (net.e6tech.elements.cassandra.driver.cql.Row row : resultSet) {
             list.add(mapper.map(row));
         }
         return list;
     }
+
+    @Override
+    public <X> Function<net.e6tech.elements.cassandra.driver.cql.Row, X> rowMapper(Class<X> cls) {
+        return mappingManager.getMapper(cls)::map;
+    }
 }
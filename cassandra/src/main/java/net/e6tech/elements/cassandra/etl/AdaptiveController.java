@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.cassandra.etl;
+
+/**
+ * Tunes the batch size and the number of async chunks in flight of an ETL run, similar to AIMD congestion control.
+ * A batch or a round of chunks that completes within targetLatency increases the setting additively; a timeout,
+ * a failure or a round slower than targetLatency cuts it by decreaseFactor.  Settings are kept between their
+ * min and max bounds.
+ */
+public class AdaptiveController {
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int minChunks;
+    private final int maxChunks;
+    private final long targetLatency;
+    private double decreaseFactor = 0.5d;
+    private int batchIncrement;
+    private int chunkIncrement;
+
+    private int batchSize;
+    private int chunks;
+    private long batches;
+    private long rows;
+    private long elapsed;
+    private long rounds;
+    private long timeouts;
+    private long failures;
+    private long increases;
+    private long decreases;
+
+    public AdaptiveController(int batchSize, int minBatchSize, int maxBatchSize,
+                              int chunks, int minChunks, int maxChunks, long targetLatency) {
+        this.minBatchSize = Math.max(1, minBatchSize);
+        this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+        this.minChunks = Math.max(1, minChunks);
+        this.maxChunks = Math.max(this.minChunks, maxChunks);
+        this.targetLatency = targetLatency;
+        this.batchSize = clamp(batchSize, this.minBatchSize, this.maxBatchSize);
+        this.chunks = clamp(chunks, this.minChunks, this.maxChunks);
+        batchIncrement = Math.max(1, this.batchSize / 10);
+        chunkIncrement = Math.max(1, this.chunks / 10);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.min(max, Math.max(min, value));
+    }
+
+    /**
+     * @return true if the exception, or one of its causes, is a timeout, e.g. a driver read timeout.
+     */
+    public static boolean isTimeout(Throwable throwable) {
+        Throwable th = throwable;
+        while (th != null) {
+            if (th.getClass().getSimpleName().contains("Timeout"))
+                return true;
+            th = (th.getCause() == th) ? null : th.getCause();
+        }
+        return false;
+    }
+
+    public double getDecreaseFactor() {
+        return decreaseFactor;
+    }
+
+    public void setDecreaseFactor(double decreaseFactor) {
+        this.decreaseFactor = decreaseFactor;
+    }
+
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    public synchronized int getChunks() {
+        return chunks;
+    }
+
+    public long getTargetLatency() {
+        return targetLatency;
+    }
+
+    public synchronized long getTimeouts() {
+        return timeouts;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return rows loaded per second.
+     */
+    public synchronized double getThroughput() {
+        return elapsed == 0 ? 0 : rows * 1000d / elapsed;
+    }
+
+    public synchronized void batchCompleted(int count, long duration) {
+        batches++;
+        rows += count;
+        elapsed += duration;
+        int size = (duration <= targetLatency) ? batchSize + batchIncrement : (int) (batchSize * decreaseFactor);
+        batchSize = adjust(batchSize, size, minBatchSize, maxBatchSize);
+    }
+
+    /**
+     * Cuts the batch size after a failed batch.
+     * @return false if the batch size is already at its minimum, i.e. retrying with a smaller batch won't help.
+     */
+    public synchronized boolean batchFailed(Throwable throwable) {
+        countFailure(throwable);
+        int size = batchSize;
+        batchSize = adjust(batchSize, (int) (batchSize * decreaseFactor), minBatchSize, maxBatchSize);
+        return batchSize < size;
+    }
+
+    public synchronized void chunksCompleted(long duration) {
+        rounds++;
+        int size = (duration <= targetLatency) ? chunks + chunkIncrement : (int) (chunks * decreaseFactor);
+        chunks = adjust(chunks, size, minChunks, maxChunks);
+    }
+
+    /**
+     * Cuts the number of chunks in flight after a failed round.
+     * @return false if the number of chunks is already at its minimum.
+     */
+    public synchronized boolean chunksFailed(Throwable throwable) {
+        countFailure(throwable);
+        int size = chunks;
+        chunks = adjust(chunks, (int) (chunks * decreaseFactor), minChunks, maxChunks);
+        return chunks < size;
+    }
+
+    private void countFailure(Throwable throwable) {
+        if (isTimeout(throwable))
+            timeouts++;
+        else
+            failures++;
+    }
+
+    private int adjust(int current, int proposed, int min, int max) {
+        int value = clamp(proposed, min, max);
+        if (value > current)
+            increases++;
+        else if (value < current)
+            decreases++;
+        return value;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "batchSize=" + batchSize + " [" + minBatchSize + "," + maxBatchSize + "]"
+                + " chunks=" + chunks + " [" + minChunks + "," + maxChunks + "]"
+                + " batches=" + batches + " rows=" + rows
+                + " throughput=" + String.format("%.1f", getThroughput()) + "/s"
+                + " rounds=" + rounds + " increases=" + increases + " decreases=" + decreases
+                + " timeouts=" + timeouts + " failures=" + failures;
+    }
+}
@@ -30,12 +30,31 @@ public interface BatchStrategy<S, C extends ETLContext> extends Strategy<C> {
         List batchResults = null;
 
         logger.info("Loading Class {}", getClass());
-        while (!(batchResults = extract(context)).isEmpty()) {
-            int processedCount = load(context, batchResults);
+        while (true) {
+            long start = System.currentTimeMillis();
+            int processedCount;
+            try {
+                if ((batchResults = extract(context)).isEmpty())
+                    break;
+                processedCount = load(context, batchResults);
+            } catch (RuntimeException ex) {
+                context.batchFailed(ex);
+                throw ex;
+            }
+            context.batchCompleted(processedCount, System.currentTimeMillis() - start);
             logger.info("Processed {} instance of {}", processedCount, getClass());
             importedCount += processedCount;
         }
-        logger.info("Done loading {} instance of {}", importedCount, getClass());
+        logger.info("Done loading {} instance of {}{}", importedCount, getClass(), adaptiveReport(context));
         return importedCount;
     }
+
+    /**
+     * @return settings chosen by the context's adaptive controller and the throughput, or an empty string if the
+     * context is not adaptive.
+     */
+    default String adaptiveReport(C context) {
+        AdaptiveController controller = context.getAdaptiveController();
+        return controller == null ? "" : ", adaptive " + controller;
+    }
 }
@@ -26,8 +26,11 @@ import net.e6tech.elements.common.resources.UnitOfWork;
 import net.e6tech.elements.common.util.SystemException;
 
 import java.time.Instant;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 public class ETLContext {
     public static final long DAY = 24 * 60 * 60 * 1000L;
@@ -39,6 +42,7 @@ public class ETLContext {
     public static final long TIME_LAG = 5 * 60 * 1000L; // 5 minutes
     public static final int ASYNC_MAX_NUM_OF_CHUNKS = 100;
     public static final int BATCH_SIZE = 2000;
+    public static final long TARGET_LATENCY = 10000L;
 
     private Provision provision;
     private ETLSettings settings = new ETLSettings();
@@ -52,6 +56,9 @@ public class ETLContext {
     private LastUpdate lastUpdate;
     private String useLastUpdate;
     private long timeOffset =  2 * YEAR;
+    private AdaptiveController adaptiveController;
+    private Function<String, TokenRangeScanner.RangeCheckpoint> rangeCheckpointFactory = scan -> new TokenRangeScanner.InMemoryCheckpoint();
+    private Map<String, TokenRangeScanner.RangeCheckpoint> rangeCheckpoints = new ConcurrentHashMap<>();
 
     public ETLContext() {
         settings.batchSize(BATCH_SIZE)
@@ -62,6 +69,11 @@ public class ETLContext {
                 .asyncUseFutures(false)
                 .retries(0)
                 .retrySleep(100L)
+                .tokenRangeScan(false)
+                .scanConcurrency(8)
+                .scanPageSize(5000)
+                .adaptive(false)
+                .targetLatency(TARGET_LATENCY)
                 .extractAll(true)
                 .startTime(System.currentTimeMillis());
 
@@ -148,6 +160,143 @@ public class ETLContext {
         settings.setRetrySleep(sleep);
     }
 
+    public boolean isTokenRangeScan() {
+        return settings.isTokenRangeScan();
+    }
+
+    public void setTokenRangeScan(boolean tokenRangeScan) {
+        settings.setTokenRangeScan(tokenRangeScan);
+    }
+
+    public int getScanConcurrency() {
+        return settings.getScanConcurrency();
+    }
+
+    public void setScanConcurrency(int scanConcurrency) {
+        settings.setScanConcurrency(scanConcurrency);
+    }
+
+    public int getScanPageSize() {
+        return settings.getScanPageSize();
+    }
+
+    public void setScanPageSize(int scanPageSize) {
+        settings.setScanPageSize(scanPageSize);
+    }
+
+    public Function<String, TokenRangeScanner.RangeCheckpoint> getRangeCheckpointFactory() {
+        return rangeCheckpointFactory;
+    }
+
+    /**
+     * Creates the RangeCheckpoint of a token range scan, the argument is the scan query.  By default
+     * checkpoints are kept in memory.
+     */
+    public void setRangeCheckpointFactory(Function<String, TokenRangeScanner.RangeCheckpoint> rangeCheckpointFactory) {
+        this.rangeCheckpointFactory = rangeCheckpointFactory;
+        rangeCheckpoints.clear();
+    }
+
+    /**
+     * Returns the same checkpoint for every scan using the query so that a failed scan can be resumed.
+     */
+    public TokenRangeScanner.RangeCheckpoint getRangeCheckpoint(String query) {
+        return rangeCheckpoints.computeIfAbsent(query, rangeCheckpointFactory);
+    }
+
+
+    public boolean isAdaptive() {
+        return settings.isAdaptive();
+    }
+
+    public void setAdaptive(boolean adaptive) {
+        settings.setAdaptive(adaptive);
+    }
+
+    public Integer getMinBatchSize() {
+        return settings.getMinBatchSize();
+    }
+
+    public void setMinBatchSize(Integer minBatchSize) {
+        settings.setMinBatchSize(minBatchSize);
+    }
+
+    public Integer getMaxBatchSize() {
+        return settings.getMaxBatchSize();
+    }
+
+    public void setMaxBatchSize(Integer maxBatchSize) {
+        settings.setMaxBatchSize(maxBatchSize);
+    }
+
+    public Integer getMinAsyncChunks() {
+        return settings.getMinAsyncChunks();
+    }
+
+    public void setMinAsyncChunks(Integer minAsyncChunks) {
+        settings.setMinAsyncChunks(minAsyncChunks);
+    }
+
+    public Integer getMaxAsyncChunks() {
+        return settings.getMaxAsyncChunks();
+    }
+
+    public void setMaxAsyncChunks(Integer maxAsyncChunks) {
+        settings.setMaxAsyncChunks(maxAsyncChunks);
+    }
+
+    public long getTargetLatency() {
+        return settings.getTargetLatency();
+    }
+
+    public void setTargetLatency(long targetLatency) {
+        settings.setTargetLatency(targetLatency);
+    }
+
+    /**
+     * Returns the controller tuning batchSize and asyncMaxNumOfChunks, or null if the context is not adaptive.
+     * The controller is created on first use from the current settings.  Unless set, batch size is bounded by
+     * batchSize / 20 and batchSize * 4, and chunks by 1 and asyncMaxNumOfChunks * 4.
+     */
+    public synchronized AdaptiveController getAdaptiveController() {
+        if (!isAdaptive())
+            return null;
+        if (adaptiveController == null) {
+            int batchSize = getBatchSize();
+            int chunks = getAsyncMaxNumOfChunks() != null ? getAsyncMaxNumOfChunks() : ASYNC_MAX_NUM_OF_CHUNKS;
+            adaptiveController = new AdaptiveController(batchSize,
+                    getMinBatchSize() != null ? getMinBatchSize() : batchSize / 20,
+                    getMaxBatchSize() != null ? getMaxBatchSize() : batchSize * 4,
+                    chunks,
+                    getMinAsyncChunks() != null ? getMinAsyncChunks() : 1,
+                    getMaxAsyncChunks() != null ? getMaxAsyncChunks() : chunks * 4,
+                    getTargetLatency());
+        }
+        return adaptiveController;
+    }
+
+    /**
+     * Feeds a completed batch to the adaptive controller, if any, and applies the batch size it chooses.
+     */
+    public void batchCompleted(int count, long elapsed) {
+        AdaptiveController controller = getAdaptiveController();
+        if (controller != null) {
+            controller.batchCompleted(count, elapsed);
+            setBatchSize(controller.getBatchSize());
+        }
+    }
+
+    /**
+     * Feeds a failed batch to the adaptive controller, if any, so that a retry uses a smaller batch size.
+     */
+    public void batchFailed(Throwable throwable) {
+        AdaptiveController controller = getAdaptiveController();
+        if (controller != null) {
+            controller.batchFailed(throwable);
+            setBatchSize(controller.getBatchSize());
+        }
+    }
+
 
     public int getImportedCount() {
         return importedCount;
@@ -219,7 +368,7 @@ public class ETLContext {
 
     public Class getPartitionKeyType() {
         initialize();
-        return getInspector(getSourceClass()).getPartitionKeyClass(0);
+        return getInspector().getPartitionKeyClass(0);
     }
 
     public void reset() {
@@ -382,7 +531,7 @@ public class ETLContext {
         if (initialized)
             return;
         initialized = true;
-        Inspector inspector = getInspector(getSourceClass());
+        Inspector inspector = getInspector();
 
         if (timeUnit == null)
             timeUnit = inspector.getTimeUnit();
@@ -400,6 +549,15 @@ public class ETLContext {
         setAsyncUseFutures(context.isAsyncUseFutures());
         setRetries(context.getRetries());
         setRetrySleep(context.getRetrySleep());
+        setTokenRangeScan(context.isTokenRangeScan());
+        setScanConcurrency(context.getScanConcurrency());
+        setScanPageSize(context.getScanPageSize());
+        setAdaptive(context.isAdaptive());
+        setMinBatchSize(context.getMinBatchSize());
+        setMaxBatchSize(context.getMaxBatchSize());
+        setMinAsyncChunks(context.getMinAsyncChunks());
+        setMaxAsyncChunks(context.getMaxAsyncChunks());
+        setTargetLatency(context.getTargetLatency());
     }
 
     public void copy(ETLSettings s) {
@@ -426,6 +584,24 @@ public class ETLContext {
             setRetries(s.getRetries());
         if (s.getRetrySleep() != null)
             setRetrySleep(s.getRetrySleep());
+        if (s.isTokenRangeScan() != null)
+            setTokenRangeScan(s.isTokenRangeScan());
+        if (s.getScanConcurrency() != null)
+            setScanConcurrency(s.getScanConcurrency());
+        if (s.getScanPageSize() != null)
+            setScanPageSize(s.getScanPageSize());
+        if (s.isAdaptive() != null)
+            setAdaptive(s.isAdaptive());
+        if (s.getMinBatchSize() != null)
+            setMinBatchSize(s.getMinBatchSize());
+        if (s.getMaxBatchSize() != null)
+            setMaxBatchSize(s.getMaxBatchSize());
+        if (s.getMinAsyncChunks() != null)
+            setMinAsyncChunks(s.getMinAsyncChunks());
+        if (s.getMaxAsyncChunks() != null)
+            setMaxAsyncChunks(s.getMaxAsyncChunks());
+        if (s.getTargetLatency() != null)
+            setTargetLatency(s.getTargetLatency());
 
     }
 }
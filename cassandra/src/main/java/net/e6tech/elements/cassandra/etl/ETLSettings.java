@@ -32,6 +32,15 @@ public class ETLSettings implements Serializable {
     private Long startTime;
     private Integer retries = 5;
     private Long retrySleep = 100L;
+    private Boolean tokenRangeScan; // discover partitions by scanning token ranges instead of allow filtering
+    private Integer scanConcurrency; // number of token ranges scanned in parallel
+    private Integer scanPageSize;
+    private Boolean adaptive; // tunes batchSize and asyncMaxNumOfChunks from observed latency, timeouts and errors
+    private Integer minBatchSize;
+    private Integer maxBatchSize;
+    private Integer minAsyncChunks;
+    private Integer maxAsyncChunks;
+    private Long targetLatency; // in milliseconds, a batch or a round of chunks slower than this is backed off
 
     public Integer getBatchSize() {
         return batchSize;
@@ -163,4 +172,121 @@ public class ETLSettings implements Serializable {
         setRetrySleep(sleep);
         return this;
     }
+
+    public Boolean isTokenRangeScan() {
+        return tokenRangeScan;
+    }
+
+    public void setTokenRangeScan(Boolean tokenRangeScan) {
+        this.tokenRangeScan = tokenRangeScan;
+    }
+
+    public ETLSettings tokenRangeScan(Boolean tokenRangeScan) {
+        setTokenRangeScan(tokenRangeScan);
+        return this;
+    }
+
+    public Integer getScanConcurrency() {
+        return scanConcurrency;
+    }
+
+    public void setScanConcurrency(Integer scanConcurrency) {
+        this.scanConcurrency = scanConcurrency;
+    }
+
+    public ETLSettings scanConcurrency(Integer scanConcurrency) {
+        setScanConcurrency(scanConcurrency);
+        return this;
+    }
+
+    public Integer getScanPageSize() {
+        return scanPageSize;
+    }
+
+    public void setScanPageSize(Integer scanPageSize) {
+        this.scanPageSize = scanPageSize;
+    }
+
+    public ETLSettings scanPageSize(Integer scanPageSize) {
+        setScanPageSize(scanPageSize);
+        return this;
+    }
+
+    public Boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public void setAdaptive(Boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public ETLSettings adaptive(Boolean adaptive) {
+        setAdaptive(adaptive);
+        return this;
+    }
+
+    public Integer getMinBatchSize() {
+        return minBatchSize;
+    }
+
+    public void setMinBatchSize(Integer minBatchSize) {
+        this.minBatchSize = minBatchSize;
+    }
+
+    public ETLSettings minBatchSize(Integer minBatchSize) {
+        setMinBatchSize(minBatchSize);
+        return this;
+    }
+
+    public Integer getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(Integer maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public ETLSettings maxBatchSize(Integer maxBatchSize) {
+        setMaxBatchSize(maxBatchSize);
+        return this;
+    }
+
+    public Integer getMinAsyncChunks() {
+        return minAsyncChunks;
+    }
+
+    public void setMinAsyncChunks(Integer minAsyncChunks) {
+        this.minAsyncChunks = minAsyncChunks;
+    }
+
+    public ETLSettings minAsyncChunks(Integer minAsyncChunks) {
+        setMinAsyncChunks(minAsyncChunks);
+        return this;
+    }
+
+    public Integer getMaxAsyncChunks() {
+        return maxAsyncChunks;
+    }
+
+    public void setMaxAsyncChunks(Integer maxAsyncChunks) {
+        this.maxAsyncChunks = maxAsyncChunks;
+    }
+
+    public ETLSettings maxAsyncChunks(Integer maxAsyncChunks) {
+        setMaxAsyncChunks(maxAsyncChunks);
+        return this;
+    }
+
+    public Long getTargetLatency() {
+        return targetLatency;
+    }
+
+    public void setTargetLatency(Long targetLatency) {
+        this.targetLatency = targetLatency;
+    }
+
+    public ETLSettings targetLatency(Long targetLatency) {
+        setTargetLatency(targetLatency);
+        return this;
+    }
 }
@@ -21,17 +21,25 @@ import net.e6tech.elements.cassandra.annotations.PartitionUnit;
 import net.e6tech.elements.cassandra.generator.Generator;
 import net.e6tech.elements.cassandra.generator.TableAnalyzer;
 import net.e6tech.elements.common.reflection.Accessor;
+import net.e6tech.elements.common.reflection.Lambda;
 import net.e6tech.elements.common.util.SystemException;
 
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 @SuppressWarnings({"java:S2445", "java:S3740"})
 public class Inspector {
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
     private Generator generator;
     private Class sourceClass;
     private volatile boolean initialized = false;
@@ -42,6 +50,8 @@ public class Inspector {
     private List<ColumnAccessor> primaryKeyColumns = new LinkedList<>();
     private List<ColumnAccessor> columns;
     private Map<String, ColumnAccessor> columnMap;
+    private Supplier instantiator;  // generated lambda calling the no-arg constructor
+    private MethodHandle constructor;  // used when the lambda cannot be linked, e.g. class not visible to the lookup
 
     public Inspector(Class sourceClass, Generator generator) {
         this.sourceClass = sourceClass;
@@ -240,6 +250,46 @@ public class Inspector {
         return columnMap.get(column);
     }
 
+    /**
+     * Creates an instance of the source class without reflection.
+     */
+    @SuppressWarnings({"unchecked", "squid:S1141"})
+    public <T> T newInstance() {
+        try {
+            if (instantiator != null) {
+                try {
+                    return (T) instantiator.get();
+                } catch (NoClassDefFoundError ex) {
+                    instantiator = null;
+                }
+            }
+            if (constructor == null)
+                return (T) sourceClass.getDeclaredConstructor().newInstance();
+            return (T) (Object) constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new SystemException(e);
+        }
+    }
+
+    private void initializeConstructor() {
+        Constructor ctor;
+        try {
+            ctor = sourceClass.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            constructor = lookup.unreflectConstructor(ctor).asType(MethodType.methodType(Object.class));
+        } catch (Exception e) {
+            return;  // e.g. abstract class or no default constructor, newInstance will report the error.
+        }
+
+        if (!Modifier.isPublic(sourceClass.getModifiers()) || !Modifier.isPublic(ctor.getModifiers()))
+            return;
+        try {
+            instantiator = Lambda.reflectConstructor(lookup, ctor);
+        } catch (Exception | LinkageError e) {
+            instantiator = null;
+        }
+    }
+
     private ColumnAccessor alloc(int position, PropertyDescriptor desc, Field field) {
         Generator gen = getGenerator();
         ColumnAccessor descriptor;
@@ -296,6 +346,7 @@ public class Inspector {
         primaryKeyColumns.addAll(clusteringKeys);
         columnMap = new HashMap<>(columns.size(), 1);
         columns.forEach(column -> columnMap.put(column.getColumnName(), column));
+        initializeConstructor();
     }
 
     public static class ColumnAccessor extends Accessor {
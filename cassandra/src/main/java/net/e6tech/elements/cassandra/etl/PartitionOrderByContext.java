@@ -23,15 +23,20 @@ import java.util.HashMap;
 import java.util.Map;
 
 public class PartitionOrderByContext extends PartitionContext {
+    public static final String BATCH_SIZE_MARKER = "batchSize";
+
     private Map<Comparable, Comparable> startIds = new HashMap<>(200);
     private Map<Comparable, Comparable> endIds = new HashMap<>(200);
 
+    /**
+     * The limit is bound to BATCH_SIZE_MARKER so that the statement stays the same when the batch size changes.
+     */
     public String getExtractionQuery() {
         String clusteringKeyColumn = getInspector().getClusteringKeyColumn(0);
         String partitionKeyColumn = getInspector().getPartitionKeyColumn(0);
-        return TextBuilder.using("select * from ${table} where ${pk} = :${pk} and ${ck} > :${ck} order by ${ck} asc limit ${batchSize}")
+        return TextBuilder.using("select * from ${table} where ${pk} = :${pk} and ${ck} > :${ck} order by ${ck} asc limit :${limit}")
                 .build("table", tableName(), "pk", partitionKeyColumn,
-                        "ck", clusteringKeyColumn, "batchSize", getBatchSize());
+                        "ck", clusteringKeyColumn, "limit", BATCH_SIZE_MARKER);
     }
 
     @Override
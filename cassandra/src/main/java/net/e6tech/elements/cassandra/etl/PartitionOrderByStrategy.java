@@ -50,8 +50,9 @@ public class PartitionOrderByStrategy<S extends PartitionOrderBy> extends Partit
         return context.open().apply(Sibyl.class, sibyl -> {
             Map<Comparable, List<S>> results = new HashMap<>((int)(context.getPartitions().size() * 1.4 + 16));
             Class<S> sourceClass = context.getSourceClass();
-            Prepared pstmt = context.getPreparedStatements().computeIfAbsent("extract",
-                key -> sibyl.getSession().prepare(context.getExtractionQuery()));
+            // the limit is bound, so the statement is prepared once even when the batch size adapts.
+            Prepared pstmt = context.getPreparedStatements().computeIfAbsent(context.getExtractionQuery(),
+                key -> sibyl.getSession().prepare(key));
             AtomicInteger total = new AtomicInteger(0);
             while (true) {
                 AsyncPrepared<?> async = sibyl.createAsync(pstmt);
@@ -61,9 +62,11 @@ public class PartitionOrderByStrategy<S extends PartitionOrderBy> extends Partit
                     if (endId.compareTo(startId) > 0) {
                         startId = endId;
                         context.setStartId(partition, startId);
+                        int limit = context.getBatchSize();
                         async.execute(bound ->
                                 bound.set(context.getInspector().getPartitionKeyColumn(0), partition, (Class) partition.getClass())
-                                        .set(context.getInspector().getClusteringKeyColumn(0), context.getStartId(partition), (Class) partition.getClass()));
+                                        .set(context.getInspector().getClusteringKeyColumn(0), context.getStartId(partition), (Class) partition.getClass())
+                                        .set(PartitionOrderByContext.BATCH_SIZE_MARKER, limit, Integer.class));
                     }
                 }
 
@@ -32,15 +32,18 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 
 @SuppressWarnings({"unchecked", "java:S1192"})
 /**
  * The default behavior is to use select ${pk} ... where ... allow filtering in one call.
  * However, if asyncTimeUnitStepSize is set it will break the query into separate queries.  In addition,
  * if asyncUseFutures is set to ture, each query is broken down into smaller queries.
- * See detailed explanation in execAsyncQuery2.
+ * See detailed explanation in execAsyncQuery2.  For long, int and Instant partition keys the ranges are planned
+ * by RangePlanner and keys are bound in their native type; other key types go through ObjectConverter.
  *
  * ETLContext
  * context.setAsyncTimeUnitStepSize(100);
@@ -57,6 +60,7 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
 
     private ObjectConverter converter = new ObjectConverter();
     private String partitionTiming;
+    private Map<String, Map<Comparable<Object>, Long>> partialScans = new ConcurrentHashMap<>();
 
     @Override
     public int load(C context, List<S> source) {
@@ -76,8 +80,8 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
         long start = System.currentTimeMillis();
         String query = TextBuilder.using(QUERY_PARTITION)
                 .build("pk", p.partitionKey, "table", p.table, "start", p.lastUpdate.getLastUpdate(), "end", p.end);
-        Map<Comparable<Object>, Long> map = Collections.synchronizedMap(new TreeMap<>());
-        List<Comparable<Object>> partitions = Collections.synchronizedList(new LinkedList<>());
+        Map<Comparable<Object>, Long> map = new HashMap<>();
+        List<Comparable<Object>> partitions = new ArrayList<>();
         p.context.open().accept(Resources.class, res -> {
             try {
                 ResultSet rs = res.getInstance(Session.class).execute(query);
@@ -98,6 +102,9 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
     }
 
     public Map<Comparable<Object>, Long> queryPartitions2(PartitionQuery<C> p) {
+        if (p.context.isTokenRangeScan() && p.context.getInspector().getPartitionKeySize() == 1)
+            return scanPartitions(p);
+
         try {
             new BigDecimal(p.lastUpdate.getLastUpdate());
         } catch (Exception ex) {
@@ -108,8 +115,9 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
         if (p.context.getTimeUnit() != null && p.asyncStep != null && p.asyncStep > 0) {
             long start = System.currentTimeMillis();
             String query = buildQuery(p, QUERY_PARTITION, ASYNC_QUERY_PARTITION);
-            Map<Comparable<Object>, Long> map = Collections.synchronizedMap(new TreeMap<>());
-            List<Comparable<Object>> partitions = Collections.synchronizedList(new LinkedList<>());
+            // rows are consumed by the calling thread, see AsyncResultSetFutures.inExecutionOrderRows.
+            Map<Comparable<Object>, Long> map = new HashMap<>();
+            List<Comparable<Object>> partitions = new ArrayList<>();
             asyncQuery(p, query, row -> {
                 Comparable<Object> pk = (Comparable<Object>) row.get(0, p.context.getPartitionKeyType());
                 map.put(pk, row.get(1, Long.class));
@@ -123,6 +131,93 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
         }
     }
 
+    /**
+     * Same as queryPartitions but discovers partitions by scanning token ranges in parallel, filtering
+     * partitions between lastUpdate and cutoff on the client side.  Only for tables with a single partition key
+     * column.
+     */
+    public Map<Comparable<Object>, Long> scanPartitions(PartitionQuery<C> p) {
+        long start = System.currentTimeMillis();
+        Comparable<Object> from = lowerBound(p);
+        Map<Comparable<Object>, Long> map = new TreeMap<>();
+        tokenScan(p, p.partitionKey + ", count(*)", "group by " + p.partitionKey, true).forEach((pk, count) -> {
+            if (inRange(pk, from, p.end))
+                map.put(pk, count);
+        });
+        Map<Comparable<Object>, Long> ret = new LinkedHashMap<>(map.size() + 1, 1.0f);
+        ret.putAll(map);
+        partitionTiming = "scanPartitions for " + p.table + " took " + (System.currentTimeMillis() - start) + "ms";
+        return ret;
+    }
+
+    /**
+     * Same as queryRange but discovers partitions by scanning token ranges in parallel.  Only for tables with a
+     * single partition key column.
+     */
+    public List<Comparable<Object>> scanRange(PartitionQuery<C> p) {
+        long start = System.currentTimeMillis();
+        Comparable<Object> from = lowerBound(p);
+        List<Comparable<Object>> list = new ArrayList<>();
+        for (Comparable<Object> pk : tokenScan(p, "distinct " + p.partitionKey, null, false).keySet()) {
+            if (inRange(pk, from, p.end))
+                list.add(pk);
+        }
+        list.sort(null);
+        partitionTiming = "scanRange for " + p.table + " took " + (System.currentTimeMillis() - start) + "ms";
+        return list;
+    }
+
+    /**
+     * Scans partitions by token ranges.  When the scan fails, the partitions found so far are kept along with the
+     * scan's RangeCheckpoint, see ETLContext.getRangeCheckpoint, so that calling this method again, e.g. when
+     * Transmutator retries the loader, only scans the remaining ranges.
+     * @return partitions and, if count is true, their row counts.
+     */
+    protected Map<Comparable<Object>, Long> tokenScan(PartitionQuery<C> p, String selection, String suffix, boolean count) {
+        C context = p.context;
+        String query = TokenRangeScanner.buildQuery(p.table, p.partitionKey, selection, suffix);
+        TokenRangeScanner.RangeCheckpoint checkpoint = context.getRangeCheckpoint(query);
+        Map<Comparable<Object>, Long> found = partialScans.remove(query);
+        if (found == null) {
+            // nothing to resume with, completed ranges of an earlier scan cannot be skipped.
+            found = new ConcurrentHashMap<>();
+            checkpoint.reset();
+        }
+        Map<Comparable<Object>, Long> partitions = found;
+        try {
+            context.open().accept(Sibyl.class, sibyl ->
+                new TokenRangeScanner(sibyl.getSession())
+                        .keyspace(sibyl.getKeyspace())
+                        .concurrency(context.getScanConcurrency())
+                        .pageSize(context.getScanPageSize())
+                        .retries(p.retries)
+                        .checkpoint(checkpoint)
+                        .scan(p.table, p.partitionKey, selection, suffix, row -> {
+                            Comparable<Object> pk = (Comparable<Object>) row.get(0, context.getPartitionKeyType());
+                            if (pk != null)
+                                partitions.put(pk, count ? row.get(1, Long.class) : 0L);
+                        })
+            );
+        } catch (RuntimeException ex) {
+            partialScans.put(query, partitions);
+            throw ex;
+        }
+        checkpoint.reset();
+        return partitions;
+    }
+
+    private Comparable<Object> lowerBound(PartitionQuery<C> p) {
+        try {
+            return (Comparable<Object>) converter.convert(p.lastUpdate.getLastUpdate(), p.context.getPartitionKeyType(), null);
+        } catch (IOException ex) {
+            throw new SystemException(ex);
+        }
+    }
+
+    private boolean inRange(Comparable<Object> pk, Comparable<Object> from, Comparable<?> to) {
+        return pk != null && (from == null || pk.compareTo(from) > 0) && (to == null || pk.compareTo(to) < 0);
+    }
+
     private String buildQuery(PartitionQuery<C> p, String query, String asyncQuery) {
         if (p.context.isAsyncUseFutures())
             return TextBuilder.using(asyncQuery).build("pk", p.partitionKey, "table", p.table);
@@ -155,40 +250,89 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
         Pair<BigDecimal, BigDecimal> fromTo = fromAndTo(p);
         BigDecimal from = fromTo.key();
         BigDecimal to = fromTo.value();
+        RangePlanner planner = RangePlanner.of(context.getPartitionKeyType(), context.getTimeUnit());
+        if (!planner.isGeneric() && isLong(from) && isLong(to) && planner.accepts(from.longValueExact(), to.longValueExact())) {
+            asyncQuery(p, query, planner, from.longValueExact(), to.longValueExact(), rowConsumer);
+            return;
+        }
+
         BigDecimal start = from;
         List<Range> ranges = getAsyncRanges(query, start, to, p.asyncStep, p.asyncMaxChunkSize);
         while (!ranges.isEmpty()) {
             List<Range> working = ranges;
-            int retries = p.retries;
-            while (retries >= 0) {
-                try {
-                    execAsyncQuery(p.context, query, working, rowConsumer);
-                    break;
-                } catch (Exception ex) {
-                    String info = "extractor=" + context.extractor() +
-                            " sourceClass=" + context.getSourceClass() +
-                            " tableName=" + context.tableName();
-                    if (retries == 0) {
-                        logger.warn("Cannot transmutate " + query, ex);
-                        throw ex;
-                    } else {
-                        logger.warn("Cannot transmutate " + query + ", " + retries + " retry attempts left, " + info, ex);
-                    }
-                    try {
-                        Thread.sleep(context.getRetrySleep());
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                } finally {
-                    retries--;
-                }
-            }
+            retry(p, query, () -> adapt(p, () -> execAsyncQuery(p.context, query, working, rowConsumer)));
             Range lastRange = ranges.get(ranges.size() - 1);
             start = lastRange.end.subtract(BigDecimal.ONE);
             ranges = getAsyncRanges(query, start, to, p.asyncStep, p.asyncMaxChunkSize);
         }
     }
 
+    // same as above but ranges are planned with long arithmetic and keys are bound in their native type.
+    protected void asyncQuery(PartitionQuery<C> p, String query, RangePlanner planner, long from, long to, Consumer<Row> rowConsumer) {
+        RangePlanner.Plan plan = planner.plan(from, to, p.asyncStep, p.asyncMaxChunkSize);
+        while (!plan.isEmpty()) {
+            RangePlanner.Plan working = plan;
+            retry(p, query, () -> adapt(p, () -> execAsyncQuery(p.context, query, planner, working, rowConsumer)));
+            plan = planner.plan(plan.last() - 1, to, p.asyncStep, p.asyncMaxChunkSize);
+        }
+    }
+
+    // feeds the latency of a round of chunks to the adaptive controller, which sets the number of chunks of the next round.
+    private void adapt(PartitionQuery<C> p, Runnable runnable) {
+        AdaptiveController controller = p.context.getAdaptiveController();
+        if (controller == null) {
+            runnable.run();
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            runnable.run();
+            controller.chunksCompleted(System.currentTimeMillis() - start);
+        } catch (RuntimeException ex) {
+            controller.chunksFailed(ex);
+            throw ex;
+        } finally {
+            p.asyncMaxChunkSize = controller.getChunks();
+        }
+    }
+
+    private boolean isLong(BigDecimal value) {
+        try {
+            value.longValueExact();
+            return true;
+        } catch (ArithmeticException ex) {
+            return false;
+        }
+    }
+
+    private void retry(PartitionQuery<C> p, String query, Runnable runnable) {
+        C context = p.context;
+        int retries = p.retries;
+        while (retries >= 0) {
+            try {
+                runnable.run();
+                break;
+            } catch (Exception ex) {
+                String info = "extractor=" + context.extractor() +
+                        " sourceClass=" + context.getSourceClass() +
+                        " tableName=" + context.tableName();
+                if (retries == 0) {
+                    logger.warn("Cannot transmutate " + query, ex);
+                    throw ex;
+                } else {
+                    logger.warn("Cannot transmutate " + query + ", " + retries + " retry attempts left, " + info, ex);
+                }
+                try {
+                    Thread.sleep(context.getRetrySleep());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } finally {
+                retries--;
+            }
+        }
+    }
+
     // using select ${pk}, count(*) from ${table} where ${pk} > ${start} and ${pk} < ${end} group by ${pk} allow filtering
     protected void execAsyncQuery(C context, String query, List<Range> working, Consumer<Row> rowConsumer) {
         if (context.isAsyncUseFutures()) {
@@ -236,6 +380,36 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
         }
     }
 
+    protected void execAsyncQuery(C context, String query, RangePlanner planner, RangePlanner.Plan plan, Consumer<Row> rowConsumer) {
+        Class bindClass = planner.getBindClass();
+        if (context.isAsyncUseFutures()) {
+            for (int i = 0; i < plan.size(); i++) {
+                Object[] keys = planner.keys(plan.start(i), plan.end(i));
+                context.open().accept(Sibyl.class, sibyl ->
+                        sibyl.<Object>createAsync(query)
+                                .execute(keys, (pk, bound) -> bound.set("pk", pk, bindClass))
+                                .inExecutionOrderRows(row -> {
+                                    if (!row.isNull(0))
+                                        rowConsumer.accept(row);
+                                })
+                );
+            }
+            return;
+        }
+
+        Integer[] indices = new Integer[plan.size()];
+        for (int i = 0; i < indices.length; i++)
+            indices[i] = i;
+        context.open().accept(Sibyl.class, sibyl ->
+                sibyl.<Integer>createAsync(query)
+                        .execute(indices, (i, bound) -> {
+                            bound.set("start", planner.key(plan.start(i)), bindClass);
+                            bound.set("end", planner.key(plan.end(i)), bindClass);
+                        })
+                        .inExecutionOrderRows(rowConsumer)
+        );
+    }
+
     // Breaks from and to into a list ranges.  Each range has a start and its end is start + asyncStepSize (or smaller).
     // The asyncMaxChunkSize is used to limit the size of the list.  Caller will call this method over and over
     // again until the list is empty.
@@ -318,7 +492,7 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
                 }
             }
 
-            int processedCount = run(context, concurrent);
+            int processedCount = timed(context, () -> run(context, concurrent));
             importedCount += processedCount;
             if (logger.isInfoEnabled())
                 logger.info("Batch loaded {} instances of {}", processedCount, context.extractor());
@@ -344,16 +518,30 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
         }
 
         if (logger.isInfoEnabled()) {
-            logger.info("{}.run for {} loaded {} instances of {} took {}ms, {}",
+            logger.info("{}.run for {} loaded {} instances of {} took {}ms, {}{}",
                     getClass().getSimpleName(), context.extractor(),
                     importedCount, context.getSourceClass().getSimpleName(),
-                    System.currentTimeMillis() - start, partitionTiming
+                    System.currentTimeMillis() - start, partitionTiming, adaptiveReport(context)
             );
         }
         context.reset();
         return importedCount;
     }
 
+    // feeds the latency of a batch to the adaptive controller, which sets the batch size of the next batch.
+    private int timed(C context, IntSupplier batch) {
+        long start = System.currentTimeMillis();
+        int count;
+        try {
+            count = batch.getAsInt();
+        } catch (RuntimeException ex) {
+            context.batchFailed(ex);
+            throw ex;
+        }
+        context.batchCompleted(count, System.currentTimeMillis() - start);
+        return count;
+    }
+
     public BigDecimal timeExpressedInCorrectTimeUnit(TimeUnit timeUnit, long time) {
         BigDecimal timeToConvert = new BigDecimal(time);
         if (timeUnit == TimeUnit.DAYS)
@@ -381,7 +569,7 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
         String partitionKey = context.getInspector().getPartitionKeyColumn(0);
         String table = context.tableName();
 
-        List<Comparable<Object>> list = Collections.synchronizedList(new LinkedList<>());
+        List<Comparable<Object>> list = new ArrayList<>();
         // select distinct only works when selecting partition keys
         String query = TextBuilder.using(QUERY_RANGE)
                 .build("pk", partitionKey, "table", table,
@@ -404,6 +592,9 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
     }
 
     public List<Comparable<Object>> queryRange2(PartitionQuery<C> p) {
+        if (p.context.isTokenRangeScan() && p.context.getInspector().getPartitionKeySize() == 1)
+            return scanRange(p);
+
         try {
             new BigDecimal(p.lastUpdate.getLastUpdate());
         } catch (Exception ex) {
@@ -413,7 +604,7 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
 
         if (p.context.getTimeUnit() != null && p.asyncStep != null && p.asyncStep > 0) {
             long start = System.currentTimeMillis();
-            List<Comparable<Object>> list = Collections.synchronizedList(new LinkedList<>());
+            List<Comparable<Object>> list = new ArrayList<>();
             String query = buildQuery(p, QUERY_RANGE, ASYNC_QUERY_RANGE);
             asyncQuery(p, query, row -> list.add((Comparable<Object>) row.get(0, p.context.getPartitionKeyType())));
             list.sort(null);
@@ -434,9 +625,9 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
         int processCount = 0;
         for (Comparable<?> c : list) {
             batch.add(c);
-            if (batch.size() == context.getBatchSize()) {
+            if (batch.size() >= context.getBatchSize()) {
                 LastUpdate lastUpdate = context.getLastUpdate();
-                processCount += runPartitions(batch, context);
+                processCount += timed(context, () -> runPartitions(batch, context));
                 lastUpdate.update(batch.get(batch.size() - 1));
                 context.saveLastUpdate(lastUpdate);
                 batch.clear();
@@ -445,17 +636,17 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
 
         if (!batch.isEmpty()) {
             LastUpdate lastUpdate = context.getLastUpdate();
-            processCount += runPartitions(batch, context);
+            processCount += timed(context, () -> runPartitions(batch, context));
             lastUpdate.update(batch.get(batch.size() - 1));
             context.saveLastUpdate(lastUpdate);
             batch.clear();
         }
 
         if (logger.isInfoEnabled()) {
-            logger.info("{}.runPartitions for {} loaded {} instances of {} took {}ms, {}",
+            logger.info("{}.runPartitions for {} loaded {} instances of {} took {}ms, {}{}",
                     getClass().getSimpleName(), context.extractor(),
                     processCount, context.getSourceClass().getSimpleName(),
-                    System.currentTimeMillis() - start, partitionTiming
+                    System.currentTimeMillis() - start, partitionTiming, adaptiveReport(context)
             );
         }
         return list.size();
@@ -503,6 +694,9 @@ public class PartitionStrategy<S extends Partition, C extends PartitionContext>
                 asyncMaxChunkSize = ETLContext.ASYNC_MAX_NUM_OF_CHUNKS;
             else
                 asyncMaxChunkSize = context.getAsyncMaxNumOfChunks();
+            AdaptiveController controller = context.getAdaptiveController();
+            if (controller != null)
+                asyncMaxChunkSize = controller.getChunks();
             retries = context.getRetries();
             if (retries < 0)
                 retries = 0;
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.cassandra.etl;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plans the async partition ranges of PartitionStrategy using long arithmetic instead of BigDecimal.
+ * Partition keys are time buckets expressed in the context's time unit, so long, int and Instant keys can be
+ * stepped and bound in their native type.  Other key types, e.g. UUID, cannot be enumerated from a bucket number
+ * and are reported as generic so that the caller uses the BigDecimal/ObjectConverter path.
+ */
+public class RangePlanner {
+    private static final RangePlanner GENERIC = new RangePlanner(KeyType.GENERIC, null, null);
+
+    private final KeyType keyType;
+    private final Class bindClass;
+    private final TimeUnit timeUnit;
+
+    private RangePlanner(KeyType keyType, Class bindClass, TimeUnit timeUnit) {
+        this.keyType = keyType;
+        this.bindClass = bindClass;
+        this.timeUnit = timeUnit;
+    }
+
+    public static RangePlanner of(Class partitionKeyType, TimeUnit timeUnit) {
+        if (partitionKeyType == null)
+            return GENERIC;
+        if (Long.class.equals(partitionKeyType) || Long.TYPE.equals(partitionKeyType))
+            return new RangePlanner(KeyType.LONG, Long.class, timeUnit);
+        if (Integer.class.equals(partitionKeyType) || Integer.TYPE.equals(partitionKeyType))
+            return new RangePlanner(KeyType.INT, Integer.class, timeUnit);
+        if (Instant.class.equals(partitionKeyType) && timeUnit != null)
+            return new RangePlanner(KeyType.INSTANT, Instant.class, timeUnit);
+        return GENERIC;
+    }
+
+    public boolean isGeneric() {
+        return keyType == KeyType.GENERIC;
+    }
+
+    /**
+     * @return the class used to bind keys, i.e. the boxed type of a primitive partition key.
+     */
+    public Class getBindClass() {
+        return bindClass;
+    }
+
+    /**
+     * @return true if every key between from and to can be represented by the partition key type.
+     */
+    public boolean accepts(long from, long to) {
+        if (keyType == KeyType.INT)
+            return from >= Integer.MIN_VALUE && to <= Integer.MAX_VALUE;
+        return keyType != KeyType.GENERIC;
+    }
+
+    /**
+     * Converts a bucket number to the partition key in its native type.
+     */
+    public Object key(long value) {
+        switch (keyType) {
+            case LONG:
+                return value;
+            case INT:
+                return (int) value;
+            case INSTANT:
+                return Instant.ofEpochMilli(timeUnit.toMillis(value));
+            default:
+                throw new UnsupportedOperationException("Cannot convert " + value + " to a generic partition key");
+        }
+    }
+
+    /**
+     * Returns the keys strictly between start and end, i.e. start + 1 to end - 1.
+     */
+    public Object[] keys(long start, long end) {
+        int size = (int) Math.max(0, end - start - 1);
+        Object[] keys = new Object[size];
+        for (int i = 0; i < size; i++)
+            keys[i] = key(start + 1 + i);
+        return keys;
+    }
+
+    /**
+     * Same as PartitionStrategy.getAsyncRanges.  Each range has a start and its end is start + step (or smaller);
+     * consecutive ranges overlap by one because queries use ${pk} &gt; start and ${pk} &lt; end.  At most
+     * maxChunks ranges are returned; callers plan again from the end of the last range until the plan is empty.
+     */
+    public Plan plan(long from, long to, int step, int maxChunks) {
+        long end = Math.min(from + step, to);
+        if (end - from <= 1 || maxChunks <= 0 || step <= 1)
+            return new Plan(new long[0], new long[0]);
+
+        // number of ranges needed to reach to: ranges advance by step - 1.
+        long needed = 1 + Math.max(0, (to - end + step - 2) / (step - 1));
+        int size = (int) Math.min(needed, maxChunks);
+        long[] starts = new long[size];
+        long[] ends = new long[size];
+        long start = from;
+        for (int i = 0; i < size; i++) {
+            starts[i] = start;
+            ends[i] = end;
+            start = end - 1;
+            end = Math.min(start + step, to);
+        }
+        return new Plan(starts, ends);
+    }
+
+    private enum KeyType {
+        LONG,
+        INT,
+        INSTANT,
+        GENERIC
+    }
+
+    public static class Plan {
+        private final long[] starts;
+        private final long[] ends;
+
+        Plan(long[] starts, long[] ends) {
+            this.starts = starts;
+            this.ends = ends;
+        }
+
+        public int size() {
+            return starts.length;
+        }
+
+        public boolean isEmpty() {
+            return starts.length == 0;
+        }
+
+        public long start(int i) {
+            return starts[i];
+        }
+
+        public long end(int i) {
+            return ends[i];
+        }
+
+        public long last() {
+            return ends[ends.length - 1];
+        }
+
+        @Override
+        public String toString() {
+            if (isEmpty())
+                return "plan empty";
+            return "plan size=" + size() + " start=" + starts[0] + " end=" + last();
+        }
+    }
+}
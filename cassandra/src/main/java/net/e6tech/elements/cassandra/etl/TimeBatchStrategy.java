@@ -56,15 +56,25 @@ public interface TimeBatchStrategy<S> extends BatchStrategy<S, TimeBatch> {
             List<S> batchResults;
             // NOTE, extract must call lastUpdate.update
             logger.info("Loading Class {}", getClass());
-            while (!(batchResults = extract(context)).isEmpty()) {
-                int n = context.getImportedCount();
-                int processedCount = load(context, batchResults);
-                context.setImportedCount(n + processedCount);
-                context.saveLastUpdate(lastUpdate);
+            while (true) {
+                long start = System.currentTimeMillis();
+                int processedCount;
+                try {
+                    if ((batchResults = extract(context)).isEmpty())
+                        break;
+                    int n = context.getImportedCount();
+                    processedCount = load(context, batchResults);
+                    context.setImportedCount(n + processedCount);
+                    context.saveLastUpdate(lastUpdate);
+                } catch (RuntimeException ex) {
+                    context.batchFailed(ex);
+                    throw ex;
+                }
+                context.batchCompleted(processedCount, System.currentTimeMillis() - start);
                 logger.info("Processed {} instance of {}", processedCount, getClass());
                 importedCount += processedCount;
             }
-            logger.info("Done loading {} instance of {}", importedCount, getClass());
+            logger.info("Done loading {} instance of {}{}", importedCount, getClass(), adaptiveReport(context));
             return importedCount;
         });
     }
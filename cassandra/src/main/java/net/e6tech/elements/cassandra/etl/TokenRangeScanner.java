@@ -0,0 +1,268 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.cassandra.etl;
+
+import net.e6tech.elements.cassandra.Session;
+import net.e6tech.elements.cassandra.driver.cql.Bound;
+import net.e6tech.elements.cassandra.driver.cql.Prepared;
+import net.e6tech.elements.cassandra.driver.cql.Row;
+import net.e6tech.elements.cassandra.driver.metadata.TokenRange;
+import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.common.util.SystemException;
+import net.e6tech.elements.common.util.TextBuilder;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Scans a table by token ranges instead of using "allow filtering" queries.  The ring is split along the
+ * boundaries of the token map so that each sub-range is owned by one replica set, and the sub-ranges are queried
+ * in parallel using
+ * <pre>
+ * select ${selection} from ${table} where token(${pk}) &gt; :start and token(${pk}) &lt;= :end ${suffix}
+ * </pre>
+ * Completed ranges are recorded in a RangeCheckpoint so that a failed or interrupted scan can be resumed without
+ * rescanning them.  The row consumer is called from multiple threads.
+ */
+public class TokenRangeScanner {
+    private static Logger logger = Logger.getLogger();
+    public static final String QUERY = "select ${selection} from ${table} where token(${pk}) > :start and token(${pk}) <= :end ${suffix}";
+
+    private Session session;
+    private String keyspace;
+    private int concurrency = 8;
+    private int pageSize = 5000;
+    private int splitsPerRange = 1;
+    private int retries = 2;
+    private long retrySleep = 100L;
+    private RangeCheckpoint checkpoint = new InMemoryCheckpoint();
+
+    public TokenRangeScanner(Session session) {
+        this.session = session;
+    }
+
+    public String getKeyspace() {
+        return keyspace;
+    }
+
+    public void setKeyspace(String keyspace) {
+        this.keyspace = keyspace;
+    }
+
+    public TokenRangeScanner keyspace(String keyspace) {
+        setKeyspace(keyspace);
+        return this;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public TokenRangeScanner concurrency(int concurrency) {
+        setConcurrency(concurrency);
+        return this;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public TokenRangeScanner pageSize(int pageSize) {
+        setPageSize(pageSize);
+        return this;
+    }
+
+    public int getSplitsPerRange() {
+        return splitsPerRange;
+    }
+
+    public void setSplitsPerRange(int splitsPerRange) {
+        this.splitsPerRange = splitsPerRange;
+    }
+
+    public TokenRangeScanner splitsPerRange(int splitsPerRange) {
+        setSplitsPerRange(splitsPerRange);
+        return this;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    public TokenRangeScanner retries(int retries) {
+        setRetries(retries);
+        return this;
+    }
+
+    public long getRetrySleep() {
+        return retrySleep;
+    }
+
+    public void setRetrySleep(long retrySleep) {
+        this.retrySleep = retrySleep;
+    }
+
+    public RangeCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(RangeCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public TokenRangeScanner checkpoint(RangeCheckpoint checkpoint) {
+        setCheckpoint(checkpoint);
+        return this;
+    }
+
+    public static String buildQuery(String table, String partitionKeys, String selection, String suffix) {
+        return TextBuilder.using(QUERY).build("selection", selection, "table", table, "pk", partitionKeys,
+                "suffix", suffix == null ? "" : suffix).trim();
+    }
+
+    /**
+     * Scans all token ranges not yet recorded in the checkpoint.
+     * @param table table name
+     * @param partitionKeys comma separated partition key columns
+     * @param selection select clause
+     * @param suffix e.g. "group by pk", may be null
+     * @param consumer receives rows; must be thread-safe
+     * @return number of rows scanned
+     */
+    public long scan(String table, String partitionKeys, String selection, String suffix, Consumer<Row> consumer) {
+        String query = buildQuery(table, partitionKeys, selection, suffix);
+        Prepared prepared = session.prepare(query);
+        List<TokenRange> ranges = new ArrayList<>();
+        for (TokenRange range : session.getTokenRanges(keyspace, splitsPerRange)) {
+            if (!checkpoint.isCompleted(range))
+                ranges.add(range);
+        }
+        if (ranges.isEmpty())
+            return 0;
+
+        AtomicLong count = new AtomicLong();
+        int threads = Math.max(1, Math.min(concurrency, ranges.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "token-scan-" + table);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(ranges.size());
+            for (TokenRange range : ranges)
+                futures.add(executor.submit(() -> scanRange(prepared, range, consumer, count)));
+            SystemException failure = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    if (failure == null)
+                        failure = new SystemException("Token scan of " + table + " failed", ex.getCause());
+                    else
+                        failure.addSuppressed(ex.getCause());
+                }
+            }
+            if (failure != null)
+                throw failure;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SystemException(ex);
+        } finally {
+            executor.shutdownNow();
+        }
+        return count.get();
+    }
+
+    private void scanRange(Prepared prepared, TokenRange range, Consumer<Row> consumer, AtomicLong count) {
+        int attempt = 0;
+        while (true) {
+            long scanned = 0;
+            try {
+                Bound bound = prepared.bind()
+                        .set("start", range.getStart(), Long.class)
+                        .set("end", range.getEnd(), Long.class)
+                        .setPageSize(pageSize);
+                for (Row row : session.execute(bound)) {
+                    consumer.accept(row);
+                    scanned++;
+                }
+                count.addAndGet(scanned);
+                checkpoint.completed(range);
+                return;
+            } catch (RuntimeException ex) {
+                // rows already delivered will be delivered again; consumers de-duplicate by key.
+                if (attempt++ >= retries)
+                    throw ex;
+                logger.warn("Token range " + range + " failed after " + scanned + " rows, retrying", ex);
+                try {
+                    Thread.sleep(retrySleep * attempt);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records which token ranges have been scanned.
+     */
+    public interface RangeCheckpoint {
+        boolean isCompleted(TokenRange range);
+
+        void completed(TokenRange range);
+
+        default void reset() {
+        }
+    }
+
+    public static class InMemoryCheckpoint implements RangeCheckpoint {
+        private Set<TokenRange> completed = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public boolean isCompleted(TokenRange range) {
+            return completed.contains(range);
+        }
+
+        @Override
+        public void completed(TokenRange range) {
+            completed.add(range);
+        }
+
+        @Override
+        public void reset() {
+            completed.clear();
+        }
+
+        public Set<TokenRange> getCompleted() {
+            return completed;
+        }
+    }
+}
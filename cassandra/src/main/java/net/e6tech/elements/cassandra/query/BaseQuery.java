@@ -17,6 +17,7 @@
 package net.e6tech.elements.cassandra.query;
 
 import net.e6tech.elements.cassandra.Sibyl;
+import net.e6tech.elements.cassandra.StatementRegistry;
 import net.e6tech.elements.cassandra.etl.Inspector;
 import net.e6tech.elements.cassandra.generator.KeyColumn;
 import net.e6tech.elements.cassandra.generator.TableGenerator;
@@ -31,11 +32,13 @@ import java.beans.PropertyDescriptor;
 import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 
 @SuppressWarnings("unchecked")
 public abstract class BaseQuery<T, Q extends BaseQuery<T, Q>> {
     protected static final String AND = " and ";
+    protected static final String LIMIT = "query_limit";
 
     protected Sibyl sibyl;
     protected T partitionTemplate;
@@ -241,8 +244,70 @@ public abstract class BaseQuery<T, Q extends BaseQuery<T, Q>> {
 
     protected List<T> select() {
         Map<String, Object> map = new HashMap<>();
-        StringBuilder query = buildQuery(map);
-        return sibyl.all(entityClass, query.toString(), map);
+        String query = query(map);
+        return sibyl.all(entityClass, query, map);
+    }
+
+    /**
+     * Returns a lazily mapped result that fetches one page ahead of the consumer.  Unlike query(), the limit is
+     * only applied by the database and no boundary adjustments are made; use the cursor of the returned
+     * PagedResult to continue from where a previous iteration stopped.
+     * @param pageSize rows per page, non-positive for Sibyl's page size.
+     * @param cursor from PagedResult.getCursor(), or null to start from the beginning.
+     */
+    public PagedResult<T> page(int pageSize, String cursor) {
+        validate();
+        Map<String, Object> map = new HashMap<>();
+        String query = query(map);
+        return sibyl.page(entityClass, query, map, pageSize, cursor);
+    }
+
+    public PagedResult<T> page() {
+        return page(0, null);
+    }
+
+    /**
+     * Streams the result without holding it in memory.  The stream should be closed if it is not fully consumed.
+     */
+    public Stream<T> stream() {
+        return page().stream();
+    }
+
+    // returns the CQL registered for the current shape and fills in the arguments.  The limit is a bind marker
+    // so that queries differing only by limit, e.g. LimitQuery's adjusted limit, share one prepared statement.
+    protected String query(Map<String, Object> map) {
+        StatementRegistry.Shape shape = new StatementRegistry.Shape(entityClass, "query", sibyl.getKeyspace(), shape());
+        String query = sibyl.getStatementRegistry().get(shape, () -> buildQuery(new HashMap<>()).toString());
+        bindArguments(map, partitionRelations);
+        bindArguments(map, clusteringRelations);
+        if (limit > 0)
+            map.put(LIMIT, limit);
+        return query;
+    }
+
+    protected String shape() {
+        StringBuilder builder = new StringBuilder();
+        shape(builder.append("p"), partitionRelations);
+        shape(builder.append("|c"), clusteringRelations);
+        shape(builder.append("|o"), orderBy);
+        builder.append("|").append(limit > 0 ? "limit" : "");
+        return builder.toString();
+    }
+
+    private void shape(StringBuilder builder, List<Relation> relations) {
+        for (Relation relation : relations) {
+            builder.append(':').append(relation.keyColumn.getName())
+                    .append(relation.comparison.ordinal());
+        }
+    }
+
+    // must produce the same argument names as buildRelation
+    private void bindArguments(Map<String, Object> map, List<Relation> relations) {
+        for (Relation relation : relations) {
+            if (relation.value == null)
+                throw new IllegalArgumentException("comparision value for " + relation.keyColumn.getName() + " cannot be null");
+            map.put(relation.keyColumn.getName() + "_" + (map.size() + 1), relation.value);
+        }
     }
 
     protected StringBuilder buildQuery(Map<String, Object> map) {
@@ -257,7 +322,7 @@ public abstract class BaseQuery<T, Q extends BaseQuery<T, Q>> {
         buildOrderBy(query);
 
         if (limit > 0) {
-            query.append(" ").append("limit ").append(limit);
+            query.append(" ").append("limit :").append(LIMIT);
         }
 
         return query;
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.query;
+
+import net.e6tech.elements.cassandra.driver.cql.AsyncResultSet;
+import net.e6tech.elements.cassandra.driver.cql.Row;
+import net.e6tech.elements.common.util.SystemException;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily maps rows of a paged query.  The next page is requested as soon as the current one arrives so that
+ * the consumer rarely waits on the network, while at most two pages are held in memory regardless of
+ * the size of the result.
+ *
+ * getCursor() returns an opaque string marking the position of the next row to be returned.  Passing it to
+ * Sibyl.page or BaseQuery.page resumes the query at that row, e.g. in a subsequent request.
+ *
+ * @param <T> mapped type
+ */
+public class PagedResult<T> implements Iterator<T>, AutoCloseable {
+    private static final String SEPARATOR = ".";
+
+    private final Function<Row, T> mapper;
+    private Future<AsyncResultSet> pending;  // the page being fetched ahead of the consumer
+    private AsyncResultSet current;
+    private Iterator<Row> rows;
+    private ByteBuffer pagingState;  // state used to fetch the current page, null for the first page.
+    private int offset;  // rows of the current page returned so far
+    private boolean closed;
+
+    public PagedResult(Future<AsyncResultSet> first, String cursor, Function<Row, T> mapper) {
+        this.pending = first;
+        this.mapper = mapper;
+        this.pagingState = pagingState(cursor);
+        int skip = offset(cursor);
+        if (skip > 0 && advance()) {
+            while (offset < skip && rows.hasNext()) {
+                rows.next();
+                offset++;
+            }
+        }
+    }
+
+    public static ByteBuffer pagingState(String cursor) {
+        if (cursor == null || cursor.isEmpty())
+            return null;
+        int idx = cursor.indexOf(SEPARATOR);
+        String state = idx < 0 ? cursor : cursor.substring(0, idx);
+        if (state.isEmpty())
+            return null;
+        return ByteBuffer.wrap(Base64.getUrlDecoder().decode(state));
+    }
+
+    public static int offset(String cursor) {
+        if (cursor == null)
+            return 0;
+        int idx = cursor.indexOf(SEPARATOR);
+        return idx < 0 ? 0 : Integer.parseInt(cursor.substring(idx + 1));
+    }
+
+    private static String encode(ByteBuffer pagingState, int offset) {
+        String state = "";
+        if (pagingState != null) {
+            ByteBuffer dup = pagingState.duplicate();
+            byte[] bytes = new byte[dup.remaining()];
+            dup.get(bytes);
+            state = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        }
+        return state + SEPARATOR + offset;
+    }
+
+    /**
+     * @return cursor for resuming at the next row or null if all rows have been returned.
+     */
+    public String getCursor() {
+        if (!hasNext())
+            return null;
+        return encode(pagingState, offset);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (rows == null || !rows.hasNext()) {
+            if (!advance())
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Row row = rows.next();
+        offset++;
+        return mapper.apply(row);
+    }
+
+    /**
+     * Returns up to count rows, e.g. a page for a user interface.  Use getCursor() afterward to continue.
+     */
+    public List<T> next(int count) {
+        List<T> list = new ArrayList<>(Math.max(0, count));
+        while (list.size() < count && hasNext())
+            list.add(next());
+        return list;
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        rows = null;
+        current = null;
+    }
+
+    private boolean advance() {
+        if (closed || pending == null)
+            return false;
+        AsyncResultSet next;
+        try {
+            next = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException(e);
+        } catch (ExecutionException e) {
+            throw new SystemException(e.getCause());
+        }
+
+        if (current != null)
+            pagingState = current.getPagingState();
+        current = next;
+        rows = current.currentPage().iterator();
+        offset = 0;
+        pending = current.hasMorePages() ? current.fetchNextPage().toCompletableFuture() : null;
+        return true;
+    }
+}
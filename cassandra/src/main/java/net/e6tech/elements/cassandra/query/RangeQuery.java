@@ -32,6 +32,8 @@ import java.util.function.Consumer;
  * The query does its best to limit the result set to the limit size.  In some cases, it may return a list that is slightly larger
  * than the limit size.  This could happen for example when multiple records of the same creationTime span the page boundary.
  *
+ * To go through a large range without loading it into memory, use stream() or page(pageSize, cursor) instead of query().
+ *
  * <pre>
  * <code>
  * RangeQuery&lt;X&gt; query = new RangeQuery&lt;&gt;(sibyl, X.class);
@@ -25,4 +25,14 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Loader {
     int value() default 0;
+
+    /**
+     * Orders of loaders that must complete before this one runs when the Transmutator runs stages in parallel.
+     */
+    int[] dependsOn() default {};
+
+    /**
+     * Table classes written by this loader.  Loaders reading from one of them depend on this loader.
+     */
+    Class[] targets() default {};
 }
@@ -25,5 +25,15 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface PartitionLoader {
     int value() default 0;
+
+    /**
+     * Orders of loaders that must complete before this one runs when the Transmutator runs stages in parallel.
+     */
+    int[] dependsOn() default {};
+
+    /**
+     * Table classes written by this loader.  Loaders reading from one of them depend on this loader.
+     */
+    Class[] targets() default {};
     Class sourceClass();
 }
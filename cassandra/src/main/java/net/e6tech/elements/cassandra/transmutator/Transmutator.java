@@ -23,16 +23,53 @@ import net.e6tech.elements.cassandra.etl.*;
 import net.e6tech.elements.common.util.MapBuilder;
 import net.e6tech.elements.common.util.SystemException;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.*;
 
 @SuppressWarnings("unchecked")
 public abstract class Transmutator implements Strategy<PartitionContext> {
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
 
     private LinkedList<Descriptor> descriptors = new LinkedList<>();
     private Customizer customizer = null;
     private Map<String, ETLSettings> settings = new HashMap<>();
+    private int parallelism = 1; // number of stages running concurrently, 1 runs them one after another in order.
+    private long maxRetrySleep = 30000L; // cap of the exponential backoff between retries.
+    private List<Stage> report = new ArrayList<>();
+    private Map<String, Set> partialUndos = new ConcurrentHashMap<>(); // partitions found by token scans that failed.
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public Transmutator parallelism(int parallelism) {
+        setParallelism(parallelism);
+        return this;
+    }
+
+    public long getMaxRetrySleep() {
+        return maxRetrySleep;
+    }
+
+    public void setMaxRetrySleep(long maxRetrySleep) {
+        this.maxRetrySleep = maxRetrySleep;
+    }
+
+    /**
+     * @return timings and throughput of the stages of the last run.
+     */
+    public List<Stage> getReport() {
+        return report;
+    }
 
     public Map<String, ETLSettings> getSettings() {
         return settings;
@@ -63,13 +100,48 @@ public abstract class Transmutator implements Strategy<PartitionContext> {
                 filter = "allow filtering";
             Object value = context.getLastUpdateValue();
 
-            Set list = new HashSet();
-
-            ResultSet resultSet = sibyl.execute("select " + partitionKey + ", count(*) from " + tableName +
-                    " where " + checkpointColumn + " > :spk group by " + partitionKey + " " + filter,
-                    MapBuilder.of("spk", value));
-            for (Row row : resultSet.all()) {
-                list.add(row.get(0, value.getClass()));
+            Set list = ConcurrentHashMap.newKeySet();
+
+            if (context.isTokenRangeScan() && checkpointColumn.equals(partitionKey) && inspector.getPartitionKeySize() == 1) {
+                // avoid allow filtering by scanning token ranges
+                Comparable<Object> lower = (Comparable<Object>) value;
+                String selection = "distinct " + partitionKey;
+                String query = TokenRangeScanner.buildQuery(tableName, partitionKey, selection, null);
+                TokenRangeScanner.RangeCheckpoint checkpoint = context.getRangeCheckpoint(query);
+                Set found = partialUndos.remove(query);
+                if (found == null) {
+                    // nothing to resume with, completed ranges of an earlier scan cannot be skipped.
+                    found = ConcurrentHashMap.newKeySet();
+                    checkpoint.reset();
+                }
+                Set partitions = found;
+                try {
+                    new TokenRangeScanner(sibyl.getSession())
+                            .keyspace(sibyl.getKeyspace())
+                            .concurrency(context.getScanConcurrency())
+                            .pageSize(context.getScanPageSize())
+                            .checkpoint(checkpoint)
+                            .scan(tableName, partitionKey, selection, null, row -> {
+                                Object pk = row.get(0, value.getClass());
+                                if (pk != null)
+                                    partitions.add(pk);
+                            });
+                } catch (RuntimeException ex) {
+                    partialUndos.put(query, partitions);
+                    throw ex;
+                }
+                checkpoint.reset();
+                for (Object pk : partitions) {
+                    if (lower.compareTo(pk) < 0)
+                        list.add(pk);
+                }
+            } else {
+                ResultSet resultSet = sibyl.execute("select " + partitionKey + ", count(*) from " + tableName +
+                        " where " + checkpointColumn + " > :spk group by " + partitionKey + " " + filter,
+                        MapBuilder.of("spk", value));
+                for (Row row : resultSet.all()) {
+                    list.add(row.get(0, value.getClass()));
+                }
             }
 
             sibyl.createAsync("delete from " + inspector.tableName() + " where " + partitionKey + " = :partitionKey")
@@ -103,15 +175,17 @@ public abstract class Transmutator implements Strategy<PartitionContext> {
 
     private void setupLoader(Method method) {
         Loader loader = method.getAnnotation(Loader.class);
-        setupContext(loader.value(), method, null, RunType.EACH_ENTRY);
+        Descriptor entry = setupContext(loader.value(), method, null, RunType.EACH_ENTRY);
+        entry.dependsOn(loader.dependsOn(), loader.targets());
     }
 
     private void setupPartitionLoader(Method method) {
         PartitionLoader loader = method.getAnnotation(PartitionLoader.class);
-        setupContext(loader.value(), method, loader.sourceClass(), RunType.PARTITION);
+        Descriptor entry = setupContext(loader.value(), method, loader.sourceClass(), RunType.PARTITION);
+        entry.dependsOn(loader.dependsOn(), loader.targets());
     }
 
-    private void setupContext(int order, Method method, Class src, RunType runType) {
+    private Descriptor setupContext(int order, Method method, Class src, RunType runType) {
 
         if (!method.getReturnType().equals(Integer.TYPE)) {
             throw new SystemException("Invalid return type for method " + method + ", expecting int");
@@ -140,10 +214,16 @@ public abstract class Transmutator implements Strategy<PartitionContext> {
 
             PartitionStrategy strategy = context.createStrategy();
             context.setExtractorName(extractorName(sourceClass));
+            method.setAccessible(true);
+            MethodHandle loader = lookup.unreflect(method).bindTo(this)
+                    .asType(MethodType.methodType(int.class, Object.class, Object.class));
+            Object[] empty = (Object[]) Array.newInstance(componentType, 0);
             context.setLoadDelegate(list -> {
                 try {
-                    return (Integer) method.invoke(Transmutator.this, context, list.toArray((Object[]) Array.newInstance(componentType, 0)));
-                } catch (Exception e) {
+                    return (int) loader.invokeExact((Object) context, (Object) list.toArray(empty));
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Throwable e) {
                     throw new SystemException("Unable to invoke " + method, e);
                 }
             });
@@ -151,8 +231,10 @@ public abstract class Transmutator implements Strategy<PartitionContext> {
             ETLSettings s = settings.get("" + order);
 
             Descriptor entry = new Descriptor(order, context, strategy, runType, s);
+            entry.sourceClass = sourceClass;
 
             descriptors.addLast(entry);
+            return entry;
         } catch (Exception e) {
             throw new SystemException(e);
         }
@@ -176,12 +258,19 @@ public abstract class Transmutator implements Strategy<PartitionContext> {
         return descriptors;
     }
 
+    /**
+     * Runs the loaders as a DAG.  A stage starts once the stages it depends on have completed.  With parallelism
+     * of 1, each stage depends on the previous one, preserving the sequential behavior.  Otherwise, dependencies
+     * are the union of declared dependsOn and stages writing (targets) the source class of the stage; stages without
+     * dependencies run concurrently up to the parallelism.  Failed stages are retried with exponential backoff.
+     * The dependencies are validated before any stage starts; a dependsOn order without a loader or a cycle is
+     * rejected with a SystemException.
+     */
     @SuppressWarnings({"squid:S3776", "squid:S1301"})
     @Override
     public int run(PartitionContext context) {
         context.setSourceClass(getClass());
         analyze(context);
-        int count = 0;
 
         if (customizer != null) {
             for (Descriptor entry : descriptors) {
@@ -189,43 +278,181 @@ public abstract class Transmutator implements Strategy<PartitionContext> {
             }
         }
 
+        Map<Descriptor, Set<Descriptor>> dependencies = dependencies();
+        List<Stage> stages = new ArrayList<>();
+        Map<Descriptor, CompletableFuture<Integer>> futures = new IdentityHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism), daemon("transmutator-" + getClass().getSimpleName()));
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemon("transmutator-retry"));
+        try {
+            for (Map.Entry<Descriptor, Set<Descriptor>> entry : dependencies.entrySet())
+                schedule(entry.getKey(), entry.getValue(), futures, stages, context, executor, scheduler);
+
+            int count = 0;
+            RuntimeException failure = null;
+            for (Descriptor entry : descriptors) {
+                try {
+                    count += futures.get(entry).join();
+                } catch (CompletionException ex) {
+                    if (failure == null)
+                        failure = (ex.getCause() instanceof RuntimeException) ? (RuntimeException) ex.getCause() : new SystemException(ex.getCause());
+                }
+            }
+            stages.sort(Comparator.comparingInt(Stage::getOrder));
+            report = stages;
+            stages.forEach(stage -> logger.info("Transmutator {} {}", getClass().getSimpleName(), stage));
+            if (failure != null)
+                throw failure;
+            return count;
+        } finally {
+            scheduler.shutdownNow();
+            executor.shutdown();
+        }
+    }
+
+    // dependencies of each stage, in topological order so that a stage is scheduled after its dependencies.
+    private Map<Descriptor, Set<Descriptor>> dependencies() {
+        Set<Integer> orders = new HashSet<>();
+        for (Descriptor entry : descriptors)
+            orders.add(entry.order);
         for (Descriptor entry : descriptors) {
-            int retries = context.getRetries();
-            while (true) {
+            for (Integer order : entry.dependsOn) {
+                if (!orders.contains(order))
+                    throw new SystemException("Loader order " + entry.order + " of " + getClass().getName()
+                            + " depends on order " + order + " without a loader");
+            }
+        }
+
+        Map<Descriptor, Set<Descriptor>> dependencies = new IdentityHashMap<>();
+        Descriptor previous = null;
+        for (Descriptor entry : descriptors) {
+            Set<Descriptor> set = Collections.newSetFromMap(new IdentityHashMap<>());
+            if (parallelism <= 1) {
+                if (previous != null)
+                    set.add(previous);
+            } else {
+                for (Descriptor other : descriptors) {
+                    if (other == entry)
+                        continue;
+                    if (entry.dependsOn.contains(other.order) || other.targets.contains(entry.sourceClass))
+                        set.add(other);
+                }
+            }
+            dependencies.put(entry, set);
+            previous = entry;
+        }
+        return topologicalSort(dependencies);
+    }
+
+    private Map<Descriptor, Set<Descriptor>> topologicalSort(Map<Descriptor, Set<Descriptor>> dependencies) {
+        Map<Descriptor, Set<Descriptor>> sorted = new LinkedHashMap<>();
+        Map<Descriptor, Integer> pending = new IdentityHashMap<>();
+        Deque<Descriptor> ready = new ArrayDeque<>();
+        for (Descriptor entry : descriptors) {
+            pending.put(entry, dependencies.get(entry).size());
+            if (dependencies.get(entry).isEmpty())
+                ready.add(entry);
+        }
+        while (!ready.isEmpty()) {
+            Descriptor entry = ready.poll();
+            sorted.put(entry, dependencies.get(entry));
+            for (Descriptor other : descriptors) {
+                if (dependencies.get(other).contains(entry) && pending.merge(other, -1, Integer::sum) == 0)
+                    ready.add(other);
+            }
+        }
+        if (sorted.size() < descriptors.size()) {
+            Set<Integer> cycle = new TreeSet<>();
+            for (Descriptor entry : descriptors) {
+                if (!sorted.containsKey(entry))
+                    cycle.add(entry.order);
+            }
+            throw new SystemException("Circular loader dependency involving orders " + cycle + " of " + getClass().getName());
+        }
+        return sorted;
+    }
+
+    // dependencies are scheduled first, see dependencies().
+    private void schedule(Descriptor entry, Set<Descriptor> dependencies, Map<Descriptor, CompletableFuture<Integer>> futures,
+                          List<Stage> stages, PartitionContext context,
+                          ExecutorService executor, ScheduledExecutorService scheduler) {
+        List<CompletableFuture<Integer>> upstream = new ArrayList<>();
+        for (Descriptor dependency : dependencies)
+            upstream.add(futures.get(dependency));
+
+        Stage stage = new Stage(entry);
+        stages.add(stage);
+        CompletableFuture<Integer> future = CompletableFuture.allOf(upstream.toArray(new CompletableFuture[0]))
+                .thenCompose(v -> attempt(entry, stage, context.getRetries(), context.getRetrySleep(), executor, scheduler));
+        futures.put(entry, future);
+    }
+
+    private CompletableFuture<Integer> attempt(Descriptor entry, Stage stage, int retries, long retrySleep,
+                                               ExecutorService executor, ScheduledExecutorService scheduler) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(stage.run(() -> runEntry(entry)));
+            } catch (Throwable th) {  // every path must complete the future, run() joins on it.
+                String info = "";
+                if (entry.context != null) {
+                    info = "extractor=" + entry.context.extractor() +
+                            " sourceClass=" + entry.context.getSourceClass() +
+                            " tableName=" + entry.context.tableName();
+                }
+
+                // Errors are not retried
+                if (retries <= 0 || th instanceof Error) {
+                    logger.warn("Cannot transmutate " + info, th);
+                    future.completeExceptionally(th);
+                    return;
+                }
+                logger.warn("Cannot transmutate, " + retries + " retry attempts left, " + info, th);
+                // retry without holding a worker thread
+                long next = Math.min(Math.max(1L, retrySleep) * 2, maxRetrySleep);
                 try {
-                    switch (entry.runType) {
-                        case EACH_ENTRY:
-                            count += entry.strategy.run(entry.context);
-                            break;
-                        case PARTITION:
-                            count += entry.strategy.runPartitions(entry.context);
-                            break;
-                    }
-                    break;
-                } catch (Exception ex) {
-                    String info = "";
-                    if (entry.context != null) {
-                        info = "extractor=" + entry.context.extractor() +
-                                " sourceClass=" + entry.context.getSourceClass() +
-                                " tableName=" + entry.context.tableName();
-                    }
-
-                    if (retries <= 0) {
-                        logger.warn("Cannot transmutate " + info, ex);
-                        throw ex;
-                    } else {
-                        logger.warn("Cannot transmutate, " + retries + " retry attempts left, " + info, ex);
-                    }
-                    try {
-                        Thread.sleep(context.getRetrySleep());
-                    } catch (InterruptedException e) {
-                        // ignore
-                    }
-                    retries --;
+                    scheduler.schedule(() -> retry(entry, stage, retries - 1, next, executor, scheduler, future),
+                            retrySleep, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException rejected) {
+                    future.completeExceptionally(th);
                 }
             }
+        });
+        return future;
+    }
+
+    private void retry(Descriptor entry, Stage stage, int retries, long retrySleep,
+                       ExecutorService executor, ScheduledExecutorService scheduler, CompletableFuture<Integer> future) {
+        try {
+            attempt(entry, stage, retries, retrySleep, executor, scheduler)
+                    .whenComplete((count, e) -> {
+                        if (e != null)
+                            future.completeExceptionally(e);
+                        else
+                            future.complete(count);
+                    });
+        } catch (Throwable th) {
+            future.completeExceptionally(th);
         }
-        return count;
+    }
+
+    @SuppressWarnings("squid:S1301")
+    private int runEntry(Descriptor entry) {
+        switch (entry.runType) {
+            case EACH_ENTRY:
+                return entry.strategy.run(entry.context);
+            case PARTITION:
+                return entry.strategy.runPartitions(entry.context);
+            default:
+                return 0;
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
     public static class Descriptor {
@@ -234,7 +461,9 @@ public abstract class Transmutator implements Strategy<PartitionContext> {
         public PartitionStrategy strategy;
         public RunType runType;
         public ETLSettings settings;
-
+        public Class sourceClass;
+        public Set<Integer> dependsOn = new HashSet<>();
+        public Set<Class> targets = new HashSet<>();
 
         Descriptor(int order, PartitionContext context, PartitionStrategy strategy, RunType runType, ETLSettings settings) {
             this.order = order;
@@ -243,6 +472,80 @@ public abstract class Transmutator implements Strategy<PartitionContext> {
             this.runType = runType;
             this.settings = settings;
         }
+
+        void dependsOn(int[] orders, Class[] tables) {
+            for (int o : orders)
+                dependsOn.add(o);
+            targets.addAll(Arrays.asList(tables));
+        }
+    }
+
+    /**
+     * Execution statistics of a loader.  Elapsed time spans from the first attempt to completion, including retries.
+     */
+    public static class Stage {
+        private final int order;
+        private final String extractor;
+        private final PartitionContext context;
+        private volatile long elapsed;
+        private volatile int rows;
+        private volatile int attempts;
+        private volatile long start;
+
+        Stage(Descriptor descriptor) {
+            this.order = descriptor.order;
+            this.extractor = descriptor.context.extractor();
+            this.context = descriptor.context;
+        }
+
+        int run(Callable<Integer> callable) throws Exception {
+            if (attempts == 0)
+                start = System.nanoTime();
+            attempts++;
+            int count = callable.call();
+            rows = count;
+            elapsed = (System.nanoTime() - start) / 1000000L;
+            return count;
+        }
+
+        public int getOrder() {
+            return order;
+        }
+
+        public String getExtractor() {
+            return extractor;
+        }
+
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public double getRowsPerSecond() {
+            return (elapsed > 0) ? rows * 1000.0 / elapsed : rows;
+        }
+
+        /**
+         * @return batch size and chunks chosen for the loader, or null if its context is not adaptive.
+         */
+        public AdaptiveController getAdaptiveController() {
+            return context.getAdaptiveController();
+        }
+
+        @Override
+        public String toString() {
+            AdaptiveController controller = getAdaptiveController();
+            return String.format("order=%d extractor=%s elapsed=%dms rows=%d rows/sec=%.1f attempts=%d",
+                    order, extractor, elapsed, rows, getRowsPerSecond(), attempts)
+                    + (controller == null ? "" : " adaptive " + controller);
+        }
     }
 
     public interface Customizer {
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyTrackerTest {
+    private static final int REQUESTS = 20000;
+    private static final String[] NODES = {"node1", "node2", "node3"};
+
+    @Test
+    void percentile() {
+        NodeLatency latency = new NodeLatency("node1");
+        for (int i = 1; i <= 100; i++)
+            latency.record(i * 1000000L);
+        double p50 = latency.getPercentile(50);
+        double p99 = latency.getPercentile(99);
+        assertTrue(p50 >= 50 && p50 < 50 * 1.25, "p50=" + p50);
+        assertTrue(p99 >= 99 && p99 < 99 * 1.25, "p99=" + p99);
+        assertEquals(100, latency.getCount());
+    }
+
+    @Test
+    void order() {
+        LatencyTracker tracker = new LatencyTracker();
+        tracker.setMinSamples(10);
+        List<String> plan = Arrays.asList(NODES);
+        assertSame(plan, tracker.order(plan, n -> n));
+
+        for (int i = 0; i < 20; i++) {
+            tracker.record("node1", 20000000L);
+            tracker.record("node2", 2000000L);
+            tracker.record("node3", 2500000L);
+        }
+        assertTrue(tracker.isSlow("node1"));
+        assertFalse(tracker.isSlow("node3"));
+        assertEquals(Arrays.asList("node2", "node3", "node1"), tracker.order(plan, n -> n));
+    }
+
+    // Three replicas, one of them in a long GC or compaction.  Compares tail latency of sending every read to the first
+    // replica in the plan against latency aware ordering plus a second execution started after the tracked p99.
+    @Test
+    void simulate() {
+        Random random = new Random(7);
+        LatencyTracker tracker = new LatencyTracker();
+        long[] baseline = new long[REQUESTS];
+        long[] optimized = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            List<String> plan = new ArrayList<>(Arrays.asList(NODES));
+            rotate(plan, i);
+            baseline[i] = latency(random, plan.get(0));
+
+            List<String> ordered = tracker.order(plan, n -> n);
+            long first = latency(random, ordered.get(0));
+            tracker.record(ordered.get(0), first * 1000L);
+            double p99 = tracker.getPercentile(99);
+            long delay = (p99 < 0) ? 100000L : (long) Math.ceil(p99 * 1000);
+            long result = first;
+            if (first > delay) {
+                long second = latency(random, ordered.get(1));
+                tracker.record(ordered.get(1), second * 1000L);
+                result = Math.min(first, delay + second);
+            }
+            optimized[i] = result;
+        }
+        Arrays.sort(baseline);
+        Arrays.sort(optimized);
+        System.out.println("first replica    p50=" + percentile(baseline, 50) + "us p99=" + percentile(baseline, 99) + "us p99.9=" + percentile(baseline, 99.9) + "us");
+        System.out.println("latency aware    p50=" + percentile(optimized, 50) + "us p99=" + percentile(optimized, 99) + "us p99.9=" + percentile(optimized, 99.9) + "us");
+        System.out.println(tracker);
+        assertTrue(percentile(optimized, 99) < percentile(baseline, 99));
+        assertTrue(percentile(optimized, 99.9) < percentile(baseline, 99.9));
+    }
+
+    private void rotate(List<String> plan, int n) {
+        for (int i = 0; i < n % plan.size(); i++)
+            plan.add(plan.remove(0));
+    }
+
+    // latency in microseconds; node3 is slow, the others have an occasional hiccup.
+    private long latency(Random random, String node) {
+        double base = 1000 + random.nextGaussian() * 200;
+        if (node.equals("node3"))
+            base *= 8;
+        if (random.nextDouble() < 0.005)
+            base += 50000;
+        return Math.max(100, (long) base);
+    }
+
+    private long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
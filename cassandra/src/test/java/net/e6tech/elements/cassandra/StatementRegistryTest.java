@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra;
+
+import net.e6tech.elements.cassandra.annotations.PartitionKey;
+import net.e6tech.elements.cassandra.annotations.Table;
+import net.e6tech.elements.cassandra.driver.cql.Prepared;
+import net.e6tech.elements.cassandra.driver.v4.GeneratorV4;
+import net.e6tech.elements.cassandra.driver.v4.SibylV4;
+import net.e6tech.elements.cassandra.etl.Inspector;
+import net.e6tech.elements.cassandra.generator.Generator;
+import net.e6tech.elements.cassandra.query.RangeQuery;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementRegistryTest {
+
+    private StatementRegistry registry = new StatementRegistry();
+
+    @Test
+    void shape() {
+        StatementRegistry.Shape shape = new StatementRegistry.Shape(Sample.class, "save", "test", true, false);
+        assertEquals(shape, new StatementRegistry.Shape(Sample.class, "save", "test", true, false));
+        assertEquals(shape.hashCode(), new StatementRegistry.Shape(Sample.class, "save", "test", true, false).hashCode());
+        assertNotEquals(shape, new StatementRegistry.Shape(Sample.class, "save", "test", false, true));
+        assertNotEquals(shape, new StatementRegistry.Shape(Sample.class, "save", "other", true, false));
+        assertNotEquals(shape, new StatementRegistry.Shape(Sample.class, "delete", "test", true, false));
+        assertNotEquals(shape, new StatementRegistry.Shape(String.class, "save", "test", true, false));
+        assertEquals(new StatementRegistry.Shape(null, "cql", "test", "select * from t"),
+                new StatementRegistry.Shape(null, "cql", "test", "select * from t"));
+    }
+
+    @Test
+    void hitsAndMisses() {
+        AtomicInteger loads = new AtomicInteger();
+        StatementRegistry.Shape shape = new StatementRegistry.Shape(Sample.class, "query", "test", "p:id0|c|o|");
+        String first = registry.get(shape, () -> "cql-" + loads.incrementAndGet());
+        String second = registry.get(new StatementRegistry.Shape(Sample.class, "query", "test", "p:id0|c|o|"),
+                () -> "cql-" + loads.incrementAndGet());
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1, registry.getStats().missCount());
+        assertEquals(1, registry.getStats().hitCount());
+
+        registry.get(new StatementRegistry.Shape(Sample.class, "query", "test", "p:id0|c|o|limit"),
+                () -> "cql-" + loads.incrementAndGet());
+        assertEquals(2, loads.get());
+        assertEquals(2, registry.size());
+
+        // resizing keeps the entries.
+        registry.setMaxSize(10);
+        assertSame(first, registry.get(shape, () -> "cql-" + loads.incrementAndGet()));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void preparePerKeyspace() {
+        List<String> prepared = new ArrayList<>();
+        Session session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Session.class},
+                (proxy, method, args) -> {
+                    if ("prepare".equals(method.getName())) {
+                        prepared.add((String) args[0]);
+                        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Prepared.class},
+                                (p, m, a) -> {
+                                    throw new UnsupportedOperationException(m.getName());
+                                });
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        Prepared first = registry.prepare(session, "test", "select * from codec_sample");
+        assertSame(first, registry.prepare(session, "test", "select * from codec_sample"));
+        assertNotSame(first, registry.prepare(session, "other", "select * from codec_sample"));
+        assertEquals(2, prepared.size());
+    }
+
+    @Test
+    void limitMarker() {
+        TestSibyl sibyl = new TestSibyl();
+        new RangeQuery<>(sibyl, Sample.class).partition(Sample::setId, 7L).limit(10).query();
+        new RangeQuery<>(sibyl, Sample.class).partition(Sample::setId, 8L).limit(20).query();
+
+        // queries differing only by limit share one statement, the limit is bound.
+        assertEquals(2, sibyl.queries.size());
+        assertSame(sibyl.queries.get(0), sibyl.queries.get(1));
+        assertTrue(sibyl.queries.get(0).endsWith("limit :query_limit"));
+        assertEquals(10, sibyl.arguments.get(0).get("query_limit"));
+        assertEquals(7L, sibyl.arguments.get(0).get("id_1"));
+        assertEquals(20, sibyl.arguments.get(1).get("query_limit"));
+        assertEquals(8L, sibyl.arguments.get(1).get("id_1"));
+        assertEquals(1, registry.getStats().missCount());
+        assertEquals(1, registry.getStats().hitCount());
+
+        new RangeQuery<>(sibyl, Sample.class).partition(Sample::setId, 7L).query();
+        assertFalse(sibyl.queries.get(2).contains("limit"));
+        assertFalse(sibyl.arguments.get(2).containsKey("query_limit"));
+        assertEquals(2, registry.getStats().missCount());
+    }
+
+    private class TestSibyl extends SibylV4 {
+        Generator generator = new GeneratorV4();
+        Inspector inspector;
+        List<String> queries = new ArrayList<>();
+        List<Map<String, Object>> arguments = new ArrayList<>();
+
+        TestSibyl() {
+            inspector = new Inspector(Sample.class, generator);
+            inspector.initialize();
+        }
+
+        @Override
+        public String getKeyspace() {
+            return "test";
+        }
+
+        @Override
+        public Generator getGenerator() {
+            return generator;
+        }
+
+        @Override
+        public StatementRegistry getStatementRegistry() {
+            return registry;
+        }
+
+        @Override
+        public Inspector getInspector(Class cls) {
+            return inspector;
+        }
+
+        @Override
+        public <X> List<X> all(Class<X> cls, String query, Map<String, Object> map) {
+            queries.add(query);
+            arguments.add(map);
+            return new ArrayList<>();
+        }
+    }
+
+    @Table(name = "registry_sample")
+    public static class Sample {
+        @PartitionKey
+        private Long id;
+        private String name;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
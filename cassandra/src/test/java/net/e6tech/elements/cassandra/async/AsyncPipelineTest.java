@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015-2023 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.cassandra.async;
+
+import net.e6tech.elements.cassandra.Session;
+import net.e6tech.elements.cassandra.driver.cql.AsyncResultSet;
+import net.e6tech.elements.cassandra.driver.cql.Bound;
+import net.e6tech.elements.cassandra.driver.cql.Prepared;
+import net.e6tech.elements.cassandra.driver.cql.ResultSet;
+import net.e6tech.elements.cassandra.driver.metadata.TokenRange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncPipelineTest {
+
+    private FakeSession session = new FakeSession();
+
+    @AfterEach
+    void shutdown() {
+        session.scheduler.shutdownNow();
+    }
+
+    @Test
+    void boundedInFlight() {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+            items.add(i);
+        Set<Integer> completed = new HashSet<>();
+        AsyncPipeline<AsyncResultSet, Integer> pipeline = new AsyncPipeline<AsyncResultSet, Integer>(64).maxRetries(1);
+        AsyncPipeline.Result<Integer> result = pipeline.execute(items,
+                item -> session.executeAsync("insert " + item),
+                (item, rs) -> completed.add(item));
+
+        assertEquals(5000, result.getSucceeded());
+        assertEquals(5000, completed.size());
+        assertEquals(500, result.getRetried()); // every 10th item fails once
+        assertFalse(result.hasFailures());
+        assertTrue(session.maxInFlight.get() <= 64, "in flight " + session.maxInFlight.get());
+    }
+
+    @Test
+    void failures() {
+        session.failures = 2;
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            items.add(i);
+        AsyncPipeline.Result<Integer> result = new AsyncPipeline<AsyncResultSet, Integer>(8).maxRetries(1)
+                .execute(items, item -> session.executeAsync("insert " + item));
+        assertEquals(90, result.getSucceeded());
+        assertEquals(10, result.getFailures().size());
+        assertThrows(RuntimeException.class, result::throwIfFailed);
+    }
+
+    @Test
+    void timeout() {
+        session.latency = 500;
+        AsyncPipeline.Result<Integer> result = new AsyncPipeline<AsyncResultSet, Integer>(4).timeout(50)
+                .execute(Arrays.asList(1, 2, 3), item -> session.executeAsync("insert " + item));
+        assertEquals(3, result.getFailures().size());
+    }
+
+    // Completes statements after a fixed latency; statements for every 10th item fail the first n times.
+    private static class FakeSession implements Session {
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        long latency = 1;
+        int failures = 1;
+
+        @Override
+        public ResultSet execute(String query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet execute(String keyspace, String query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet execute(Bound statement) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Future<AsyncResultSet> executeAsync(String keyspace, String query) {
+            return executeAsync(query);
+        }
+
+        @Override
+        public Future<AsyncResultSet> executeAsync(String query) {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            int item = Integer.parseInt(query.substring(query.indexOf(' ') + 1));
+            int attempt = attempts.computeIfAbsent(query, k -> new AtomicInteger()).incrementAndGet();
+            CompletableFuture<AsyncResultSet> future = new CompletableFuture<>();
+            scheduler.schedule(() -> {
+                inFlight.decrementAndGet();
+                if (item % 10 == 0 && attempt <= failures)
+                    future.completeExceptionally(new IllegalStateException("write timeout " + item));
+                else
+                    future.complete(null);
+            }, latency, TimeUnit.MILLISECONDS);
+            return future;
+        }
+
+        @Override
+        public Future<AsyncResultSet> executeAsync(Bound bound) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Prepared prepare(String query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<TokenRange> getTokenRanges(String keyspace, int splitsPerRange) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.driver.v4;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import net.e6tech.elements.cassandra.WriteOptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Driver types are stubbed with dynamic proxies; a statement only needs a routing key and a size.
+ */
+public class BatchGrouperTest {
+    private static final CqlIdentifier KEYSPACE = CqlIdentifier.fromCql("test");
+
+    @Test
+    void byPartition() {
+        BoundStatement unrouted = statement(null, 10);
+        List<BoundStatement> statements = Arrays.asList(statement("a", 10), statement("b", 10), unrouted,
+                statement("a", 10), statement("c", 10), statement("a", 10), statement("b", 10));
+        List<Statement<?>> result = grouper(WriteOptions.Batch.PARTITION, null, null, null).group(statements);
+
+        assertEquals(4, result.size());
+        assertSame(unrouted, result.get(0));
+        assertBatch(result.get(1), statements.get(0), statements.get(3), statements.get(5));
+        assertEquals(key("a"), ((BatchStatement) result.get(1)).getRoutingKey());
+        assertBatch(result.get(2), statements.get(1), statements.get(6));
+        assertSame(statements.get(4), result.get(3));  // a group of one is not batched
+    }
+
+    @Test
+    void byReplica() {
+        Node n1 = node();
+        Node n2 = node();
+        Node n3 = node();
+        Map<ByteBuffer, List<Node>> replicas = new HashMap<>();
+        replicas.put(key("a"), Arrays.asList(n1, n2));
+        replicas.put(key("b"), Arrays.asList(n2, n1));
+        replicas.put(key("c"), Arrays.asList(n2, n3));
+        replicas.put(key("d"), Collections.emptyList());
+        TokenMap tokenMap = proxy(TokenMap.class, (method, args) -> {
+            if ("getReplicas".equals(method) && args[0].equals(KEYSPACE))
+                return new HashSet<>(replicas.get((ByteBuffer) args[1]));
+            throw new UnsupportedOperationException(method);
+        });
+
+        List<BoundStatement> statements = Arrays.asList(statement("a", 10), statement("c", 10),
+                statement("b", 10), statement("d", 10), statement("d", 10));
+        List<Statement<?>> result = grouper(WriteOptions.Batch.REPLICA, tokenMap, null, null).group(statements);
+
+        assertEquals(3, result.size());
+        assertBatch(result.get(0), statements.get(0), statements.get(2));  // a and b share replicas
+        assertSame(statements.get(1), result.get(1));
+        assertBatch(result.get(2), statements.get(3), statements.get(4));  // no replicas, grouped by partition
+
+        // without token metadata replica grouping falls back to partitions
+        result = grouper(WriteOptions.Batch.REPLICA, null, null, null).group(statements);
+        assertEquals(4, result.size());
+        assertSame(statements.get(0), result.get(0));
+        assertBatch(result.get(3), statements.get(3), statements.get(4));
+    }
+
+    @Test
+    void splitBySize() {
+        List<BoundStatement> statements = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            statements.add(statement("a", 10));
+        List<Statement<?>> result = grouper(WriteOptions.Batch.PARTITION, null, 2, null).group(statements);
+
+        assertEquals(3, result.size());
+        assertBatch(result.get(0), statements.get(0), statements.get(1));
+        assertBatch(result.get(1), statements.get(2), statements.get(3));
+        assertSame(statements.get(4), result.get(2));
+    }
+
+    @Test
+    void splitByBytes() {
+        BoundStatement large = statement("a", 100);
+        List<BoundStatement> statements = Arrays.asList(statement("a", 40), statement("a", 40), large,
+                statement("a", 40), statement("a", 40));
+        List<Statement<?>> result = grouper(WriteOptions.Batch.PARTITION, null, null, 100).group(statements);
+
+        assertEquals(3, result.size());
+        assertSame(large, result.get(0));  // too large to share a batch
+        assertBatch(result.get(1), statements.get(0), statements.get(1));
+        assertBatch(result.get(2), statements.get(3), statements.get(4));
+    }
+
+    private static void assertBatch(Statement<?> statement, BoundStatement... expected) {
+        assertTrue(statement instanceof BatchStatement, "expected a batch: " + statement);
+        List<BoundStatement> actual = new ArrayList<>();
+        ((BatchStatement) statement).forEach(s -> actual.add((BoundStatement) s));
+        assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++)
+            assertSame(expected[i], actual.get(i));
+    }
+
+    private static BatchGrouper grouper(WriteOptions.Batch mode, TokenMap tokenMap, Integer batchSize, Integer batchBytes) {
+        Metadata metadata = proxy(Metadata.class, (method, args) -> {
+            if ("getTokenMap".equals(method))
+                return Optional.ofNullable(tokenMap);
+            throw new UnsupportedOperationException(method);
+        });
+        CqlSession session = proxy(CqlSession.class, (method, args) -> {
+            switch (method) {
+                case "getContext": return null;
+                case "getMetadata": return metadata;
+                case "getKeyspace": return Optional.of(KEYSPACE);
+                default: throw new UnsupportedOperationException(method);
+            }
+        });
+        WriteOptions options = new WriteOptions().batch(mode).batchSize(batchSize).batchBytes(batchBytes);
+        return new BatchGrouper(session, options);
+    }
+
+    private static BoundStatement statement(String routingKey, int bytes) {
+        ByteBuffer key = routingKey == null ? null : key(routingKey);
+        return proxy(BoundStatement.class, (method, args) -> {
+            switch (method) {
+                case "getRoutingKey": return key;
+                case "getRoutingKeyspace": return null;
+                case "computeSizeInBytes": return bytes;
+                case "getConsistencyLevel": return null;
+                case "isIdempotent": return null;
+                default: throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private static ByteBuffer key(String key) {
+        return ByteBuffer.wrap(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Node node() {
+        return proxy(Node.class, (method, args) -> {
+            throw new UnsupportedOperationException(method);
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, Stub stub) {
+        return type.cast(Proxy.newProxyInstance(BatchGrouperTest.class.getClassLoader(), new Class[] {type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals": return proxy == args[0];
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "toString": return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                        default: return stub.invoke(method.getName(), args);
+                    }
+                }));
+    }
+
+    private interface Stub {
+        Object invoke(String method, Object[] args);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.driver.v4;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.ProtocolVersion;
+import com.datastax.oss.driver.api.core.context.DriverContext;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.mapper.MapperContext;
+import net.e6tech.elements.cassandra.Consistency;
+import net.e6tech.elements.cassandra.StatementRegistry;
+import net.e6tech.elements.cassandra.WriteOptions;
+import net.e6tech.elements.cassandra.annotations.PartitionKey;
+import net.e6tech.elements.cassandra.annotations.Table;
+import net.e6tech.elements.cassandra.etl.Inspector;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Driver types are stubbed with dynamic proxies; prepared statements only carry their query.
+ */
+public class MapperImplTest {
+
+    private List<String> prepared = new ArrayList<>();
+    private StatementRegistry registry = new StatementRegistry();
+
+    @Test
+    void ttlMarker() {
+        MapperImpl<Sample> mapper = mapper();
+        assertEquals(3, prepared.size());  // get, save and delete
+
+        PreparedStatement ttl = mapper.saveStatement(new WriteOptions().ttl(60));
+        assertTrue(ttl.getQuery().endsWith("USING TTL :using_ttl"));
+        assertFalse(ttl.getQuery().contains("60"));
+
+        // a different TTL binds a different value to the same statement.
+        assertSame(ttl, mapper.saveStatement(new WriteOptions().ttl(120)));
+        assertEquals(4, prepared.size());
+
+        PreparedStatement ifNotExists = mapper.saveStatement(new WriteOptions().ttl(60).ifNotExists(true));
+        assertNotSame(ttl, ifNotExists);
+        assertTrue(ifNotExists.getQuery().endsWith("IF NOT EXISTS USING TTL :using_ttl"));
+        assertEquals(5, prepared.size());
+
+        // options that only apply to the bound statement use the statement prepared by init.
+        PreparedStatement plain = mapper.saveStatement(new WriteOptions().consistency(Consistency.ONE));
+        assertEquals(prepared.get(1), plain.getQuery());
+        assertFalse(plain.getQuery().contains("TTL"));
+        assertEquals(5, prepared.size());
+    }
+
+    private MapperImpl<Sample> mapper() {
+        Inspector inspector = new Inspector(Sample.class, new GeneratorV4());
+        inspector.initialize();
+        DriverContext driverContext = proxy(DriverContext.class, (method, args) ->
+                "getProtocolVersion".equals(method) ? ProtocolVersion.DEFAULT : null);
+        CqlSession session = proxy(CqlSession.class, (method, args) -> {
+            switch (method) {
+                case "getName":
+                    return "test";
+                case "getContext":
+                    return driverContext;
+                case "getKeyspace":
+                    return Optional.empty();
+                case "prepare":
+                    return prepare((SimpleStatement) args[0]);
+                case "prepareAsync":
+                    return CompletableFuture.completedFuture(prepare((SimpleStatement) args[0]));
+                default:
+                    return null;
+            }
+        });
+        MapperContext context = proxy(MapperContext.class, (method, args) -> {
+            switch (method) {
+                case "getSession":
+                    return session;
+                case "getKeyspaceId":
+                    return CqlIdentifier.fromCql("test");
+                default:
+                    return null;
+            }
+        });
+        return (MapperImpl<Sample>) MapperImpl.init(context, Sample.class, inspector, registry);
+    }
+
+    private PreparedStatement prepare(SimpleStatement statement) {
+        String query = statement.getQuery();
+        prepared.add(query);
+        return proxy(PreparedStatement.class, (method, args) -> {
+            if ("getQuery".equals(method))
+                return query;
+            throw new UnsupportedOperationException(method);
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, Stub stub) {
+        return type.cast(Proxy.newProxyInstance(MapperImplTest.class.getClassLoader(), new Class[] {type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals": return proxy == args[0];
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "toString": return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                        default: return stub.invoke(method.getName(), args);
+                    }
+                }));
+    }
+
+    private interface Stub {
+        Object invoke(String method, Object[] args);
+    }
+
+    @Table(name = "mapper_sample")
+    public static class Sample {
+        @PartitionKey
+        private Long id;
+        private String name;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.driver.v4;
+
+import com.datastax.oss.driver.api.core.ProtocolVersion;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.data.SettableByIndex;
+import com.datastax.oss.driver.api.core.detach.AttachmentPoint;
+import com.datastax.oss.driver.api.core.type.DataType;
+import com.datastax.oss.driver.api.core.type.codec.TypeCodecs;
+import com.datastax.oss.driver.api.core.type.codec.registry.CodecRegistry;
+import com.datastax.oss.driver.api.mapper.entity.saving.NullSavingStrategy;
+import com.datastax.oss.driver.internal.core.cql.DefaultColumnDefinition;
+import com.datastax.oss.driver.internal.core.cql.DefaultColumnDefinitions;
+import com.datastax.oss.driver.internal.core.cql.DefaultRow;
+import com.datastax.oss.protocol.internal.ProtocolConstants;
+import com.datastax.oss.protocol.internal.response.result.ColumnSpec;
+import com.datastax.oss.protocol.internal.response.result.RawType;
+import net.e6tech.elements.cassandra.annotations.PartitionKey;
+import net.e6tech.elements.cassandra.annotations.Table;
+import net.e6tech.elements.cassandra.etl.Inspector;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RowCodecTest {
+    private static final int ITERATIONS = 1000000;
+    private static final ProtocolVersion VERSION = ProtocolVersion.DEFAULT;
+
+    private Inspector inspector = newInspector();
+    private Row row = newRow();
+
+    private static Inspector newInspector() {
+        Inspector inspector = new Inspector(Sample.class, new GeneratorV4());
+        inspector.initialize();
+        return inspector;
+    }
+
+    // columns in a different order than the entity's, as with select *.
+    private static Row newRow() {
+        List<ColumnDefinition> definitions = new ArrayList<>();
+        definitions.add(column("active", 0, ProtocolConstants.DataType.BOOLEAN));
+        definitions.add(column("count", 1, ProtocolConstants.DataType.INT));
+        definitions.add(column("creation_time", 2, ProtocolConstants.DataType.BIGINT));
+        definitions.add(column("description", 3, ProtocolConstants.DataType.VARCHAR));
+        definitions.add(column("id", 4, ProtocolConstants.DataType.BIGINT));
+        definitions.add(column("name", 5, ProtocolConstants.DataType.VARCHAR));
+        List<ByteBuffer> data = Arrays.asList(
+                TypeCodecs.BOOLEAN.encode(true, VERSION),
+                TypeCodecs.INT.encode(42, VERSION),
+                TypeCodecs.BIGINT.encode(1600000000000L, VERSION),
+                TypeCodecs.TEXT.encode("a sample row", VERSION),
+                TypeCodecs.BIGINT.encode(7L, VERSION),
+                TypeCodecs.TEXT.encode("sample", VERSION));
+        return new DefaultRow(DefaultColumnDefinitions.valueOf(definitions), data, AttachmentPoint.NONE);
+    }
+
+    private static ColumnDefinition column(String name, int index, int type) {
+        return new DefaultColumnDefinition(new ColumnSpec("test", "codec_sample", name, index, RawType.PRIMITIVES.get(type)), AttachmentPoint.NONE);
+    }
+
+    @Test
+    void decode() {
+        Sample sample = new RowCodec<Sample>(inspector).decode(row);
+        assertEquals(7L, sample.getId().longValue());
+        assertEquals("sample", sample.getName());
+        assertEquals("a sample row", sample.getDescription());
+        assertEquals(1600000000000L, sample.getCreationTime().longValue());
+        assertEquals(42, sample.getCount().intValue());
+        assertEquals(true, sample.getActive());
+        assertEquals(sample.getName(), legacyDecode(row).getName());
+    }
+
+    @Test
+    void bindRoundTrip() {
+        // variables in a different order than the entity's columns.
+        ColumnDefinitions variables = definitions(
+                column("name", 0, ProtocolConstants.DataType.VARCHAR),
+                column("id", 1, ProtocolConstants.DataType.BIGINT),
+                column("active", 2, ProtocolConstants.DataType.BOOLEAN),
+                column("description", 3, ProtocolConstants.DataType.VARCHAR),
+                column("count", 4, ProtocolConstants.DataType.INT),
+                column("creation_time", 5, ProtocolConstants.DataType.BIGINT));
+        RowCodec<Sample> codec = new RowCodec<>(inspector);
+        Sample sample = codec.decode(row);
+        Values values = codec.bind(statement(variables), sample, new Values(variables), NullSavingStrategy.DO_NOT_SET);
+
+        Sample decoded = codec.decode(new DefaultRow(variables, Arrays.asList(values.values), AttachmentPoint.NONE));
+        assertEquals(sample.getId(), decoded.getId());
+        assertEquals(sample.getName(), decoded.getName());
+        assertEquals(sample.getDescription(), decoded.getDescription());
+        assertEquals(sample.getCreationTime(), decoded.getCreationTime());
+        assertEquals(sample.getCount(), decoded.getCount());
+        assertEquals(sample.getActive(), decoded.getActive());
+    }
+
+    @Test
+    void bindNulls() {
+        ColumnDefinitions variables = definitions(
+                column("id", 0, ProtocolConstants.DataType.BIGINT),
+                column("name", 1, ProtocolConstants.DataType.VARCHAR),
+                column("description", 2, ProtocolConstants.DataType.VARCHAR),
+                column("creation_time", 3, ProtocolConstants.DataType.BIGINT),
+                column("count", 4, ProtocolConstants.DataType.INT),
+                column("active", 5, ProtocolConstants.DataType.BOOLEAN));
+        PreparedStatement statement = statement(variables);
+        RowCodec<Sample> codec = new RowCodec<>(inspector);
+        Sample sample = new Sample();
+        sample.setId(9L);
+
+        Values unset = codec.bind(statement, sample, new Values(variables), NullSavingStrategy.DO_NOT_SET);
+        assertEquals(9L, TypeCodecs.BIGINT.decode(unset.values[0], VERSION).longValue());
+        assertSame(ProtocolConstants.UNSET_VALUE, unset.values[1]);
+
+        Values nulls = codec.bind(statement, sample, new Values(variables), NullSavingStrategy.SET_TO_NULL);
+        assertEquals(9L, TypeCodecs.BIGINT.decode(nulls.values[0], VERSION).longValue());
+        assertNull(nulls.values[1]);
+    }
+
+    @Test
+    void bindKeys() {
+        ColumnDefinitions variables = definitions(column("id", 0, ProtocolConstants.DataType.BIGINT));
+        PreparedStatement statement = statement(variables);
+        RowCodec<Sample> codec = new RowCodec<>(inspector);
+
+        Values byValue = codec.bindKeys(statement, new Object[] {7L}, new Values(variables));
+        assertEquals(7L, TypeCodecs.BIGINT.decode(byValue.values[0], VERSION).longValue());
+
+        Sample sample = codec.decode(row);
+        Values byEntity = codec.bindKeys(statement, sample, new Values(variables));
+        assertEquals(byValue.values[0], byEntity.values[0]);
+
+        ColumnDefinitions noKey = definitions(column("name", 0, ProtocolConstants.DataType.VARCHAR));
+        assertThrows(IllegalArgumentException.class,
+                () -> codec.bindKeys(statement(noKey), new Object[] {7L}, new Values(noKey)));
+    }
+
+    @Test
+    void bindAndBindKeysShareStatement() {
+        ColumnDefinitions variables = definitions(
+                column("name", 0, ProtocolConstants.DataType.VARCHAR),
+                column("id", 1, ProtocolConstants.DataType.BIGINT),
+                column("active", 2, ProtocolConstants.DataType.BOOLEAN),
+                column("description", 3, ProtocolConstants.DataType.VARCHAR),
+                column("count", 4, ProtocolConstants.DataType.INT),
+                column("creation_time", 5, ProtocolConstants.DataType.BIGINT));
+        PreparedStatement statement = statement(variables);
+        RowCodec<Sample> codec = new RowCodec<>(inspector);
+        Sample sample = codec.decode(row);
+
+        Values keys = codec.bindKeys(statement, sample, new Values(variables));
+        assertEquals(7L, TypeCodecs.BIGINT.decode(keys.values[1], VERSION).longValue());
+        assertSame(ProtocolConstants.UNSET_VALUE, keys.values[0]);
+
+        Values all = codec.bind(statement, sample, new Values(variables), NullSavingStrategy.DO_NOT_SET);
+        assertEquals("sample", TypeCodecs.TEXT.decode(all.values[0], VERSION));
+        assertEquals(42, TypeCodecs.INT.decode(all.values[4], VERSION).intValue());
+        assertEquals(keys.values[1], codec.bindKeys(statement, sample, new Values(variables)).values[1]);
+    }
+
+    @Test
+    @Disabled("benchmark")
+    void benchmarkDecode() {
+        RowCodec<Sample> codec = new RowCodec<>(inspector);
+        for (int i = 0; i < ITERATIONS; i++) {
+            legacyDecode(row);
+            codec.decode(row);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            legacyDecode(row);
+        long legacy = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            codec.decode(row);
+        long generated = System.nanoTime() - start;
+
+        System.out.println("per row decode: by name=" + legacy / ITERATIONS + "ns by index=" + generated / ITERATIONS + "ns");
+    }
+
+    private static ColumnDefinitions definitions(ColumnDefinition ... columns) {
+        return DefaultColumnDefinitions.valueOf(Arrays.asList(columns));
+    }
+
+    // only the variable definitions of a prepared statement are used for binding.
+    private static PreparedStatement statement(ColumnDefinitions variables) {
+        return (PreparedStatement) Proxy.newProxyInstance(RowCodecTest.class.getClassLoader(), new Class[] {PreparedStatement.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals": return proxy == args[0];
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "getVariableDefinitions": return variables;
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    // values of a bound statement, unset until bound.
+    private static class Values implements SettableByIndex<Values> {
+        private final ColumnDefinitions variables;
+        private final ByteBuffer[] values;
+
+        Values(ColumnDefinitions variables) {
+            this.variables = variables;
+            values = new ByteBuffer[variables.size()];
+            Arrays.fill(values, ProtocolConstants.UNSET_VALUE);
+        }
+
+        @Override
+        public Values setBytesUnsafe(int i, ByteBuffer v) {
+            values[i] = v;
+            return this;
+        }
+
+        @Override
+        public int size() {
+            return variables.size();
+        }
+
+        @Override
+        public DataType getType(int i) {
+            return variables.get(i).getType();
+        }
+
+        @Override
+        public CodecRegistry codecRegistry() {
+            return CodecRegistry.DEFAULT;
+        }
+
+        @Override
+        public ProtocolVersion protocolVersion() {
+            return VERSION;
+        }
+    }
+
+    // how Helper.get mapped rows before RowCodec.
+    private Sample legacyDecode(Row source) {
+        Sample sample;
+        try {
+            sample = Sample.class.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        for (Inspector.ColumnAccessor accessor : inspector.getColumns()) {
+            accessor.set(sample, source.get(accessor.getColumnName(), accessor.getType()));
+        }
+        return sample;
+    }
+
+    @Table(name = "codec_sample")
+    public static class Sample {
+        @PartitionKey
+        private Long id;
+        private String name;
+        private String description;
+        private Long creationTime;
+        private Integer count;
+        private Boolean active;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public void setDescription(String description) {
+            this.description = description;
+        }
+
+        public Long getCreationTime() {
+            return creationTime;
+        }
+
+        public void setCreationTime(Long creationTime) {
+            this.creationTime = creationTime;
+        }
+
+        public Integer getCount() {
+            return count;
+        }
+
+        public void setCount(Integer count) {
+            this.count = count;
+        }
+
+        public Boolean getActive() {
+            return active;
+        }
+
+        public void setActive(Boolean active) {
+            this.active = active;
+        }
+    }
+}
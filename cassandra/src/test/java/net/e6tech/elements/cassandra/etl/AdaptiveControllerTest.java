@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015-2023 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.etl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveControllerTest {
+
+    @Test
+    void increaseAndDecrease() {
+        AdaptiveController controller = new AdaptiveController(1000, 100, 2000, 10, 1, 40, 1000L);
+        controller.batchCompleted(1000, 500L);
+        assertEquals(1100, controller.getBatchSize());
+        controller.batchCompleted(1100, 1500L); // too slow
+        assertEquals(550, controller.getBatchSize());
+        for (int i = 0; i < 100; i++)
+            controller.batchCompleted(100, 10L);
+        assertEquals(2000, controller.getBatchSize());
+
+        assertTrue(controller.batchFailed(new RuntimeException(new TimeoutException())));
+        assertEquals(1000, controller.getBatchSize());
+        assertEquals(1, controller.getTimeouts());
+        assertEquals(0, controller.getFailures());
+        while (controller.batchFailed(new RuntimeException()));
+        assertEquals(100, controller.getBatchSize());
+
+        controller.chunksCompleted(10L);
+        assertEquals(11, controller.getChunks());
+        assertTrue(controller.chunksFailed(new IllegalStateException()));
+        assertEquals(5, controller.getChunks());
+        assertTrue(controller.getThroughput() > 0);
+    }
+}
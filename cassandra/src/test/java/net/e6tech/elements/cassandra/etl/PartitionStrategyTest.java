@@ -21,14 +21,18 @@ import net.e6tech.elements.cassandra.generator.Generator;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class PartitionStrategyTest {
@@ -55,6 +59,44 @@ public class PartitionStrategyTest {
         assertEquals(set.size(), end.subtract(from).intValue() + 1);
     }
 
+    @Test
+    void planRanges() {
+        RangePlanner planner = RangePlanner.of(Long.TYPE, TimeUnit.MINUTES);
+        long from = 111111;
+        long to = 222219;
+        Set<Long> planned = new LinkedHashSet<>();
+        RangePlanner.Plan plan = planner.plan(from, to, 10, 100);
+        while (!plan.isEmpty()) {
+            for (int i = 0; i < plan.size(); i++) {
+                for (long k = plan.start(i); k <= plan.end(i); k++)
+                    planned.add(k);
+                if (i > 0)
+                    assertEquals(1, plan.end(i - 1) - plan.start(i));
+            }
+            plan = planner.plan(plan.last() - 1, to, 10, 100);
+        }
+
+        Set<Long> expected = new LinkedHashSet<>();
+        BigDecimal start = new BigDecimal(from);
+        List<PartitionStrategy.Range> ranges = strategy.getAsyncRanges("query", start, new BigDecimal(to), 10, 100);
+        while (!ranges.isEmpty()) {
+            for (PartitionStrategy.Range r : ranges) {
+                for (long k = r.start.longValue(); k <= r.end.longValue(); k++)
+                    expected.add(k);
+            }
+            start = ranges.get(ranges.size() - 1).end.subtract(BigDecimal.ONE);
+            ranges = strategy.getAsyncRanges("query", start, new BigDecimal(to), 10, 100);
+        }
+        assertEquals(expected, planned);
+
+        assertEquals(Long.class, planner.getBindClass());
+        assertEquals(8, planner.keys(10, 19).length);
+        assertEquals(11L, planner.keys(10, 19)[0]);
+        assertEquals(Instant.ofEpochMilli(TimeUnit.MINUTES.toMillis(5)),
+                RangePlanner.of(Instant.class, TimeUnit.MINUTES).key(5));
+        assertTrue(RangePlanner.of(UUID.class, TimeUnit.MINUTES).isGeneric());
+    }
+
     @Test
     void execAsyncQuery() {
         PartitionContext context = new MockContext();
@@ -89,6 +131,19 @@ public class PartitionStrategyTest {
         strategy.asyncQuery(p, "query", row -> {});
     }
 
+    @Test
+    void rangeCheckpoint() {
+        PartitionContext context = new MockContext();
+        String query = TokenRangeScanner.buildQuery("test_table", "partition_key", "distinct partition_key", null);
+        TokenRangeScanner.RangeCheckpoint checkpoint = context.getRangeCheckpoint(query);
+        assertSame(checkpoint, context.getRangeCheckpoint(query));
+        assertNotSame(checkpoint, context.getRangeCheckpoint(query + " group by partition_key"));
+
+        TokenRangeScanner.InMemoryCheckpoint shared = new TokenRangeScanner.InMemoryCheckpoint();
+        context.setRangeCheckpointFactory(q -> shared);
+        assertSame(shared, context.getRangeCheckpoint(query));
+    }
+
     private class MockPartitionStrategy extends PartitionStrategy<Partition, PartitionContext> {
         Consumer<List<Range>> rangeConsumer;
         @Override
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.etl;
+
+import net.e6tech.elements.cassandra.Session;
+import net.e6tech.elements.cassandra.driver.cql.*;
+import net.e6tech.elements.cassandra.driver.metadata.TokenRange;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenRangeScannerTest {
+
+    @Test
+    void buildQuery() {
+        assertEquals("select id, name from account where token(id) > :start and token(id) <= :end",
+                TokenRangeScanner.buildQuery("account", "id", "id, name", null));
+        assertEquals("select id from account where token(id, kind) > :start and token(id, kind) <= :end group by id",
+                TokenRangeScanner.buildQuery("account", "id, kind", "id", "group by id"));
+    }
+
+    @Test
+    void scan() {
+        StubSession session = new StubSession(4, 1000);
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        long count = new TokenRangeScanner(session).concurrency(3).pageSize(100)
+                .scan("account", "id", "id", null, row -> assertTrue(seen.add(row.getLong(0))));
+        assertEquals(1000, count);
+        assertEquals(1000, seen.size());
+        assertEquals(1, session.prepared.size());
+        assertEquals(TokenRangeScanner.buildQuery("account", "id", "id", null), session.prepared.get(0));
+        assertEquals(4, session.executions.get());
+    }
+
+    @Test
+    void retryAndResume() {
+        StubSession session = new StubSession(4, 1000);
+        session.failures = 1;
+        TokenRangeScanner scanner = new TokenRangeScanner(session).retries(1);
+        scanner.setRetrySleep(1);
+        assertEquals(1000, scanner.scan("account", "id", "id", null, row -> {}));
+        assertEquals(5, session.executions.get());
+
+        // every range is recorded as completed so a second scan has nothing to do.
+        assertEquals(0, scanner.scan("account", "id", "id", null, row -> {}));
+
+        session.failures = 10;
+        scanner.setCheckpoint(new TokenRangeScanner.InMemoryCheckpoint());
+        assertThrows(RuntimeException.class, () -> scanner.scan("account", "id", "id", null, row -> {}));
+    }
+
+    // Splits the ring into n ranges and holds rows whose token is spread evenly over the ring.
+    private static class StubSession implements Session {
+        List<TokenRange> ranges = new ArrayList<>();
+        List<Long> tokens = new ArrayList<>();
+        List<String> prepared = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger executions = new AtomicInteger();
+        volatile int failures = 0;
+
+        StubSession(int n, int rows) {
+            long step = Long.MAX_VALUE / n * 2;
+            long start = Long.MIN_VALUE;
+            for (int i = 0; i < n; i++) {
+                long end = (i == n - 1) ? Long.MAX_VALUE : start + step;
+                ranges.add(new TokenRange(start, end, Collections.singleton("node" + i)));
+                start = end;
+            }
+            long gap = Long.MAX_VALUE / rows * 2;
+            for (int i = 0; i < rows; i++)
+                tokens.add(Long.MIN_VALUE + 1 + i * gap);
+        }
+
+        @Override
+        public List<TokenRange> getTokenRanges(String keyspace, int splitsPerRange) {
+            return ranges;
+        }
+
+        @Override
+        public Prepared prepare(String query) {
+            prepared.add(query);
+            return StubBound::new;
+        }
+
+        @Override
+        public ResultSet execute(Bound statement) {
+            StubBound bound = (StubBound) statement;
+            executions.incrementAndGet();
+            List<Row> rows = new ArrayList<>();
+            for (Long token : tokens) {
+                if (token > bound.values.get("start") && token <= bound.values.get("end"))
+                    rows.add(new TokenRow(token));
+            }
+            synchronized (this) {
+                if (failures > 0) {
+                    failures--;
+                    throw new IllegalStateException("read timeout");
+                }
+            }
+            return new ResultSet() {
+                @Override
+                public Row one() {
+                    return rows.isEmpty() ? null : rows.get(0);
+                }
+
+                @Override
+                public Iterator<Row> iterator() {
+                    return rows.iterator();
+                }
+            };
+        }
+
+        @Override
+        public ResultSet execute(String query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet execute(String keyspace, String query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Future<AsyncResultSet> executeAsync(String keyspace, String query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Future<AsyncResultSet> executeAsync(String query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Future<AsyncResultSet> executeAsync(Bound bound) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class StubBound implements Bound {
+        Map<String, Long> values = new HashMap<>();
+
+        @Override
+        public <V> Bound set(int i, V v, Class<V> targetClass) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <V> Bound set(String name, V v, Class<V> targetClass) {
+            values.put(name, (Long) v);
+            return this;
+        }
+
+        @Override
+        public Bound setToNull(String name) {
+            return this;
+        }
+
+        @Override
+        public <T> Bound setList(String name, List<T> v) {
+            return this;
+        }
+
+        @Override
+        public <T> Bound setSet(String name, Set<T> v) {
+            return this;
+        }
+
+        @Override
+        public <K, V> Bound setMap(String name, Map<K, V> v) {
+            return this;
+        }
+
+        @Override
+        public Bound setPageSize(int pageSize) {
+            return this;
+        }
+
+        @Override
+        public Bound setPagingState(ByteBuffer pagingState) {
+            return this;
+        }
+
+        @Override
+        public Bound setIdempotent(boolean idempotent) {
+            return this;
+        }
+    }
+
+    private static class TokenRow implements Row {
+        long token;
+
+        TokenRow(long token) {
+            this.token = token;
+        }
+
+        @Override
+        public int columnSize() {
+            return 1;
+        }
+
+        @Override
+        public Object getObject(int i) {
+            return token;
+        }
+
+        @Override
+        public Object getObject(String name) {
+            return token;
+        }
+
+        @Override
+        public <T> T get(int i, Class<T> targetClass) {
+            return targetClass.cast(token);
+        }
+
+        @Override
+        public <T> T get(String name, Class<T> targetClass) {
+            return targetClass.cast(token);
+        }
+
+        @Override
+        public long getLong(int i) {
+            return token;
+        }
+
+        @Override
+        public long getLong(String name) {
+            return token;
+        }
+
+        @Override
+        public boolean isNull(int i) {
+            return false;
+        }
+
+        @Override
+        public boolean isNull(String name) {
+            return false;
+        }
+    }
+}
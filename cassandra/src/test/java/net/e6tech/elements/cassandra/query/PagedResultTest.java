@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.query;
+
+import net.e6tech.elements.cassandra.driver.cql.AsyncResultSet;
+import net.e6tech.elements.cassandra.driver.cql.Row;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PagedResultTest {
+
+    private AtomicInteger fetched = new AtomicInteger();
+
+    @Test
+    void iterate() {
+        PagedResult<Long> result = new PagedResult<>(execute(25, 10, null), null, row -> row.getLong(0));
+        List<Long> list = result.stream().collect(Collectors.toList());
+        assertEquals(25, list.size());
+        assertEquals(24L, list.get(24).longValue());
+        assertEquals(3, fetched.get());
+        assertNull(result.getCursor());
+    }
+
+    @Test
+    void prefetch() {
+        PagedResult<Long> result = new PagedResult<>(execute(25, 10, null), null, row -> row.getLong(0));
+        assertEquals(0L, result.next().longValue());
+        assertEquals(2, fetched.get()); // second page requested while consuming the first
+    }
+
+    @Test
+    void resume() {
+        PagedResult<Long> result = new PagedResult<>(execute(25, 10, null), null, row -> row.getLong(0));
+        assertEquals(13, result.next(13).size());
+        String cursor = result.getCursor();
+        result.close();
+
+        PagedResult<Long> resumed = new PagedResult<>(execute(25, 10, PagedResult.pagingState(cursor)), cursor, row -> row.getLong(0));
+        List<Long> rest = resumed.stream().collect(Collectors.toList());
+        assertEquals(12, rest.size());
+        assertEquals(13L, rest.get(0).longValue());
+    }
+
+    private CompletableFuture<AsyncResultSet> execute(int total, int pageSize, ByteBuffer pagingState) {
+        int start = pagingState == null ? 0 : pagingState.duplicate().getInt();
+        fetched.incrementAndGet();
+        return CompletableFuture.completedFuture(new Page(start, total, pageSize));
+    }
+
+    // page of rows whose only column is the row number; the paging state is the first row of the next page.
+    private class Page implements AsyncResultSet {
+        int start;
+        int total;
+        int pageSize;
+
+        Page(int start, int total, int pageSize) {
+            this.start = start;
+            this.total = total;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public Iterable<Row> currentPage() {
+            List<Row> rows = new ArrayList<>();
+            for (int i = start; i < Math.min(total, start + pageSize); i++)
+                rows.add(new NumberRow(i));
+            return rows;
+        }
+
+        @Override
+        public boolean hasMorePages() {
+            return start + pageSize < total;
+        }
+
+        @Override
+        public CompletionStage<AsyncResultSet> fetchNextPage() {
+            return execute(total, pageSize, getPagingState());
+        }
+
+        @Override
+        public ByteBuffer getPagingState() {
+            if (!hasMorePages())
+                return null;
+            ByteBuffer buffer = ByteBuffer.allocate(4).putInt(start + pageSize);
+            buffer.flip();
+            return buffer;
+        }
+
+        @Override
+        public Row one() {
+            return currentPage().iterator().next();
+        }
+
+        @Override
+        public Iterator<Row> iterator() {
+            return currentPage().iterator();
+        }
+    }
+
+    private static class NumberRow implements Row {
+        long value;
+
+        NumberRow(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public int columnSize() {
+            return 1;
+        }
+
+        @Override
+        public Object getObject(int i) {
+            return value;
+        }
+
+        @Override
+        public Object getObject(String name) {
+            return value;
+        }
+
+        @Override
+        public <T> T get(int i, Class<T> targetClass) {
+            return targetClass.cast(value);
+        }
+
+        @Override
+        public <T> T get(String name, Class<T> targetClass) {
+            return targetClass.cast(value);
+        }
+
+        @Override
+        public long getLong(int i) {
+            return value;
+        }
+
+        @Override
+        public long getLong(String name) {
+            return value;
+        }
+
+        @Override
+        public boolean isNull(int i) {
+            return false;
+        }
+
+        @Override
+        public boolean isNull(String name) {
+            return false;
+        }
+    }
+}
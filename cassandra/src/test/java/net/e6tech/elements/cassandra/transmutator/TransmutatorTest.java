@@ -0,0 +1,247 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.transmutator;
+
+import net.e6tech.elements.cassandra.etl.Partition;
+import net.e6tech.elements.cassandra.etl.PartitionContext;
+import net.e6tech.elements.cassandra.etl.PartitionStrategy;
+import net.e6tech.elements.common.util.SystemException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs loaders against stub strategies installed by a Customizer, so no Cassandra is needed.
+ */
+public class TransmutatorTest {
+
+    @Test
+    void dependencyOrdering() {
+        List<Integer> completed = Collections.synchronizedList(new ArrayList<>());
+        Chain chain = new Chain();
+        for (int order = 1; order <= 3; order++) {
+            int o = order;
+            chain.behavior(order, () -> {
+                sleep(30L * (4 - o));  // earlier stages are slower
+                completed.add(o);
+                return o;
+            });
+        }
+        assertEquals(6, chain.parallelism(4).run(context(0, 0L)));
+        assertEquals(Arrays.asList(1, 2, 3), completed);
+        assertEquals(3, chain.getReport().size());
+    }
+
+    @Test
+    void concurrency() {
+        CountDownLatch latch = new CountDownLatch(2);
+        Independent independent = new Independent();
+        IntSupplier rendezvous = () -> {
+            latch.countDown();
+            try {
+                return latch.await(5, TimeUnit.SECONDS) ? 1 : 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            }
+        };
+        independent.behavior(1, rendezvous);
+        independent.behavior(2, rendezvous);
+        assertEquals(2, independent.parallelism(2).run(context(0, 0L)));
+    }
+
+    @Test
+    void retryBackoff() {
+        List<Long> attempts = Collections.synchronizedList(new ArrayList<>());
+        Independent independent = new Independent();
+        independent.behavior(1, () -> {
+            attempts.add(System.nanoTime());
+            if (attempts.size() < 3)
+                throw new IllegalStateException("attempt " + attempts.size());
+            return 7;
+        });
+        independent.behavior(2, () -> 1);
+        assertEquals(8, independent.parallelism(2).run(context(3, 50L)));
+
+        assertEquals(3, attempts.size());
+        long first = TimeUnit.NANOSECONDS.toMillis(attempts.get(1) - attempts.get(0));
+        long second = TimeUnit.NANOSECONDS.toMillis(attempts.get(2) - attempts.get(1));
+        assertTrue(first >= 50L, "first retry after " + first + "ms");
+        assertTrue(second >= 100L, "second retry after " + second + "ms");
+        Transmutator.Stage stage = independent.getReport().get(0);
+        assertEquals(1, stage.getOrder());
+        assertEquals(3, stage.getAttempts());
+        assertEquals(7, stage.getRows());
+    }
+
+    @Test
+    void retriesExhausted() {
+        Independent independent = new Independent();
+        independent.behavior(1, () -> {
+            throw new IllegalStateException("always");
+        });
+        independent.behavior(2, () -> 1);
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+                () -> independent.parallelism(2).run(context(1, 10L)));
+        assertEquals("always", ex.getMessage());
+        assertEquals(2, independent.getReport().get(0).getAttempts());
+    }
+
+    @Test
+    void errorCompletesStage() {
+        Independent independent = new Independent();
+        independent.behavior(1, () -> {
+            throw new AssertionError("broken");
+        });
+        independent.behavior(2, () -> 1);
+        // must fail instead of waiting forever on the stage
+        SystemException ex = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(SystemException.class, () -> independent.parallelism(2).run(context(3, 10L))));
+        assertTrue(ex.getCause() instanceof AssertionError);
+        assertEquals(1, independent.getReport().get(0).getAttempts());
+    }
+
+    @Test
+    void cycleRejected() {
+        Cycle cycle = new Cycle();
+        Set<Integer> ran = ConcurrentHashMap.newKeySet();
+        cycle.behavior(1, () -> ran.add(1) ? 1 : 0);
+        cycle.behavior(2, () -> ran.add(2) ? 1 : 0);
+        cycle.behavior(3, () -> ran.add(3) ? 1 : 0);
+        SystemException ex = assertThrows(SystemException.class, () -> cycle.parallelism(2).run(context(0, 0L)));
+        assertTrue(ex.getMessage().contains("[1, 2]"), ex.getMessage());
+        assertTrue(ran.isEmpty());
+    }
+
+    @Test
+    void unknownDependencyRejected() {
+        Unknown unknown = new Unknown();
+        Set<Integer> ran = ConcurrentHashMap.newKeySet();
+        unknown.behavior(1, () -> ran.add(1) ? 1 : 0);
+        // rejected regardless of parallelism
+        assertThrows(SystemException.class, () -> unknown.parallelism(1).run(context(0, 0L)));
+        assertTrue(ran.isEmpty());
+    }
+
+    private static PartitionContext context(int retries, long retrySleep) {
+        PartitionContext context = new PartitionContext();
+        context.setRetries(retries);
+        context.setRetrySleep(retrySleep);
+        return context;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class Source implements Partition {
+        @Override
+        public PartitionContext createContext() {
+            return new PartitionContext() {
+                @Override
+                public String tableName() {
+                    return "source";
+                }
+            };
+        }
+    }
+
+    public static class Target implements Partition {
+    }
+
+    // replaces each loader's strategy with the behavior registered for its order.
+    abstract static class Stubbed extends Transmutator {
+        private final Map<Integer, IntSupplier> behaviors = new HashMap<>();
+
+        Stubbed() {
+            setCustomizer((context, descriptor) -> descriptor.strategy = new PartitionStrategy() {
+                @Override
+                public int runPartitions(PartitionContext c) {
+                    return behaviors.get(descriptor.order).getAsInt();
+                }
+            });
+        }
+
+        void behavior(int order, IntSupplier behavior) {
+            behaviors.put(order, behavior);
+        }
+    }
+
+    static class Chain extends Stubbed {
+        @PartitionLoader(value = 1, targets = Target.class)
+        public int first(PartitionContext context, Source[] list) {
+            return 0;
+        }
+
+        @PartitionLoader(value = 2, dependsOn = 1)
+        public int second(PartitionContext context, Target[] list) {
+            return 0;
+        }
+
+        @PartitionLoader(value = 3, dependsOn = 2)
+        public int third(PartitionContext context, Source[] list) {
+            return 0;
+        }
+    }
+
+    static class Independent extends Stubbed {
+        @PartitionLoader(1)
+        public int first(PartitionContext context, Source[] list) {
+            return 0;
+        }
+
+        @PartitionLoader(2)
+        public int second(PartitionContext context, Source[] list) {
+            return 0;
+        }
+    }
+
+    static class Cycle extends Stubbed {
+        @PartitionLoader(value = 1, dependsOn = 2)
+        public int first(PartitionContext context, Source[] list) {
+            return 0;
+        }
+
+        @PartitionLoader(value = 2, dependsOn = 1)
+        public int second(PartitionContext context, Source[] list) {
+            return 0;
+        }
+
+        @PartitionLoader(3)
+        public int third(PartitionContext context, Source[] list) {
+            return 0;
+        }
+    }
+
+    static class Unknown extends Stubbed {
+        @PartitionLoader(value = 1, dependsOn = 9)
+        public int first(PartitionContext context, Source[] list) {
+            return 0;
+        }
+    }
+}
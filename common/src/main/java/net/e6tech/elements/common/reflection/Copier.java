@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.common.reflection;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Copies properties between two instances of the same class.  It follows the same rules as Reflection.copyInstance
+ * but the properties and their accessors are resolved once per class, and the accessors are generated lambdas
+ * so that a copy does not involve reflection.  Properties that require conversion, i.e. collections or a setter
+ * that does not accept the getter's type, cause the copy to fall back to Reflection.copyInstance.
+ */
+public class Copier {
+    private static final Map<Class, Copier> copiers = new ConcurrentHashMap<>();
+
+    private final Class type;
+    private Accessor[] accessors = new Accessor[0];
+    private boolean fallback = false;
+
+    private Copier(Class type) {
+        this.type = type;
+        List<Accessor> list = new ArrayList<>();
+        try {
+            for (PropertyDescriptor prop : Reflection.getBeanInfo(type).getPropertyDescriptors()) {
+                if (copyable(prop)) {
+                    if (Collection.class.isAssignableFrom(prop.getPropertyType()) || !assignable(prop)) {
+                        fallback = true;
+                        break;
+                    }
+                    list.add(new Accessor(prop));
+                }
+            }
+        } catch (Exception ex) {
+            // unable to generate accessors, e.g. class is not accessible.
+            fallback = true;
+        }
+        if (!fallback)
+            accessors = list.toArray(new Accessor[0]);
+    }
+
+    public static Copier of(Class type) {
+        return copiers.computeIfAbsent(type, Copier::new);
+    }
+
+    private static boolean copyable(PropertyDescriptor prop) {
+        Method getter = prop.getReadMethod();
+        Method setter = prop.getWriteMethod();
+        if (getter == null || setter == null)
+            return false;
+        if (setter.getAnnotation(DoNotAccept.class) != null || getter.getAnnotation(DoNotAccept.class) != null)
+            return false;
+        return getter.getAnnotation(DoNotCopy.class) == null && setter.getAnnotation(DoNotCopy.class) == null;
+    }
+
+    private static boolean assignable(PropertyDescriptor prop) {
+        return prop.getWriteMethod().getParameterTypes()[0].isAssignableFrom(prop.getReadMethod().getReturnType());
+    }
+
+    public Class getType() {
+        return type;
+    }
+
+    public boolean isFallback() {
+        return fallback;
+    }
+
+    public <T> T copy(T target, Object source) {
+        if (target == null || source == null)
+            return target;
+        if (fallback || target.getClass() != type || source.getClass() != type)
+            return Reflection.copyInstance(target, source);
+
+        for (Accessor accessor : accessors) {
+            Object value = accessor.get(source);
+            if (value instanceof Collection) // declared type does not tell us, need conversion.
+                return Reflection.copyInstance(target, source);
+            accessor.set(target, value);
+        }
+        return target;
+    }
+}
@@ -20,6 +20,7 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 
 import java.lang.invoke.*;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.List;
@@ -27,12 +28,14 @@ import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @SuppressWarnings("squid:S00112")
 public class Lambda {
     private static final Cache<Method, Function> GETTERS = CacheBuilder.newBuilder().weakValues().build();
     private static final Cache<Method, BiConsumer> SETTERS = CacheBuilder.newBuilder().weakValues().build();
+    private static final Cache<Constructor, Supplier> CONSTRUCTORS = CacheBuilder.newBuilder().weakValues().build();
 
     private static Function createGetter(final MethodHandles.Lookup lookup,
                                          final MethodHandle getter) throws Exception {
@@ -67,6 +70,23 @@ public class Lambda {
         }
     }
 
+    private static Supplier createConstructor(final MethodHandles.Lookup lookup,
+                                              final MethodHandle constructor) throws Exception {
+        final CallSite site = LambdaMetafactory.metafactory(lookup,
+                "get",
+                MethodType.methodType(Supplier.class),
+                MethodType.methodType(Object.class), //signature of method Supplier.get after type erasure
+                constructor,
+                constructor.type()); //actual signature of constructor
+        try {
+            return (Supplier) site.getTarget().invokeExact();
+        } catch (final Exception e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new Error(e);
+        }
+    }
+
     private static MethodType wrapUnboxed(MethodType methodType) {
         List<Class<?>> actualParamsBoxed = methodType.parameterList().stream()
                 .map(Primitives::getReferenceType)
@@ -91,6 +111,14 @@ public class Lambda {
         }
     }
 
+    public static Supplier reflectConstructor(final MethodHandles.Lookup lookup, final Constructor constructor) throws ReflectiveOperationException {
+        try {
+            return CONSTRUCTORS.get(constructor, () -> createConstructor(lookup, lookup.unreflectConstructor(constructor)));
+        } catch (final ExecutionException e) {
+            throw new ReflectiveOperationException(e.getCause());
+        }
+    }
+
     private Lambda() {
     }
 }
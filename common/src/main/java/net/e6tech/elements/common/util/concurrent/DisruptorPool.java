@@ -24,23 +24,19 @@ import com.lmax.disruptor.dsl.ProducerType;
 import com.lmax.disruptor.util.DaemonThreadFactory;
 import net.e6tech.elements.common.util.SystemException;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.*;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 
 @SuppressWarnings("unchecked")
 public class DisruptorPool {
 
     static Handler defaultHandler = (TimeoutHandler) (thread) -> thread.interrupt();
 
-    private Monitor monitor = new Monitor();
     Disruptor<Event> disruptor;
     private int bufferSize = 1024;
     private int handlerSize = Runtime.getRuntime().availableProcessors() * 2;
     private int initialMonitorCapacity = 16;
     private ExecutorService executorService;
+    private TimeoutService timeoutService;
 
     public DisruptorPool() {
     }
@@ -69,19 +65,33 @@ public class DisruptorPool {
         this.handlerSize = handlerSize;
     }
 
+    /**
+     * @deprecated timeouts are tracked by TimeoutService, which does not need an initial capacity.
+     */
+    @Deprecated
     public int getInitialMonitorCapacity() {
         return initialMonitorCapacity;
     }
 
+    /**
+     * @deprecated timeouts are tracked by TimeoutService, which does not need an initial capacity.
+     */
+    @Deprecated
     public void setInitialMonitorCapacity(int initialMonitorCapacity) {
         this.initialMonitorCapacity = initialMonitorCapacity;
     }
 
+    public TimeoutService getTimeoutService() {
+        return timeoutService;
+    }
+
+    public void setTimeoutService(TimeoutService timeoutService) {
+        this.timeoutService = timeoutService;
+    }
+
     public synchronized void start() {
-        if (!monitor.isAlive()) {
-            monitor.capacity = initialMonitorCapacity;
-            monitor.start();
-        }
+        if (timeoutService == null)
+            timeoutService = TimeoutService.shared();
         if (disruptor != null)
             return;
 
@@ -109,10 +119,6 @@ public class DisruptorPool {
             disruptor.shutdown();
             disruptor = null;
         }
-        if (monitor.isAlive()) {
-            monitor.shutdown = true;
-            monitor.thread.interrupt();
-        }
     }
 
     public RunnableWait run(Runnable runnable) {
@@ -162,7 +168,7 @@ public class DisruptorPool {
     private void prepareEvent(Event event, Handler handler, long timeout ) {
         if (handler != null)
             event.handler = handler;
-        event.monitor = monitor;
+        event.timeoutService = timeoutService;
         if (timeout < 0)
             timeout = 0;
 
@@ -256,7 +262,8 @@ public class DisruptorPool {
         private Thread thread;
         private long expiration;
 
-        private Monitor monitor;
+        private TimeoutService timeoutService;
+        private TimeoutService.Timeout timeout;
 
         void clear() {
             thread = null;
@@ -267,12 +274,13 @@ public class DisruptorPool {
             callable = null;
             handler = defaultHandler;
             expiration = 0L;
+            timeout = null;
         }
 
         void handle() {
             if (expiration > 0) {
                 thread = Thread.currentThread();
-                monitor.add(this);
+                timeout = timeoutService.schedule(expiration - System.currentTimeMillis(), this::expire);
             }
 
             if (runnable != null) {
@@ -281,6 +289,9 @@ public class DisruptorPool {
                 call();
             }
 
+            if (timeout != null)
+                timeout.cancel();
+
             synchronized (this) {
                 done = true;
                 this.thread = null;
@@ -288,6 +299,14 @@ public class DisruptorPool {
             }
         }
 
+        // called by TimeoutService
+        private synchronized void expire() {
+            if (!done && thread != null) {
+                handler.timeout(thread);
+                thread = null;
+            }
+        }
+
         void run() {
             try {
                 runnable.run();
@@ -312,149 +331,6 @@ public class DisruptorPool {
         }
     }
 
-    static class Monitor implements Runnable {
-        private Thread thread;
-        private int capacity = 16;
-        List<Event> list;
-        ReentrantLock lock = new ReentrantLock();
-        private final Condition notEmpty = lock.newCondition();
-        private volatile boolean shutdown = true;
-
-        public boolean isAlive() {
-            if (thread == null)
-                return false;
-            return thread.isAlive();
-        }
-
-        public void start() {
-            if (!shutdown)
-                return;
-            shutdown = false;
-            list = new ArrayList<>(capacity);
-            thread = new Thread(this);
-            thread.start();
-        }
-
-        public void shutdown() {
-            shutdown = true;
-            thread.interrupt();
-            list.clear();
-            thread = null;
-        }
-
-        public void add(Event event) {
-            add(event, true);
-        }
-
-        int binarySearch(List<Event> list, int l, int r, long exp)
-        {
-            if (r>=l)
-            {
-                int mid = l + (r - l)/2;
-
-                // If the element is present at the
-                // middle itself
-                if (list.get(mid).expiration == exp)
-                    return mid;
-
-                // If element is smaller than mid, then
-                // it can only be present in left subarray
-                if (list.get(mid).expiration > exp)
-                    return binarySearch(list, l, mid-1, exp);
-
-                // Else the element can only be present
-                // in right subarray
-                return binarySearch(list, mid+1, r, exp);
-            }
-
-            // We reach here when element is not present
-            //  in array
-            return r;
-        }
-
-        private void add(Event event, boolean interrupt) {
-            final ReentrantLock lock = this.lock;
-            int index = 0;
-            lock.lock();
-            try {
-                int size = list.size();
-                if (size > 0) {
-                    int start = binarySearch(list, 0, list.size() - 1, event.expiration);
-                    if (start < 0)
-                        start = 0;
-                    else if (start >= size)
-                        start = size - 1;
-                    Event e = list.get(start);
-                    if (e.expiration < event.expiration) {
-                        index = start + 1;
-                    } else {
-                        index = start;
-                    }
-                }
-                list.add(index, event);
-                notEmpty.signal();
-            } finally {
-                lock.unlock();
-            }
-            if (index == 0 && interrupt) {
-                thread.interrupt();
-            }
-        }
-
-        public void run() {
-            while (!shutdown) {
-                Event event = null;
-                try {
-                    lock.lock();
-                    while (list.size() == 0)
-                        notEmpty.await();
-                    event = list.remove(0);
-                } catch (InterruptedException e) {
-                    // ignore
-                } finally {
-                    lock.unlock();
-                }
-                if (event != null && !monitor(event)) {
-                    add(event, false);
-                }
-            }
-        }
-
-        // returns true if successfully processed, false if interrupted
-        private boolean monitor(Event event) {
-            synchronized (event) {
-                boolean firstTime = true;
-                while (!event.done) {
-                    try {
-                        long waitTime;
-                        if (firstTime) {
-                            waitTime = event.expiration - System.currentTimeMillis() - 1;
-                            firstTime = false;
-                            if (waitTime == -1)
-                                waitTime = 0;
-                        } else {
-                            waitTime = event.expiration - System.currentTimeMillis();
-                        }
-
-                        if (waitTime > 0) {
-                            event.wait(waitTime);
-                        } else {
-                            Thread th = event.thread;
-                            if (th != null) {
-                                event.handler.timeout(th);
-                                event.thread = null;
-                            }
-                            break;
-                        }
-                    } catch (InterruptedException e) {
-                        return false;
-                    }
-                }
-            }
-            return true;
-        }
-    }
-
     public interface Handler<V>  {
         default boolean exception(Exception exception){ return false; }
         default void callback(V retVal) {}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.common.util.concurrent;
+
+import net.e6tech.elements.common.logging.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deadline tracking based on a hashed timing wheel.  Scheduling and cancelling a timeout are O(1): both only
+ * enqueue the entry, and a single worker thread moves entries into, and out of, the wheel once per tick.
+ * Deadlines are therefore accurate to the tick duration.
+ *
+ * Timeout tasks run on the worker thread so they should be short, e.g. interrupting a thread or handing work
+ * off to an executor.  The worker parks when there is nothing to track.
+ */
+public class TimeoutService {
+    private static final Logger logger = Logger.getLogger();
+    private static TimeoutService shared;
+
+    private final String name;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final LongAdder scheduledCount = new LongAdder();
+    private final LongAdder timedOutCount = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+    private final LongAdder rescheduledCount = new LongAdder();
+    private volatile Thread worker;
+    private volatile boolean idle = false;
+    private volatile boolean shutdown = false;
+    private long startTime;
+    private long tick;  // worker thread only
+    private int size;   // number of entries in the wheel, worker thread only
+
+    public TimeoutService(String name) {
+        this(name, 10L, 512);
+    }
+
+    /**
+     * @param name used to name the worker thread.
+     * @param tickMillis duration of a tick
+     * @param wheelSize number of buckets, rounded up to a power of 2.
+     */
+    public TimeoutService(String name, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0)
+            throw new IllegalArgumentException("tickMillis must be greater than 0");
+        if (wheelSize <= 0 || wheelSize > (1 << 30))
+            throw new IllegalArgumentException("wheelSize must be between 1 and 2^30");
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int n = 1;
+        while (n < wheelSize)
+            n <<= 1;
+        wheel = new Bucket[n];
+        for (int i = 0; i < n; i++)
+            wheel[i] = new Bucket();
+        mask = n - 1;
+    }
+
+    /**
+     * Returns a service shared by callers that do not configure their own.
+     */
+    public static synchronized TimeoutService shared() {
+        if (shared == null || shared.shutdown)
+            shared = new TimeoutService("shared");
+        return shared;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getTickMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+    }
+
+    public int getWheelSize() {
+        return wheel.length;
+    }
+
+    public long getScheduledCount() {
+        return scheduledCount.sum();
+    }
+
+    public long getTimedOutCount() {
+        return timedOutCount.sum();
+    }
+
+    public long getCancelledCount() {
+        return cancelledCount.sum();
+    }
+
+    public long getRescheduledCount() {
+        return rescheduledCount.sum();
+    }
+
+    public long getPendingCount() {
+        return scheduledCount.sum() - timedOutCount.sum() - cancelledCount.sum();
+    }
+
+    /**
+     * Schedules task to run after delay milliseconds.
+     * @return a Timeout that can be used to cancel the task.
+     */
+    public Timeout schedule(long delay, Runnable task) {
+        checkShutdown();
+        scheduledCount.increment();
+        return enqueue(delay, task);
+    }
+
+    /**
+     * Replaces a pending timeout with one that runs the same task after delay milliseconds.  The replaced timeout
+     * is counted as rescheduled rather than cancelled, and the pending count is unchanged.
+     * @return the new Timeout or null if timeout has already expired or been cancelled.
+     */
+    public Timeout reschedule(Timeout timeout, long delay) {
+        if (timeout.service != this)
+            throw new IllegalArgumentException("Timeout was not scheduled by TimeoutService " + name);
+        checkShutdown();
+        if (!Timeout.STATE.compareAndSet(timeout, Timeout.PENDING, Timeout.CANCELLED))
+            return null;
+        cancelled.add(timeout);
+        rescheduledCount.increment();
+        return enqueue(delay, timeout.task);
+    }
+
+    private void checkShutdown() {
+        if (shutdown)
+            throw new IllegalStateException("TimeoutService " + name + " is shut down");
+    }
+
+    private Timeout enqueue(long delay, Runnable task) {
+        start();
+        Timeout timeout = new Timeout(this, task, System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(delay, 0L)));
+        added.add(timeout);
+        if (idle)
+            LockSupport.unpark(worker);
+        return timeout;
+    }
+
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (worker != null)
+            worker.interrupt();
+    }
+
+    private void start() {
+        if (worker != null)
+            return;
+        synchronized (this) {
+            if (worker != null)
+                return;
+            startTime = System.nanoTime();
+            Thread thread = new Thread(this::run, "TimeoutService-" + name);
+            thread.setDaemon(true);
+            worker = thread;
+            thread.start();
+        }
+    }
+
+    @SuppressWarnings("squid:S1181")
+    private void run() {
+        while (!shutdown) {
+            if (size == 0 && added.isEmpty()) {
+                park();
+                continue;
+            }
+
+            long now = waitForNextTick();
+            if (now < 0)
+                break;
+            removeCancelled();
+            transferAdded();
+            wheel[(int) (tick & mask)].expire(now);
+            tick++;
+        }
+    }
+
+    // parks until something is scheduled.  Since the wheel is empty, the tick can jump to the current time.
+    private void park() {
+        idle = true;
+        if (added.isEmpty())
+            LockSupport.parkNanos(this, TimeUnit.SECONDS.toNanos(1));
+        idle = false;
+        removeCancelled();
+        if (size == 0)
+            tick = (System.nanoTime() - startTime) / tickNanos;
+    }
+
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long current = System.nanoTime() - startTime;
+            long sleep = (deadline - current + 999999L) / 1000000L;
+            if (sleep <= 0)
+                return current;
+            try {
+                Thread.sleep(sleep);
+            } catch (InterruptedException e) {
+                if (shutdown)
+                    return -1L;
+            }
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state != Timeout.PENDING)  // cancelled before it made into the wheel
+                continue;
+            long ticks = timeout.deadline / tickNanos;
+            timeout.rounds = (ticks - tick) / wheel.length;
+            wheel[(int) (Math.max(ticks, tick) & mask)].add(timeout);
+            size++;
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+                size--;
+            }
+        }
+    }
+
+    private void expired(Timeout timeout) {
+        timedOutCount.increment();
+        try {
+            timeout.task.run();
+        } catch (Throwable th) {
+            logger.warn("Unexpected exception in TimeoutService " + name + " running timeout task", th);
+        }
+    }
+
+    public static class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimeoutService service;
+        private final Runnable task;
+        private final long deadline;  // nanos relative to service start time
+        private volatile int state = PENDING;
+        private long rounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        Timeout(TimeoutService service, Runnable task, long deadline) {
+            this.service = service;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout.
+         * @return false if the timeout has already expired or been cancelled.
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED))
+                return false;
+            service.cancelledCount.increment();
+            service.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        boolean expire() {
+            return STATE.compareAndSet(this, PENDING, EXPIRED);
+        }
+    }
+
+    // doubly linked list so that cancelled entries can be removed in O(1).  Only accessed by the worker thread.
+    private class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire(long now) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.rounds <= 0 && timeout.deadline <= now) {
+                    remove(timeout);
+                    size--;
+                    if (timeout.expire())
+                        expired(timeout);
+                } else if (timeout.rounds > 0) {
+                    timeout.rounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this)
+                return;
+            if (timeout.prev != null)
+                timeout.prev.next = timeout.next;
+            else
+                head = timeout.next;
+            if (timeout.next != null)
+                timeout.next.prev = timeout.prev;
+            else
+                tail = timeout.prev;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -22,6 +22,8 @@ import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 /**
  * Created by futeh.
@@ -66,6 +68,40 @@ public class ReflectionTest {
         assertTrue(z.getTypes().get(0) == Z1.Type.a);
     }
 
+    @Test
+    public void copier() {
+        Z z = new Z();
+        z.setType(Z.Type.b);
+        Z copy = Copier.of(Z.class).copy(new Z(), z);
+        assertFalse(Copier.of(Z.class).isFallback());
+        assertTrue(copy.getType() == Z.Type.b);
+
+        X1 x = new X1();
+        x.getTypes().add(X1.Type.a);
+        X1 copy2 = Copier.of(X1.class).copy(new X1(), x);
+        assertTrue(Copier.of(X1.class).isFallback());
+        assertTrue(copy2.getTypes().get(0) == X1.Type.a);
+        assertTrue(copy2.getTypes() != x.getTypes());
+
+        N n = new N();
+        n.setAmount(5);
+        N copy3 = Copier.of(N.class).copy(new N(), n);
+        assertTrue(Copier.of(N.class).isFallback());
+        assertEquals(5, copy3.getAmount().intValue());
+    }
+
+    public static class N {
+        private Integer amount;
+
+        public Number getAmount() {
+            return amount;
+        }
+
+        public void setAmount(Integer amount) {
+            this.amount = amount;
+        }
+    }
+
     public static class X {
         enum Type {
             a, b
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.common.util.concurrent;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("squid:S2925")
+public class TimeoutServiceTest {
+
+    @Test
+    void timeout() throws Exception {
+        TimeoutService service = new TimeoutService("test", 10L, 64);
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            long start = System.currentTimeMillis();
+            long[] elapsed = new long[1];
+            TimeoutService.Timeout timeout = service.schedule(200L, () -> {
+                elapsed[0] = System.currentTimeMillis() - start;
+                latch.countDown();
+            });
+            assertTrue(latch.await(2, TimeUnit.SECONDS));
+            assertTrue(timeout.isExpired());
+            assertFalse(timeout.cancel());
+            assertTrue(elapsed[0] >= 190L, "expired after " + elapsed[0] + "ms");
+            assertEquals(1, service.getTimedOutCount());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void cancel() throws Exception {
+        TimeoutService service = new TimeoutService("test", 10L, 64);
+        try {
+            AtomicInteger fired = new AtomicInteger();
+            List<TimeoutService.Timeout> list = new ArrayList<>();
+            for (int i = 0; i < 10000; i++)
+                list.add(service.schedule(50L + i % 1000, fired::incrementAndGet));  // spans several rounds
+            for (int i = 0; i < list.size(); i += 2)
+                assertTrue(list.get(i).cancel());
+            assertFalse(list.get(0).cancel());
+
+            Thread.sleep(1500L);
+            assertEquals(5000, fired.get());
+            assertEquals(5000, service.getTimedOutCount());
+            assertEquals(5000, service.getCancelledCount());
+            assertEquals(0, service.getPendingCount());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void reschedule() throws Exception {
+        TimeoutService service = new TimeoutService("test", 10L, 64);
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            long start = System.currentTimeMillis();
+            TimeoutService.Timeout timeout = service.schedule(100L, latch::countDown);
+            TimeoutService.Timeout replacement = service.reschedule(timeout, 300L);
+            assertNotNull(replacement);
+            assertTrue(timeout.isCancelled());
+            assertNull(service.reschedule(timeout, 300L));
+            assertEquals(1, service.getPendingCount());
+
+            assertTrue(latch.await(2, TimeUnit.SECONDS));
+            assertTrue(System.currentTimeMillis() - start >= 290L);
+            assertTrue(replacement.isExpired());
+            assertEquals(1, service.getScheduledCount());
+            assertEquals(1, service.getRescheduledCount());
+            assertEquals(0, service.getCancelledCount());
+            assertEquals(0, service.getPendingCount());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void idle() throws Exception {
+        TimeoutService service = new TimeoutService("test", 10L, 64);
+        try {
+            CountDownLatch first = new CountDownLatch(1);
+            service.schedule(10L, first::countDown);
+            assertTrue(first.await(1, TimeUnit.SECONDS));
+            Thread.sleep(300L); // worker parks
+
+            CountDownLatch second = new CountDownLatch(1);
+            long start = System.currentTimeMillis();
+            service.schedule(100L, second::countDown);
+            assertTrue(second.await(1, TimeUnit.SECONDS));
+            assertTrue(System.currentTimeMillis() - start >= 90L);
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    @Disabled("benchmark")
+    void benchmark() throws Exception {
+        TimeoutService service = new TimeoutService("benchmark");
+        int threads = 8;
+        int count = 200000;
+        try {
+            Thread[] workers = new Thread[threads];
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                workers[t] = new Thread(() -> {
+                    for (int i = 0; i < count; i++)
+                        service.schedule(60000L, () -> {}).cancel();  // typical unit of work commits in time
+                });
+                workers[t].start();
+            }
+            for (Thread worker : workers)
+                worker.join();
+            long elapsed = System.nanoTime() - start;
+            System.out.println("schedule and cancel: " + elapsed / (threads * count) + "ns per unit of work");
+            assertEquals((long) threads * count, service.getCancelledCount());
+        } finally {
+            service.shutdown();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.hibernate;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JDBC batch sizes actually achieved by Hibernate, as opposed to the configured batch size.  Batches are cut short
+ * whenever Hibernate switches to a different statement, e.g. an insert into another table when inserts are not
+ * ordered, or when the unit of work is flushed.
+ */
+public class BatchStatistics {
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder fullBatches = new LongAdder();
+    private final AtomicInteger maxBatchSize = new AtomicInteger();
+
+    void record(int size, int configuredSize) {
+        if (size <= 0)
+            return;
+        batches.increment();
+        rows.add(size);
+        if (size >= configuredSize)
+            fullBatches.increment();
+        int max = maxBatchSize.get();
+        while (size > max && !maxBatchSize.compareAndSet(max, size))
+            max = maxBatchSize.get();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    /**
+     * Number of batches that reached the configured batch size.
+     */
+    public long getFullBatches() {
+        return fullBatches.sum();
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : (double) rows.sum() / count;
+    }
+
+    public void reset() {
+        batches.reset();
+        rows.reset();
+        fullBatches.reset();
+        maxBatchSize.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("batches=%d rows=%d full=%d max=%d avg=%.1f",
+                getBatches(), getRows(), getFullBatches(), getMaxBatchSize(), getAverageBatchSize());
+    }
+}
@@ -21,8 +21,11 @@ import net.e6tech.elements.common.logging.Logger;
 import net.e6tech.elements.common.resources.InstanceNotFoundException;
 import net.e6tech.elements.common.resources.Resources;
 import net.e6tech.elements.common.serialization.ObjectReference;
+import net.e6tech.elements.common.subscribe.Notice;
 import net.e6tech.elements.common.util.InitialContextFactory;
 import net.e6tech.elements.persist.*;
+import org.hibernate.cfg.Environment;
+import org.hibernate.engine.jdbc.batch.internal.BatchBuilderInitiator;
 import org.hibernate.id.IdentifierGenerator;
 import org.hibernate.internal.SessionImpl;
 import org.hibernate.jpa.AvailableSettings;
@@ -32,8 +35,10 @@ import javax.naming.Context;
 import javax.persistence.Cache;
 import javax.persistence.EntityManager;
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by futeh.
@@ -46,6 +51,16 @@ public class HibernateEntityManagerProvider extends EntityManagerProvider {
 
     private net.e6tech.elements.common.interceptor.Interceptor interceptor = new net.e6tech.elements.common.interceptor.Interceptor();
 
+    private int evictRegionThreshold = 100;
+
+    private Boolean orderInserts;
+
+    private Boolean orderUpdates;
+
+    private Boolean batchVersionedData;
+
+    private BatchStatistics batchStatistics = new BatchStatistics();
+
     @SuppressWarnings("unchecked")
     @Override
     public void initialize(Resources resources) {
@@ -68,9 +83,71 @@ public class HibernateEntityManagerProvider extends EntityManagerProvider {
             getPersistenceProperties().put(AvailableSettings.IDENTIFIER_GENERATOR_STRATEGY_PROVIDER,
                     (IdentifierGeneratorStrategyProvider)() -> strategies);
         }
+
+        // batch writes, settings not configured here are left to the persistence unit.
+        if (getPersistenceProperties() == null)
+            setPersistenceProperties(new HashMap<>());
+        Map properties = getPersistenceProperties();
+        if (getBatchSize() > 0)
+            properties.put(Environment.STATEMENT_BATCH_SIZE, Integer.toString(getBatchSize()));
+        if (orderInserts != null)
+            properties.put(Environment.ORDER_INSERTS, orderInserts.toString());
+        if (orderUpdates != null)
+            properties.put(Environment.ORDER_UPDATES, orderUpdates.toString());
+        if (batchVersionedData != null)
+            properties.put(Environment.BATCH_VERSIONED_DATA, batchVersionedData.toString());
+        properties.putIfAbsent(BatchBuilderInitiator.BUILDER, new RecordingBatchBuilder(batchStatistics));
+
         super.initialize(resources);
     }
 
+    public int getEvictRegionThreshold() {
+        return evictRegionThreshold;
+    }
+
+    /**
+     * When a batched eviction carries more ids than this threshold for an entity type, the whole entity region
+     * is evicted instead of the individual entries.
+     */
+    public void setEvictRegionThreshold(int evictRegionThreshold) {
+        this.evictRegionThreshold = evictRegionThreshold;
+    }
+
+    public Boolean getOrderInserts() {
+        return orderInserts;
+    }
+
+    /**
+     * Sorts inserts by entity type so that consecutive inserts into the same table end up in the same JDBC batch.
+     */
+    public void setOrderInserts(Boolean orderInserts) {
+        this.orderInserts = orderInserts;
+    }
+
+    public Boolean getOrderUpdates() {
+        return orderUpdates;
+    }
+
+    public void setOrderUpdates(Boolean orderUpdates) {
+        this.orderUpdates = orderUpdates;
+    }
+
+    public Boolean getBatchVersionedData() {
+        return batchVersionedData;
+    }
+
+    /**
+     * Allows updates of versioned entities to be batched.  The JDBC driver must return correct row counts for
+     * batched statements, otherwise optimistic lock failures go undetected.
+     */
+    public void setBatchVersionedData(Boolean batchVersionedData) {
+        this.batchVersionedData = batchVersionedData;
+    }
+
+    public BatchStatistics getBatchStatistics() {
+        return batchStatistics;
+    }
+
     public HibernateEntityManagerProvider register(String strategy, IdentifierGenerator generator) {
         identifierGenerators.put(strategy, generator);
         return this;
@@ -102,12 +179,40 @@ public class HibernateEntityManagerProvider extends EntityManagerProvider {
         }
     }
 
+    @Override
+    protected void evictBatch(EvictBatch batch) {
+        Cache cache = emf.getCache();
+        org.hibernate.Cache hibernateCache = cache.unwrap(org.hibernate.Cache.class);
+        for (Map.Entry<String, Set<Serializable>> entry : batch.getEntities().entrySet()) {
+            try {
+                Class cls = getClass().getClassLoader().loadClass(entry.getKey());
+                if (entry.getValue().size() > evictRegionThreshold) {
+                    hibernateCache.evictEntityData(cls);
+                } else {
+                    for (Serializable id : entry.getValue())
+                        hibernateCache.evictEntityData(cls, id);
+                }
+            } catch (ClassNotFoundException e) {
+                logger.warn(e.getMessage(), e);
+            }
+        }
+
+        for (String role : batch.getCollectionRoles())
+            hibernateCache.evictCollectionData(role);
+
+        // written on another node, invalidates query results cached here.
+        for (String table : batch.getTables())
+            TableVersions.shared().bump(table);
+    }
+
     @Override
     protected void onOpen(Resources resources, String alias, EntityManagerConfig config) {
         super.onOpen(resources, alias, config);
         EntityManager em = resources.getMapVariable(EntityManager.class).get(alias);
         SessionImpl session = (SessionImpl) em.getDelegate();
         resources.getMapVariable(SessionImpl.class).put(alias, session);
+        if (config.batchSize() > 0)
+            session.setJdbcBatchSize(config.batchSize());
 
         // cannot call resources.inject(interceptor), resources is not fully open yet
         if (session.getInterceptor() instanceof PersistenceInterceptor) {
@@ -115,6 +220,8 @@ public class HibernateEntityManagerProvider extends EntityManagerProvider {
             i.setResources(resources);
             if (i instanceof Interceptor) {
                ((Interceptor) i).setSessionFactory(session.getSessionFactory());
+               // evictions are only collected when there is somewhere to publish them.
+               ((Interceptor) i).setNotificationCenter(resources.getNotificationCenter());
             }
         }
     }
@@ -126,6 +233,12 @@ public class HibernateEntityManagerProvider extends EntityManagerProvider {
             SessionImpl session = getSessionImpl(resources, alias);
             if (session.getInterceptor() instanceof PersistenceInterceptor) {
                 PersistenceInterceptor i = (PersistenceInterceptor) session.getInterceptor();
+                if (i instanceof Interceptor) {
+                    // flush happens during commit so evictions can only be collected here, they are published in afterCommit.
+                    EvictBatch batch = ((Interceptor) i).drainEvictions();
+                    if (batch != null && !batch.isEmpty())
+                        resources.getMapVariable(EvictBatch.class).put(alias, batch);
+                }
                 i.cleanup(resources);
             }
         } catch (InstanceNotFoundException ex) {
@@ -133,6 +246,20 @@ public class HibernateEntityManagerProvider extends EntityManagerProvider {
         }
     }
 
+    @Override
+    protected void afterCommit(Resources resources, String alias) {
+        super.afterCommit(resources, alias);
+        EvictBatch batch = resources.getMapVariable(EvictBatch.class).remove(alias);
+        if (batch != null)
+            resources.getNotificationCenter().publish(new Notice<>(EvictBatch.class, batch, true));
+    }
+
+    @Override
+    protected void afterAbort(Resources resources, String alias) {
+        super.afterAbort(resources, alias);
+        resources.getMapVariable(EvictBatch.class).remove(alias);
+    }
+
     @Override
     public void cancelQuery(Resources resources, String alias) {
         super.cancelQuery(resources, alias);
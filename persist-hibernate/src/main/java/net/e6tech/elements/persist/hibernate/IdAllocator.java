@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.hibernate;
+
+import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.common.util.concurrent.ThreadPool;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Hands out ids from blocks reserved in the sequence table.  Blocks are held per stripe so that concurrent inserts
+ * rarely contend on the same lock; a stripe reserves its next block in the background once the current one falls
+ * below the low water mark; and the size of a block, a multiple of the increment size, follows the rate at which
+ * the stripe uses ids so that a busy stripe goes to the table about once every targetBlockTime milliseconds.
+ * Ids are unique but, across stripes, not in insertion order.  Unused ids of reserved blocks are lost on shutdown,
+ * as with any hi/lo scheme.
+ */
+public class IdAllocator {
+    private static Logger logger = Logger.getLogger();
+    private static final ThreadPool prefetchPool = ThreadPool.cachedThreadPool("IdAllocator");
+
+    private final Stripe[] stripes;
+    private final long incrementSize;
+    private final int maxIncrements;
+    private final long targetBlockTime;
+    private final double lowWaterMark;
+    private final LongAdder reservations = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+
+    /**
+     * @param stripes number of independent blocks
+     * @param incrementSize table value increment, blocks are multiples of it
+     * @param maxIncrements upper bound of a block, in increments
+     * @param targetBlockTime in milliseconds, how long a block should last
+     * @param lowWaterMark fraction of a block remaining when the next block is prefetched, 0 disables prefetch.
+     */
+    public IdAllocator(int stripes, long incrementSize, int maxIncrements, long targetBlockTime, double lowWaterMark) {
+        this.stripes = new Stripe[Math.max(1, stripes)];
+        for (int i = 0; i < this.stripes.length; i++)
+            this.stripes[i] = new Stripe();
+        this.incrementSize = incrementSize;
+        this.maxIncrements = Math.max(1, maxIncrements);
+        this.targetBlockTime = targetBlockTime;
+        this.lowWaterMark = lowWaterMark;
+    }
+
+    public long getReservations() {
+        return reservations.sum();
+    }
+
+    /**
+     * @return number of times a thread had to wait for the table, i.e. its stripe ran out before a prefetch completed
+     * or no prefetch was possible.
+     */
+    public long getWaits() {
+        return waits.sum();
+    }
+
+    /**
+     * @param reserve reserves the given number of ids in the calling thread and returns the first one.
+     * @param prefetch same as reserve but safe to run in another thread, may be null.
+     * @return next id
+     */
+    public long next(LongUnaryOperator reserve, LongUnaryOperator prefetch) {
+        Stripe stripe = stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+        synchronized (stripe) {
+            if (stripe.next >= stripe.end)
+                refill(stripe, reserve);
+            long id = stripe.next++;
+            if (prefetch != null && stripe.prefetch == null && lowWaterMark > 0
+                    && stripe.end - stripe.next <= (long) ((stripe.end - stripe.start) * lowWaterMark)) {
+                long amount = incrementSize * stripe.increments;
+                stripe.prefetch = CompletableFuture.supplyAsync(() -> reserve(prefetch, amount), prefetchPool);
+            }
+            return id;
+        }
+    }
+
+    private void refill(Stripe stripe, LongUnaryOperator reserve) {
+        long now = System.currentTimeMillis();
+        if (stripe.end > stripe.start) {
+            long elapsed = now - stripe.startTime;
+            if (elapsed < targetBlockTime / 2 && stripe.increments < maxIncrements)
+                stripe.increments = Math.min(maxIncrements, stripe.increments * 2);
+            else if (elapsed > targetBlockTime * 2 && stripe.increments > 1)
+                stripe.increments = Math.max(1, stripe.increments / 2);
+        }
+
+        long[] block = null;
+        if (stripe.prefetch != null) {
+            if (!stripe.prefetch.isDone())
+                waits.increment();
+            try {
+                block = stripe.prefetch.join();
+            } catch (RuntimeException ex) {
+                logger.warn("Unable to prefetch ids, reserving synchronously", ex);
+            }
+            stripe.prefetch = null;
+        } else {
+            waits.increment();
+        }
+
+        if (block == null)
+            block = reserve(reserve, incrementSize * stripe.increments);
+        stripe.start = block[0];
+        stripe.next = block[0];
+        stripe.end = block[0] + block[1];
+        stripe.startTime = now;
+    }
+
+    private long[] reserve(LongUnaryOperator reserve, long amount) {
+        long first = reserve.applyAsLong(amount);
+        reservations.increment();
+        return new long[] {first, amount};
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("IdAllocator stripes=").append(stripes.length)
+                .append(" reservations=").append(getReservations())
+                .append(" waits=").append(getWaits())
+                .append(" increments=[");
+        for (int i = 0; i < stripes.length; i++) {
+            if (i > 0)
+                builder.append(',');
+            builder.append(stripes[i].increments);
+        }
+        return builder.append(']').toString();
+    }
+
+    private static class Stripe {
+        long start;
+        long next;
+        long end;
+        long startTime;
+        int increments = 1;
+        CompletableFuture<long[]> prefetch;
+    }
+}
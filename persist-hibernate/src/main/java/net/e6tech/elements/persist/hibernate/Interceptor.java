@@ -19,22 +19,23 @@ import net.e6tech.elements.common.inject.Inject;
 import net.e6tech.elements.common.notification.NotificationCenter;
 import net.e6tech.elements.common.resources.PersistenceListener;
 import net.e6tech.elements.common.resources.Resources;
-import net.e6tech.elements.common.serialization.ObjectReference;
-import net.e6tech.elements.common.subscribe.Notice;
 import net.e6tech.elements.common.util.SystemException;
-import net.e6tech.elements.persist.EvictCollectionRegion;
-import net.e6tech.elements.persist.EvictEntity;
+import net.e6tech.elements.persist.EvictBatch;
 import net.e6tech.elements.persist.PersistenceInterceptor;
+import net.e6tech.elements.persist.TableVersions;
 import net.e6tech.elements.persist.Watcher;
 import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
 import org.hibernate.collection.spi.PersistentCollection;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.type.Type;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 
 /**
@@ -47,6 +48,10 @@ public class Interceptor extends EmptyInterceptor implements PersistenceIntercep
     private transient Resources resources;
     private transient SessionFactoryImplementor sessionFactory;
     private transient NotificationCenter notificationCenter;
+    // invalidations for the current unit of work, published by HibernateEntityManagerProvider after commit.
+    private transient EvictBatch evictions;
+    // entity types written by the current unit of work, their TableVersions are released when the transaction completes.
+    private transient Set<String> tables;
 
     public Resources getResources() {
         return resources;
@@ -76,12 +81,41 @@ public class Interceptor extends EmptyInterceptor implements PersistenceIntercep
         this.notificationCenter = notificationCenter;
     }
 
+    /**
+     * Returns the cache invalidations collected so far and starts a new batch.
+     * @return collected invalidations or null if there are none.
+     */
+    public EvictBatch drainEvictions() {
+        EvictBatch batch = evictions;
+        evictions = null;
+        return batch;
+    }
+
     public void cleanup(Resources resources) {
+        releaseTables();
+        this.evictions = null;
         this.resources = null;
         this.sessionFactory = null;
         this.notificationCenter = null;
     }
 
+    /**
+     * Releases the TableVersions of the entity types written by the transaction.  Hibernate calls this on both
+     * commit and rollback, regardless of who opened the session.
+     */
+    @Override
+    public void afterTransactionCompletion(Transaction tx) {
+        releaseTables();
+    }
+
+    private void releaseTables() {
+        if (tables == null)
+            return;
+        for (String table : tables)
+            TableVersions.shared().end(table);
+        tables = null;
+    }
+
     @Override
     public boolean onFlushDirty(
             Object entity,
@@ -98,9 +132,22 @@ public class Interceptor extends EmptyInterceptor implements PersistenceIntercep
             modified = ((PersistenceListener) entity).onFlush(id, currentState, previousState, propertyNames);
             Watcher.addGracePeriod(System.currentTimeMillis() - start);
         }
+
+        publishEntityChanged(entity, id);
+
         return modified;
     }
 
+    @Override
+    public void onDelete(
+            Object entity,
+            Serializable id,
+            Object[] state,
+            String[] propertyNames,
+            Type[] types) {
+        publishEntityChanged(entity, id);
+    }
+
 
     @Override
     public boolean onLoad(
@@ -191,6 +238,8 @@ public class Interceptor extends EmptyInterceptor implements PersistenceIntercep
 
     @SuppressWarnings("squid:CommentedOutCodeLine")
     protected void publishCollectionChanged(Object collection) {
+        if (collection instanceof PersistentCollection && ((PersistentCollection) collection).getOwner() != null)
+            tableChanged(((PersistentCollection) collection).getOwner().getClass());
 
         if (notificationCenter != null && collection instanceof PersistentCollection) {
             PersistentCollection coll = (PersistentCollection) collection;
@@ -204,25 +253,39 @@ public class Interceptor extends EmptyInterceptor implements PersistenceIntercep
             Cache cache = em.unwrap(Session.class).getSessionFactory().getCache();
             boolean cached = cache.containsCollection(coll.getRole(), key);
             */
-            if (cached) {
-                // publisher.publish(EntityManagerProvider.CACHE_EVICT_COLLECTION_REGION, coll.getRole());
-                // center.fireNotification(new EvictCollectionRegion(coll.getRole()));
-                notificationCenter.publish(new Notice<>(EvictCollectionRegion.class, new EvictCollectionRegion(coll.getRole()), true));
-            }
+            if (cached)
+                evictions().addCollectionRole(coll.getRole());
         }
     }
 
-    @SuppressWarnings("squid:CommentedOutCodeLine")
     protected void publishEntityChanged(Object entity, Serializable key) {
+        tableChanged(entity.getClass());
         boolean cached = false;
         if (notificationCenter != null) {
             if (sessionFactory != null) {
                 cached = sessionFactory.getMetamodel().locateEntityPersister(entity.getClass()).canWriteToCache();
             }
-            if (cached) {
-                // center.fireNotification(new EvictEntity(this, new ObjectReference(entity.getClass(), key)));
-                notificationCenter.publish(new Notice<>(EvictEntity.class.getName(), new EvictEntity(new ObjectReference(entity.getClass(), key)), true));
+            if (cached)
+                evictions().addEntity(entity.getClass().getName(), key);
+        }
+    }
+
+    // queries against a superclass include rows of its subclasses.
+    protected void tableChanged(Class entityClass) {
+        for (Class cls = entityClass; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+            if (tables == null)
+                tables = new HashSet<>();
+            if (tables.add(cls.getName())) {
+                TableVersions.shared().begin(cls.getName());
+                if (notificationCenter != null)
+                    evictions().addTable(cls.getName());
             }
         }
     }
+
+    private EvictBatch evictions() {
+        if (evictions == null)
+            evictions = new EvictBatch();
+        return evictions;
+    }
 }
@@ -26,11 +26,13 @@ import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.dialect.Dialect;
 import org.hibernate.engine.config.spi.ConfigurationService;
 import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
 import org.hibernate.engine.jdbc.env.spi.JdbcEnvironment;
 import org.hibernate.engine.jdbc.internal.FormatStyle;
 import org.hibernate.engine.jdbc.spi.JdbcServices;
 import org.hibernate.engine.jdbc.spi.SqlStatementLogger;
 import org.hibernate.engine.spi.SessionEventListenerManager;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.engine.spi.SharedSessionContractImplementor;
 import org.hibernate.id.*;
 import org.hibernate.id.enhanced.*;
@@ -249,6 +251,7 @@ public class ModifiedTableGenerator implements PersistentIdentifierGenerator, Co
 
 	private Optimizer optimizer;
 	private long accessCount;
+	private IdAllocator allocator;
 
 	@Override
 	public Object generatorKey() {
@@ -356,6 +359,13 @@ public class ModifiedTableGenerator implements PersistentIdentifierGenerator, Co
 		return accessCount;
 	}
 
+	/**
+	 * @return the striped block allocator, or null if ids are generated through the optimizer.
+	 */
+	public final IdAllocator getAllocator() {
+		return allocator;
+	}
+
 	@Override
 	public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
 		storeLastUsedValue = serviceRegistry.getService( ConfigurationService.class )
@@ -386,6 +396,18 @@ public class ModifiedTableGenerator implements PersistentIdentifierGenerator, Co
 				incrementSize,
 				optimizerInitialValue
 		);
+		allocator = createAllocator( params );
+	}
+
+	/**
+	 * Returns an IdAllocator to hand out ids from striped blocks instead of the optimizer, or null.
+	 * Called at the end of {@link #configure configuration}.
+	 *
+	 * @param params The params supplied in the generator config (plus some standard useful extras).
+	 * @return allocator or null
+	 */
+	protected IdAllocator createAllocator(Properties params) {
+		return null;
 	}
 
 	/**
@@ -567,6 +589,17 @@ public class ModifiedTableGenerator implements PersistentIdentifierGenerator, Co
 				.getSqlStatementLogger();
 		final SessionEventListenerManager statsCollector = session.getEventListenerManager();
 
+		if ( allocator != null ) {
+			final SessionFactoryImplementor factory = session.getFactory();
+			final long id = allocator.next(
+					amount -> reserve( session, amount, statementLogger, statsCollector ),
+					session.getTenantIdentifier() == null ? amount -> reserve( factory, amount, statementLogger ) : null
+			);
+			final IntegralDataTypeHolder value = makeValue();
+			value.initialize( id );
+			return value.makeValue();
+		}
+
 		return optimizer.generate(
 				new AccessCallback() {
 					@Override
@@ -575,90 +608,7 @@ public class ModifiedTableGenerator implements PersistentIdentifierGenerator, Co
 								new AbstractReturningWork<IntegralDataTypeHolder>() {
 									@Override
 									public IntegralDataTypeHolder execute(Connection connection) throws SQLException {
-										final IntegralDataTypeHolder value = makeValue();
-										int rows;
-										do {
-
-											try (PreparedStatement selectPS = prepareStatement(
-													connection,
-													selectQuery,
-													statementLogger,
-													statsCollector
-											)) {
-												selectPS.setString( 1, segmentValue );
-												final ResultSet selectRS = executeQuery( selectPS, statsCollector );
-												if ( !selectRS.next() ) {
-													long initializationValue;
-													if ( storeLastUsedValue ) {
-														initializationValue = initialValue - 1;
-													}
-													else {
-														initializationValue = initialValue;
-													}
-													value.initialize( initializationValue );
-
-													try (PreparedStatement insertPS = prepareStatement(
-															connection,
-															insertQuery,
-															statementLogger,
-															statsCollector
-													)) {
-														LOG.tracef( "binding parameter [%s] - [%s]", 1, segmentValue );
-														insertPS.setString( 1, segmentValue );
-														value.bind( insertPS, 2 );
-														executeUpdate( insertPS, statsCollector );
-													}
-												}
-												else {
-													int defaultValue;
-													if ( storeLastUsedValue ) {
-														defaultValue = 0;
-													}
-													else {
-														defaultValue = 1;
-													}
-													value.initialize( selectRS, defaultValue );
-												}
-												selectRS.close();
-											}
-											catch (SQLException e) {
-												LOG.unableToReadOrInitHiValue( e );
-												throw e;
-											}
-
-
-											try (PreparedStatement updatePS = prepareStatement(
-													connection,
-													updateQuery,
-													statementLogger,
-													statsCollector
-											)) {
-												final IntegralDataTypeHolder updateValue = value.copy();
-												if ( optimizer.applyIncrementSizeToSourceValues() ) {
-													updateValue.add( incrementSize );
-												}
-												else {
-													updateValue.increment();
-												}
-												updateValue.bind( updatePS, 1 );
-												value.bind( updatePS, 2 );
-												updatePS.setString( 3, segmentValue );
-												rows = executeUpdate( updatePS, statsCollector );
-											}
-											catch (SQLException e) {
-												LOG.unableToUpdateQueryHiValue( renderedTableName, e );
-												throw e;
-											}
-										}
-										while ( rows == 0 );
-
-										accessCount++;
-										if ( storeLastUsedValue ) {
-											return value.increment();
-										}
-										else {
-											return value;
-										}
+										return nextValue( connection, incrementSize, statementLogger, statsCollector );
 									}
 								},
 								true
@@ -673,12 +623,167 @@ public class ModifiedTableGenerator implements PersistentIdentifierGenerator, Co
 		);
 	}
 
+	/**
+	 * Reserves amount ids in an isolated transaction of the session.
+	 *
+	 * @return the first reserved id
+	 */
+	protected long reserve(SharedSessionContractImplementor session, long amount, SqlStatementLogger statementLogger,
+						   SessionEventListenerManager statsCollector) {
+		return session.getTransactionCoordinator().createIsolationDelegate().delegateWork(
+				new AbstractReturningWork<Long>() {
+					@Override
+					public Long execute(Connection connection) throws SQLException {
+						return nextValue( connection, amount, statementLogger, statsCollector ).makeValue().longValue();
+					}
+				},
+				true
+		);
+	}
+
+	/**
+	 * Reserves amount ids using a connection of its own so that it can run outside of a session, e.g. to prefetch
+	 * the next block in the background.
+	 *
+	 * @return the first reserved id
+	 */
+	protected long reserve(SessionFactoryImplementor factory, long amount, SqlStatementLogger statementLogger) {
+		final ConnectionProvider provider = factory.getServiceRegistry().getService( ConnectionProvider.class );
+		if ( provider == null ) {
+			throw new HibernateException( "No ConnectionProvider to reserve ids from " + renderedTableName );
+		}
+		Connection connection = null;
+		boolean autoCommit = true;
+		try {
+			connection = provider.getConnection();
+			autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit( false );
+			try {
+				final long first = nextValue( connection, amount, statementLogger, null ).makeValue().longValue();
+				connection.commit();
+				return first;
+			}
+			catch (SQLException | RuntimeException e) {
+				connection.rollback();
+				throw e;
+			}
+		}
+		catch (SQLException e) {
+			throw new HibernateException( "Unable to reserve ids from " + renderedTableName, e );
+		}
+		finally {
+			if ( connection != null ) {
+				try {
+					connection.setAutoCommit( autoCommit );
+					provider.closeConnection( connection );
+				}
+				catch (SQLException e) {
+					LOG.debug( "Unable to release connection", e );
+				}
+			}
+		}
+	}
+
+	private IntegralDataTypeHolder nextValue(
+			Connection connection,
+			long amount,
+			SqlStatementLogger statementLogger,
+			SessionEventListenerManager statsCollector) throws SQLException {
+		final IntegralDataTypeHolder value = makeValue();
+		int rows;
+		do {
+
+			try (PreparedStatement selectPS = prepareStatement(
+					connection,
+					selectQuery,
+					statementLogger,
+					statsCollector
+			)) {
+				selectPS.setString( 1, segmentValue );
+				final ResultSet selectRS = executeQuery( selectPS, statsCollector );
+				if ( !selectRS.next() ) {
+					long initializationValue;
+					if ( storeLastUsedValue ) {
+						initializationValue = initialValue - 1;
+					}
+					else {
+						initializationValue = initialValue;
+					}
+					value.initialize( initializationValue );
+
+					try (PreparedStatement insertPS = prepareStatement(
+							connection,
+							insertQuery,
+							statementLogger,
+							statsCollector
+					)) {
+						LOG.tracef( "binding parameter [%s] - [%s]", 1, segmentValue );
+						insertPS.setString( 1, segmentValue );
+						value.bind( insertPS, 2 );
+						executeUpdate( insertPS, statsCollector );
+					}
+				}
+				else {
+					int defaultValue;
+					if ( storeLastUsedValue ) {
+						defaultValue = 0;
+					}
+					else {
+						defaultValue = 1;
+					}
+					value.initialize( selectRS, defaultValue );
+				}
+				selectRS.close();
+			}
+			catch (SQLException e) {
+				LOG.unableToReadOrInitHiValue( e );
+				throw e;
+			}
+
+
+			try (PreparedStatement updatePS = prepareStatement(
+					connection,
+					updateQuery,
+					statementLogger,
+					statsCollector
+			)) {
+				final IntegralDataTypeHolder updateValue = value.copy();
+				if ( optimizer.applyIncrementSizeToSourceValues() ) {
+					updateValue.add( amount );
+				}
+				else {
+					updateValue.increment();
+				}
+				updateValue.bind( updatePS, 1 );
+				value.bind( updatePS, 2 );
+				updatePS.setString( 3, segmentValue );
+				rows = executeUpdate( updatePS, statsCollector );
+			}
+			catch (SQLException e) {
+				LOG.unableToUpdateQueryHiValue( renderedTableName, e );
+				throw e;
+			}
+		}
+		while ( rows == 0 );
+
+		accessCount++;
+		if ( storeLastUsedValue ) {
+			return value.increment();
+		}
+		else {
+			return value;
+		}
+	}
+
 	private PreparedStatement prepareStatement(
 			Connection connection,
 			String sql,
 			SqlStatementLogger statementLogger,
 			SessionEventListenerManager statsCollector) throws SQLException {
 		statementLogger.logStatement( sql, FormatStyle.BASIC.getFormatter() );
+		if ( statsCollector == null ) {
+			return connection.prepareStatement( sql );
+		}
 		try {
 			statsCollector.jdbcPrepareStatementStart();
 			return connection.prepareStatement( sql );
@@ -689,6 +794,9 @@ public class ModifiedTableGenerator implements PersistentIdentifierGenerator, Co
 	}
 
 	private int executeUpdate(PreparedStatement ps, SessionEventListenerManager statsCollector) throws SQLException {
+		if ( statsCollector == null ) {
+			return ps.executeUpdate();
+		}
 		try {
 			statsCollector.jdbcExecuteStatementStart();
 			return ps.executeUpdate();
@@ -700,6 +808,9 @@ public class ModifiedTableGenerator implements PersistentIdentifierGenerator, Co
 	}
 
 	private ResultSet executeQuery(PreparedStatement ps, SessionEventListenerManager statsCollector) throws SQLException {
+		if ( statsCollector == null ) {
+			return ps.executeQuery();
+		}
 		try {
 			statsCollector.jdbcExecuteStatementStart();
 			return ps.executeQuery();
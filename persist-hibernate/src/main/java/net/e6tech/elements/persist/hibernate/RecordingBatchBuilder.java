@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.hibernate;
+
+import org.hibernate.engine.jdbc.batch.internal.BatchBuilderImpl;
+import org.hibernate.engine.jdbc.batch.internal.BatchingBatch;
+import org.hibernate.engine.jdbc.batch.spi.Batch;
+import org.hibernate.engine.jdbc.batch.spi.BatchKey;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+
+/**
+ * Builds the same batches as Hibernate's default BatchBuilderImpl, including honoring the session's JDBC batch
+ * size, but records the size of every executed batch into BatchStatistics.
+ */
+public class RecordingBatchBuilder extends BatchBuilderImpl {
+    private final BatchStatistics statistics;
+
+    public RecordingBatchBuilder(BatchStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public Batch buildBatch(BatchKey key, JdbcCoordinator jdbcCoordinator) {
+        Integer sessionBatchSize = jdbcCoordinator.getJdbcSessionOwner().getJdbcBatchSize();
+        int batchSize = sessionBatchSize == null ? getJdbcBatchSize() : sessionBatchSize;
+        if (batchSize > 1)
+            return new RecordingBatch(key, jdbcCoordinator, batchSize, statistics);
+        return super.buildBatch(key, jdbcCoordinator);
+    }
+
+    private static class RecordingBatch extends BatchingBatch {
+        private final int batchSize;
+        private final int statementsPerRow;
+        private final BatchStatistics statistics;
+        private int added;
+
+        RecordingBatch(BatchKey key, JdbcCoordinator jdbcCoordinator, int batchSize, BatchStatistics statistics) {
+            super(key, jdbcCoordinator, batchSize);
+            this.batchSize = batchSize;
+            this.statementsPerRow = Math.max(key.getBatchedStatementCount(), 1);
+            this.statistics = statistics;
+        }
+
+        @Override
+        public void addToBatch() {
+            super.addToBatch();
+            added++;
+            if (added >= batchSize * statementsPerRow) { // BatchingBatch executes implicitly when the batch is full
+                statistics.record(batchSize, batchSize);
+                added = 0;
+            }
+        }
+
+        @Override
+        protected void doExecuteBatch() {
+            int rows = added / statementsPerRow;
+            added = 0;
+            super.doExecuteBatch();
+            statistics.record(rows, batchSize);
+        }
+
+        @Override
+        public void release() {
+            added = 0;
+            super.release();
+        }
+    }
+}
@@ -16,11 +16,14 @@
 
 package net.e6tech.elements.persist.hibernate;
 
+import net.e6tech.elements.common.logging.Logger;
 import net.e6tech.elements.common.util.SystemException;
 import org.hibernate.boot.model.naming.Identifier;
 import org.hibernate.boot.model.relational.QualifiedName;
 import org.hibernate.boot.model.relational.QualifiedNameParser;
 import org.hibernate.engine.jdbc.env.spi.JdbcEnvironment;
+import org.hibernate.id.enhanced.PooledLoOptimizer;
+import org.hibernate.id.enhanced.PooledLoThreadLocalOptimizer;
 import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
 import org.hibernate.internal.util.config.ConfigurationHelper;
 import org.hibernate.service.ServiceRegistry;
@@ -30,15 +33,29 @@ import java.util.Properties;
 
 /**
  * This class uses a table to generate primary key.
+ * Setting stripes to a positive number, either on the instance or via the stripes generator parameter, switches
+ * to IdAllocator, which reserves blocks of ids per stripe, prefetches the next block in the background and sizes
+ * blocks from the allocation rate.  The table layout and the meaning of the stored value are unchanged, so
+ * generators with and without stripes can share the same table.
  * Created by futeh.
  */
 public class TableIdGenerator extends ModifiedTableGenerator implements Cloneable {
+    public static final String STRIPES_PARAM = "stripes";
+    public static final String MAX_BLOCK_INCREMENTS_PARAM = "max_block_increments";
+    public static final String TARGET_BLOCK_TIME_PARAM = "target_block_time";
+    public static final String LOW_WATER_MARK_PARAM = "low_water_mark";
+
+    private static Logger logger = Logger.getLogger();
 
     private String defaultTableName = "sequence";
     private long defaultInitialValue = 1;
     private int defaultIncrementSize = 100;
     private String defaultOptimizer = StandardOptimizerDescriptor.POOLED_LO.getExternalName();
     private String segmentValuePrefix = "";
+    private int stripes = 0;
+    private int maxBlockIncrements = 64;
+    private long targetBlockTime = 1000L;  // in milliseconds
+    private double lowWaterMark = 0.25d;
 
     @SuppressWarnings("squid:S2975") // we really want clone!
     public TableIdGenerator clone() {
@@ -89,6 +106,38 @@ public class TableIdGenerator extends ModifiedTableGenerator implements Cloneabl
         this.segmentValuePrefix = segmentValuePrefix;
     }
 
+    public int getStripes() {
+        return stripes;
+    }
+
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
+    public int getMaxBlockIncrements() {
+        return maxBlockIncrements;
+    }
+
+    public void setMaxBlockIncrements(int maxBlockIncrements) {
+        this.maxBlockIncrements = maxBlockIncrements;
+    }
+
+    public long getTargetBlockTime() {
+        return targetBlockTime;
+    }
+
+    public void setTargetBlockTime(long targetBlockTime) {
+        this.targetBlockTime = targetBlockTime;
+    }
+
+    public double getLowWaterMark() {
+        return lowWaterMark;
+    }
+
+    public void setLowWaterMark(double lowWaterMark) {
+        this.lowWaterMark = lowWaterMark;
+    }
+
     @Override
     protected QualifiedName determineGeneratorTableName(Properties params, JdbcEnvironment jdbcEnvironment, ServiceRegistry serviceRegistry) {
         final String tableName = ConfigurationHelper.getString( TABLE_PARAM, params, defaultTableName );
@@ -142,4 +191,22 @@ public class TableIdGenerator extends ModifiedTableGenerator implements Cloneabl
         }
         super.configure(type, params, serviceRegistry);
     }
+
+    @Override
+    protected IdAllocator createAllocator(Properties params) {
+        int n = ConfigurationHelper.getInt(STRIPES_PARAM, params, stripes);
+        if (n <= 0)
+            return null;
+        if (!(getOptimizer() instanceof PooledLoOptimizer) && !(getOptimizer() instanceof PooledLoThreadLocalOptimizer)) {
+            // blocks start at the stored value, which is how pooled-lo reads it.
+            logger.warn("Striped id allocation for {} requires the pooled-lo optimizer, found {}",
+                    getSegmentValue(), getOptimizer().getClass().getSimpleName());
+            return null;
+        }
+        String lowWater = params.getProperty(LOW_WATER_MARK_PARAM);
+        return new IdAllocator(n, getIncrementSize(),
+                ConfigurationHelper.getInt(MAX_BLOCK_INCREMENTS_PARAM, params, maxBlockIncrements),
+                ConfigurationHelper.getLong(TARGET_BLOCK_TIME_PARAM, params, targetBlockTime),
+                (lowWater == null) ? lowWaterMark : Double.parseDouble(lowWater));
+    }
 }
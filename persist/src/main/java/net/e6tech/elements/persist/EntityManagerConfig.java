@@ -31,4 +31,7 @@ public @interface EntityManagerConfig {
     long timeoutExtension() default 0L;
     boolean monitor() default true;
     long longTransaction() default 0L;
+    boolean readOnly() default false;  // routes the connection to a read replica if the data source has one.
+    int batchSize() default 0;  // JDBC batch size for this unit of work, 0 means the provider's setting.
+    int flushEvery() default 0;  // flush and clear, detaching all managed entities, after every n persist calls, 0 means never.
 }
@@ -30,12 +30,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by futeh.
  */
 public class EntityManagerInvocationHandler extends Watcher<EntityManager> implements EntityManagerSupport {
     private static Set<Method> supportMethods = new HashSet<>();
+    private static Map<Method, MethodInfo> methodInfos = new ConcurrentHashMap<>();
     private static Logger logger = Logger.getLogger();
 
     private Resources resources;
@@ -46,6 +48,10 @@ public class EntityManagerInvocationHandler extends Watcher<EntityManager> imple
     private InvocationListener<Query> queryListener;
     private EntityManagerExtension proxy;
     private Map<String, Object> context = new HashMap<>();
+    private EntityTransaction transaction;
+    private EntityTransaction transactionProxy;
+    private int flushEvery;
+    private int persisted;
 
     static {
         for (Method method : EntityManagerSupport.class.getDeclaredMethods()) {
@@ -71,12 +77,24 @@ public class EntityManagerInvocationHandler extends Watcher<EntityManager> imple
         this.config = config;
         this.entityManagerListener = entityManagerListener;
         this.queryListener = queryListener;
+        if (config != null)
+            flushEvery = config.flushEvery();
+    }
 
+    private static MethodInfo methodInfo(Method method) {
+        MethodInfo info = methodInfos.get(method);
+        if (info == null) {
+            info = new MethodInfo(method);
+            methodInfos.put(method, info);
+        }
+        return info;
     }
 
     @SuppressWarnings({"unchecked", "squid:S00112"})
-    private static Object doInvoke(Class callingClass, Watcher watcher, InvocationListener listener, InvocationListener<Query> queryListener, Object proxy, Method method, Object[] args) throws Throwable {
-        long start = System.currentTimeMillis();
+    private static Object doInvoke(Class callingClass, Watcher watcher, InvocationListener listener, InvocationListener<Query> queryListener, Object proxy, Method method, MethodInfo info, Object[] args) throws Throwable {
+        boolean watching = watcher.isWatching();
+        boolean timed = watching && watcher.beginCall(method);
+        long start = timed ? System.currentTimeMillis() : 0L;
         Object ret = null;
         try {
             if (listener != null)
@@ -90,37 +108,55 @@ public class EntityManagerInvocationHandler extends Watcher<EntityManager> imple
                 listener.onException(callingClass, proxy, method, args, ex.getTargetException());
             throw ex.getCause();
         } finally {
-            if (logger.isDebugEnabled() && watcher.isMonitorTransaction()) {
-                long duration = System.currentTimeMillis() - start;
-                Class returnType = method.getReturnType();
-                if (ret != null && Query.class.isAssignableFrom(returnType)) {
+            if (watching) {
+                watcher.endCall();
+                if (ret != null && info.query) {
                     QueryInvocationHandler handler = new QueryInvocationHandler((Query) ret, queryListener);
-                    handler.listener = queryListener;
+                    handler.owner = (watcher instanceof QueryInvocationHandler) ? ((QueryInvocationHandler) watcher).owner : watcher;
                     handler.setLongTransaction(watcher.getLongTransaction());
                     handler.setIgnoreInitialLongTransactions(watcher.getIgnoreInitialLongTransactions());
-                    if (returnType.isInterface()) {
-                        ret = Proxy.newProxyInstance(watcher.getClass().getClassLoader(), new Class[] {returnType} , handler);
-                    } else {
-                        ret = Proxy.newProxyInstance(watcher.getClass().getClassLoader(), returnType.getInterfaces(), handler);
-                    }
+                    ret = Proxy.newProxyInstance(watcher.getClass().getClassLoader(), info.queryInterfaces, handler);
                 }
-                watcher.log(method, args, duration);
+                if (timed)
+                    watcher.log(method, args, System.currentTimeMillis() - start);
             }
 
-            Class returnType = method.getReturnType();
-            if (EntityTransaction.class.isAssignableFrom(returnType)) {
-                TransactionInvocationHandler handler = new TransactionInvocationHandler((EntityManagerInvocationHandler) watcher, (EntityTransaction) ret);
-                ret = Proxy.newProxyInstance(watcher.getClass().getClassLoader(), new Class[] {returnType} , handler);
-            }
+            if (info.transaction && watcher instanceof EntityManagerInvocationHandler)
+                ret = ((EntityManagerInvocationHandler) watcher).transactionProxy((EntityTransaction) ret);
         }
         return ret;
     }
 
     @Override
     public Object doInvoke(Class callingClass, Object proxy, Method method, Object[] args) throws Throwable {
-        if (supportMethods.contains(method))
+        MethodInfo info = methodInfo(method);
+        if (info.support)
             return method.invoke(this, args);
-        return doInvoke(callingClass, this, entityManagerListener, queryListener, proxy, method, args);
+        Object ret = doInvoke(callingClass, this, entityManagerListener, queryListener, proxy, method, info, args);
+        if (info.persist && flushEvery > 0 && ++persisted >= flushEvery) {
+            persisted = 0;
+            // writes out the pending inserts as JDBC batches and releases the persisted entities.
+            getTarget().flush();
+            getTarget().clear();
+        }
+        return ret;
+    }
+
+    @Override
+    protected boolean needsCallingClass() {
+        return entityManagerListener != null;
+    }
+
+    // EntityManager returns the same transaction so there is no need for a new proxy for every getTransaction call.
+    private EntityTransaction transactionProxy(EntityTransaction tx) {
+        if (tx == null)
+            return null;
+        if (tx != transaction || transactionProxy == null) {
+            transaction = tx;
+            transactionProxy = (EntityTransaction) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class[] {EntityTransaction.class}, new TransactionInvocationHandler(this, tx));
+        }
+        return transactionProxy;
     }
 
     @Override
@@ -223,6 +259,7 @@ public class EntityManagerInvocationHandler extends Watcher<EntityManager> imple
 
     public static class QueryInvocationHandler extends Watcher<Query> {
         private InvocationListener<Query> listener;
+        private Watcher owner;  // calls are recorded against the EntityManager so that its monitor can see them.
 
         public QueryInvocationHandler(Query target, InvocationListener<Query> listener) {
             super(target);
@@ -231,7 +268,48 @@ public class EntityManagerInvocationHandler extends Watcher<EntityManager> imple
 
         @Override
         public Object doInvoke(Class callingClass, Object proxy, Method method, Object[] args) throws Throwable {
-            return EntityManagerInvocationHandler.doInvoke(callingClass, this, listener, listener, proxy, method, args);
+            return EntityManagerInvocationHandler.doInvoke(callingClass, this, listener, listener, proxy, method, methodInfo(method), args);
+        }
+
+        @Override
+        protected boolean needsCallingClass() {
+            return listener != null;
+        }
+
+        @Override
+        protected boolean isWatching() {
+            return owner == null ? super.isWatching() : owner.isWatching();
+        }
+
+        @Override
+        protected boolean beginCall(Method method) {
+            return owner == null ? super.beginCall(method) : owner.beginCall(method);
+        }
+
+        @Override
+        protected void endCall() {
+            if (owner == null)
+                super.endCall();
+            else
+                owner.endCall();
+        }
+    }
+
+    // per method behavior, computed once instead of on every call.
+    private static class MethodInfo {
+        private final boolean support;
+        private final boolean query;
+        private final boolean transaction;
+        private final boolean persist;
+        private final Class[] queryInterfaces;
+
+        MethodInfo(Method method) {
+            Class returnType = method.getReturnType();
+            support = supportMethods.contains(method);
+            query = Query.class.isAssignableFrom(returnType);
+            transaction = EntityTransaction.class.isAssignableFrom(returnType);
+            persist = method.getName().equals("persist") && method.getDeclaringClass() == EntityManager.class;
+            queryInterfaces = returnType.isInterface() ? new Class[] {returnType} : returnType.getInterfaces();
         }
     }
 
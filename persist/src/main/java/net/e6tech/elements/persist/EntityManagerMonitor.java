@@ -18,8 +18,10 @@ package net.e6tech.elements.persist;
 
 import net.e6tech.elements.common.logging.Logger;
 import net.e6tech.elements.common.resources.Resources;
+import net.e6tech.elements.common.util.concurrent.TimeoutService;
 
 import javax.persistence.EntityManager;
+import java.lang.reflect.Method;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 
@@ -29,12 +31,20 @@ public class EntityManagerMonitor {
     private EntityManagerProvider provider;
     private Resources resources;
     private EntityManager entityManager;
-    private long expiration;
+    private volatile long expiration;
     private Throwable throwable;
     private Executor threadPool;
     private Thread originatingThread;
     private volatile boolean interrupted = false;
     private String alias;
+    private Watcher<?> watcher;
+    private int observedCall;
+    private long observedSince;
+    private boolean reported;
+    private TimeoutService timeoutService;
+    private volatile TimeoutService.Timeout timeout;
+    private volatile TimeoutService.Timeout check;
+    private volatile boolean cancelled = false;
 
     EntityManagerMonitor(String alias, Executor threadPool, EntityManagerProvider provider, Resources resources,
                          EntityManager entityManager, long expiration, Throwable throwable) {
@@ -54,17 +64,95 @@ public class EntityManagerMonitor {
 
     public EntityManagerMonitor expire(long exp) {
         expiration = System.currentTimeMillis() + exp;
+        reschedule();
         return this;
     }
 
     public void addExpiration(long extension) {
         expiration += extension;
+        reschedule();
+    }
+
+    // checkInterval of 0 turns off long transaction checks.
+    void schedule(TimeoutService service, long checkInterval) {
+        this.timeoutService = service;
+        timeout = service.schedule(expiration - System.currentTimeMillis(), this::expired);
+        if (checkInterval > 0)
+            scheduleCheck(checkInterval);
+    }
+
+    // a rescheduled timeout is not counted as cancelled by the TimeoutService.
+    private synchronized void reschedule() {
+        TimeoutService.Timeout t = timeout;
+        if (t == null)
+            return;
+        TimeoutService.Timeout replacement = timeoutService.reschedule(t, expiration - System.currentTimeMillis());
+        if (replacement != null)
+            timeout = replacement;
+    }
+
+    private void scheduleCheck(long interval) {
+        check = timeoutService.schedule(interval, () -> {
+            if (cancelled || !entityManager.isOpen())
+                return;
+            checkLongTransaction(System.currentTimeMillis());
+            scheduleCheck(interval);
+        });
+    }
+
+    // called by TimeoutService
+    private void expired() {
+        provider.unmonitor(this);
+        TimeoutService.Timeout c = check;
+        if (c != null)
+            c.cancel();
+        if (!cancelled && entityManager.isOpen())
+            rollback();
+    }
+
+    // Called by EntityManagerProvider on commit or abort.
+    void cancel() {
+        if (cancelled)
+            return;
+        cancelled = true;
+        TimeoutService.Timeout t = timeout;
+        if (t != null)
+            t.cancel();
+        TimeoutService.Timeout c = check;
+        if (c != null)
+            c.cancel();
+        provider.unmonitor(this);
     }
 
     public EntityManager getEntityManager() {
         return entityManager;
     }
 
+    void watch(Watcher<?> watcher) {
+        this.watcher = watcher;
+    }
+
+    // Called by the TimeoutService worker thread every check interval.  A call that is still in flight at two consecutive checks has been running
+    // for at least the time between them, so long transactions are found without timing every call.
+    void checkLongTransaction(long now) {
+        if (watcher == null)
+            return;
+        Method method = watcher.getInflight();
+        int calls = watcher.getCalls();
+        if (method == null || calls != observedCall) {
+            observedCall = calls;
+            observedSince = now;
+            reported = false;
+            return;
+        }
+
+        long duration = now - observedSince;
+        if (!reported && duration >= watcher.getLongTransaction()) {
+            reported = true;
+            watcher.logLongTransaction(method, duration, originatingThread.getStackTrace(), 0);
+        }
+    }
+
     // This method cannot throw an exception
     @SuppressWarnings("squid:S1181")
     void rollback() {
@@ -23,6 +23,8 @@ import net.e6tech.elements.common.reflection.Annotator;
 import net.e6tech.elements.common.resources.*;
 import net.e6tech.elements.common.subscribe.Broadcast;
 import net.e6tech.elements.common.util.SystemException;
+import net.e6tech.elements.common.util.concurrent.TimeoutService;
+import net.e6tech.elements.persist.datasource.Routing;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -50,10 +52,12 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
     private long transactionTimeout = 0;
     private boolean monitorTransaction = true;
     private long longTransaction = 200L;  // queries that exceeds this value is considered a long transaction.
+    private int timingSampleRate = 16;
+    private int batchSize = 0;
     private boolean firstQuery = true;
     private AtomicInteger ignoreInitialLongTransactions = new AtomicInteger(1);
-    private BlockingQueue<EntityManagerMonitor> monitorQueue = new LinkedBlockingQueue<>();
-    private final List<EntityManagerMonitor> entityManagerMonitors = new ArrayList<>();
+    private final Set<EntityManagerMonitor> entityManagerMonitors = ConcurrentHashMap.newKeySet();
+    private TimeoutService timeoutService;
     private volatile boolean shutdown = false;
     private String providerName = DEFAULT_NAME;
     private ResourceManager resourceManager;
@@ -73,6 +77,15 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
         this.threadPool = threadPool;
     }
 
+    public TimeoutService getTimeoutService() {
+        return timeoutService;
+    }
+
+    @Inject(optional = true)
+    public void setTimeoutService(TimeoutService timeoutService) {
+        this.timeoutService = timeoutService;
+    }
+
     public NotificationCenter getNotificationCenter() {
         return notificationCenter;
     }
@@ -131,6 +144,30 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
         this.longTransaction = longTransaction;
     }
 
+    public int getTimingSampleRate() {
+        return timingSampleRate;
+    }
+
+    /**
+     * Only every timingSampleRate-th EntityManager call is timed when debugging.  Long running calls are
+     * otherwise detected by the monitor thread.
+     */
+    public void setTimingSampleRate(int timingSampleRate) {
+        this.timingSampleRate = timingSampleRate;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Default JDBC batch size for writes, 0 leaves it to the persistence unit.  It can be overridden per unit of work
+     * through EntityManagerConfig.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     public boolean isMonitorTransaction() {
         return monitorTransaction;
     }
@@ -150,7 +187,7 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
     }
 
     public List<EntityManagerMonitor> getEntityManagerMonitors() {
-        return entityManagerMonitors;
+        return new ArrayList<>(entityManagerMonitors);
     }
 
     public String getProviderName() {
@@ -194,6 +231,9 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
     protected void evictEntity(EvictEntity ref) {
     }
 
+    protected void evictBatch(EvictBatch batch) {
+    }
+
     public void initialize(Resources resources) {
         startMonitoring();
 
@@ -235,6 +275,9 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
 
         center.subscribe(EvictEntity.class,
                 notice -> evictEntity(notice.getUserObject()));
+
+        center.subscribe(EvictBatch.class,
+                notice -> evictBatch(notice.getUserObject()));
     }
 
     private String[] providerNames(Resources resources) {
@@ -300,7 +343,13 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
                 longQuery = 1000L;
         }
 
+        // batch writes
+        int batch = config.map(EntityManagerConfig::batchSize).orElse(0);
+        if (batch == 0)
+            batch = batchSize;
+
         long longQueryFinal = longQuery;
+        int batchFinal = batch;
         long timeoutFinal = timeout;
         String[] names = providerNames(resources);
         EntityManagerConfig result = Annotator.create(EntityManagerConfig.class,
@@ -311,6 +360,9 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
                     .set(a::longTransaction, longQueryFinal)
                     .set(a::monitor, monitor)
                     .set(a::timeoutExtension, timeoutExt)
+                    .set(a::readOnly, config.map(EntityManagerConfig::readOnly).orElse(false))
+                    .set(a::batchSize, batchFinal)
+                    .set(a::flushEvery, config.map(EntityManagerConfig::flushEvery).orElse(0))
         );
 
         resources.getMapVariable(EntityManagerConfig.class)
@@ -329,21 +381,23 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
         EntityManager em = resources.getInstance(EntityManagerBuilder.class, () -> (r, a, f) -> f.createEntityManager())
                 .build(resources, alias, emf);
 
+        EntityManagerInvocationHandler emHandler = new EntityManagerInvocationHandler(resources,
+                em, alias, this, config,
+                getEntityManagerListener(), getQueryListener());
+        emHandler.setLongTransaction(config.longTransaction());
+        emHandler.setIgnoreInitialLongTransactions(ignoreInitialLongTransactions);
+        emHandler.setSampleRate(timingSampleRate);
+
         if (config.monitor()) {
             EntityManagerMonitor entityManagerMonitor = new EntityManagerMonitor(alias, threadPool, this,
                     resources,
                     em, System.currentTimeMillis() + config.timeout(), new Throwable());
+            entityManagerMonitor.watch(emHandler);
             monitor(entityManagerMonitor);
             resources.getMapVariable(EntityManagerMonitor.class)
                     .put(alias, entityManagerMonitor);
         }
 
-        EntityManagerInvocationHandler emHandler = new EntityManagerInvocationHandler(resources,
-                em, alias, this, config,
-                getEntityManagerListener(), getQueryListener());
-        emHandler.setLongTransaction(config.longTransaction());
-        emHandler.setIgnoreInitialLongTransactions(ignoreInitialLongTransactions);
-
         EntityManager proxy = (EntityManager) Proxy.newProxyInstance(getClass().getClassLoader(),
                 new Class[]{EntityManager.class, EntityManagerExtension.class}, emHandler);
 
@@ -364,22 +418,32 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
         resources.getMapVariable(EntityManagerProvider.class)
                 .put(alias, this);
 
-        em.getTransaction().begin();
+        // the connection is obtained when the transaction begins.
+        if (config.readOnly())
+            Routing.setReadOnly(true);
+        try {
+            em.getTransaction().begin();
+        } finally {
+            if (config.readOnly())
+                Routing.clear();
+        }
     }
 
-    // Submits a thread task to monitor expired EntityManagers.
-    // the thread would break out after monitorIdle time.
-    // when another monitor shows up, the thread task would resume.
-    @SuppressWarnings({"squid:S1188", "squid:S134", "squid:S3776", "squid:S899"})
+    // Registers the deadline of the EntityManager with the TimeoutService, which costs O(1) as does cancelling it
+    // on commit or abort.
     private void monitor(EntityManagerMonitor monitor) {
-        // entityManagerMonitors contains open, committed and aborted entityManagers.
-        if (!shutdown)
-            monitorQueue.offer(monitor);
+        if (shutdown)
+            return;
+        entityManagerMonitors.add(monitor);
+        monitor.schedule(timeoutService, logger.isDebugEnabled() ? Math.max(longTransaction / 2, 10L) : 0L);
+    }
+
+    // called by TimeoutService when an EntityManager expires or by EntityManagerMonitor when it is cancelled.
+    void unmonitor(EntityManagerMonitor monitor) {
+        entityManagerMonitors.remove(monitor);
     }
 
-    @SuppressWarnings({"squid:S3776", "squid:S1181", "squid:S1141"})
     protected void startMonitoring() {
-        // starting a thread to monitor
         if (threadPool == null) {
             threadPool = Executors.newCachedThreadPool(runnable -> {
                 Thread thread = new Thread(runnable, "EntityManagerProvider");
@@ -389,58 +453,8 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
             });
         }
 
-        threadPool.execute(()-> {
-            while (!shutdown) {
-                try {
-                    long expiration = 0;
-                    monitorQueue.drainTo(entityManagerMonitors);
-                    Iterator<EntityManagerMonitor> iterator = entityManagerMonitors.iterator();
-                    while (iterator.hasNext()) {
-                        EntityManagerMonitor m = iterator.next();
-                        if (!m.getEntityManager().isOpen()) { // already closed
-                            iterator.remove();
-                        } else if (m.getExpiration() < System.currentTimeMillis()) {
-                            iterator.remove();
-                            m.rollback();  // rollback
-                        } else {
-                            // for find out the shortest sleep time
-                            if (expiration == 0 || m.getExpiration() < expiration)
-                                expiration = m.getExpiration();
-                        }
-                    }
-
-                    long sleep = 0L;
-                    if (expiration > 0) {
-                        sleep = expiration - System.currentTimeMillis();
-                        if (sleep < 0) {
-                            // probably due to debugging
-                            if (!entityManagerMonitors.isEmpty())
-                                sleep = 1;
-                            else
-                                sleep = 0;
-                        }
-                    }
-
-                    EntityManagerMonitor newMonitor = null;
-                    try {
-                        if (sleep == 0) {
-                            newMonitor = monitorQueue.take();
-                        } else {
-                            // What if an EntityManager closed during the sleep?
-                            newMonitor = monitorQueue.poll(sleep, TimeUnit.MILLISECONDS);
-                        }
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-
-                    if (newMonitor != null) {
-                        entityManagerMonitors.add(newMonitor);
-                    }
-                } catch (Throwable ex) {
-                    logger.error("Unexpected exception in EntityManagerProvider during monitoring", ex);
-                }
-            }
-        });
+        if (timeoutService == null)
+            timeoutService = TimeoutService.shared();
     }
 
     @Override
@@ -481,6 +495,7 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
         } catch (InstanceNotFoundException ex) {
             Logger.suppress(ex);
         } finally {
+            cancelMonitor(resources, alias);
             cleanup(resources, alias);
         }
     }
@@ -524,10 +539,17 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
         } catch (Exception th) {
             Logger.suppress(th);
         }  finally {
+            cancelMonitor(resources, alias);
             cleanup(resources, alias);
         }
     }
 
+    private void cancelMonitor(Resources resources, String alias) {
+        EntityManagerMonitor m = resources.getMapVariable(EntityManagerMonitor.class).get(alias);
+        if (m != null)
+            m.cancel();
+    }
+
     protected void cleanup(Resources resources, String alias) {
     }
 
@@ -561,6 +583,7 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
             emf.close();
         }
         shutdown = true;
+        entityManagerMonitors.forEach(EntityManagerMonitor::cancel);
     }
 
     public void cancelQuery(Resources resources, String alias) {
@@ -0,0 +1,81 @@
+/*
+Copyright 2015-2019 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package net.e6tech.elements.persist;
+
+import net.e6tech.elements.common.notification.Notification;
+import net.e6tech.elements.common.serialization.ObjectReference;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Cache invalidations collected during a unit of work.  Entity ids are grouped by entity type and
+ * collections by role so that duplicates are published, and applied by receivers, only once.
+ */
+public class EvictBatch implements Notification {
+    private static final long serialVersionUID = -4178552925212446092L;
+
+    private LinkedHashMap<String, LinkedHashSet<Serializable>> entities = new LinkedHashMap<>();
+    private LinkedHashSet<String> collectionRoles = new LinkedHashSet<>();
+    private LinkedHashSet<String> tables = new LinkedHashSet<>();
+
+    public EvictBatch addEntity(ObjectReference reference) {
+        return addEntity(reference.getType(), (Serializable) reference.getId());
+    }
+
+    public EvictBatch addEntity(String entityType, Serializable id) {
+        entities.computeIfAbsent(entityType, k -> new LinkedHashSet<>()).add(id);
+        return this;
+    }
+
+    public EvictBatch addCollectionRole(String role) {
+        collectionRoles.add(role);
+        return this;
+    }
+
+    /**
+     * Records that rows of the entity type were written so that receivers can invalidate query results,
+     * see TableVersions.  Unlike addEntity, this applies to all entity types, cached or not.
+     */
+    public EvictBatch addTable(String entityType) {
+        tables.add(entityType);
+        return this;
+    }
+
+    public Map<String, Set<Serializable>> getEntities() {
+        return Collections.unmodifiableMap(entities);
+    }
+
+    public Set<String> getCollectionRoles() {
+        return Collections.unmodifiableSet(collectionRoles);
+    }
+
+    public Set<String> getTables() {
+        return Collections.unmodifiableSet(tables);
+    }
+
+    public int size() {
+        int size = collectionRoles.size();
+        for (Set<Serializable> ids : entities.values())
+            size += ids.size();
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return entities.isEmpty() && collectionRoles.isEmpty() && tables.isEmpty();
+    }
+}
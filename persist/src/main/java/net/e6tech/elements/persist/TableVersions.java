@@ -0,0 +1,93 @@
+/*
+Copyright 2015-2019 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package net.e6tech.elements.persist;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counters per entity type, i.e. per table, used to invalidate cached query results.  A writer calls begin
+ * when it first writes an entity type in a unit of work and end once the unit of work has committed or aborted.
+ * Both bump the version, so results cached before the write are never looked up again.  While a write is in
+ * flight, snapshot returns null and query results for the entity type are neither read from nor put into a cache,
+ * because the database may or may not reflect the write depending on who reads it.
+ */
+public class TableVersions {
+    private static final TableVersions shared = new TableVersions();
+
+    private final Map<String, Version> versions = new ConcurrentHashMap<>();
+
+    public static TableVersions shared() {
+        return shared;
+    }
+
+    public void begin(String table) {
+        Version v = version(table);
+        v.writers.incrementAndGet();
+        v.version.incrementAndGet();
+    }
+
+    public void end(String table) {
+        Version v = version(table);
+        v.version.incrementAndGet();
+        v.writers.decrementAndGet();
+    }
+
+    /**
+     * Bumps the version without a write in flight, e.g. when another node has committed a write.
+     */
+    public void bump(String table) {
+        version(table).version.incrementAndGet();
+    }
+
+    public long getVersion(String table) {
+        Version v = versions.get(table);
+        return v == null ? 0L : v.version.get();
+    }
+
+    public int getWriters(String table) {
+        Version v = versions.get(table);
+        return v == null ? 0 : v.writers.get();
+    }
+
+    /**
+     * Returns the current versions of the tables, or null if any of them is being written.
+     */
+    public long[] snapshot(String ... tables) {
+        long[] snapshot = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            Version v = versions.get(tables[i]);
+            if (v == null)
+                continue;
+            if (v.writers.get() > 0)  // writers must be read before the version, see end.
+                return null;
+            snapshot[i] = v.version.get();
+        }
+        return snapshot;
+    }
+
+    private Version version(String table) {
+        return versions.computeIfAbsent(table, t -> new Version());
+    }
+
+    private static class Version {
+        private final AtomicLong version = new AtomicLong();
+        private final AtomicInteger writers = new AtomicInteger();
+    }
+}
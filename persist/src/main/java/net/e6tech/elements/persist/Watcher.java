@@ -22,21 +22,24 @@ import net.e6tech.elements.common.reflection.Reflection;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Stack;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by futeh.
  */
-@SuppressWarnings({"squid:S00112", "squid:S1149"})
+@SuppressWarnings("squid:S00112")
 public class Watcher<T> implements InvocationHandler {
     protected static Logger logger = Logger.getLogger();
-    private static ThreadLocal<Stack<Long>> gracePeriod = new ThreadLocal<>();
+    private static ThreadLocal<GracePeriods> gracePeriod = new ThreadLocal<>();
 
     private T target;
     private boolean monitorTransaction = true;
     private long longTransaction = 200L;
     private AtomicInteger ignoreInitialLongTransactions;
+    private int sampleRate = 1;
+    private volatile int calls;  // only written by the thread using the target
+    private volatile Method inflight;
 
     public Watcher(T target) {
         this.target = target;
@@ -46,45 +49,39 @@ public class Watcher<T> implements InvocationHandler {
     public static void addGracePeriod(long time) {
         if (!logger.isDebugEnabled())
             return;
-        Stack<Long> stack = gracePeriod.get();
-        if (stack == null)
+        GracePeriods periods = gracePeriod.get();
+        if (periods == null)
             return;
-        for (int i = 0; i < stack.size(); i++) {
-            long existing = stack.get(i);
-            stack.set(i, existing + time);
-        }
+        for (int i = 0; i < periods.size; i++)
+            periods.values[i] += time;
     }
 
     protected static long getGracePeriod() {
         if (!logger.isDebugEnabled())
             return 0l;
-        Stack<Long> stack = gracePeriod.get();
-        if (stack == null)
+        GracePeriods periods = gracePeriod.get();
+        if (periods == null || periods.size == 0)
             return 0L;
-        return stack.peek();
+        return periods.values[periods.size - 1];
     }
 
     protected static void clearGracePeriod() {
         if (!logger.isDebugEnabled())
             return;
-        Stack<Long> stack = gracePeriod.get();
-        if (stack != null) {
-            stack.pop();
-            if (stack.isEmpty()) {
-                gracePeriod.remove();
-            }
-        }
+        GracePeriods periods = gracePeriod.get();
+        if (periods != null && periods.size > 0)
+            periods.size--;
     }
 
     protected static void initGracePeriod() {
         if (!logger.isDebugEnabled())
             return;
-        Stack<Long> stack = gracePeriod.get();
-        if (stack == null) {
-            stack = new Stack<>();
-            gracePeriod.set(stack);
+        GracePeriods periods = gracePeriod.get();
+        if (periods == null) {
+            periods = new GracePeriods();
+            gracePeriod.set(periods);
         }
-        stack.push(0l);
+        periods.push();
     }
 
     public long getLongTransaction() {
@@ -103,6 +100,26 @@ public class Watcher<T> implements InvocationHandler {
         this.ignoreInitialLongTransactions = ignoreInitialLongTransactions;
     }
 
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Only every sampleRate-th call is timed.  Calls that are not timed are still subject to long transaction
+     * detection by EntityManagerMonitor.  0 disables timing.
+     */
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getCalls() {
+        return calls;
+    }
+
+    public Method getInflight() {
+        return inflight;
+    }
+
     public T getTarget() {
         return target;
     }
@@ -123,25 +140,52 @@ public class Watcher<T> implements InvocationHandler {
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         try {
             initGracePeriod();
-            Class callingClass = Reflection.getCallingClass(1);
+            // walking the stack is expensive, only do it when someone is interested in the calling class.
+            Class callingClass = needsCallingClass() ? Reflection.getCallingClass(1) : null;
             return doInvoke(callingClass, proxy, method, args);
         } finally {
             clearGracePeriod();
         }
     }
 
+    protected boolean needsCallingClass() {
+        return false;
+    }
+
+    protected boolean isWatching() {
+        return monitorTransaction && logger.isDebugEnabled();
+    }
+
+    /**
+     * Records the call so that it can be observed by EntityManagerMonitor.
+     * @return true if the call should be timed.
+     */
+    protected boolean beginCall(Method method) {
+        int n = calls + 1;
+        calls = n;
+        inflight = method;
+        return sampleRate > 0 && n % sampleRate == 0;
+    }
+
+    protected void endCall() {
+        inflight = null;
+    }
+
     @SuppressWarnings("squid:S1172")
     public Object doInvoke(Class callingClass, Object proxy, Method method, Object[] args) throws Throwable {
-
-        long start = System.currentTimeMillis();
+        boolean watching = isWatching();
+        boolean timed = watching && beginCall(method);
+        long start = timed ? System.currentTimeMillis() : 0L;
         try {
             return method.invoke(target, args);
         } catch(InvocationTargetException ex) {
             Logger.suppress(ex);
             throw ex.getCause();
         } finally {
-            long duration = System.currentTimeMillis() - start;
-            log(method, args, duration);
+            if (watching)
+                endCall();
+            if (timed)
+                log(method, args, System.currentTimeMillis() - start);
         }
     }
 
@@ -154,6 +198,11 @@ public class Watcher<T> implements InvocationHandler {
             return;
         }
 
+        logLongTransaction(method, duration, new Throwable().getStackTrace(), 3);
+    }
+
+    // called by EntityManagerMonitor with the stack trace of the thread making the call.
+    void logLongTransaction(Method method, long duration, StackTraceElement[] trace, int skip) {
         if (ignoreInitialLongTransactions != null) {
             int left = ignoreInitialLongTransactions.decrementAndGet();
             if (left >= 0) {
@@ -161,21 +210,31 @@ public class Watcher<T> implements InvocationHandler {
             }
         }
 
-        Throwable th = new Throwable();
-        StackTraceElement[] trace = th.getStackTrace();
         StringBuilder builder = new StringBuilder();
         builder.append("Long transaction: " + duration + "ms. Method called=" + method.getName() + "\n");
 
-        for (int i = 3; i < 20; i++) {
-            if (i == trace.length)
+        for (int i = skip; i < skip + 17; i++) {
+            if (i >= trace.length)
                 break;
             builder.append("\tat " + trace[i] + "\n");
         }
-        if (trace.length > 20)
+        if (trace.length > skip + 17)
             builder.append("...\n");
 
         if (logger.isDebugEnabled())
             logger.debug(builder.toString());
 
     }
+
+    // a stack of grace periods, one per nested call, kept per thread and reused instead of boxing into a Stack.
+    private static class GracePeriods {
+        private long[] values = new long[4];
+        private int size;
+
+        void push() {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = 0L;
+        }
+    }
 }
@@ -18,6 +18,7 @@ package net.e6tech.elements.persist.criteria;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.ParameterExpression;
 import javax.persistence.criteria.Predicate;
 
 /**
@@ -31,6 +32,10 @@ public enum Comparison {
                 return builder.isNull(expression);
             return builder.equal(expression, object);
         }
+
+        Predicate compare(CriteriaBuilder builder, Expression expression, ParameterExpression parameter) {
+            return builder.equal(expression, parameter);
+        }
     },
     not_equal {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
@@ -38,36 +43,66 @@ public enum Comparison {
                 return builder.isNotNull(expression);
             return builder.notEqual(expression, object);
         }
+
+        Predicate compare(CriteriaBuilder builder, Expression expression, ParameterExpression parameter) {
+            return builder.notEqual(expression, parameter);
+        }
     },
     less_than {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
             return builder.lessThan(expression, (Comparable) object);
         }
+
+        Predicate compare(CriteriaBuilder builder, Expression expression, ParameterExpression parameter) {
+            return builder.lessThan(expression, (Expression<Comparable>) parameter);
+        }
     },
     less_than_or_equal {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
             return builder.lessThanOrEqualTo(expression, (Comparable) object);
         }
+
+        Predicate compare(CriteriaBuilder builder, Expression expression, ParameterExpression parameter) {
+            return builder.lessThanOrEqualTo(expression, (Expression<Comparable>) parameter);
+        }
     },
     greater_than {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
             return builder.greaterThan(expression, (Comparable) object);
         }
+
+        Predicate compare(CriteriaBuilder builder, Expression expression, ParameterExpression parameter) {
+            return builder.greaterThan(expression, (Expression<Comparable>) parameter);
+        }
     },
     greater_than_or_equal {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
             return builder.greaterThanOrEqualTo(expression, (Comparable) object);
         }
+
+        Predicate compare(CriteriaBuilder builder, Expression expression, ParameterExpression parameter) {
+            return builder.greaterThanOrEqualTo(expression, (Expression<Comparable>) parameter);
+        }
     },
     like {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
             return builder.like(expression, (String) object);
         }
+
+        Predicate compare(CriteriaBuilder builder, Expression expression, ParameterExpression parameter) {
+            return builder.like(expression, (Expression<String>) parameter);
+        }
     },
     in {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
             return builder.in(expression).value(object);
         }
+
+        Predicate compare(CriteriaBuilder builder, Expression expression, ParameterExpression parameter) {
+            return expression.in(parameter);
+        }
     };
     abstract Predicate compare(CriteriaBuilder builder, Expression expression, Object object);
+
+    abstract Predicate compare(CriteriaBuilder builder, Expression expression, ParameterExpression parameter);
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.criteria;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaQuery;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Translated criteria queries keyed by QueryShape.  The first execution of a shape registers the query with the
+ * EntityManagerFactory as a named query, which the JPA provider translates once; later executions create the
+ * named query and only bind parameter values.
+ */
+public class CompiledQueries {
+    private static final String PREFIX = "elements.criteria.";
+    private static final Map<EntityManagerFactory, Map<String, String>> names = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final AtomicLong counter = new AtomicLong();
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static int maxSize = 2000; // per EntityManagerFactory, named queries cannot be unregistered.
+
+    private CompiledQueries() {
+    }
+
+    public static int getMaxSize() {
+        return maxSize;
+    }
+
+    public static void setMaxSize(int maxSize) {
+        CompiledQueries.maxSize = maxSize;
+    }
+
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    public static void resetStats() {
+        hits.reset();
+        misses.reset();
+    }
+
+    public static Query createQuery(EntityManager entityManager, QueryShape shape, CriteriaQuery criteria) {
+        Query query;
+        if (shape == null) {
+            return entityManager.createQuery(criteria);
+        } else if (shape.isOpaque()) {
+            query = entityManager.createQuery(criteria);
+        } else {
+            EntityManagerFactory factory = entityManager.getEntityManagerFactory();
+            Map<String, String> compiled = names.computeIfAbsent(factory, f -> new ConcurrentHashMap<>());
+            String name = compiled.get(shape.getKey());
+            if (name != null) {
+                hits.increment();
+                query = entityManager.createNamedQuery(name);
+            } else {
+                misses.increment();
+                query = entityManager.createQuery(criteria);
+                if (compiled.size() < maxSize) {
+                    // register before max results, first result and hints are set; they are part of a named query.
+                    name = PREFIX + counter.incrementAndGet();
+                    factory.addNamedQuery(name, query);
+                    compiled.putIfAbsent(shape.getKey(), name);
+                }
+            }
+        }
+        shape.bind(query);
+        return query;
+    }
+}
@@ -38,6 +38,7 @@ public class OrderBy<T> extends Handler {
     boolean desc = true;
     List<Order> orderByList = new ArrayList<>();
     T template;
+    QueryShape shape;
 
     @SuppressWarnings("unchecked")
     public OrderBy(EntityManager entityManager, CriteriaBuilder builder, CriteriaQuery query, Path path) {
@@ -65,10 +66,13 @@ public class OrderBy<T> extends Handler {
             Order order = (this.desc) ? builder.desc(getPath().get(property))
                     : builder.asc(getPath().get(property));
             orderByList.add(order);
+            if (shape != null)
+                shape.token(desc ? "desc" : "asc", getPath(), property);
             if (!Modifier.isFinal(cls.getModifiers())) {
                 OrderBy orderBy = new OrderBy(getEntityManager(), getBuilder(), getQuery(), getPath());
                 orderBy.orderByList = orderByList;
                 orderBy.desc = this.desc;
+                orderBy.shape = shape;
                 return orderBy.getTemplate();
             }
             if (cls.isPrimitive()) {
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.criteria;
+
+import net.e6tech.elements.common.cache.CacheFacade;
+import net.e6tech.elements.persist.TableVersions;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of Select results, see Select.cacheable.  Entries are keyed by query shape, parameter values,
+ * first and max results, and the TableVersions of every entity type in the query, so a write to any of those
+ * entity types makes earlier entries unreachable; they are then dropped by expiry or eviction.  Entity results
+ * are stored as id lists and loaded through the EntityManager, which is only worthwhile for entities in the
+ * second level cache.
+ * Versions are bumped by the Hibernate Interceptor, writes that bypass it, e.g. bulk updates through JPQL or SQL,
+ * are not seen.
+ */
+@SuppressWarnings("unchecked")
+public class QueryResultCache extends CacheFacade<QueryResultCache.Key, List> {
+    private TableVersions tableVersions = TableVersions.shared();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+
+    public QueryResultCache() {
+        super(QueryResultCache.class, null);
+    }
+
+    public QueryResultCache(String name) {
+        super(QueryResultCache.class, name);
+    }
+
+    public TableVersions getTableVersions() {
+        return tableVersions;
+    }
+
+    public void setTableVersions(TableVersions tableVersions) {
+        this.tableVersions = tableVersions;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Number of queries that could not use the cache, i.e. opaque shapes, entity selections other than the root
+     * and entity types with writes in flight.
+     */
+    public long getBypassed() {
+        return bypassed.sum();
+    }
+
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+        bypassed.reset();
+    }
+
+    static Key key(QueryShape shape, int firstResult, int maxResults) {
+        return new Key(shape.getKey(), shape.getValues(), firstResult, maxResults, null);
+    }
+
+    <R> List<R> bypass(Supplier<List<R>> query) {
+        bypassed.increment();
+        return query.get();
+    }
+
+    /**
+     * @param key query key, see key(QueryShape, int, int)
+     * @param tables entity types in the query.
+     * @param query runs the query.
+     * @param store converts results into the cached form.
+     * @param load converts the cached form back to results, returns null if the cached form is stale.
+     */
+    <R> List<R> getResultList(Key key, String[] tables, Supplier<List<R>> query,
+                              Function<List<R>, List> store, Function<List, List<R>> load) {
+        long[] before = tableVersions.snapshot(tables);
+        if (before == null)
+            return bypass(query);
+
+        Key versionedKey = key.versioned(before);
+        List cached = get(versionedKey);
+        if (cached != null) {
+            List<R> result = load.apply(cached);
+            if (result != null) {
+                hits.increment();
+                return result;
+            }
+            remove(versionedKey);
+        }
+
+        misses.increment();
+        List<R> result = query.get();
+        // a write that started or finished while the query ran may or may not be reflected in the result.
+        if (Arrays.equals(before, tableVersions.snapshot(tables)))
+            put(versionedKey, store.apply(result));
+        return result;
+    }
+
+    /**
+     * Parameter values are compared with equals rather than through their string form, e.g. Dates that only
+     * differ in milliseconds print the same.
+     */
+    static final class Key implements Serializable {
+        private static final long serialVersionUID = -2937245178210948735L;
+        private final String shape;
+        private final List<Object> values;
+        private final int firstResult;
+        private final int maxResults;
+        private final long[] versions;
+        private final int hash;
+
+        Key(String shape, List<Object> values, int firstResult, int maxResults, long[] versions) {
+            this.shape = shape;
+            this.values = new ArrayList<>(values);
+            this.firstResult = firstResult;
+            this.maxResults = maxResults;
+            this.versions = versions;
+            this.hash = Objects.hash(shape, this.values, firstResult, maxResults) * 31 + Arrays.hashCode(versions);
+        }
+
+        Key versioned(long[] tableVersions) {
+            return new Key(shape, values, firstResult, maxResults, tableVersions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object)
+                return true;
+            if (!(object instanceof Key))
+                return false;
+            Key key = (Key) object;
+            return hash == key.hash
+                    && firstResult == key.firstResult
+                    && maxResults == key.maxResults
+                    && shape.equals(key.shape)
+                    && values.equals(key.values)
+                    && Arrays.equals(versions, key.versions);
+        }
+
+        @Override
+        public String toString() {
+            return shape + values + "|first:" + firstResult + "|max:" + maxResults
+                    + (versions == null ? "" : Arrays.toString(versions));
+        }
+    }
+}
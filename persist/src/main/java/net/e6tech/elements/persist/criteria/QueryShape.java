@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.criteria;
+
+import net.e6tech.elements.common.reflection.Primitives;
+
+import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Path;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.PluralAttribute;
+import java.util.*;
+
+/**
+ * Structure of a criteria query recorded while the Select DSL runs, i.e. comparisons, joins, selections and
+ * orderings in the order they are applied, with values replaced by named parameters.  Two Selects with the same
+ * key render the same JPQL so that the translated query can be reused, see CompiledQueries.
+ * A shape becomes opaque when the query is modified in ways that cannot be recorded, e.g. through getQuery(), in which
+ * case the query is translated every time.  Entity types reached by navigating associations, e.g.
+ * {@code e.getDepartment().setName(x)}, are recorded as well since they are part of the query without being a root
+ * or join.
+ */
+public class QueryShape {
+    static final String PARAMETER = "p";
+
+    private final StringBuilder key = new StringBuilder();
+    private final List<Object> values = new ArrayList<>();
+    private final Map<Path, Integer> froms = new IdentityHashMap<>();
+    private final Set<Class> associations = new LinkedHashSet<>();
+    private boolean opaque = false;
+
+    public QueryShape(Path root) {
+        key.append(root.getJavaType().getName());
+        from(root);
+    }
+
+    public String getKey() {
+        return key.toString();
+    }
+
+    public List<Object> getValues() {
+        return values;
+    }
+
+    /**
+     * @return entity types reached through path navigation rather than roots, joins or fetches.
+     */
+    public Set<Class> getAssociations() {
+        return associations;
+    }
+
+    public boolean isOpaque() {
+        return opaque;
+    }
+
+    public void opaque() {
+        opaque = true;
+    }
+
+    void from(Path from) {
+        froms.put(from, froms.size());
+    }
+
+    void token(String token) {
+        key.append('|').append(token);
+    }
+
+    void token(String token, Path path) {
+        key.append('|').append(token).append(':');
+        name(path);
+    }
+
+    void token(String token, Path parent, String property) {
+        token(token, parent);
+        key.append('.').append(property);
+    }
+
+    ParameterExpression parameter(CriteriaBuilder builder, Path path, Object value) {
+        Class type = Primitives.getReferenceType(path.getJavaType());
+        if (!type.isInstance(value)) {
+            // binding would fail the parameter type check where a literal is coerced.
+            opaque();
+            return null;
+        }
+        ParameterExpression parameter = builder.parameter(type, PARAMETER + values.size());
+        values.add(value);
+        return parameter;
+    }
+
+    void bind(Query query) {
+        for (int i = 0; i < values.size(); i++)
+            query.setParameter(PARAMETER + i, values.get(i));
+    }
+
+    private void name(Path path) {
+        Integer index = froms.get(path);
+        if (index != null) {
+            key.append('#').append(index);
+        } else if (path.getParentPath() != null && path.getModel() instanceof Attribute) {
+            Attribute attribute = (Attribute) path.getModel();
+            name(path.getParentPath());
+            key.append('.').append(attribute.getName());
+            if (attribute.isAssociation())
+                associations.add((attribute instanceof PluralAttribute)
+                        ? ((PluralAttribute) attribute).getElementType().getJavaType()
+                        : attribute.getJavaType());
+        } else {
+            opaque();
+            key.append('?');
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getKey();
+    }
+}
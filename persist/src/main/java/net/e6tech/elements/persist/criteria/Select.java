@@ -21,18 +21,21 @@ import net.e6tech.elements.common.reflection.Primitives;
 import net.e6tech.elements.common.reflection.Reflection;
 
 import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import javax.persistence.PersistenceUnitUtil;
 import javax.persistence.Query;
 import javax.persistence.criteria.*;
+import javax.persistence.metamodel.Attribute;
 import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.PluralAttribute;
 import java.beans.PropertyDescriptor;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Created by futeh.
@@ -41,12 +44,18 @@ import java.util.function.Function;
 public class Select<T> extends Statement<T> {
 
     private static final String GETTER_MSG = "Only accepts getter";
+    private static final String FETCH_SIZE = "org.hibernate.fetchSize";
+    private static final String READ_ONLY = "org.hibernate.readOnly";
 
     private Select parent;
     private int maxResults = -1;
     private int firstResult = -1;
+    private int fetchSize = 500;
+    private int clearInterval = 500;
+    private T after;
     private List<Selection<?>> selections = new ArrayList<>();
     private Map<String, Object> hints = new HashMap<>();
+    private QueryResultCache resultCache;
 
     public Select(Where where, Root<T> root) {
         super(where, root);
@@ -107,38 +116,228 @@ public class Select<T> extends Statement<T> {
         return this;
     }
 
+    /**
+     * Records the shape of this query so that after its first execution the translated query is reused and later
+     * executions only bind parameter values, see CompiledQueries.  Must be called before the query is built,
+     * i.e. before where, select, join, fetch, asc or desc.
+     *
+     * @return Select instance
+     */
+    public Select<T> compiled() {
+        if (parent != null || !where.getPredicates().isEmpty() || !selections.isEmpty()
+                || !where.getOrderByList().isEmpty() || where.getQuery().getRoots().size() > 1
+                || !from.getJoins().isEmpty() || !from.getFetches().isEmpty())
+            throw new IllegalStateException("compiled() must be called before the query is built");
+        where.shape = new QueryShape(from);
+        return this;
+    }
+
+    /**
+     * Serves getResultList from the given cache when the same query with the same parameter values has run since
+     * the entity types involved were last written, see QueryResultCache.  Implies compiled() and must likewise be
+     * called before the query is built.  When the EntityManager is in a transaction with FlushModeType.AUTO,
+     * pending changes are flushed first, as the JPA provider would do before running the query.
+     *
+     * @param cache result cache, usually shared by all Selects of a list screen.
+     * @return Select instance
+     */
+    public Select<T> cacheable(QueryResultCache cache) {
+        if (where.shape == null)
+            compiled();
+        this.resultCache = cache;
+        return this;
+    }
+
     public <R> R getSingleResult() {
-        where.onQuery();
-        if (selections.size() == 1) {
-            getQuery().select((Selection<? extends T>) selections.get(0));
-        } else if (!selections.isEmpty()) {
-            getQuery().multiselect(selections);
-        } else {
-            getQuery().select(getFrom());
+        return (R) createQuery().getSingleResult();
+    }
+
+    public <R> List<R> getResultList() {
+        if (resultCache != null)
+            return cachedResultList();
+        return createQuery().getResultList();
+    }
+
+    private <R> List<R> cachedResultList() {
+        prepare();
+        EntityManager entityManager = where.getEntityManager();
+        boolean entities = selections.isEmpty() || (selections.size() == 1 && selections.get(0) == from);
+        if (where.shape.isOpaque() || (!entities && selectsEntity()))
+            return resultCache.bypass(() -> query().getResultList());
+
+        if (entityManager.getFlushMode() == FlushModeType.AUTO && entityManager.isJoinedToTransaction())
+            entityManager.flush();
+
+        QueryResultCache.Key key = QueryResultCache.key(where.shape, firstResult, maxResults);
+        if (!entities)
+            return resultCache.getResultList(key, tables(), () -> query().getResultList(), ArrayList::new, list -> list);
+
+        Class<T> type = from.getJavaType();
+        PersistenceUnitUtil util = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        return resultCache.getResultList(key, tables(), () -> query().getResultList(),
+                list -> {
+                    List ids = new ArrayList<>(list.size());
+                    for (Object entity : list)
+                        ids.add(util.getIdentifier(entity));
+                    return ids;
+                },
+                ids -> {
+                    List<R> list = new ArrayList<>(ids.size());
+                    for (Object id : ids) {
+                        R entity = (R) entityManager.find(type, id);
+                        if (entity == null)  // removed without going through the Interceptor
+                            return null;
+                        list.add(entity);
+                    }
+                    return list;
+                });
+    }
+
+    // multiselect rows containing entities cannot be stored as ids.
+    private boolean selectsEntity() {
+        for (Selection<?> selection : selections) {
+            Class type = selection.getJavaType();
+            if (where.getEntityManager().getMetamodel().getEntities().stream().anyMatch(e -> e.getJavaType() == type))
+                return true;
+        }
+        return false;
+    }
+
+    // entity types of all roots, joins, fetches and navigated associations.  Subqueries can only be added through
+    // getQuery(), which makes the shape opaque so that such queries are never cached.
+    private String[] tables() {
+        Set<String> tables = new LinkedHashSet<>();
+        for (Root<?> root : (Set<Root<?>>) where.getQuery().getRoots())
+            tables(root, tables);
+        for (Class type : where.shape.getAssociations())
+            tables.add(type.getName());
+        return tables.toArray(new String[0]);
+    }
+
+    private void tables(FetchParent<?, ?> parent, Set<String> tables) {
+        if (parent instanceof From) {
+            tables.add(((From<?, ?>) parent).getJavaType().getName());
+            for (Join<?, ?> join : ((From<?, ?>) parent).getJoins())
+                tables(join, tables);
+        } else if (parent instanceof Fetch) {
+            Attribute attribute = ((Fetch) parent).getAttribute();
+            Class type = (attribute instanceof PluralAttribute)
+                    ? ((PluralAttribute) attribute).getElementType().getJavaType()
+                    : attribute.getJavaType();
+            tables.add(type.getName());
         }
+        for (Fetch<?, ?> fetch : parent.getFetches())
+            tables(fetch, tables);
+    }
 
-        Query query = where.getEntityManager().createQuery(getQuery());
-        if (maxResults >= 0)
-            query.setMaxResults(maxResults);
+    /**
+     * Returns a forward only stream of the results, fetched fetchSize rows at a time, for exports and other scans
+     * too large for getResultList.  Entities are loaded read only and the EntityManager is cleared every
+     * clearInterval rows so that memory stays flat; earlier rows become detached and unflushed changes in the same
+     * EntityManager are discarded.  A clearInterval of 0 disables clearing.  The stream should be closed, e.g. using
+     * try-with-resources, to release the underlying cursor.
+     *
+     * @param <R> entity or selection type
+     * @return stream of results
+     */
+    public <R> Stream<R> stream() {
+        Query query = createQuery();
+        query.setHint(FETCH_SIZE, fetchSize);
+        query.setHint(READ_ONLY, true);
+        Stream<R> stream = query.getResultStream();
+        Iterator<R> iterator = stream.iterator();
+        EntityManager entityManager = where.getEntityManager();
+        Iterator<R> clearing = new Iterator<R>() {
+            private long count = 0;
+            private long cleared = 0;
+
+            @Override
+            public boolean hasNext() {
+                // clear before the cursor advances, the row returned by the next call to next() is not yet loaded.
+                if (clearInterval > 0 && count - cleared >= clearInterval) {
+                    entityManager.clear();
+                    cleared = count;
+                }
+                return iterator.hasNext();
+            }
 
-        if (firstResult >= 0)
-            query.setFirstResult(firstResult);
+            @Override
+            public R next() {
+                R r = iterator.next();
+                count++;
+                return r;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(clearing, Spliterator.ORDERED), false)
+                .onClose(stream::close);
+    }
 
-        setHints(query);
-        return (R) query.getSingleResult();
+    /**
+     * Keyset pagination: restricts the results to rows that come after lastRow in the order given by asc and desc,
+     * e.g. select.asc(() -> t.getId()).after(last).setMaxResults(100).  Unlike setFirstResult, the cost of a page
+     * does not depend on how deep it is.  The ordering should end with a unique property such as the id, and all
+     * ordering properties must belong to this Select's entity.
+     *
+     * @param lastRow last row of the previous page, or null for the first page.
+     * @return Select instance
+     */
+    public Select<T> after(T lastRow) {
+        if (parent != null)
+            throw new IllegalStateException("after() is only supported for the root entity");
+        this.after = lastRow;
+        return this;
     }
 
-    public <R> List<R> getResultList() {
+    // (a > ?) or (a = ? and b < ?) or ... for ordering a asc, b desc, ...
+    private void seek() {
+        List<Order> orders = where.getOrderByList();
+        if (orders.isEmpty())
+            throw new IllegalStateException("after() requires ordering, see asc and desc");
+        if (where.shape != null)
+            where.shape.token("after(");
+        List<Predicate> equals = new ArrayList<>();
+        Predicate[] alternatives = new Predicate[orders.size()];
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            Path path = (Path) order.getExpression();
+            if (path.getParentPath() != from || !(path.getModel() instanceof Attribute))
+                throw new IllegalStateException("after() only supports ordering by properties of " + from.getJavaType().getName());
+            String property = ((Attribute) path.getModel()).getName();
+            Object value = Reflection.getProperty(after, property);
+            if (value == null)
+                throw new IllegalArgumentException("Property " + property + " of the last row is null");
+            List<Predicate> conjunction = new ArrayList<>(equals);
+            conjunction.add(where.compare(order.isAscending() ? Comparison.greater_than : Comparison.less_than, path, value));
+            alternatives[i] = getBuilder().and(conjunction.toArray(new Predicate[0]));
+            if (i < orders.size() - 1)
+                equals.add(where.compare(Comparison.equal, path, value));
+        }
+        if (where.shape != null)
+            where.shape.token(")");
+        where.getPredicates().add(getBuilder().or(alternatives));
+        after = null;
+    }
+
+    private Query createQuery() {
+        prepare();
+        return query();
+    }
+
+    private void prepare() {
+        if (after != null)
+            seek();
         where.onQuery();
         if (selections.size() == 1) {
-            getQuery().select((Selection<? extends T>) selections.get(0));
+            where.getQuery().select((Selection<? extends T>) selections.get(0));
         } else if (!selections.isEmpty()) {
-            getQuery().multiselect(selections.toArray(new Selection[selections.size()]));
+            where.getQuery().multiselect(selections.toArray(new Selection[selections.size()]));
         } else {
-            getQuery().select(getFrom());
+            where.getQuery().select(from);
         }
+    }
 
-        Query query = where.getEntityManager().createQuery(getQuery());
+    private Query query() {
+        Query query = CompiledQueries.createQuery(where.getEntityManager(), where.shape, where.getQuery());
         if (maxResults >= 0)
             query.setMaxResults(maxResults);
 
@@ -146,7 +345,7 @@ public class Select<T> extends Statement<T> {
             query.setFirstResult(firstResult);
 
         setHints(query);
-        return query.getResultList();
+        return query;
     }
 
     private void setHints(Query query) {
@@ -163,11 +362,15 @@ public class Select<T> extends Statement<T> {
     }
 
     public Select<T> selectEntity() {
-        selections.add(getFrom());
+        selections.add(from);
+        if (where.shape != null)
+            where.shape.token("select", from);
         return this;
     }
 
     public Select<T> select(Function<CriteriaBuilder, Function<Expression, Expression>> builder, Consumer<T> consumer) {
+        if (where.shape != null)
+            where.shape.opaque();
         Path path = path(consumer);
         select(builder.apply(getBuilder()).apply(path));
         return this;
@@ -175,11 +378,23 @@ public class Select<T> extends Statement<T> {
 
     public <R> Select<T> select(Expression<R> expression) {
         selections.add(expression);
+        if (where.shape != null) {
+            if (expression instanceof Path)
+                where.shape.token("select", (Path) expression);
+            else
+                where.shape.opaque();
+        }
         return this;
     }
 
+    private void addSelection(Path path) {
+        selections.add(path);
+        if (where.shape != null)
+            where.shape.token("select", path);
+    }
+
     public Select<T> select(Runnable runnable) {
-        Interceptor.setInterceptorHandler(where.getTemplate(), getter(path -> selections.add(path)));
+        Interceptor.setInterceptorHandler(where.getTemplate(), getter(this::addSelection));
         runnable.run();
         Interceptor.setInterceptorHandler(where.getTemplate(), where);
         return this;
@@ -187,7 +402,7 @@ public class Select<T> extends Statement<T> {
 
     public Select<T> select(Consumer<T> consumer) {
         Class<T> entityClass = Interceptor.getTargetClass(where.getTemplate());
-        T t = applyGetter(entityClass, path -> selections.add(path));
+        T t = applyGetter(entityClass, this::addSelection);
         consumer.accept(t);
         return this;
     }
@@ -202,22 +417,28 @@ public class Select<T> extends Statement<T> {
 
     @SuppressWarnings("squid:S1188")
     public <R> Select<T> crossJoinManyToOne(Class<R> entityClass, Consumer<T> joinCondition, Consumer<Select<R>> consumer) {
-        From<R, R> jointRoot = getQuery().from(entityClass);
+        From<R, R> jointRoot = where.getQuery().from(entityClass);
+        if (where.shape != null) {
+            where.shape.from(jointRoot);
+            where.shape.token("from:" + entityClass.getName());
+        }
         Interceptor.setInterceptorHandler(where.getTemplate(), frame -> {
             PropertyDescriptor desc = Reflection.propertyDescriptor(frame.getMethod());
             String property = desc.getName();
             if (frame.getMethod().equals(desc.getReadMethod())) {
+                if (where.shape != null)
+                    where.shape.token("on", from, property);
                 Predicate joinPredicate;
-                if (getFrom().get(property).getJavaType().equals(jointRoot.getJavaType())) {
-                    joinPredicate = getBuilder().equal(getFrom().get(property), jointRoot);
+                if (from.get(property).getJavaType().equals(jointRoot.getJavaType())) {
+                    joinPredicate = getBuilder().equal(from.get(property), jointRoot);
                 } else {
                     EntityType type = (EntityType) jointRoot.getModel();
                     String parentIdAttribute = type.getId(type.getIdType().getJavaType()).getName();
-                    if (!jointRoot.get(parentIdAttribute).getJavaType().equals(getFrom().get(property).getJavaType())) {
+                    if (!jointRoot.get(parentIdAttribute).getJavaType().equals(from.get(property).getJavaType())) {
                         throw new IllegalArgumentException("Type mismatch: cannot join " + type.getName() + "." + parentIdAttribute + " to " +
-                                getFrom().get(property));
+                                from.get(property));
                     }
-                    joinPredicate = getBuilder().equal(jointRoot.get(parentIdAttribute), getFrom().get(property));
+                    joinPredicate = getBuilder().equal(jointRoot.get(parentIdAttribute), from.get(property));
                 }
                 this.where.getPredicates().add(joinPredicate);
             } else {
@@ -244,22 +465,28 @@ public class Select<T> extends Statement<T> {
 
     @SuppressWarnings("squid:S1188")
     public <R> Select<T> crossJoinOneToMany(Class<R> entityClass, Consumer<R> joinCondition, Consumer<Select<R>> consumer) {
-        From<R, R> joinRoot = getQuery().from(entityClass);
+        From<R, R> joinRoot = where.getQuery().from(entityClass);
+        if (where.shape != null) {
+            where.shape.from(joinRoot);
+            where.shape.token("from:" + entityClass.getName());
+        }
         R joinTemplate = Handler.interceptor.newInstance(entityClass,  frame -> {
             PropertyDescriptor desc = Reflection.propertyDescriptor(frame.getMethod());
             String property = desc.getName();
             if (frame.getMethod().equals(desc.getReadMethod())) {
+                if (where.shape != null)
+                    where.shape.token("on", joinRoot, property);
                 Predicate joinPredicate;
-                if (joinRoot.get(property).getJavaType().equals(getFrom().getJavaType())) {
-                    joinPredicate = getBuilder().equal(getFrom(), joinRoot.get(property));
+                if (joinRoot.get(property).getJavaType().equals(from.getJavaType())) {
+                    joinPredicate = getBuilder().equal(from, joinRoot.get(property));
                 } else {
-                    EntityType type = (EntityType) getFrom().getModel();
+                    EntityType type = (EntityType) from.getModel();
                     String parentIdAttribute = type.getId(type.getIdType().getJavaType()).getName();
-                    if (!getFrom().get(parentIdAttribute).getJavaType().equals(joinRoot.get(property).getJavaType())) {
+                    if (!from.get(parentIdAttribute).getJavaType().equals(joinRoot.get(property).getJavaType())) {
                         throw new IllegalArgumentException("Type mismatch: cannot join " + type.getName() + "." + parentIdAttribute + " to " +
                         joinRoot.get(property));
                     }
-                    joinPredicate = getBuilder().equal(getFrom().get(parentIdAttribute), joinRoot.get(property));
+                    joinPredicate = getBuilder().equal(from.get(parentIdAttribute), joinRoot.get(property));
                 }
                 this.where.getPredicates().add(joinPredicate);
             } else {
@@ -304,7 +531,11 @@ public class Select<T> extends Statement<T> {
             PropertyDescriptor desc = Reflection.propertyDescriptor(frame.getMethod());
             String property = desc.getName();
             if (frame.getMethod().equals(desc.getReadMethod())) {
-                Join join = getFrom().join(property, type);
+                Join join = from.join(property, type);
+                if (where.shape != null) {
+                    where.shape.token("join_" + type, from, property);
+                    where.shape.from(join);
+                }
                 Where<R> where = new Where<>(this.where, join);
                 Select<R> joinSelect = new Select<>(this, where, join);
                 consumer.accept(joinSelect, where.getTemplate());
@@ -345,7 +576,9 @@ public class Select<T> extends Statement<T> {
             PropertyDescriptor desc = Reflection.propertyDescriptor(frame.getMethod());
             String property = desc.getName();
             if (frame.getMethod().equals(desc.getReadMethod())) {
-                getFrom().fetch(property, type);
+                from.fetch(property, type);
+                if (where.shape != null)
+                    where.shape.token("fetch_" + type, from, property);
             } else {
                 throw new UnsupportedOperationException(GETTER_MSG);
             }
@@ -370,25 +603,43 @@ public class Select<T> extends Statement<T> {
         return this;
     }
 
+    public Select<T> setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        if (parent != null)
+            parent.setFetchSize(fetchSize);
+        return this;
+    }
+
+    public Select<T> setClearInterval(int clearInterval) {
+        this.clearInterval = clearInterval;
+        if (parent != null)
+            parent.setClearInterval(clearInterval);
+        return this;
+    }
+
     public void count() {
-        selections.add(getBuilder().count(getFrom()));
+        selections.add(getBuilder().count(from));
+        if (where.shape != null)
+            where.shape.token("count", from);
     }
 
     public Select<T> asc(Runnable runnable) {
-        OrderBy<T> orderBy = new OrderBy(where.getEntityManager(), where.getBuilder(), where.getQuery(), getFrom());
+        OrderBy<T> orderBy = new OrderBy(where.getEntityManager(), where.getBuilder(), where.getQuery(), from);
         Interceptor.setInterceptorHandler(where.getTemplate(), orderBy);
         orderBy.desc = false;
         orderBy.orderByList = where.orderByList;
+        orderBy.shape = where.shape;
         runnable.run();
         Interceptor.setInterceptorHandler(where.getTemplate(), where);
         return this;
     }
 
     public Select<T> desc(Runnable runnable) {
-        OrderBy<T> orderBy = new OrderBy(where.getEntityManager(), where.getBuilder(), where.getQuery(), getFrom());
+        OrderBy<T> orderBy = new OrderBy(where.getEntityManager(), where.getBuilder(), where.getQuery(), from);
         Interceptor.setInterceptorHandler(where.getTemplate(), orderBy);
         orderBy.desc = true;
         orderBy.orderByList = where.orderByList;
+        orderBy.shape = where.shape;
         runnable.run();
         Interceptor.setInterceptorHandler(where.getTemplate(), where);
         return this;
@@ -45,7 +45,13 @@ public class Statement<T> {
         return where.getBuilder();
     }
 
+    /**
+     * Changes made directly to the CriteriaQuery are not part of the query shape, so a compiled Select falls back
+     * to translating the query every time.
+     */
     public CriteriaQuery<T> getQuery() {
+        if (where.shape != null)
+            where.shape.opaque();
         return where.getQuery();
     }
 
@@ -54,6 +60,8 @@ public class Statement<T> {
     }
 
     public From<T, T> getFrom() {
+        if (where.shape != null)
+            where.shape.opaque();
         return from;
     }
 
@@ -62,7 +70,11 @@ public class Statement<T> {
         wh.setTemplate(this.where.getTemplate());
         Interceptor.setInterceptorHandler(wh.getTemplate(), wh);
         wh.predicates = new ArrayList<>();
+        if (wh.shape != null)
+            wh.shape.token("or(");
         runnable.run();
+        if (wh.shape != null)
+            wh.shape.token(")");
         Interceptor.setInterceptorHandler(wh.getTemplate(), this.where);
 
         List<Predicate> predicates = wh.getPredicates();
@@ -88,7 +100,7 @@ public class Statement<T> {
     public T in(List list) {
         Class<T> entityClass = Interceptor.getTargetClass(where.getTemplate());
         return applyGetter(entityClass, path ->  {
-            Predicate predicate = Comparison.in.compare(getBuilder(), path, list);
+            Predicate predicate = where.compare(Comparison.in, path, list);
             where.getPredicates().add(predicate);
         });
     }
@@ -112,7 +124,7 @@ public class Statement<T> {
     protected T compare(T template, Comparison comparison) {
         Class<T> entityClass = Interceptor.getTargetClass(template);
         return applySetter(entityClass, (path, args) ->  {
-            Predicate predicate = comparison.compare(getBuilder(), path, args[0]);
+            Predicate predicate = where.compare(comparison, path, args[0]);
             where.getPredicates().add(predicate);
         });
     }
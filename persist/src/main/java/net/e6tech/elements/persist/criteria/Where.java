@@ -44,6 +44,7 @@ public class Where<T> extends Handler {
     List<Predicate> predicates = new ArrayList<>();
     List<Order> orderByList = new ArrayList<>();
     Map<Pair, Function> converters = new HashMap<>();
+    QueryShape shape;
 
     public Where(Where parent, Path path) {
         this(parent.getEntityManager(), parent.getBuilder(), parent.getQuery(), path);
@@ -52,6 +53,7 @@ public class Where<T> extends Handler {
         this.comparison = parent.getComparison();
         this.orderByList = parent.getOrderByList();
         this.converters = parent.getConverters();
+        this.shape = parent.shape;
     }
 
     public Where(EntityManager entityManager, CriteriaBuilder builder, CriteriaQuery query, Path path) {
@@ -132,6 +134,23 @@ public class Where<T> extends Handler {
         this.orderByList = orderByList;
     }
 
+    public QueryShape getShape() {
+        return shape;
+    }
+
+    Predicate compare(Comparison comp, Path path, Object value) {
+        if (shape == null)
+            return comp.compare(getBuilder(), path, value);
+
+        shape.token(value == null ? comp.name() + "_null" : comp.name(), path);
+        ParameterExpression parameter = null;
+        if (comp == Comparison.in)
+            shape.opaque();  // list literals are rendered inline
+        else if (value != null)
+            parameter = shape.parameter(getBuilder(), path, value);
+        return (parameter != null) ? comp.compare(getBuilder(), path, parameter) : comp.compare(getBuilder(), path, value);
+    }
+
     @Override
     public void onQuery() {
         if (!getPredicates().isEmpty()) {
@@ -168,7 +187,7 @@ public class Where<T> extends Handler {
                     value = function.apply(value);
             }
 
-            predicates.add(comparison.compare(builder, current, value));
+            predicates.add(compare(comparison, current, value));
             return null;
         }
     }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.datasource;
+
+/**
+ * Routing hint for data sources that support a read replica, e.g. ElementsHikariDataSource.  EntityManagerProvider
+ * sets the hint while it begins the transaction of a Resources annotated with EntityManagerConfig.readOnly, which is
+ * when the connection is obtained.
+ */
+public class Routing {
+    private static final ThreadLocal<Boolean> readOnly = new ThreadLocal<>();
+
+    private Routing() {
+    }
+
+    public static boolean isReadOnly() {
+        return Boolean.TRUE.equals(readOnly.get());
+    }
+
+    public static void setReadOnly(boolean value) {
+        if (value)
+            readOnly.set(Boolean.TRUE);
+        else
+            readOnly.remove();
+    }
+
+    public static void clear() {
+        readOnly.remove();
+    }
+}
@@ -34,9 +34,15 @@ import java.util.TimerTask;
 import java.util.concurrent.TimeUnit;
 
 import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.persist.datasource.Routing;
 
 /**
  * Subclassed from HikariDataSource to support connectionInitStatments.
+ *
+ * On a getConnection timeout, connections held longer than evictStuckAfter, if set, are evicted and the pool grows
+ * up to maximumPoolSizeCeiling.  Only after resetPoolAfterTimeouts consecutive timeouts is the whole pool reset, and
+ * the new pool is then warmed up gradually.  When a replica is set, connections obtained while Routing.isReadOnly()
+ * come from the replica.
  */
 @SuppressWarnings("squid:S3077")
 public class ElementsHikariDataSource extends HikariDataSource {
@@ -64,6 +70,20 @@ public class ElementsHikariDataSource extends HikariDataSource {
 
     private int resetCount = 0;
 
+    private int resetPoolAfterTimeouts = 3;
+
+    private int maximumPoolSizeCeiling = 0;  // pool grows up to this size, adaptive sizing is off if not above maximumPoolSize
+
+    private long targetWaitTime = 50L;  // p95 wait time in milli-seconds above which the pool grows
+
+    private long adjustInterval = TimeUnit.SECONDS.toMillis(5);
+
+    private long evictStuckAfter = 0L;  // evicts connections held longer than this on a timeout, 0 turns it off
+
+    private DataSource replica;
+
+    private final PoolManager poolManager = new PoolManager(this);
+
     public ElementsHikariDataSource() {
     }
 
@@ -124,8 +144,68 @@ public class ElementsHikariDataSource extends HikariDataSource {
         return lastReset;
     }
 
+    public int getResetPoolAfterTimeouts() {
+        return resetPoolAfterTimeouts;
+    }
+
+    public void setResetPoolAfterTimeouts(int resetPoolAfterTimeouts) {
+        this.resetPoolAfterTimeouts = resetPoolAfterTimeouts;
+    }
+
+    public int getMaximumPoolSizeCeiling() {
+        return maximumPoolSizeCeiling;
+    }
+
+    public void setMaximumPoolSizeCeiling(int maximumPoolSizeCeiling) {
+        this.maximumPoolSizeCeiling = maximumPoolSizeCeiling;
+    }
+
+    public long getTargetWaitTime() {
+        return targetWaitTime;
+    }
+
+    public void setTargetWaitTime(long targetWaitTime) {
+        this.targetWaitTime = targetWaitTime;
+    }
+
+    public long getAdjustInterval() {
+        return adjustInterval;
+    }
+
+    public void setAdjustInterval(long adjustInterval) {
+        this.adjustInterval = adjustInterval;
+    }
+
+    public long getEvictStuckAfter() {
+        return evictStuckAfter;
+    }
+
+    public void setEvictStuckAfter(long evictStuckAfter) {
+        this.evictStuckAfter = evictStuckAfter;
+    }
+
+    public DataSource getReplica() {
+        return replica;
+    }
+
+    public void setReplica(DataSource replica) {
+        this.replica = replica;
+    }
+
+    public WaitTimeHistogram getWaitTimes() {
+        return poolManager.getWaitTimes();
+    }
+
+    public boolean isWarmingUp() {
+        return poolManager.isWarmingUp();
+    }
+
     @Override
     public Connection getConnection() throws SQLException {
+        DataSource r = replica;
+        if (r != null && Routing.isReadOnly())
+            return readOnly(r.getConnection());
+
         DataSource ds = dataSource;
         if (ds == null && !externalPool) {
             synchronized (this) {
@@ -154,15 +234,23 @@ public class ElementsHikariDataSource extends HikariDataSource {
             }
         }
 
+        poolManager.start();
+        long start = System.nanoTime();
         try {
-            return super.getConnection();
+            Connection connection = super.getConnection();
+            poolManager.acquired(connection, System.nanoTime() - start);
+            return connection;
         } catch (Exception e) {
+            poolManager.failed(System.nanoTime() - start);
             try {
-                if (e instanceof SQLTransientConnectionException && resetPool()) {
+                if (e instanceof SQLTransientConnectionException && poolManager.recover()) {
                     try {
-                        return super.getConnection();
+                        start = System.nanoTime();
+                        Connection connection = super.getConnection();
+                        poolManager.acquired(connection, System.nanoTime() - start);
+                        return connection;
                     } catch (Exception e2) {
-                        logger.error("HikariPool: failed obtaining connection after reset: {}", e2.getMessage(), e2);
+                        logger.error("HikariPool: failed obtaining connection after recovery: {}", e2.getMessage(), e2);
                         throw e2;
                     }
                 } else
@@ -174,6 +262,12 @@ public class ElementsHikariDataSource extends HikariDataSource {
         }
     }
 
+    @Override
+    public void close() {
+        poolManager.stop();
+        super.close();
+    }
+
     synchronized protected boolean resetPool() throws Exception {
         if (!resetPoolOnTimeout)
             return false;
@@ -208,7 +302,7 @@ public class ElementsHikariDataSource extends HikariDataSource {
         if (pool != null) {
             lastReset = System.currentTimeMillis();
             resetCount++;
-            logger.warn("Reset HikariPool due to getConnection timeout.");
+            logger.warn("Reset HikariPool due to getConnection timeout, wait " + getWaitTimes());
             poolField.set(this, null);
             if (isAllowPoolSuspension())
                 pool.suspendPool();
@@ -263,6 +357,17 @@ public class ElementsHikariDataSource extends HikariDataSource {
         }
     }
 
+    // a pooled replica connection gets its read only flag reset when it is returned to the pool.
+    private Connection readOnly(Connection connection) throws SQLException {
+        try {
+            connection.setReadOnly(true);
+        } catch (SQLException ex) {
+            connection.close();
+            throw ex;
+        }
+        return connection;
+    }
+
     protected DataSource wrapDataSource(DataSource ds) {
         return new WrappedDataSource(ds);
     }
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.datasource.hikari;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.common.util.concurrent.ThreadPool;
+import net.e6tech.elements.common.util.concurrent.TimeoutService;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Manages the pool of an ElementsHikariDataSource.  On a connection timeout it evicts connections that are stuck and
+ * grows the pool up to maximumPoolSizeCeiling before falling back to resetting the whole pool.  Periodically it
+ * resizes the pool based on wait times and active connections, and ramps up the pool size after a reset instead of
+ * opening all connections at once.
+ */
+class PoolManager {
+    private static Logger logger = Logger.getLogger();
+
+    private final ElementsHikariDataSource dataSource;
+    private final WaitTimeHistogram waitTimes = new WaitTimeHistogram();
+    private final WaitTimeHistogram window = new WaitTimeHistogram();  // wait times since the last adjustment
+    private final Map<Connection, Long> borrowed = new ConcurrentHashMap<>();
+    private final AtomicInteger acquisitions = new AtomicInteger();
+    private final AtomicInteger consecutiveTimeouts = new AtomicInteger();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private volatile int baseSize;
+    private volatile int warmUpTarget;  // greater than 0 while warming up after a reset
+    private volatile int warmUpMinimumIdle;
+    private volatile TimeoutService.Timeout adjustment;
+    private volatile boolean stopped = true;
+    private long lastGrowth;
+
+    PoolManager(ElementsHikariDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    WaitTimeHistogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    int getBaseSize() {
+        return baseSize;
+    }
+
+    boolean isWarmingUp() {
+        return warmUpTarget > 0;
+    }
+
+    void start() {
+        if (!stopped)
+            return;
+        synchronized (this) {
+            if (!stopped)
+                return;
+            stopped = false;
+            baseSize = dataSource.getMaximumPoolSize();
+            scheduleAdjustment();
+        }
+    }
+
+    synchronized void stop() {
+        stopped = true;
+        TimeoutService.Timeout t = adjustment;
+        if (t != null)
+            t.cancel();
+        borrowed.clear();
+    }
+
+    void acquired(Connection connection, long waitNanos) {
+        waitTimes.record(waitNanos);
+        window.record(waitNanos);
+        if (consecutiveTimeouts.get() != 0)
+            consecutiveTimeouts.set(0);
+        if (dataSource.getEvictStuckAfter() > 0) {
+            borrowed.put(connection, System.currentTimeMillis());
+            // closed connections are only removed by sweeping, keep the map near the pool size.
+            if ((acquisitions.incrementAndGet() & 63) == 0 && borrowed.size() > 2 * dataSource.getMaximumPoolSize())
+                sweep(System.currentTimeMillis(), 0L);
+        }
+    }
+
+    void failed(long waitNanos) {
+        waitTimes.record(waitNanos);
+        window.record(waitNanos);
+    }
+
+    /**
+     * Called after getConnection times out.
+     * @return true if getConnection should be retried.
+     */
+    synchronized boolean recover() throws Exception {
+        int evicted = sweep(System.currentTimeMillis(), dataSource.getEvictStuckAfter());
+        if (grow() || evicted > 0)
+            return true;
+
+        if (consecutiveTimeouts.incrementAndGet() < dataSource.getResetPoolAfterTimeouts())
+            return false;
+
+        consecutiveTimeouts.set(0);
+        int target = dataSource.getMaximumPoolSize();
+        if (dataSource.resetPool()) {
+            if (warmUpTarget == 0)
+                warmUp(target);
+            return true;
+        }
+        return false;
+    }
+
+    // returns true only if the pool has been resized.
+    private synchronized boolean grow() {
+        int max = dataSource.getMaximumPoolSize();
+        int ceiling = dataSource.getMaximumPoolSizeCeiling();
+        if (warmUpTarget > 0 || max >= ceiling)
+            return false;
+        // threads that timed out together should not each grow the pool, the others count as consecutive timeouts.
+        long now = System.currentTimeMillis();
+        if (now - lastGrowth < dataSource.getConnectionTimeout())
+            return false;
+        lastGrowth = now;
+        resize(Math.min(ceiling, max + step(max)));
+        return true;
+    }
+
+    private int step(int size) {
+        return Math.max(1, size / 4);
+    }
+
+    // the next pool, created lazily by HikariDataSource, starts small and doubles every adjustment.
+    private void warmUp(int target) {
+        int size = Math.max(1, target / 4);
+        if (size >= target)
+            return;
+        warmUpTarget = target;
+        warmUpMinimumIdle = dataSource.getMinimumIdle();
+        if (dataSource.getMinimumIdle() > size)
+            dataSource.setMinimumIdle(size);
+        dataSource.setMaximumPoolSize(size);
+        logger.warn("HikariPool warming up: maximumPoolSize=" + size + ", target=" + target);
+    }
+
+    private void resize(int size) {
+        int max = dataSource.getMaximumPoolSize();
+        if (size == max)
+            return;
+        logger.info("HikariPool resize: maximumPoolSize " + max + " -> " + size + ", wait " + window);
+        dataSource.setMaximumPoolSize(size);
+    }
+
+    // removes closed connections and, if stuckAfter is greater than 0, evicts connections held longer than that.
+    private int sweep(long now, long stuckAfter) {
+        if (!sweeping.compareAndSet(false, true))
+            return 0;
+        int evicted = 0;
+        try {
+            for (Map.Entry<Connection, Long> entry : borrowed.entrySet()) {
+                if (evict(entry.getKey(), now - entry.getValue(), stuckAfter))
+                    evicted++;
+            }
+        } finally {
+            sweeping.set(false);
+        }
+        return evicted;
+    }
+
+    private boolean evict(Connection connection, long held, long stuckAfter) {
+        try {
+            if (connection.isClosed()) {
+                borrowed.remove(connection);
+            } else if (stuckAfter > 0 && held > stuckAfter) {
+                borrowed.remove(connection);
+                logger.warn("HikariPool evicting connection held for " + held + "ms");
+                dataSource.evictConnection(connection);
+                // frees the slot; the thread holding the connection gets an exception.
+                connection.abort(ThreadPool.cachedThreadPool(ElementsHikariDataSource.class.getSimpleName()));
+                return true;
+            }
+        } catch (SQLException ex) {
+            borrowed.remove(connection);
+            logger.warn("HikariPool: failed evicting connection", ex);
+        }
+        return false;
+    }
+
+    private void scheduleAdjustment() {
+        long interval = dataSource.getAdjustInterval();
+        if (interval > 0 && !stopped)
+            adjustment = TimeoutService.shared().schedule(interval, this::adjust);
+    }
+
+    @SuppressWarnings("squid:S1181")
+    private void adjust() {
+        try {
+            // only recover() evicts stuck connections, long running work is not aborted while the pool is healthy.
+            sweep(System.currentTimeMillis(), 0L);
+            int max = dataSource.getMaximumPoolSize();
+            if (warmUpTarget > 0) {
+                rampUp(max);
+            } else if (dataSource.getMaximumPoolSizeCeiling() > baseSize) {
+                HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+                if (pool != null) {
+                    long wait = window.percentile(0.95);
+                    long target = dataSource.getTargetWaitTime() * 1000L;
+                    int active = pool.getActiveConnections();
+                    if (wait > target && active * 5 >= max * 4) {
+                        grow();
+                    } else if (wait < target / 4 && active * 2 < max && max > baseSize) {
+                        resize(Math.max(baseSize, max - step(max)));
+                    }
+                }
+            }
+            window.reset();
+        } catch (Throwable ex) {
+            logger.warn("HikariPool: unexpected exception adjusting pool size", ex);
+        } finally {
+            scheduleAdjustment();
+        }
+    }
+
+    private synchronized void rampUp(int max) {
+        int target = warmUpTarget;
+        if (target == 0)
+            return;
+        int size = Math.min(target, max * 2);
+        resize(size);
+        if (size >= target) {
+            warmUpTarget = 0;
+            dataSource.setMinimumIdle(warmUpMinimumIdle);
+            logger.info("HikariPool warm up completed: maximumPoolSize=" + size);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.datasource.hikari;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of connection wait times.  Bucket i counts waits between 2^i and 2^(i+1) microseconds so that recording
+ * is a single increment.  Percentiles are reported as the upper bound of the bucket they fall in.
+ */
+public class WaitTimeHistogram {
+    private static final int BUCKETS = 32;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+
+    public WaitTimeHistogram() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts[i] = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int bucket = (micros <= 0) ? 0 : Math.min(63 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+        counts[bucket].increment();
+    }
+
+    public long[] getCounts() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            snapshot[i] = counts[i].sum();
+        return snapshot;
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (LongAdder count : counts)
+            total += count.sum();
+        return total;
+    }
+
+    /**
+     * @param percentile between 0 and 1
+     * @return wait time in microseconds, 0 if nothing has been recorded.
+     */
+    public long percentile(double percentile) {
+        long[] snapshot = getCounts();
+        long total = 0;
+        for (long count : snapshot)
+            total += count;
+        if (total == 0)
+            return 0L;
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return 1L << (i + 1);
+        }
+        return 1L << BUCKETS;
+    }
+
+    public void reset() {
+        for (LongAdder count : counts)
+            count.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " p50=" + percentile(0.5) + "us p95=" + percentile(0.95)
+                + "us p99=" + percentile(0.99) + "us";
+    }
+}
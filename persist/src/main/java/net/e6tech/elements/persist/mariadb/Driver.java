@@ -16,6 +16,7 @@
 
 package net.e6tech.elements.persist.mariadb;
 
+import org.mariadb.jdbc.MariaDbConnection;
 import org.mariadb.jdbc.UrlParser;
 import org.mariadb.jdbc.internal.util.DeRegister;
 import org.mariadb.jdbc.internal.util.constant.HaMode;
@@ -32,6 +33,10 @@ import java.util.Properties;
 
 public class Driver implements java.sql.Driver {
     private List<ConnectionListener> listeners = Collections.synchronizedList(new ArrayList<>());
+    private Properties defaultProperties = new Properties();
+    private int statementCacheSize = 0;
+    private List<String> hotStatements = new ArrayList<>();
+    private StatementCacheStatistics statementCacheStatistics = new StatementCacheStatistics();
 
     static {
         try {
@@ -49,6 +54,44 @@ public class Driver implements java.sql.Driver {
         listeners.remove(listener);
     }
 
+    /**
+     * Sets a connection option that applies when neither the url nor the connection properties specify it,
+     * e.g. rewriteBatchedStatements=true so that batched inserts are sent as multi-row inserts.
+     */
+    public void setDefaultProperty(String key, String value) {
+        defaultProperties.setProperty(key, value);
+    }
+
+    public Properties getDefaultProperties() {
+        return defaultProperties;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Number of server side prepared statements cached per connection, 0 disables the cache.
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public List<String> getHotStatements() {
+        return hotStatements;
+    }
+
+    /**
+     * Statements prepared by every connection when it is created.  Only used when the statement cache is enabled.
+     */
+    public void setHotStatements(List<String> hotStatements) {
+        this.hotStatements = hotStatements == null ? new ArrayList<>() : new ArrayList<>(hotStatements);
+    }
+
+    public StatementCacheStatistics getStatementCacheStatistics() {
+        return statementCacheStatistics;
+    }
+
     /**
      * Connect to the given connection string.
      *
@@ -57,14 +100,35 @@ public class Driver implements java.sql.Driver {
      * @throws SQLException if it is not possible to connect
      */
     public Connection connect(final String url, final Properties props) throws SQLException {
-        UrlParser urlParser = UrlParser.parse(url, props);
+        UrlParser urlParser = UrlParser.parse(url, withDefaults(url, props));
         if (urlParser == null || urlParser.getHostAddresses() == null) {
             return null;
         } else {
             if (!listeners.isEmpty())
                 listeners.forEach(ConnectionListener::onConnect);
-            return MariaDbConnectionExt.newConnection(urlParser, null);
+            MariaDbConnection connection = MariaDbConnectionExt.newConnection(urlParser, null);
+            if (statementCacheSize > 0 && connection instanceof MariaDbConnectionExt)
+                ((MariaDbConnectionExt) connection).cacheStatements(
+                        new StatementCache(statementCacheSize, statementCacheStatistics), hotStatements);
+            return connection;
+        }
+    }
+
+    // connection properties take precedence over url options so a default is only added when the url does not
+    // mention it either.
+    private Properties withDefaults(String url, Properties props) {
+        if (defaultProperties.isEmpty())
+            return props;
+        int query = url == null ? -1 : url.indexOf('?');
+        String options = query < 0 ? "" : url.substring(query + 1);
+        Properties merged = new Properties();
+        if (props != null)
+            merged.putAll(props);
+        for (String key : defaultProperties.stringPropertyNames()) {
+            if (!merged.containsKey(key) && !options.contains(key + "="))
+                merged.setProperty(key, defaultProperties.getProperty(key));
         }
+        return merged;
     }
 
     /**
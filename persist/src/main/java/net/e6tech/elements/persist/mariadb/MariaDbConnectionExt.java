@@ -26,6 +26,7 @@ import org.mariadb.jdbc.internal.util.pool.GlobalStateInfo;
 import org.mariadb.jdbc.internal.util.pool.Pools;
 
 import java.sql.*;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
@@ -33,6 +34,7 @@ import java.util.concurrent.Executor;
 public class MariaDbConnectionExt extends MariaDbConnection {
 
     private MariaDbConnection delegate;
+    private StatementCache statementCache;
 
     public static MariaDbConnection newConnection(UrlParser urlParser, GlobalStateInfo globalInfo)
             throws SQLException {
@@ -57,6 +59,30 @@ public class MariaDbConnectionExt extends MariaDbConnection {
         return delegate;
     }
 
+    /**
+     * Caches server side prepared statements returned by prepareStatement(sql) and prepares the given hot
+     * statements right away so that the parse and prepare round trips happen when the connection is created
+     * rather than on first use.
+     */
+    public void cacheStatements(StatementCache cache, Collection<String> hotStatements) {
+        this.statementCache = cache;
+        if (cache != null)
+            cache.warmUp(delegate, hotStatements);
+    }
+
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * When true, prepareStatement returns client side statements whose executeBatch sends batched inserts as
+     * multi-row inserts, i.e. insert into t values (...), (...), ..., in as few round trips as the server's
+     * max_allowed_packet permits.
+     */
+    public boolean isRewriteBatchedStatements() {
+        return getProtocol().getOptions().rewriteBatchedStatements;
+    }
+
     @Override
     public Statement createStatement(final int resultSetType, final int resultSetConcurrency) {
         return delegate.createStatement(resultSetType, resultSetConcurrency);
@@ -79,6 +105,8 @@ public class MariaDbConnectionExt extends MariaDbConnection {
 
     @Override
     public PreparedStatement prepareStatement(final String sql) throws SQLException {
+        if (statementCache != null && StatementCache.cacheable(sql, isRewriteBatchedStatements()))
+            return statementCache.prepare(delegate, sql);
         return delegate.prepareStatement(sql);
     }
 
@@ -171,6 +199,8 @@ public class MariaDbConnectionExt extends MariaDbConnection {
 
     @Override
     public void close() throws SQLException {
+        if (statementCache != null)
+            statementCache.close();
         delegate.close();
     }
 
@@ -417,6 +447,8 @@ public class MariaDbConnectionExt extends MariaDbConnection {
 
     @Override
     public void reset() throws SQLException {
+       if (statementCache != null)
+           statementCache.clear();
        delegate.reset();
     }
 
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.mariadb;
+
+import net.e6tech.elements.common.logging.Logger;
+import org.mariadb.jdbc.MariaDbConnection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per connection LRU of server side prepared statements keyed by SQL text.  Statements handed out by the cache
+ * are proxies whose close returns the statement to the cache instead of deallocating it on the server, so a
+ * statement is parsed and prepared once per connection instead of once per use.  A statement that is already
+ * in use, e.g. the same query opened twice, is prepared without caching.  Cached statements are server side
+ * prepared on a MariaDbConnection; other connections cache what their prepareStatement returns.
+ */
+public class StatementCache {
+    private static Logger logger = Logger.getLogger();
+    private static final Class[] INTERFACES = new Class[] {PreparedStatement.class};
+
+    private final int maxSize;
+    private final StatementCacheStatistics statistics;
+    private final LinkedHashMap<String, Entry> entries;
+
+    public StatementCache(int maxSize, StatementCacheStatistics statistics) {
+        this.maxSize = maxSize;
+        this.statistics = statistics == null ? new StatementCacheStatistics() : statistics;
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= StatementCache.this.maxSize)
+                    return false;
+                StatementCache.this.statistics.evicted();
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public StatementCacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Statements worth caching: DML, excluding inserts when the driver rewrites batched inserts since only
+     * client side statements can be rewritten.
+     */
+    public static boolean cacheable(String sql, boolean rewriteBatchedStatements) {
+        int i = 0;
+        while (i < sql.length() && Character.isWhitespace(sql.charAt(i)))
+            i++;
+        if (sql.length() - i < 6)
+            return false;
+        String verb = sql.substring(i, i + 6);
+        if (verb.equalsIgnoreCase("insert"))
+            return !rewriteBatchedStatements;
+        return verb.equalsIgnoreCase("select") || verb.equalsIgnoreCase("update") || verb.equalsIgnoreCase("delete");
+    }
+
+    /**
+     * Returns the cached statement for sql, or prepares and caches it.  The caller closes the returned statement
+     * to give it back.
+     */
+    public synchronized PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null) {
+            if (!entry.inUse) {
+                statistics.hit();
+                entry.inUse = true;
+                return entry.proxy();
+            }
+            statistics.miss();
+            return connection.prepareStatement(sql);
+        }
+
+        statistics.miss();
+        entry = new Entry(serverPrepare(connection, sql));
+        entry.inUse = true;
+        entries.put(sql, entry);
+        return entry.proxy();
+    }
+
+    // prepares the given statements ahead of use, statements that fail to prepare are skipped.
+    public synchronized void warmUp(Connection connection, Collection<String> statements) {
+        if (statements == null)
+            return;
+        for (String sql : statements) {
+            if (entries.containsKey(sql))
+                continue;
+            try {
+                entries.put(sql, new Entry(serverPrepare(connection, sql)));
+                statistics.warmed();
+            } catch (SQLException ex) {
+                logger.warn("Cannot prepare " + sql + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    private static PreparedStatement serverPrepare(Connection connection, String sql) throws SQLException {
+        if (connection instanceof MariaDbConnection)
+            return ((MariaDbConnection) connection).serverPrepareStatement(sql);
+        return connection.prepareStatement(sql);
+    }
+
+    // closes idle statements, statements in use are closed when given back.
+    public synchronized void close() {
+        List<Entry> list = new ArrayList<>(entries.values());
+        entries.clear();
+        for (Entry entry : list)
+            entry.evict();
+    }
+
+    // the server has already released the statements, e.g. after a connection reset.
+    public synchronized void clear() {
+        for (Entry entry : entries.values())
+            entry.evicted = true;
+        entries.clear();
+    }
+
+    synchronized void release(Entry entry) throws SQLException {
+        entry.inUse = false;
+        if (entry.evicted) {
+            entry.statement.close();
+            return;
+        }
+        PreparedStatement statement = entry.statement;
+        ResultSet resultSet = statement.getResultSet();
+        if (resultSet != null)
+            resultSet.close();
+        statement.clearParameters();
+        statement.clearBatch();
+        statement.setMaxRows(0);
+        statement.setQueryTimeout(0);
+        statement.setFetchSize(0);
+    }
+
+    private class Entry {
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        PreparedStatement proxy() {
+            return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(), INTERFACES,
+                    new Handler(this));
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                try {
+                    statement.close();
+                } catch (SQLException ex) {
+                    Logger.suppress(ex);
+                }
+            }
+        }
+    }
+
+    private class Handler implements InvocationHandler {
+        private final Entry entry;
+        private boolean closed;
+
+        Handler(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name) && method.getParameterCount() == 0) {
+                if (!closed) {
+                    closed = true;
+                    release(entry);
+                }
+                return null;
+            } else if ("isClosed".equals(name) && method.getParameterCount() == 0) {
+                return closed || entry.statement.isClosed();
+            } else if ("equals".equals(name) && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name) && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            } else if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getTargetException();
+            }
+        }
+    }
+}
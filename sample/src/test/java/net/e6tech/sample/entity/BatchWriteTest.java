@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.sample.entity;
+
+import net.e6tech.elements.common.reflection.Annotator;
+import net.e6tech.elements.common.resources.Provision;
+import net.e6tech.elements.common.resources.ResourceManager;
+import net.e6tech.elements.common.resources.Resources;
+import net.e6tech.elements.common.resources.UnitOfWork;
+import net.e6tech.elements.persist.EntityManagerConfig;
+import net.e6tech.elements.persist.EntityManagerExtension;
+import net.e6tech.elements.persist.EntityManagerInvocationHandler;
+import net.e6tech.elements.persist.hibernate.BatchStatistics;
+import net.e6tech.elements.persist.hibernate.HibernateEntityManagerProvider;
+import net.e6tech.elements.persist.hibernate.RecordingBatchBuilder;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.jdbc.batch.internal.BatchBuilderInitiator;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.Proxy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the JDBC batch sizes achieved by Hibernate on an in-memory H2 database with and without insert
+ * ordering, and the periodic flush and clear done by the EntityManager proxy.  The provider test goes through
+ * HibernateEntityManagerProvider using the batch-write persistence unit.
+ */
+public class BatchWriteTest {
+    private static final int ROWS = 10000;
+    private static final int BATCH_SIZE = 50;
+
+    @Test
+    void unorderedInserts() {
+        BatchStatistics statistics = new BatchStatistics();
+        SessionFactory factory = factory("unordered", statistics, false);
+        try {
+            long elapsed = insert(factory, null);
+            System.out.println("unordered inserts: " + statistics + " " + elapsed / 1000000 + "ms");
+            // alternating between two tables cuts every batch short.
+            assertEquals(2L * ROWS, statistics.getRows());
+            assertEquals(1, statistics.getMaxBatchSize());
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Test
+    void orderedInserts() {
+        BatchStatistics statistics = new BatchStatistics();
+        SessionFactory factory = factory("ordered", statistics, true);
+        try {
+            long elapsed = insert(factory, null);
+            System.out.println("ordered inserts: " + statistics + " " + elapsed / 1000000 + "ms");
+            assertEquals(2L * ROWS, statistics.getRows());
+            assertEquals(BATCH_SIZE, statistics.getMaxBatchSize());
+            assertEquals(2L * ROWS / BATCH_SIZE, statistics.getFullBatches());
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Test
+    void sessionBatchSize() {
+        BatchStatistics statistics = new BatchStatistics();
+        SessionFactory factory = factory("session", statistics, true);
+        try {
+            insert(factory, 10);
+            assertEquals(10, statistics.getMaxBatchSize());
+            assertEquals(2L * ROWS / 10, statistics.getFullBatches());
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Test
+    void flushEvery() {
+        BatchStatistics statistics = new BatchStatistics();
+        SessionFactory factory = factory("flush", statistics, true);
+        EntityManagerConfig config = Annotator.create(EntityManagerConfig.class,
+                (v, a) -> v.set(a::flushEvery, 2 * BATCH_SIZE));
+        EntityManager em = proxy(factory.createEntityManager(), config);
+        try {
+            em.getTransaction().begin();
+            Branch first = null;
+            for (int i = 0; i < ROWS; i++) {
+                Branch branch = H2Fixture.branch(i);
+                if (first == null)
+                    first = branch;
+                em.persist(branch);
+                em.persist(H2Fixture.ledger(i));
+            }
+            // persisted entities are detached each time the EntityManager is cleared.
+            assertFalse(em.contains(first));
+            em.getTransaction().commit();
+            assertEquals(2L * ROWS, statistics.getRows());
+            assertEquals(BATCH_SIZE, statistics.getMaxBatchSize());
+            assertEquals((long) ROWS, em.createQuery("select count(b) from Branch b").getSingleResult());
+        } finally {
+            em.close();
+            factory.close();
+        }
+    }
+
+    @Test
+    void provider() {
+        ResourceManager resourceManager = new ResourceManager();
+        resourceManager.loadProvision(Provision.class);
+        HibernateEntityManagerProvider provider = new HibernateEntityManagerProvider();
+        provider.setPersistenceUnitName("batch-write");
+        provider.setBatchSize(BATCH_SIZE);
+        provider.setOrderInserts(true);
+        provider.setMonitorTransaction(false);
+        provider.setResourceManager(resourceManager);
+        Resources resources = resourceManager.open(null);
+        provider.initialize(resources);
+        resources.abort();
+        resourceManager.addResourceProvider(provider);
+        BatchStatistics statistics = provider.getBatchStatistics();
+        try {
+            // batch size and insert ordering set by initialize, recorded by the default batch builder.
+            persist(new UnitOfWork(resourceManager), 0, true);
+            assertEquals(2L * ROWS, statistics.getRows());
+            assertEquals(BATCH_SIZE, statistics.getMaxBatchSize());
+            assertEquals(2L * ROWS / BATCH_SIZE, statistics.getFullBatches());
+
+            statistics.reset();
+            persist(new UnitOfWork(resourceManager)
+                    .annotate(EntityManagerConfig.class, EntityManagerConfig::batchSize, 10), ROWS, true);
+            assertEquals(10, statistics.getMaxBatchSize());
+
+            // only units of work asking for it are flushed and cleared.
+            persist(new UnitOfWork(resourceManager)
+                    .annotate(EntityManagerConfig.class, EntityManagerConfig::flushEvery, 2 * BATCH_SIZE), 2 * ROWS, false);
+        } finally {
+            provider.onShutdown();
+        }
+    }
+
+    // persists branches and ledgers, managed is true if the first branch is still managed at the end.
+    private void persist(UnitOfWork unitOfWork, int from, boolean managed) {
+        Resources resources = unitOfWork.open();
+        try {
+            EntityManager em = resources.getInstance(EntityManager.class);
+            Branch first = H2Fixture.branch(from);
+            em.persist(first);
+            em.persist(H2Fixture.ledger(from));
+            for (int i = from + 1; i < from + ROWS; i++) {
+                em.persist(H2Fixture.branch(i));
+                em.persist(H2Fixture.ledger(i));
+            }
+            assertEquals(managed, em.contains(first));
+            resources.commit();
+        } catch (RuntimeException | Error ex) {
+            resources.abort();
+            throw ex;
+        }
+    }
+
+    private SessionFactory factory(String name, BatchStatistics statistics, boolean orderInserts) {
+        Configuration configuration = H2Fixture.configuration("batch-" + name)
+                .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, Integer.toString(BATCH_SIZE))
+                .setProperty(AvailableSettings.ORDER_INSERTS, Boolean.toString(orderInserts));
+        configuration.getProperties().put(BatchBuilderInitiator.BUILDER, new RecordingBatchBuilder(statistics));
+        return configuration.buildSessionFactory();
+    }
+
+    private long insert(SessionFactory factory, Integer sessionBatchSize) {
+        Session session = factory.openSession();
+        try {
+            if (sessionBatchSize != null)
+                session.setJdbcBatchSize(sessionBatchSize);
+            long start = System.nanoTime();
+            session.getTransaction().begin();
+            for (int i = 0; i < ROWS; i++) {
+                session.persist(H2Fixture.branch(i));
+                session.persist(H2Fixture.ledger(i));
+                if ((i + 1) % 1000 == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+            session.getTransaction().commit();
+            return System.nanoTime() - start;
+        } finally {
+            session.close();
+        }
+    }
+
+    private EntityManager proxy(EntityManager em, EntityManagerConfig config) {
+        EntityManagerInvocationHandler handler = new EntityManagerInvocationHandler(null, em, "default", null, config,
+                null, null);
+        return (EntityManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{EntityManager.class, EntityManagerExtension.class}, handler);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.sample.entity;
+
+import net.e6tech.elements.persist.criteria.CompiledQueries;
+import net.e6tech.elements.persist.criteria.Select;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmarks the criteria DSL on an in-memory H2 database: compiled Selects against translating the query on every
+ * call, and keyset pagination and streaming against offset paging.
+ */
+public class CriteriaBenchmarkTest {
+    private static final int ROWS = 20000;
+    private static final int PAGE = 100;
+    private static final int WARM_UP = 1000;
+    private static final int ITERATIONS = 5000;
+    private static SessionFactory factory;
+
+    @BeforeAll
+    static void setup() {
+        factory = H2Fixture.sessionFactory("criteria");
+        H2Fixture.seed(factory, ROWS);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    void compiled() {
+        EntityManager em = factory.createEntityManager();
+        try {
+            List<Ledger> plain = lookup(em, false, 7);
+            List<Ledger> compiled = lookup(em, true, 7);
+            assertEquals(plain.size(), compiled.size());
+            assertEquals(198, compiled.size());
+
+            CompiledQueries.resetStats();
+            compiled = lookup(em, true, 8);
+            assertEquals(198, compiled.size());
+            assertEquals(1, CompiledQueries.getHits());
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    @Disabled("benchmark")
+    void benchmark() {
+        EntityManager em = factory.createEntityManager();
+        try {
+            for (int i = 0; i < WARM_UP; i++) {
+                lookup(em, false, i);
+                lookup(em, true, i);
+                em.clear();
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                lookup(em, false, i);
+                em.clear();
+            }
+            long plain = System.nanoTime() - start;
+
+            CompiledQueries.resetStats();
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                lookup(em, true, i);
+                em.clear();
+            }
+            long compiled = System.nanoTime() - start;
+
+            assertTrue(CompiledQueries.getHits() >= ITERATIONS);
+            System.out.println("per lookup: criteria=" + plain / ITERATIONS / 1000 + "us compiled=" + compiled / ITERATIONS / 1000 + "us");
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    void keyset() {
+        EntityManager em = factory.createEntityManager();
+        try {
+            long offsetFirst = 0;
+            long offsetLast = 0;
+            int pages = ROWS / PAGE;
+            for (int page = 0; page < pages; page++) {
+                long start = System.nanoTime();
+                byId(em).setFirstResult(page * PAGE).setMaxResults(PAGE).getResultList();
+                long elapsed = System.nanoTime() - start;
+                if (page < 10)
+                    offsetFirst += elapsed;
+                if (page >= pages - 10)
+                    offsetLast += elapsed;
+                em.clear();
+            }
+
+            long keysetFirst = 0;
+            long keysetLast = 0;
+            long visited = 0;
+            Ledger last = null;
+            for (int page = 0; page < pages; page++) {
+                long start = System.nanoTime();
+                List<Ledger> list = byId(em).after(last).setMaxResults(PAGE).getResultList();
+                long elapsed = System.nanoTime() - start;
+                if (page < 10)
+                    keysetFirst += elapsed;
+                if (page >= pages - 10)
+                    keysetLast += elapsed;
+                assertEquals(PAGE, list.size());
+                assertEquals((long) page * PAGE, (long) list.get(0).getId());
+                visited += list.size();
+                last = list.get(list.size() - 1);
+                em.clear();
+            }
+            assertEquals(ROWS, visited);
+            assertTrue(byId(em).after(last).setMaxResults(PAGE).getResultList().isEmpty());
+            System.out.println("per page, first 10 / last 10: offset=" + offsetFirst / 10000 + "us/" + offsetLast / 10000
+                    + "us keyset=" + keysetFirst / 10000 + "us/" + keysetLast / 10000 + "us");
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    void stream() {
+        EntityManager em = factory.createEntityManager();
+        try {
+            long count;
+            long sum;
+            try (Stream<Ledger> stream = byId(em).setFetchSize(PAGE).setClearInterval(PAGE).stream()) {
+                long[] total = new long[2];
+                stream.forEach(ledger -> {
+                    total[0]++;
+                    total[1] += ledger.getBalance();
+                    assertTrue(em.unwrap(Session.class).getStatistics().getEntityCount() <= PAGE + 1);
+                });
+                count = total[0];
+                sum = total[1];
+            }
+            assertEquals(ROWS, count);
+            assertEquals((long) ROWS * (ROWS - 1) / 2, sum);
+        } finally {
+            em.close();
+        }
+    }
+
+    private Select<Ledger> byId(EntityManager em) {
+        Select<Ledger> select = Select.create(em, Ledger.class);
+        return select.asc(() -> select.getTemplate().getId());
+    }
+
+    private List<Ledger> lookup(EntityManager em, boolean compiled, int n) {
+        Select<Ledger> select = Select.create(em, Ledger.class);
+        if (compiled)
+            select.compiled();
+        return select.where((s, ledger) -> {
+                    ledger.setName("ledger-" + (n % 100));
+                    s.greaterThan().setBalance(n % 100 + 100L);
+                })
+                .asc(() -> select.getTemplate().getBalance())
+                .getResultList();
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.sample.entity;
+
+import net.e6tech.elements.persist.datasource.Routing;
+import net.e6tech.elements.persist.datasource.hikari.ElementsHikariDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exercises ElementsHikariDataSource recovery from connection timeouts against in-memory H2 databases.
+ */
+@SuppressWarnings("squid:S2925")
+public class ElementsHikariDataSourceTest {
+
+    private ElementsHikariDataSource dataSource(String name, int maxPoolSize) {
+        ElementsHikariDataSource ds = new ElementsHikariDataSource();
+        ds.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setPoolName(name);
+        ds.setMaximumPoolSize(maxPoolSize);
+        ds.setMinimumIdle(1);
+        ds.setConnectionTimeout(250L);
+        ds.setResetPoolShutdownDelay(100L);
+        return ds;
+    }
+
+    @Test
+    void grow() throws Exception {
+        ElementsHikariDataSource ds = dataSource("grow", 2);
+        ds.setMaximumPoolSizeCeiling(4);
+        try (Connection c1 = ds.getConnection(); Connection c2 = ds.getConnection(); Connection c3 = ds.getConnection()) {
+            assertFalse(c3.isClosed());
+            assertEquals(3, ds.getMaximumPoolSize());
+            assertEquals(0L, ds.getLastReset());
+            assertTrue(ds.getWaitTimes().getCount() >= 4);
+            System.out.println("wait times " + ds.getWaitTimes());
+        } finally {
+            ds.close();
+        }
+    }
+
+    @Test
+    void concurrentTimeoutsGrowOnce() throws Exception {
+        ElementsHikariDataSource ds = dataSource("grow_once", 2);
+        ds.setMaximumPoolSizeCeiling(8);
+        ds.setResetPoolAfterTimeouts(1);
+        ds.setResetPoolMaxFrequency(0L);
+        ds.setResetPoolTolerance(0L);
+        Connection[] held = new Connection[2];
+        try {
+            for (int i = 0; i < held.length; i++)
+                held[i] = ds.getConnection();
+            // both time out together, only the first grows the pool and the other counts as a timeout.
+            Thread[] waiters = new Thread[2];
+            for (int i = 0; i < waiters.length; i++) {
+                waiters[i] = new Thread(() -> {
+                    try (Connection c = ds.getConnection()) {
+                        assertFalse(c.isClosed());
+                    } catch (SQLException ex) {
+                        // the pool may be reset underneath
+                    }
+                });
+                waiters[i].start();
+            }
+            for (Thread waiter : waiters)
+                waiter.join(2000L);
+            assertTrue(ds.getLastReset() > 0);
+        } finally {
+            for (Connection c : held)
+                if (c != null)
+                    c.close();
+            ds.close();
+        }
+    }
+
+    @Test
+    void evictStuck() throws Exception {
+        ElementsHikariDataSource ds = dataSource("stuck", 2);
+        ds.setEvictStuckAfter(300L);
+        try {
+            Thread[] holders = new Thread[2];
+            for (int i = 0; i < holders.length; i++) {
+                Connection connection = ds.getConnection();
+                holders[i] = new Thread(() -> hold(connection));
+                holders[i].start();
+            }
+            Thread.sleep(400L);
+            try (Connection c = ds.getConnection()) {
+                assertFalse(c.isClosed());
+            }
+            assertEquals(0L, ds.getLastReset());
+            for (Thread holder : holders)
+                holder.join(1000L);
+        } finally {
+            ds.close();
+        }
+    }
+
+    @Test
+    void noEvictionWhileHealthy() throws Exception {
+        ElementsHikariDataSource ds = dataSource("healthy", 4);
+        ds.setEvictStuckAfter(100L);
+        ds.setAdjustInterval(50L);
+        try (Connection connection = ds.getConnection()) {
+            Thread.sleep(400L);
+            try (Statement statement = connection.createStatement()) {
+                assertTrue(statement.execute("select 1"));
+            }
+        } finally {
+            ds.close();
+        }
+    }
+
+    // uses the connection until it fails, like a unit of work stuck on a dead connection would.
+    private void hold(Connection connection) {
+        try {
+            while (true) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("select 1");
+                }
+                Thread.sleep(50L);
+            }
+        } catch (SQLException ex) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void resetAndWarmUp() throws Exception {
+        ElementsHikariDataSource ds = dataSource("reset", 8);
+        ds.setResetPoolAfterTimeouts(1);
+        ds.setResetPoolMaxFrequency(0L);
+        ds.setResetPoolTolerance(0L);
+        ds.setAdjustInterval(100L);
+        Connection[] held = new Connection[8];
+        try {
+            for (int i = 0; i < held.length; i++)
+                held[i] = ds.getConnection();
+            try (Connection c = ds.getConnection()) {
+                assertFalse(c.isClosed());
+            }
+            assertTrue(ds.getLastReset() > 0);
+            assertTrue(ds.isWarmingUp());
+            assertEquals(2, ds.getMaximumPoolSize());
+
+            Thread.sleep(500L);
+            assertFalse(ds.isWarmingUp());
+            assertEquals(8, ds.getMaximumPoolSize());
+            assertEquals(1, ds.getMinimumIdle());
+        } finally {
+            for (Connection c : held)
+                if (c != null)
+                    c.close();
+            ds.close();
+        }
+    }
+
+    @Test
+    void replica() throws Exception {
+        ElementsHikariDataSource primary = dataSource("primary", 2);
+        ElementsHikariDataSource replica = dataSource("replica", 2);
+        primary.setReplica(replica);
+        try {
+            try (Connection c = primary.getConnection()) {
+                assertTrue(c.getMetaData().getURL().contains("primary"));
+                assertFalse(c.isReadOnly());
+            }
+            Routing.setReadOnly(true);
+            try (Connection c = primary.getConnection()) {
+                assertTrue(c.getMetaData().getURL().contains("replica"));
+                assertTrue(c.isReadOnly());
+            } finally {
+                Routing.clear();
+            }
+        } finally {
+            primary.close();
+            replica.close();
+        }
+    }
+}
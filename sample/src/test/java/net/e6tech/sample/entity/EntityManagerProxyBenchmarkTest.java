@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.sample.entity;
+
+import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.persist.EntityManagerExtension;
+import net.e6tech.elements.persist.EntityManagerInvocationHandler;
+import net.e6tech.elements.persist.Watcher;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import java.lang.reflect.Proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the overhead of the EntityManager proxy installed by EntityManagerProvider by calling em.find in a loop
+ * on an in-memory H2 database.  Calls are only recorded and timed when debug logging is enabled for Watcher, so
+ * the sampled and timed proxies are measured with debug logging turned on.
+ */
+public class EntityManagerProxyBenchmarkTest {
+    private static final int ROWS = 1000;
+    private static final int ITERATIONS = 1000000;
+    private static SessionFactory factory;
+
+    @BeforeAll
+    static void setup() {
+        factory = H2Fixture.sessionFactory("proxy");
+        H2Fixture.seed(factory, ROWS);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    void transaction() {
+        EntityManager em = proxy(factory.createEntityManager(), 16);
+        try {
+            EntityTransaction tx = em.getTransaction();
+            assertSame(tx, em.getTransaction());
+            assertEquals("ledger-7", em.find(Ledger.class, 7L).getName());
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    @Disabled("benchmark")
+    void find() {
+        EntityManager plain = factory.createEntityManager();
+        EntityManager untimed = proxy(factory.createEntityManager(), 16);
+        EntityManager sampled = proxy(factory.createEntityManager(), 16);
+        EntityManager timed = proxy(factory.createEntityManager(), 1);
+        String watcher = Watcher.class.getName();
+        Level level = LogManager.getLogger(watcher).getLevel();
+        try {
+            find(plain);  // warm up and load the persistence contexts
+            find(untimed);
+
+            long direct = time(plain);
+            // without debug logging the proxy neither records nor times calls.
+            long proxied = time(untimed);
+
+            Configurator.setLevel(watcher, Level.DEBUG);
+            assertTrue(Logger.getLogger(Watcher.class).isDebugEnabled());
+            find(sampled);
+            find(timed);
+            long sampling = time(sampled);
+            long everyCall = time(timed);
+
+            System.out.println("per em.find: direct=" + direct / ITERATIONS + "ns proxy=" + proxied / ITERATIONS
+                    + "ns proxy debug sampled=" + sampling / ITERATIONS
+                    + "ns proxy debug timing every call=" + everyCall / ITERATIONS + "ns");
+        } finally {
+            Configurator.setLevel(watcher, level);
+            plain.close();
+            untimed.close();
+            sampled.close();
+            timed.close();
+        }
+    }
+
+    private long time(EntityManager em) {
+        long start = System.nanoTime();
+        find(em);
+        return System.nanoTime() - start;
+    }
+
+    private void find(EntityManager em) {
+        for (int i = 0; i < ITERATIONS; i++)
+            assertEquals((long) i % ROWS, (long) em.find(Ledger.class, (long) (i % ROWS)).getId());
+    }
+
+    private EntityManager proxy(EntityManager em, int sampleRate) {
+        EntityManagerInvocationHandler handler = new EntityManagerInvocationHandler(null, em, "default", null, null,
+                null, null);
+        handler.setSampleRate(sampleRate);
+        return (EntityManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{EntityManager.class, EntityManagerExtension.class}, handler);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.sample.entity;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+
+import javax.persistence.EntityManager;
+import java.util.Date;
+
+/**
+ * In-memory H2 databases for the persistence tests in this package.  Every database maps Ledger and Branch,
+ * tests add their own entities when they need different mappings.
+ */
+public class H2Fixture {
+    public static final long CREATED = 1600000000000L;
+
+    private H2Fixture() {
+    }
+
+    public static Configuration configuration(String database, Class<?> ... entities) {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(Ledger.class)
+                .addAnnotatedClass(Branch.class)
+                .setProperty(AvailableSettings.URL, "jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1")
+                .setProperty(AvailableSettings.DRIVER, "org.h2.Driver")
+                .setProperty(AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop");
+        for (Class<?> entity : entities)
+            configuration.addAnnotatedClass(entity);
+        return configuration;
+    }
+
+    /**
+     * Turns on the second level cache, regions are configured in jcache.xml.
+     */
+    public static Configuration cached(Configuration configuration) {
+        return configuration
+                .setProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true")
+                .setProperty(AvailableSettings.CACHE_REGION_FACTORY, "org.hibernate.cache.jcache.JCacheRegionFactory")
+                .setProperty("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider")
+                .setProperty("hibernate.javax.cache.uri", "classpath://jcache.xml");
+    }
+
+    public static SessionFactory sessionFactory(String database) {
+        return configuration(database).buildSessionFactory();
+    }
+
+    /**
+     * Inserts ledgers with ids from 0 to rows - 1, see ledger(long).
+     */
+    public static void seed(SessionFactory factory, int rows) {
+        EntityManager em = factory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (int i = 0; i < rows; i++) {
+                em.persist(ledger(i));
+                if (i % 1000 == 999) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Ledgers are named ledger-0 to ledger-99 so that every name is shared by one in a hundred rows.
+     */
+    public static Ledger ledger(long id) {
+        Ledger ledger = new Ledger();
+        ledger.setId(id);
+        ledger.setName("ledger-" + (id % 100));
+        ledger.setBalance(id);
+        ledger.setCreated(new Date(CREATED + id));
+        return ledger;
+    }
+
+    public static Branch branch(long id) {
+        Branch branch = new Branch();
+        branch.setId(id);
+        branch.setName("branch-" + id);
+        return branch;
+    }
+}
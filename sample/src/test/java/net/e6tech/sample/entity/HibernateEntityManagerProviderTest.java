@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.sample.entity;
+
+import net.e6tech.elements.common.resources.Provision;
+import net.e6tech.elements.common.resources.ResourceManager;
+import net.e6tech.elements.common.resources.Resources;
+import net.e6tech.elements.common.subscribe.Broadcast;
+import net.e6tech.elements.common.subscribe.Notice;
+import net.e6tech.elements.common.subscribe.Subscriber;
+import net.e6tech.elements.persist.EvictBatch;
+import net.e6tech.elements.persist.hibernate.HibernateEntityManagerProvider;
+import net.e6tech.elements.persist.hibernate.Interceptor;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Second level cache invalidation by HibernateEntityManagerProvider on an in-memory H2 database.  Units of work
+ * are opened through a ResourceManager and the notices the provider publishes are captured by a Broadcast.
+ */
+public class HibernateEntityManagerProviderTest {
+    private static SessionFactory factory;
+    private static ResourceManager resourceManager;
+    private static Provider provider;
+    private static List<EvictBatch> published = new CopyOnWriteArrayList<>();
+
+    @BeforeAll
+    static void setup() {
+        factory = H2Fixture.cached(H2Fixture.configuration("evict_batch"))
+                .setProperty(AvailableSettings.SESSION_SCOPED_INTERCEPTOR, Interceptor.class.getName())
+                .buildSessionFactory();
+        H2Fixture.seed(factory, 4);
+
+        resourceManager = new ResourceManager();
+        resourceManager.loadProvision(Provision.class);
+        resourceManager.getNotificationCenter().addBroadcast(new Broadcast() {
+            @Override
+            public void subscribe(String topic, Subscriber subscriber) {
+                // publish only
+            }
+
+            @Override
+            public void unsubscribe(String topic, Subscriber subscriber) {
+                // publish only
+            }
+
+            @Override
+            public void publish(Notice<?> notice) {
+                if (notice.getUserObject() instanceof EvictBatch)
+                    published.add((EvictBatch) notice.getUserObject());
+            }
+        });
+        provider = new Provider(factory);
+        provider.setResourceManager(resourceManager);
+        provider.setMonitorTransaction(false);
+        resourceManager.addResourceProvider(provider);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        factory.close();
+    }
+
+    @BeforeEach
+    void reset() {
+        published.clear();
+        provider.setEvictRegionThreshold(100);
+    }
+
+    @Test
+    void abortPublishesNothing() {
+        Resources resources = resourceManager.open(null);
+        EntityManager em = resources.getInstance(EntityManager.class);
+        em.find(Ledger.class, 1L).setName("aborted");
+        em.flush();
+        resources.abort();
+
+        assertTrue(published.isEmpty());
+
+        // nothing collected by the aborted unit of work leaks into the next one.
+        resources = resourceManager.open(null);
+        resources.getInstance(EntityManager.class).find(Ledger.class, 1L);
+        resources.commit();
+        assertTrue(published.isEmpty());
+    }
+
+    @Test
+    void commitPublishesSingleBatch() {
+        Resources resources = resourceManager.open(null);
+        EntityManager em = resources.getInstance(EntityManager.class);
+        // two flushes of the same entity are collected twice by the Interceptor.
+        em.find(Ledger.class, 1L).setName("first");
+        em.flush();
+        em.find(Ledger.class, 1L).setName("second");
+        em.find(Ledger.class, 2L).setName("second");
+        em.flush();
+        resources.commit();
+
+        assertEquals(1, published.size());
+        EvictBatch batch = published.get(0);
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), batch.getEntities().get(Ledger.class.getName()));
+        assertEquals(2, batch.size());
+        assertTrue(batch.getTables().contains(Ledger.class.getName()));
+    }
+
+    @Test
+    void evictEntries() {
+        load(1L, 2L, 3L);
+        provider.apply(new EvictBatch().addEntity(Ledger.class.getName(), 1L).addEntity(Ledger.class.getName(), 2L));
+        assertFalse(factory.getCache().containsEntity(Ledger.class, 1L));
+        assertFalse(factory.getCache().containsEntity(Ledger.class, 2L));
+        assertTrue(factory.getCache().containsEntity(Ledger.class, 3L));
+    }
+
+    @Test
+    void evictRegionAboveThreshold() {
+        provider.setEvictRegionThreshold(1);
+        load(1L, 2L, 3L);
+        provider.apply(new EvictBatch().addEntity(Ledger.class.getName(), 1L).addEntity(Ledger.class.getName(), 2L));
+        // the entity not in the batch goes with the region.
+        assertFalse(factory.getCache().containsEntity(Ledger.class, 3L));
+    }
+
+    private void load(Long ... ids) {
+        EntityManager em = factory.createEntityManager();
+        try {
+            for (Long id : ids)
+                em.find(Ledger.class, id);
+        } finally {
+            em.close();
+        }
+        for (Long id : ids)
+            assertTrue(factory.getCache().containsEntity(Ledger.class, id));
+    }
+
+    private static class Provider extends HibernateEntityManagerProvider {
+        Provider(SessionFactory factory) {
+            emf = factory;
+        }
+
+        void apply(EvictBatch batch) {
+            evictBatch(batch);
+        }
+    }
+}
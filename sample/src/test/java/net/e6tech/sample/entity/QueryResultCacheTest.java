@@ -0,0 +1,254 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.sample.entity;
+
+import net.e6tech.elements.persist.TableVersions;
+import net.e6tech.elements.persist.criteria.QueryResultCache;
+import net.e6tech.elements.persist.criteria.Select;
+import net.e6tech.elements.persist.hibernate.Interceptor;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Read-through query result cache on an in-memory H2 database.  The session scoped Interceptor bumps TableVersions
+ * on writes and releases them when the transaction completes.
+ */
+public class QueryResultCacheTest {
+    private static final int ROWS = 20000;
+    private static final int ITERATIONS = 2000;
+    private static SessionFactory factory;
+    private QueryResultCache cache;
+
+    @BeforeAll
+    static void setup() {
+        factory = H2Fixture.configuration("result_cache")
+                .setProperty(AvailableSettings.SESSION_SCOPED_INTERCEPTOR, Interceptor.class.getName())
+                .buildSessionFactory();
+        H2Fixture.seed(factory, ROWS);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        factory.close();
+    }
+
+    @BeforeEach
+    void newCache() {
+        cache = new QueryResultCache("test-" + System.nanoTime());
+    }
+
+    private static void commit(EntityManager em) {
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    void readThrough() {
+        List<Ledger> first = inTransaction(em -> byName(em, 7));
+        List<Ledger> second = inTransaction(em -> byName(em, 7));
+        assertEquals(200, first.size());
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++)
+            assertEquals(first.get(i).getId(), second.get(i).getId());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+
+        // different parameter value, different entry.
+        inTransaction(em -> byName(em, 8));
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void keyedByValue() {
+        // same string form, different values
+        Date first = new Date(H2Fixture.CREATED + 5);
+        Date second = new Date(H2Fixture.CREATED + 6);
+        assertEquals(first.toString(), second.toString());
+
+        List<Ledger> ledgers = inTransaction(em -> byCreated(em, first));
+        assertEquals(1, ledgers.size());
+        assertEquals(5L, ledgers.get(0).getId());
+        ledgers = inTransaction(em -> byCreated(em, second));
+        assertEquals(1, ledgers.size());
+        assertEquals(6L, ledgers.get(0).getId());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+
+        inTransaction(em -> byCreated(em, new Date(first.getTime())));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void invalidatedByWrite() {
+        assertEquals(200, inTransaction(em -> byName(em, 9)).size());
+
+        EntityManager em = factory.createEntityManager();
+        em.getTransaction().begin();
+        Ledger ledger = new Ledger();
+        ledger.setId((long) ROWS + 1);
+        ledger.setName("ledger-9");
+        em.persist(ledger);
+        commit(em);
+
+        assertEquals(201, inTransaction(e -> byName(e, 9)).size());
+        assertEquals(0, cache.getHits());
+        assertEquals(201, inTransaction(e -> byName(e, 9)).size());
+        assertEquals(1, cache.getHits());
+
+        em = factory.createEntityManager();
+        em.getTransaction().begin();
+        em.remove(em.find(Ledger.class, (long) ROWS + 1));
+        commit(em);
+        assertEquals(200, inTransaction(e -> byName(e, 9)).size());
+    }
+
+    @Test
+    void bypassedWhileWriting() {
+        EntityManager writer = factory.createEntityManager();
+        writer.getTransaction().begin();
+        writer.find(Ledger.class, 11L).setBalance(-1);
+        writer.flush();
+        try {
+            inTransaction(em -> byName(em, 11));
+            inTransaction(em -> byName(em, 11));
+            assertEquals(2, cache.getBypassed());
+            assertEquals(0, cache.getHits());
+        } finally {
+            writer.getTransaction().rollback();
+            writer.close();
+        }
+        assertEquals(0, TableVersions.shared().getWriters(Ledger.class.getName()));
+        inTransaction(em -> byName(em, 11));
+        inTransaction(em -> byName(em, 11));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void invalidatedByAssociationWrite() {
+        EntityManager em = factory.createEntityManager();
+        em.getTransaction().begin();
+        Branch branch = new Branch();
+        branch.setId(1L);
+        branch.setName("north");
+        em.persist(branch);
+        for (long i = 0; i < 10; i++)
+            em.find(Ledger.class, i).setBranch(branch);
+        commit(em);
+
+        assertEquals(10, inTransaction(e -> byBranch(e, "north")).size());
+        assertEquals(10, inTransaction(e -> byBranch(e, "north")).size());
+        assertEquals(1, cache.getHits());
+
+        // only Branch is written, the cached result joins it through ledger.branch.name
+        em = factory.createEntityManager();
+        em.getTransaction().begin();
+        em.find(Branch.class, 1L).setName("south");
+        commit(em);
+
+        assertEquals(0, inTransaction(e -> byBranch(e, "north")).size());
+        assertEquals(1, cache.getHits());
+        assertEquals(10, inTransaction(e -> byBranch(e, "south")).size());
+    }
+
+    @Test
+    void remoteWrite() {
+        inTransaction(em -> byName(em, 12));
+        TableVersions.shared().bump(Ledger.class.getName());
+        inTransaction(em -> byName(em, 12));
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    @Disabled("benchmark")
+    void benchmark() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            int n = i;
+            inTransaction(em -> count(em, n, null));
+            inTransaction(em -> count(em, n, cache));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            int n = i;
+            assertEquals(1, inTransaction(em -> count(em, n, null)).size());
+        }
+        long uncached = System.nanoTime() - start;
+
+        cache.resetStats();
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            int n = i;
+            assertEquals(1, inTransaction(em -> count(em, n, cache)).size());
+        }
+        long cached = System.nanoTime() - start;
+
+        assertTrue(cache.getHits() >= ITERATIONS);
+        System.out.println("per count over " + ROWS + " rows: database=" + uncached / ITERATIONS / 1000
+                + "us cached=" + cached / ITERATIONS / 1000 + "us");
+    }
+
+    private <R> List<R> inTransaction(java.util.function.Function<EntityManager, List<R>> function) {
+        EntityManager em = factory.createEntityManager();
+        em.getTransaction().begin();
+        try {
+            return function.apply(em);
+        } finally {
+            commit(em);
+        }
+    }
+
+    private List<Ledger> byName(EntityManager em, int n) {
+        Select<Ledger> select = Select.create(em, Ledger.class).cacheable(cache);
+        return select.where(ledger -> ledger.setName("ledger-" + n))
+                .asc(() -> select.getTemplate().getId())
+                .getResultList();
+    }
+
+    private List<Ledger> byCreated(EntityManager em, Date created) {
+        Select<Ledger> select = Select.create(em, Ledger.class).cacheable(cache);
+        return select.where(ledger -> ledger.setCreated(created)).getResultList();
+    }
+
+    private List<Ledger> byBranch(EntityManager em, String name) {
+        Select<Ledger> select = Select.create(em, Ledger.class).cacheable(cache);
+        return select.where(ledger -> ledger.getBranch().setName(name))
+                .asc(() -> select.getTemplate().getId())
+                .getResultList();
+    }
+
+    private List<Long> count(EntityManager em, int n, QueryResultCache resultCache) {
+        Select<Ledger> select = Select.create(em, Ledger.class);
+        if (resultCache != null)
+            select.cacheable(resultCache);
+        select.where(ledger -> ledger.setName("ledger-" + (n % 100)));
+        select.count();
+        return select.getResultList();
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.sample.entity;
+
+import net.e6tech.elements.persist.mariadb.StatementCache;
+import net.e6tech.elements.persist.mariadb.StatementCacheStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StatementCache over H2 connections, which stand in for MariaDB: cached statements are whatever
+ * prepareStatement returns.
+ */
+public class StatementCacheTest {
+    private static final String FIRST = "select x from system_range(1, 10) where x > ?";
+    private static final String SECOND = "select x from system_range(1, 10) where x < ?";
+
+    private Connection connection;
+    private StatementCacheStatistics statistics;
+    private StatementCache cache;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:statement_cache");
+        statistics = new StatementCacheStatistics();
+        cache = new StatementCache(2, statistics);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        cache.close();
+        connection.close();
+    }
+
+    @Test
+    void cacheable() {
+        assertTrue(StatementCache.cacheable("select * from t", false));
+        assertTrue(StatementCache.cacheable("  \n UPDATE t set a = 1", true));
+        assertTrue(StatementCache.cacheable("delete from t", true));
+        assertTrue(StatementCache.cacheable("insert into t values (?)", false));
+        assertFalse(StatementCache.cacheable("insert into t values (?)", true));
+        assertFalse(StatementCache.cacheable("call proc()", false));
+        assertFalse(StatementCache.cacheable("sel", false));
+    }
+
+    @Test
+    void hit() throws SQLException {
+        PreparedStatement statement = cache.prepare(connection, FIRST);
+        assertTrue(Proxy.isProxyClass(statement.getClass()));
+        assertEquals(7, count(statement, 3));
+        statement.close();
+
+        PreparedStatement again = cache.prepare(connection, FIRST);
+        assertEquals(2, count(again, 8));
+        again.close();
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void resetOnRelease() throws SQLException {
+        PreparedStatement statement = cache.prepare(connection, FIRST);
+        PreparedStatement raw = statement.unwrap(PreparedStatement.class);
+        statement.setMaxRows(2);
+        statement.setFetchSize(5);
+        statement.setQueryTimeout(30);
+        statement.setInt(1, 0);
+        ResultSet resultSet = statement.executeQuery();
+        statement.close();
+
+        assertTrue(resultSet.isClosed());
+        assertFalse(raw.isClosed());
+        assertEquals(0, raw.getMaxRows());
+        assertEquals(0, raw.getQueryTimeout());
+
+        PreparedStatement again = cache.prepare(connection, FIRST);
+        // parameters were cleared
+        assertThrows(SQLException.class, again::executeQuery);
+        assertEquals(10, count(again, 0));
+        again.close();
+    }
+
+    @Test
+    void proxyClose() throws SQLException {
+        PreparedStatement statement = cache.prepare(connection, FIRST);
+        PreparedStatement raw = statement.unwrap(PreparedStatement.class);
+        assertFalse(statement.isClosed());
+        statement.close();
+        statement.close();  // closing twice releases once
+        assertTrue(statement.isClosed());
+        assertFalse(raw.isClosed());
+        assertThrows(SQLException.class, () -> statement.setInt(1, 1));
+        assertNotEquals(statement, cache.prepare(connection, FIRST));
+        assertEquals(statement, statement);
+        assertEquals(System.identityHashCode(statement), statement.hashCode());
+    }
+
+    @Test
+    void inUseFallback() throws SQLException {
+        PreparedStatement first = cache.prepare(connection, FIRST);
+        PreparedStatement second = cache.prepare(connection, FIRST);
+        assertFalse(Proxy.isProxyClass(second.getClass()));
+        assertEquals(2, statistics.getMisses());
+        assertEquals(7, count(first, 3));
+        assertEquals(2, count(second, 8));
+        second.close();
+        assertTrue(second.isClosed());
+        first.close();
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void evictedWhileInUse() throws SQLException {
+        cache = new StatementCache(1, statistics);
+        PreparedStatement first = cache.prepare(connection, FIRST);
+        PreparedStatement raw = first.unwrap(PreparedStatement.class);
+        PreparedStatement second = cache.prepare(connection, SECOND);
+        assertEquals(1, statistics.getEvictions());
+        assertEquals(1, cache.size());
+
+        // still usable until given back, then closed
+        assertFalse(raw.isClosed());
+        assertEquals(7, count(first, 3));
+        first.close();
+        assertTrue(raw.isClosed());
+
+        second.close();
+        PreparedStatement again = cache.prepare(connection, FIRST);
+        assertEquals(3, statistics.getMisses());
+        again.close();
+    }
+
+    @Test
+    void clearOnReset() throws SQLException {
+        PreparedStatement idle = cache.prepare(connection, FIRST);
+        PreparedStatement idleRaw = idle.unwrap(PreparedStatement.class);
+        idle.close();
+        PreparedStatement inUse = cache.prepare(connection, SECOND);
+        PreparedStatement inUseRaw = inUse.unwrap(PreparedStatement.class);
+
+        // after a reset the server has released the statements, nothing is closed by the cache.
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertFalse(idleRaw.isClosed());
+        inUse.close();
+        assertTrue(inUseRaw.isClosed());
+
+        PreparedStatement again = cache.prepare(connection, FIRST);
+        assertNotSame(idleRaw, again.unwrap(PreparedStatement.class));
+        again.close();
+    }
+
+    @Test
+    void closeIdle() throws SQLException {
+        PreparedStatement idle = cache.prepare(connection, FIRST);
+        PreparedStatement idleRaw = idle.unwrap(PreparedStatement.class);
+        idle.close();
+        PreparedStatement inUse = cache.prepare(connection, SECOND);
+        PreparedStatement inUseRaw = inUse.unwrap(PreparedStatement.class);
+
+        cache.close();
+        assertTrue(idleRaw.isClosed());
+        assertFalse(inUseRaw.isClosed());
+        inUse.close();
+        assertTrue(inUseRaw.isClosed());
+    }
+
+    @Test
+    void warmUp() throws SQLException {
+        cache.warmUp(connection, Arrays.asList(FIRST, "select missing from nowhere", FIRST));
+        assertEquals(1, cache.size());
+        assertEquals(1, statistics.getWarmed());
+
+        PreparedStatement statement = cache.prepare(connection, FIRST);
+        assertEquals(1, statistics.getHits());
+        assertEquals(0, statistics.getMisses());
+        statement.close();
+    }
+
+    private int count(PreparedStatement statement, int greater) throws SQLException {
+        statement.setInt(1, greater);
+        int count = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next())
+                count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.sample.entity;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures inserts per second with 32 threads on an in-memory H2 database, with ids from TableIdGenerator using
+ * the optimizer and using striped blocks.
+ */
+public class TableIdGeneratorBenchmarkTest {
+    private static final int THREADS = 32;
+    private static final int INSERTS = 500;
+    private static final String GENERATOR = "net.e6tech.elements.persist.hibernate.TableIdGenerator";
+    private static SessionFactory factory;
+
+    @BeforeAll
+    static void setup() {
+        factory = H2Fixture.configuration("ids", PlainItem.class, StripedItem.class)
+                .setProperty(AvailableSettings.POOL_SIZE, "" + (THREADS * 2 + 4))
+                .buildSessionFactory();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    @Disabled("benchmark")
+    void inserts() throws Exception {
+        insert(PlainItem::new);  // warm up
+        insert(StripedItem::new);
+
+        long plain = insert(PlainItem::new);
+        long striped = insert(StripedItem::new);
+        System.out.println("inserts/sec with " + THREADS + " threads: optimizer=" + plain + " striped=" + striped);
+    }
+
+    private long insert(Supplier<Object> supplier) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        Set<Object> ids = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    EntityManager em = factory.createEntityManager();
+                    try {
+                        for (int i = 0; i < INSERTS; i++) {
+                            Object item = supplier.get();
+                            em.getTransaction().begin();
+                            em.persist(item);
+                            em.getTransaction().commit();
+                            ids.add(factory.getPersistenceUnitUtil().getIdentifier(item));
+                            em.clear();
+                        }
+                    } finally {
+                        em.close();
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(THREADS * INSERTS, ids.size());
+        return THREADS * INSERTS * 1000000000L / elapsed;
+    }
+
+    @Entity
+    @Table(name = "plain_item")
+    public static class PlainItem {
+        private Long id;
+
+        @Id
+        @GeneratedValue(generator = "plain")
+        @GenericGenerator(name = "plain", strategy = GENERATOR, parameters = {
+                @Parameter(name = "table_name", value = "id_sequence"),
+                @Parameter(name = "increment_size", value = "20")})
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+    }
+
+    @Entity
+    @Table(name = "striped_item")
+    public static class StripedItem {
+        private Long id;
+
+        @Id
+        @GeneratedValue(generator = "striped")
+        @GenericGenerator(name = "striped", strategy = GENERATOR, parameters = {
+                @Parameter(name = "table_name", value = "id_sequence"),
+                @Parameter(name = "increment_size", value = "20"),
+                @Parameter(name = "stripes", value = "8")})
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+    }
+}
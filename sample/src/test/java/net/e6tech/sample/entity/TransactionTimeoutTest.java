@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.sample.entity;
+
+import net.e6tech.elements.common.resources.Provision;
+import net.e6tech.elements.common.resources.ResourceManager;
+import net.e6tech.elements.common.resources.Resources;
+import net.e6tech.elements.common.resources.UnitOfWork;
+import net.e6tech.elements.common.util.concurrent.TimeoutService;
+import net.e6tech.elements.persist.EntityManagerMonitor;
+import net.e6tech.elements.persist.hibernate.HibernateEntityManagerProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Transaction timeouts tracked by EntityManagerMonitor on the TimeoutService, using the timeout persistence unit.
+ */
+@SuppressWarnings("squid:S2925")
+public class TransactionTimeoutTest {
+    private static final long TIMEOUT = 200L;
+
+    private ResourceManager resourceManager;
+    private TimeoutService service;
+    private AbortProvider provider;
+
+    @BeforeEach
+    void setup() {
+        service = new TimeoutService("transaction", 10L, 64);
+        resourceManager = new ResourceManager();
+        resourceManager.loadProvision(Provision.class);
+        provider = new AbortProvider();
+        provider.setPersistenceUnitName("timeout");
+        provider.setTransactionTimeout(TIMEOUT);
+        provider.setTimeoutService(service);
+        provider.setResourceManager(resourceManager);
+        Resources resources = resourceManager.open(null);
+        provider.initialize(resources);
+        resources.abort();
+        resourceManager.addResourceProvider(provider);
+    }
+
+    @AfterEach
+    void tearDown() {
+        provider.onShutdown();
+        service.shutdown();
+    }
+
+    @Test
+    void expiredIsRolledBack() throws Exception {
+        Resources resources = new UnitOfWork(resourceManager).open();
+        try {
+            EntityManager em = resources.getInstance(EntityManager.class);
+            em.persist(H2Fixture.ledger(1L));
+            em.flush();
+            assertEquals(1, provider.getEntityManagerMonitors().size());
+
+            awaitAbort();
+            assertTrue(provider.getEntityManagerMonitors().isEmpty());
+            assertEquals(1, service.getTimedOutCount());
+        } finally {
+            resources.abort();
+            Thread.interrupted(); // the monitor interrupts the thread that opened the unit of work
+        }
+        assertEquals(0L, count());
+    }
+
+    @Test
+    void extendedIsNotCancelled() throws Exception {
+        Resources resources = new UnitOfWork(resourceManager).open();
+        try {
+            EntityManagerMonitor monitor = provider.getEntityManagerMonitors().get(0);
+            monitor.addExpiration(TIMEOUT);
+            monitor.expire(3 * TIMEOUT);
+            Thread.sleep(2 * TIMEOUT);
+            assertEquals(1, provider.aborted.getCount());
+            resources.getInstance(EntityManager.class).persist(H2Fixture.ledger(2L));
+            resources.commit();
+        } catch (RuntimeException | Error ex) {
+            resources.abort();
+            throw ex;
+        }
+
+        // only the commit counts as a cancel, extensions are rescheduled.
+        assertEquals(1, service.getScheduledCount());
+        assertEquals(2, service.getRescheduledCount());
+        assertEquals(1, service.getCancelledCount());
+        assertEquals(0, service.getTimedOutCount());
+        assertEquals(1L, count());
+    }
+
+    // the monitor interrupts this thread before rolling back, so the wait may have to be resumed once.
+    private void awaitAbort() throws InterruptedException {
+        try {
+            assertTrue(provider.aborted.await(2, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            assertTrue(provider.aborted.await(2, TimeUnit.SECONDS));
+        }
+    }
+
+    private long count() {
+        Resources resources = new UnitOfWork(resourceManager).open();
+        try {
+            return (Long) resources.getInstance(EntityManager.class)
+                    .createQuery("select count(l) from Ledger l").getSingleResult();
+        } finally {
+            resources.abort();
+        }
+    }
+
+    private static class AbortProvider extends HibernateEntityManagerProvider {
+        private CountDownLatch aborted = new CountDownLatch(1);
+
+        @Override
+        protected void onAbort(Resources resources, String alias) {
+            super.onAbort(resources, alias);
+            aborted.countDown();
+        }
+    }
+}
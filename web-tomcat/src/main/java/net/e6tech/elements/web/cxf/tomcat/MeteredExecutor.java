@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.web.cxf.tomcat;
+
+import net.e6tech.elements.web.cxf.ThreadModel;
+import org.apache.tomcat.util.threads.TaskQueue;
+import org.apache.tomcat.util.threads.TaskThreadFactory;
+import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tomcat's request executor configured by a ThreadModel, set up the same way as the connector's internal
+ * executor but with a bounded TaskQueue.  Jobs are timed while queued and counted when rejected.
+ */
+public class MeteredExecutor extends ThreadPoolExecutor {
+    private final ThreadModel threadModel;
+
+    public MeteredExecutor(ThreadModel threadModel, String namePrefix) {
+        super(threadModel.getMinThreads(), threadModel.getMaxThreads(), threadModel.getIdleTimeout(), TimeUnit.MILLISECONDS,
+                new TaskQueue(threadModel.isBounded() ? threadModel.getQueueCapacity() : Integer.MAX_VALUE),
+                new TaskThreadFactory(namePrefix, true, Thread.NORM_PRIORITY));
+        ((TaskQueue) getQueue()).setParent(this);
+        this.threadModel = threadModel;
+    }
+
+    public ThreadModel getThreadModel() {
+        return threadModel;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        threadModel.execute(super::execute, command);
+    }
+}
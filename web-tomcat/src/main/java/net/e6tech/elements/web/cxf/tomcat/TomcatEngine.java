@@ -25,6 +25,7 @@ import net.e6tech.elements.web.cxf.CXFServer;
 import net.e6tech.elements.web.cxf.JaxRSServlet;
 import net.e6tech.elements.web.cxf.ServerController;
 import net.e6tech.elements.web.cxf.ServerEngine;
+import net.e6tech.elements.web.cxf.ThreadModel;
 import org.apache.catalina.Container;
 import org.apache.catalina.Context;
 import org.apache.catalina.LifecycleException;
@@ -49,8 +50,7 @@ public class TomcatEngine implements ServerEngine {
 
     private static Logger logger = Logger.getLogger();
 
-    private int maxThreads = 250;
-    private int minSpareThreads = 10;
+    private ThreadModel threadModel = new ThreadModel(10, 250);
     private int maxConnections = 10000;
     private String baseDir;
     private Provision provision;
@@ -58,20 +58,30 @@ public class TomcatEngine implements ServerEngine {
     private WorkerPoolConfig workerPoolConfig = new WorkerPoolConfig();
     private TomcatSSL tomcatSSL = new TomcatSSL();
 
+    @Override
+    public ThreadModel getThreadModel() {
+        return threadModel;
+    }
+
+    @Inject(optional = true)
+    public void setThreadModel(ThreadModel threadModel) {
+        this.threadModel = threadModel;
+    }
+
     public int getMaxThreads() {
-        return maxThreads;
+        return threadModel.getMaxThreads();
     }
 
     public void setMaxThreads(int maxThreads) {
-        this.maxThreads = maxThreads;
+        threadModel.setMaxThreads(maxThreads);
     }
 
     public int getMinSpareThreads() {
-        return minSpareThreads;
+        return threadModel.getMinThreads();
     }
 
     public void setMinSpareThreads(int minSpareThreads) {
-        this.minSpareThreads = minSpareThreads;
+        threadModel.setMinThreads(minSpareThreads);
     }
 
     public int getMaxConnections() {
@@ -152,6 +162,8 @@ public class TomcatEngine implements ServerEngine {
             if (provision != null && useThreadPool) {
                 Executor executor = provision.getExecutor();
                 connector.getProtocolHandler().setExecutor(executor);
+            } else {
+                connector.getProtocolHandler().setExecutor(createExecutor(controller.getURL()));
             }
             connector.setPort(controller.getURL().getPort());
             tomcat.setConnector(connector);
@@ -167,8 +179,11 @@ public class TomcatEngine implements ServerEngine {
         while (iterator.hasNext()) {
             Tomcat tomcat = iterator.next();
             try {
+                Executor executor = tomcat.getConnector().getProtocolHandler().getExecutor();
                 tomcat.stop();
                 tomcat.destroy();
+                if (executor instanceof MeteredExecutor)
+                    ((MeteredExecutor) executor).shutdown();
             } catch (Exception ex) {
                 StringBuilder builder = new StringBuilder();
                 for (Container container : tomcat.getHost().findChildren()) {
@@ -182,13 +197,30 @@ public class TomcatEngine implements ServerEngine {
         }
     }
 
+    /*
+     * Executors configured through ThreadModel are owned by whoever configured them and are wrapped so
+     * that Tomcat does not shut them down.  MeteredExecutors are created per connector and shut down in stop.
+     */
+    protected Executor createExecutor(URL url) {
+        threadModel.register("Tomcat");
+        Executor executor = threadModel.resolveExecutor();
+        if (executor != null)
+            return job -> threadModel.execute(executor, job);
+        return new MeteredExecutor(threadModel, "tomcat-" + url.getPort() + "-exec-");
+    }
+
     @SuppressWarnings("squid:S3776")
     protected Connector createConnector(CXFServer cxfServer, URL url) {
         Connector connector = tomcatSSL.createConnector();
         connector.setPort(url.getPort());
-        connector.setProperty("maxThreads", String.valueOf(maxThreads));  // default 200
+        connector.setProperty("maxThreads", String.valueOf(threadModel.getMaxThreads()));  // default 200
         connector.setProperty("maxConnections", String.valueOf(maxConnections)); // default 10000
-        connector.setProperty("minSpareThreads", String.valueOf(minSpareThreads)); // default 10
+        connector.setProperty("minSpareThreads", String.valueOf(threadModel.getMinThreads())); // default 10
+        // Tomcat 9 NIO uses a single acceptor and poller, these only apply to connectors that still support them.
+        if (threadModel.getAcceptors() > 0 && !connector.setProperty("acceptorThreadCount", String.valueOf(threadModel.getAcceptors())))
+            logger.debug("acceptorThreadCount not supported by {}", connector.getProtocolHandlerClassName());
+        if (threadModel.getSelectors() > 0 && !connector.setProperty("pollerThreadCount", String.valueOf(threadModel.getSelectors())))
+            logger.debug("pollerThreadCount not supported by {}", connector.getProtocolHandlerClassName());
         connector.setProperty("address", url.getHost());
         tomcatSSL.initialize(cxfServer, url, connector);
         return connector;
@@ -26,23 +26,15 @@ import net.e6tech.elements.common.resources.Startable;
 import net.e6tech.elements.common.util.ExceptionMapper;
 import net.e6tech.elements.common.util.SystemException;
 import net.e6tech.elements.common.util.datastructure.Pair;
-import net.e6tech.elements.jmx.JMXService;
-import net.e6tech.elements.jmx.stat.Measurement;
 import net.e6tech.elements.security.JavaKeyStore;
 import net.e6tech.elements.security.SelfSignedCert;
 import net.e6tech.elements.web.JaxExceptionHandler;
 import org.apache.cxf.message.Message;
 import org.apache.cxf.transport.http.AbstractHTTPDestination;
 
-import javax.annotation.Nonnull;
-import javax.management.JMException;
-import javax.management.ObjectInstance;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.ws.rs.PathParam;
-import javax.ws.rs.QueryParam;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.KeyStore;
@@ -50,6 +42,7 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 /**
@@ -57,7 +50,6 @@ import java.util.function.Supplier;
  */
 @SuppressWarnings("squid:S134")
 public class CXFServer implements Initializable, Startable {
-    private static final String CANNOT_BE_NULL = " cannot be null. \n";
     private static final Logger logger = Logger.getLogger();
     private Provision provision;
     private Interceptor interceptor;
@@ -81,6 +73,10 @@ public class CXFServer implements Initializable, Startable {
     private Class<? extends ServerEngine> serverEngineClass;
     private Object serverEngineData;
     private List<ServerController> controllers = new LinkedList<>();
+    private Map<Method, MethodMetadata> methodMetadata = new ConcurrentHashMap<>();
+    private boolean compression = false;
+    private int compressionThreshold = 1024;
+    private boolean etag = false;
 
     public void setAddresses(List<String> addresses) throws MalformedURLException {
         for (String address : addresses) {
@@ -218,6 +214,38 @@ public class CXFServer implements Initializable, Startable {
         this.responseHeaders = responseHeaders;
     }
 
+    /**
+     * Enables gzip/deflate compression of GET responses.  It can be overridden per resource class or method
+     * using @Compress.
+     */
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Enables hash based ETags and If-None-Match handling for GET responses.  It can be overridden per
+     * resource class or method using @ETag.  Entities implementing EntityTagged always get their own ETag.
+     */
+    public boolean isEtag() {
+        return etag;
+    }
+
+    public void setEtag(boolean etag) {
+        this.etag = etag;
+    }
+
     public ServerEngine getServerEngine() {
         return serverEngine;
     }
@@ -339,77 +367,44 @@ public class CXFServer implements Initializable, Startable {
         }
     }
 
-    void computePerformance(Method method, Map<Method,String> methods, long duration) {
-        ObjectInstance instance = null;
+    /**
+     * Precomputes metadata for the resource methods of cls so that the first request does not pay for it.
+     */
+    public void registerMethodMetadata(Class<?> cls) {
+        for (Method method : cls.getMethods()) {
+            if (method.getDeclaringClass() != Object.class)
+                getMethodMetadata(method);
+        }
+    }
+
+    MethodMetadata getMethodMetadata(Method method) {
+        MethodMetadata metadata = methodMetadata.get(method);
+        if (metadata == null)
+            metadata = methodMetadata.computeIfAbsent(method, MethodMetadata::new);
+        return metadata;
+    }
+
+    void computePerformance(Method method, long duration) {
+        MethodMetadata metadata = getMethodMetadata(method);
         try {
-            instance = getMeasurement(method, methods);
-            logger.trace("{} call took {}ms",  instance.getObjectName().getCanonicalName(), duration);
-            JMXService.invoke(instance.getObjectName(), "add", duration);
+            metadata.add(duration, isMeasurement());
+            if (logger.isTraceEnabled())
+                logger.trace("{} call took {}ms",  metadata.getMeasurementName(), duration);
         } catch (Exception e) {
             logger.debug("Unable to record measurement for " + method, e);
         }
     }
 
-    void recordFailure(Method method, Map<Method,String> methods) {
+    void recordFailure(Method method) {
         try {
-            ObjectInstance instance = getMeasurement(method, methods);
-            JMXService.invoke(instance.getObjectName(), "fail");
+            getMethodMetadata(method).fail(isMeasurement());
         } catch (Exception e) {
             logger.debug("Unable to record fail measurement for " + method, e);
         }
     }
 
-    private ObjectInstance getMeasurement(Method method, Map<Method, String> methods) throws JMException {
-        String methodName = methods.computeIfAbsent(method, m -> {
-            StringBuilder builder = new StringBuilder();
-            builder.append(m.getDeclaringClass().getTypeName());
-            builder.append(".");
-            builder.append(m.getName());
-            Class[] types = m.getParameterTypes();
-            for (int i = 0; i < types.length; i++) {
-                builder.append("|"); // separating parameters using underscores instead commas because of JMX
-                // ObjectName constraint
-                builder.append(types[i].getSimpleName());
-            }
-            return builder.toString();
-        });
-
-        String objectName = "net.e6tech:type=Restful,name=" + methodName;
-        return JMXService.registerIfAbsent(objectName, () -> new Measurement(methodName, "ms", isMeasurement()));
-    }
-
-    @SuppressWarnings("squid:S3776")
     void checkInvocation(Method method, Object[] args) {
-        Parameter[] params = method.getParameters();
-        int idx = 0;
-        StringBuilder builder = null;
-        for (Parameter param : params) {
-            QueryParam queryParam =  param.getAnnotation(QueryParam.class);
-            PathParam pathParam =  param.getAnnotation(PathParam.class);
-            if (args[idx] == null || (args[idx] instanceof String && ((String) args[idx]).trim().isEmpty())) {
-                if (pathParam != null) {
-                    if (builder == null)
-                        builder = new StringBuilder();
-                    builder.append("path parameter ").append(pathParam.value()).append(CANNOT_BE_NULL);
-                }
-
-                if (param.getAnnotation(Nonnull.class) != null) {
-                    if (queryParam != null) {
-                        if (builder == null)
-                            builder = new StringBuilder();
-                        builder.append("query parameter ").append(queryParam.value()).append(CANNOT_BE_NULL);
-                    } else if (pathParam == null) {
-                        if (builder == null)
-                            builder = new StringBuilder();
-                        builder.append("post parameter ").append("arg").append(idx).append(CANNOT_BE_NULL);
-                    }
-                }
-            }
-            idx++;
-        }
-        if (builder != null) {
-            throw new IllegalArgumentException(builder.toString());
-        }
+        getMethodMetadata(method).checkInvocation(args);
     }
 }
 
@@ -18,10 +18,12 @@ package net.e6tech.elements.web.cxf;
 
 import net.e6tech.elements.common.inject.Module;
 import net.e6tech.elements.common.interceptor.CallFrame;
+import net.e6tech.elements.common.interceptor.Interceptor;
 import net.e6tech.elements.common.interceptor.InterceptorHandler;
 import net.e6tech.elements.common.logging.LogLevel;
 import net.e6tech.elements.common.logging.Logger;
 import net.e6tech.elements.common.reflection.ClassSignature;
+import net.e6tech.elements.common.reflection.Copier;
 import net.e6tech.elements.common.reflection.MethodSignature;
 import net.e6tech.elements.common.reflection.Reflection;
 import net.e6tech.elements.common.reflection.Signature;
@@ -38,17 +40,27 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class InstanceResourceProvider extends PerRequestResourceProvider {
     private ResourcesFactory factory;
     private Observer observer;
-    private Map<Method, String> methods = new ConcurrentHashMap<>();
     private Object prototype;
     private CXFServer server;
     private Map<Signature, Map<Class<? extends Annotation>, Annotation>> annotations;
+    private Map<Class<? extends Annotation>, Annotation> classAnnotations;
+    // class and method annotations merged per method, computed once and shared read-only by all requests.
+    private Map<Method, Map<Class<? extends Annotation>, Annotation>> methodAnnotations = new ConcurrentHashMap<>();
+    private Copier copier;
+    private int poolSize = 0;
+    private Queue<Object> pool = new ConcurrentLinkedQueue<>();
+    private AtomicInteger pooled = new AtomicInteger();
 
     @SuppressWarnings("unchecked")
     InstanceResourceProvider(JaxRSServer server, Class resourceClass, Object prototype, Module module, ResourcesFactory factory, Observer observer) {
@@ -66,48 +78,86 @@ class InstanceResourceProvider extends PerRequestResourceProvider {
             }
         });
         annotations = Reflection.getAnnotations(resourceClass);
+        classAnnotations = Collections.unmodifiableMap(annotations.getOrDefault(new ClassSignature(resourceClass), new HashMap<>()));
+        if (prototype != null)
+            copier = Copier.of(prototype.getClass());
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
     }
 
     @SuppressWarnings("unchecked")
     @Override
     protected Object createInstance(Message message) {
+        if (poolSize > 0) {
+            Object proxy = pool.poll();
+            if (proxy != null) {
+                pooled.decrementAndGet();
+                Observer cloneObserver = (observer == null) ? null : observer.clone();
+                UnitOfWork uow = (cloneObserver != null) ? cloneObserver.open(factory) : factory.open();
+                Handler handler = Interceptor.getInterceptorHandler(proxy);
+                handler.reset(uow, cloneObserver, message);
+                return proxy;
+            }
+        }
+
         Object instance = super.createInstance(message);
         if (prototype != null)
-            Reflection.copyInstance(instance, prototype);
+            copier.copy(instance, prototype);
         Observer cloneObserver = (observer == null) ? null : observer.clone();
         UnitOfWork uow = (cloneObserver != null) ? cloneObserver.open(factory) : factory.open();
-        return server.getInterceptor().newInterceptor(instance, new Handler(uow, methods, cloneObserver, message));
+        return server.getInterceptor().newInterceptor(instance, new Handler(uow, cloneObserver, message));
+    }
+
+    @Override
+    public void releaseInstance(Message message, Object proxy) {
+        if (poolSize > 0) {
+            if (pooled.incrementAndGet() <= poolSize) {
+                Handler handler = Interceptor.getInterceptorHandler(proxy);
+                handler.reset(null, null, null);
+                pool.offer(proxy);
+                return;
+            }
+            pooled.decrementAndGet();
+        }
+        super.releaseInstance(message, proxy);
+    }
+
+    private Map<Class<? extends Annotation>, Annotation> annotations(Method method) {
+        return methodAnnotations.computeIfAbsent(method, m -> {
+            Map<Class<? extends Annotation>, Annotation> map = new HashMap<>(classAnnotations);
+            map.putAll(annotations.getOrDefault(new MethodSignature(m), Collections.emptyMap()));
+            return Collections.unmodifiableMap(map);
+        });
     }
 
     private class Handler implements InterceptorHandler {
         UnitOfWork uow;
         Message message;
         Observer observer;
-        Map<Method, String> methods;
 
-        Handler(UnitOfWork uow, Map<Method, String> methods, Observer observer, Message message) {
+        Handler(UnitOfWork uow, Observer observer, Message message) {
             this.uow = uow;
             this.message = message;
             this.observer = observer;
-            this.methods = methods;
         }
 
-        @SuppressWarnings("unchecked")
-        private void open(Object target, Method method) {
-            Class cls = target.getClass();
-            ClassSignature classSignature = new ClassSignature(cls);
-            Map<Class<? extends Annotation>, Annotation> map = annotations.getOrDefault(classSignature, new HashMap<>());
-            MethodSignature methodSignature = new MethodSignature(method);
-            Map<Class<? extends Annotation>, Annotation> map2 = annotations.getOrDefault(methodSignature, new HashMap<>());
-
-            for (Map.Entry<Class<? extends Annotation>, Annotation> entry : map.entrySet()) {
-                uow.put((Class) entry.getKey(), entry.getValue());
-            }
+        void reset(UnitOfWork uow, Observer observer, Message message) {
+            this.uow = uow;
+            this.observer = observer;
+            this.message = message;
+        }
 
-            for (Map.Entry<Class<? extends Annotation>, Annotation> entry : map2.entrySet()) {
+        @SuppressWarnings("unchecked")
+        private void open(Method method) {
+            for (Map.Entry<Class<? extends Annotation>, Annotation> entry : annotations(method).entrySet()) {
                 uow.put((Class) entry.getKey(), entry.getValue());
             }
-
             uow.open();
         }
 
@@ -124,7 +174,7 @@ class InstanceResourceProvider extends PerRequestResourceProvider {
                 ignored = true;
             } else {
                 try {
-                    open(frame.getTarget(), frame.getMethod());
+                    open(frame.getMethod());
                     uowOpen = true;
                 } catch (Exception th) {
                     JaxRSServer.getLogger().debug(th.getMessage(), th);
@@ -166,13 +216,13 @@ class InstanceResourceProvider extends PerRequestResourceProvider {
                         }
                     });
                     long duration = System.currentTimeMillis() - start;
-                    server.computePerformance(frame.getMethod(), methods, duration);
+                    server.computePerformance(frame.getMethod(), duration);
                 } else {
                     // PreDestroy is called
                     result = frame.invoke();
                 }
             } catch (Exception th) {
-                server.recordFailure(frame.getMethod(), methods);
+                server.recordFailure(frame.getMethod());
                 exception = true;
                 server.getProvision().log(JaxRSServer.getLogger(), LogLevel.DEBUG, th.getMessage(), th);
                 server.handleException(message, frame, th);
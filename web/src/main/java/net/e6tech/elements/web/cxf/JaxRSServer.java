@@ -214,7 +214,9 @@ public class JaxRSServer extends CXFServer {
         } else {
             Module module = (res == null) ? null : res.getModule();
             ResourcesFactory factory = (resourcesFactory != null) ? resourcesFactory : getProvision().resourcesFactory();
-            resourceProvider = new InstanceResourceProvider(this, jaxResource.getResourceClass(), prototype, module, factory, hObserver);
+            InstanceResourceProvider provider = new InstanceResourceProvider(this, jaxResource.getResourceClass(), prototype, module, factory, hObserver);
+            provider.setPoolSize(jaxResource.getPoolSize());
+            resourceProvider = provider;
         }
 
         String resourceName = jaxResource.getName();
@@ -248,6 +250,7 @@ public class JaxRSServer extends CXFServer {
             if (securityAnnotationEngine != null) {
                 securityAnnotationEngine.register(jaxResource.getResourceClass());
             }
+            registerMethodMetadata(resourceClass);
 
             ResourceProvider resourceProvider = initResourceProvider(res, jaxResource, hObserver);
 
@@ -306,6 +309,14 @@ public class JaxRSServer extends CXFServer {
         setupCorsFilter(beans);
         setupLogging(beans);
 
+        // compression and conditional requests
+        for (JAXRSServerFactoryBean bean: beans)
+            bean.setProvider(new ResponseOptimizer(this));
+
+        // 503 when the engine's request queue is backed up
+        for (JAXRSServerFactoryBean bean: beans)
+            bean.setProvider(new LoadShedder(this));
+
         // setup exception mapper
         for (JAXRSServerFactoryBean bean: beans)
             bean.setProvider(new InternalExceptionMapper(getExceptionMapper()));
@@ -41,6 +41,7 @@ public class JaxResource {
     private String classLoaderResolver;
     private ClassLoader classLoaderDelegate;
     private boolean singleton;
+    private int poolSize = 0;
     private String registerBean;
     private String name;
     private String prototypeResolver;
@@ -110,6 +111,11 @@ public class JaxResource {
         return this;
     }
 
+    public JaxResource pooled(int poolSize) {
+        setPoolSize(poolSize);
+        return this;
+    }
+
     public JaxResource prototype(String prototype) {
         setPrototypeResolver(prototype);
         return this;
@@ -179,6 +185,17 @@ public class JaxResource {
         this.singleton = singleton;
     }
 
+    /**
+     * @return maximum number of idle instances kept for reuse.  0 means a new instance is created per request.
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
     public String getRegisterBean() {
         return registerBean;
     }
@@ -224,7 +241,7 @@ public class JaxResource {
     public Class resolveResourceClass(ClassLoader externalLoader, Configuration.Resolver resolver) {
         Class cls = getResourceClass();
         if (cls != null) {
-            resolveSingleton();
+            resolveLifecycle();
             return cls;
         }
 
@@ -236,7 +253,7 @@ public class JaxResource {
             if (prototype != null) {
                 setPrototypeInstance(prototype);
                 setResourceClass(prototype.getClass());
-                resolveSingleton();
+                resolveLifecycle();
                 return prototype.getClass();
             } else
                 throw new SystemException("Missing resource class in resources map");
@@ -258,18 +275,21 @@ public class JaxResource {
 
             cls = loader.loadClass(getResourceClassName());
             setResourceClass(cls);
-            resolveSingleton();
+            resolveLifecycle();
         } catch (ClassNotFoundException e) {
             throw new SystemException(e);
         }
         return getResourceClass();
     }
 
-    private void resolveSingleton() {
+    private void resolveLifecycle() {
         if (!singleton) {
             Map<Signature, Map<Class<? extends Annotation>, Annotation>> annotations = Reflection.getAnnotations(resourceClass);
-            if (annotations.getOrDefault(new ClassSignature(resourceClass), new HashMap<>()).get(Singleton.class) != null) {
+            Map<Class<? extends Annotation>, Annotation> classAnnotations = annotations.getOrDefault(new ClassSignature(resourceClass), new HashMap<>());
+            if (classAnnotations.get(Singleton.class) != null) {
                 singleton = true;
+            } else if (poolSize <= 0 && classAnnotations.get(Pooled.class) != null) {
+                poolSize = ((Pooled) classAnnotations.get(Pooled.class)).value();
             }
         }
     }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.web.cxf;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Answers requests with 503 while the engine's request queue is above ThreadModel's shedQueueSize so that
+ * queued requests drain quickly instead of all of them timing out.
+ */
+@Provider
+@PreMatching
+public class LoadShedder implements ContainerRequestFilter {
+    private CXFServer server;
+
+    public LoadShedder(CXFServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        ServerEngine engine = server.getServerEngine();
+        ThreadModel threadModel = (engine == null) ? null : engine.getThreadModel();
+        if (threadModel != null && threadModel.isOverloaded()) {
+            threadModel.shed();
+            request.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, threadModel.getRetryAfter())
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.cxf;
+
+import net.e6tech.elements.jmx.JMXService;
+import net.e6tech.elements.jmx.stat.Measurement;
+
+import javax.annotation.Nonnull;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+
+/**
+ * Immutable per resource method information computed once by CXFServer so that the request path does not need
+ * to read parameter annotations or look up JMX measurements.
+ */
+class MethodMetadata {
+    private static final String CANNOT_BE_NULL = " cannot be null. \n";
+
+    private final Method method;
+    private final String measurementName;
+    private final String[] pathParams;
+    private final String[] queryParams;
+    private final boolean[] nonnull;
+    private final boolean checked;
+    private volatile Measurement measurement;
+    private volatile ObjectName objectName;
+
+    MethodMetadata(Method method) {
+        this.method = method;
+        StringBuilder builder = new StringBuilder();
+        builder.append(method.getDeclaringClass().getTypeName());
+        builder.append(".");
+        builder.append(method.getName());
+        Class[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            builder.append("|"); // separating parameters using underscores instead commas because of JMX
+            // ObjectName constraint
+            builder.append(types[i].getSimpleName());
+        }
+        measurementName = builder.toString();
+
+        Parameter[] params = method.getParameters();
+        pathParams = new String[params.length];
+        queryParams = new String[params.length];
+        nonnull = new boolean[params.length];
+        boolean check = false;
+        for (int i = 0; i < params.length; i++) {
+            PathParam pathParam = params[i].getAnnotation(PathParam.class);
+            QueryParam queryParam = params[i].getAnnotation(QueryParam.class);
+            pathParams[i] = (pathParam != null) ? pathParam.value() : null;
+            queryParams[i] = (queryParam != null) ? queryParam.value() : null;
+            nonnull[i] = params[i].getAnnotation(Nonnull.class) != null;
+            if (pathParam != null || nonnull[i])
+                check = true;
+        }
+        checked = check;
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    String getMeasurementName() {
+        return measurementName;
+    }
+
+    void checkInvocation(Object[] args) {
+        if (!checked)
+            return;
+        StringBuilder builder = null;
+        for (int idx = 0; idx < pathParams.length; idx++) {
+            if (args[idx] == null || (args[idx] instanceof String && ((String) args[idx]).trim().isEmpty())) {
+                if (pathParams[idx] != null) {
+                    if (builder == null)
+                        builder = new StringBuilder();
+                    builder.append("path parameter ").append(pathParams[idx]).append(CANNOT_BE_NULL);
+                }
+
+                if (nonnull[idx]) {
+                    if (queryParams[idx] != null) {
+                        if (builder == null)
+                            builder = new StringBuilder();
+                        builder.append("query parameter ").append(queryParams[idx]).append(CANNOT_BE_NULL);
+                    } else if (pathParams[idx] == null) {
+                        if (builder == null)
+                            builder = new StringBuilder();
+                        builder.append("post parameter ").append("arg").append(idx).append(CANNOT_BE_NULL);
+                    }
+                }
+            }
+        }
+        if (builder != null) {
+            throw new IllegalArgumentException(builder.toString());
+        }
+    }
+
+    void add(long duration, boolean enabled) throws Exception {
+        resolveMeasurement(enabled);
+        if (measurement != null)
+            measurement.add(duration);
+        else
+            JMXService.invoke(objectName, "add", duration);
+    }
+
+    void fail(boolean enabled) throws Exception {
+        resolveMeasurement(enabled);
+        if (measurement != null)
+            measurement.fail();
+        else
+            JMXService.invoke(objectName, "fail");
+    }
+
+    ObjectName getObjectName() {
+        return objectName;
+    }
+
+    // Registers the measurement on first use.  If the MBean was registered by someone else, e.g. another server
+    // sharing the same resource class, updates go through JMX.
+    private void resolveMeasurement(boolean enabled) throws JMException {
+        if (objectName != null)
+            return;
+        synchronized (this) {
+            if (objectName != null)
+                return;
+            Measurement[] created = new Measurement[1];
+            String name = "net.e6tech:type=Restful,name=" + measurementName;
+            ObjectName registered = JMXService.registerIfAbsent(name, () -> {
+                created[0] = new Measurement(measurementName, "ms", enabled);
+                return created[0];
+            }).getObjectName();
+            measurement = created[0];
+            objectName = registered;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.web.cxf;
+
+import net.e6tech.elements.common.logging.Logger;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.Providers;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Handles ETags, conditional requests and response compression for GET requests.  It runs as a JAX-RS filter so
+ * that it works the same way regardless of the ServerEngine.
+ *
+ * When the returned entity implements EntityTagged, or the resource returns a Response with an ETag, a matching
+ * If-None-Match results in a 304 without serializing the entity.  So does an If-Modified-Since that is not before
+ * the Last-Modified of the Response.  Otherwise, when hash based ETags or compression are enabled, the entity is
+ * serialized once into a buffer, hashed and optionally compressed.  Brotli is not supported because the JDK does
+ * not ship an encoder.
+ */
+@Provider
+public class ResponseOptimizer implements ContainerResponseFilter {
+    private static final Logger logger = Logger.getLogger();
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+
+    private CXFServer server;
+    private Map<Method, Options> options = new ConcurrentHashMap<>();
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Context
+    private Providers providers;
+
+    public ResponseOptimizer(CXFServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+        if (!HttpMethod.GET.equals(request.getMethod())
+                || response.getStatus() != Response.Status.OK.getStatusCode()
+                || !response.hasEntity())
+            return;
+
+        EntityTag tag = response.getEntityTag();
+        Object entity = response.getEntity();
+        if (tag == null && entity instanceof EntityTagged) {
+            String value = ((EntityTagged) entity).entityTag();
+            if (value != null) {
+                tag = new EntityTag(value);
+                response.getHeaders().putSingle(HttpHeaders.ETAG, tag);
+            }
+        }
+
+        String ifNoneMatch = request.getHeaderString(HttpHeaders.IF_NONE_MATCH);
+        if (tag != null && matches(ifNoneMatch, tag)) {
+            notModified(response);
+            return;
+        }
+
+        // If-Modified-Since is ignored when If-None-Match is present, see RFC 7232 section 3.3.
+        if (ifNoneMatch == null
+                && notModifiedSince(request.getHeaderString(HttpHeaders.IF_MODIFIED_SINCE), response.getLastModified())) {
+            notModified(response);
+            return;
+        }
+
+        Options opts = options(resourceInfo == null ? null : resourceInfo.getResourceMethod());
+        String encoding = (opts.compress) ? encoding(request.getHeaderString(HttpHeaders.ACCEPT_ENCODING)) : null;
+        boolean hash = opts.etag && tag == null;
+        if ((!hash && encoding == null) || !bufferable(entity)
+                || response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING))
+            return;
+
+        byte[] bytes = serialize(response);
+        if (bytes == null)
+            return;
+
+        if (hash) {
+            tag = new EntityTag(digest(bytes));
+            // a 304 carries the ETag as well.
+            response.getHeaders().putSingle(HttpHeaders.ETAG, tag);
+            if (matches(ifNoneMatch, tag)) {
+                notModified(response);
+                return;
+            }
+        }
+
+        if (encoding != null) {
+            response.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (bytes.length >= opts.threshold) {
+                bytes = compress(bytes, encoding);
+                response.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+            }
+        }
+        response.setEntity(bytes, response.getEntityAnnotations(), response.getMediaType());
+    }
+
+    private void notModified(ContainerResponseContext response) {
+        response.setStatus(Response.Status.NOT_MODIFIED.getStatusCode());
+        response.setEntity(null);
+        response.getHeaders().remove(HttpHeaders.CONTENT_TYPE);
+    }
+
+    private boolean bufferable(Object entity) {
+        return !(entity instanceof StreamingOutput)
+                && !(entity instanceof InputStream)
+                && !(entity instanceof File);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] serialize(ContainerResponseContext response) throws IOException {
+        Object entity = response.getEntity();
+        if (entity instanceof byte[])
+            return (byte[]) entity;
+        MediaType mediaType = response.getMediaType();
+        MessageBodyWriter writer = (providers == null) ? null
+                : providers.getMessageBodyWriter(response.getEntityClass(), response.getEntityType(),
+                response.getEntityAnnotations(), mediaType);
+        if (writer == null)
+            return null;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        writer.writeTo(entity, response.getEntityClass(), response.getEntityType(), response.getEntityAnnotations(),
+                mediaType, response.getHeaders(), out);
+        return out.toByteArray();
+    }
+
+    private Options options(Method method) {
+        if (method == null)
+            return new Options(server.isCompression(), server.getCompressionThreshold(), server.isEtag());
+        return options.computeIfAbsent(method, m -> {
+            Compress compress = m.getAnnotation(Compress.class);
+            if (compress == null)
+                compress = m.getDeclaringClass().getAnnotation(Compress.class);
+            ETag etag = m.getAnnotation(ETag.class);
+            if (etag == null)
+                etag = m.getDeclaringClass().getAnnotation(ETag.class);
+            boolean compressing = (compress != null) ? compress.value() : server.isCompression();
+            int threshold = (compress != null && compress.threshold() >= 0) ? compress.threshold() : server.getCompressionThreshold();
+            boolean tagging = (etag != null) ? etag.value() : server.isEtag();
+            return new Options(compressing, threshold, tagging);
+        });
+    }
+
+    static boolean matches(String ifNoneMatch, EntityTag tag) {
+        if (ifNoneMatch == null)
+            return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if ("*".equals(value))
+                return true;
+            if (value.startsWith("W/"))   // If-None-Match uses weak comparison
+                value = value.substring(2);
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\""))
+                value = value.substring(1, value.length() - 1);
+            if (value.equals(tag.getValue()))
+                return true;
+        }
+        return false;
+    }
+
+    // HTTP dates have a resolution of one second.
+    static boolean notModifiedSince(String ifModifiedSince, Date lastModified) {
+        if (ifModifiedSince == null || lastModified == null)
+            return false;
+        try {
+            long since = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return lastModified.getTime() / 1000 <= since;
+        } catch (DateTimeParseException ex) {
+            Logger.suppress(ex);
+            return false;
+        }
+    }
+
+    static String encoding(String acceptEncoding) {
+        if (acceptEncoding == null)
+            return null;
+        boolean deflate = false;
+        for (String candidate : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = candidate.trim().split(";");
+            String coding = parts[0].trim();
+            if (parts.length > 1 && parts[1].trim().matches("q\\s*=\\s*0(\\.0*)?"))
+                continue;
+            if (GZIP.equals(coding) || "x-gzip".equals(coding))
+                return GZIP;
+            if (DEFLATE.equals(coding))
+                deflate = true;
+        }
+        return deflate ? DEFLATE : null;
+    }
+
+    static byte[] compress(byte[] bytes, String encoding) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+        try (OutputStream stream = GZIP.equals(encoding) ? new GZIPOutputStream(out) : new DeflaterOutputStream(out)) {
+            stream.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    static String digest(byte[] bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(bytes);
+            byte[] truncated = new byte[16];
+            System.arraycopy(hash, 0, truncated, 0, truncated.length);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(truncated);
+        } catch (NoSuchAlgorithmException e) {
+            logger.warn("SHA-256 not available", e);
+            return Integer.toHexString(Arrays.hashCode(bytes));
+        }
+    }
+
+    private static class Options {
+        private final boolean compress;
+        private final int threshold;
+        private final boolean etag;
+
+        Options(boolean compress, int threshold, boolean etag) {
+            this.compress = compress;
+            this.threshold = threshold;
+            this.etag = etag;
+        }
+    }
+}
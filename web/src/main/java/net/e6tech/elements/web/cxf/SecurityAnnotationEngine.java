@@ -28,6 +28,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by barry.
@@ -46,6 +47,15 @@ public class SecurityAnnotationEngine {
 
     private Map<Object, Class> securityProviders = new HashMap<>();
     private Map<String, Map<MethodSignature, Set<String>>> scannedClassMap = new HashMap<>();
+    // lookups resolved per request method so that the request path does not create MethodSignatures.
+    private Map<Class, Map<Method, Set<String>>> resolvedRoles = new ConcurrentHashMap<>();
+    private Map<Method, ReadOnlyAccess> readOnlyAccess = new ConcurrentHashMap<>();
+
+    private enum ReadOnlyAccess {
+        ALLOW,
+        DENY,
+        ROLES  // decided by roles
+    }
 
     public Map<Object, Class> getSecurityProviders() {
         return securityProviders;
@@ -86,6 +96,7 @@ public class SecurityAnnotationEngine {
         }
 
         scannedClassMap.put(cls.getName(), methodMap);
+        resolvedRoles.clear();
         return this;
     }
 
@@ -109,17 +120,9 @@ public class SecurityAnnotationEngine {
         }
 
         if (userRoles.contains("ReadOnly")) {
-            // not a GET method but potentially with ReadOnly annotation
-            if (method.getAnnotation(GET.class) == null) {
-                return method.getAnnotation(ReadOnly.class) != null;
-            } else if (method.getAnnotation(GET.class) != null) { // a GET method
-                if (method.getAnnotation(ReadOnly.class) != null)
-                    return true;
-                else if (method.getAnnotation(NotReadOnly.class) == null
-                        && method.getDeclaringClass().getAnnotation(NotReadOnly.class) == null) {
-                    return true;
-                }
-            }
+            ReadOnlyAccess access = readOnlyAccess.computeIfAbsent(method, this::readOnlyAccess);
+            if (access != ReadOnlyAccess.ROLES)
+                return access == ReadOnlyAccess.ALLOW;
         }
 
         if (userRoles.contains("PermitAll")) {
@@ -144,6 +147,23 @@ public class SecurityAnnotationEngine {
     }
 
     public Set<String> lookupRoles(Class cls, Method method) {
+        return resolvedRoles.computeIfAbsent(cls, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(method, m -> resolveRoles(cls, m));
+    }
+
+    private ReadOnlyAccess readOnlyAccess(Method method) {
+        // not a GET method but potentially with ReadOnly annotation
+        if (method.getAnnotation(GET.class) == null)
+            return method.getAnnotation(ReadOnly.class) != null ? ReadOnlyAccess.ALLOW : ReadOnlyAccess.DENY;
+        if (method.getAnnotation(ReadOnly.class) != null)
+            return ReadOnlyAccess.ALLOW;
+        if (method.getAnnotation(NotReadOnly.class) == null
+                && method.getDeclaringClass().getAnnotation(NotReadOnly.class) == null)
+            return ReadOnlyAccess.ALLOW;
+        return ReadOnlyAccess.ROLES;
+    }
+
+    private Set<String> resolveRoles(Class cls, Method method) {
         MethodSignature methodSig = createMethodSig(method);
         logger.trace("lookupRole: class: {} method:{}", cls.getName(), methodSig);
 
@@ -27,6 +27,13 @@ public interface ServerEngine {
 
     void stop(CXFServer cxfServer);
 
+    /**
+     * @return thread model used by the engine, null if the engine does not support one.
+     */
+    default ThreadModel getThreadModel() {
+        return null;
+    }
+
     default void onException(Message message, CallFrame frame, Throwable th) {
     }
 }
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.web.cxf;
+
+import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.jmx.JMXService;
+import net.e6tech.elements.jmx.stat.Measurement;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread model of a ServerEngine, i.e. JettyEngine or TomcatEngine.  It contains the configuration of the request
+ * thread pool and keeps track of how long jobs wait in the queue and how many are rejected or shed.
+ *
+ * When queueCapacity is positive, the queue is bounded and jobs beyond the capacity are rejected by the engine, which
+ * closes the connection.  Before that happens, requests that arrive while the queue holds more than shedQueueSize jobs
+ * are answered with 503 by LoadShedder without invoking the resource.
+ *
+ * An Executor may be supplied instead of the pool, or virtualThreads may be set to use a virtual thread per task
+ * executor when the runtime provides one.
+ */
+public class ThreadModel implements ThreadModelMXBean {
+    private static Logger logger = Logger.getLogger();
+
+    private String name;
+    private int minThreads = 10;
+    private int maxThreads = 256;
+    private int idleTimeout = 120000;
+    private int queueCapacity = -1; // unbounded
+    private int shedQueueSize = -1; // derived from queueCapacity
+    private int retryAfter = 1;  // seconds, for 503
+    private int reservedThreads = -1;  // engine default
+    private int acceptors = -1;  // engine default
+    private int selectors = -1;  // engine default
+    private Executor executor;
+    private boolean virtualThreads = false;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private final Measurement queueWait = new Measurement("queueWait", "ms", true);
+
+    public ThreadModel() {
+    }
+
+    public ThreadModel(int minThreads, int maxThreads) {
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    public void setMinThreads(int minThreads) {
+        this.minThreads = minThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public boolean isBounded() {
+        return queueCapacity > 0;
+    }
+
+    /**
+     * @return number of queued jobs at which requests are shed with 503.  Defaults to three quarters of a bounded
+     * queue; 0 disables shedding.
+     */
+    public int getShedQueueSize() {
+        if (shedQueueSize < 0)
+            return isBounded() ? Math.max(1, queueCapacity * 3 / 4) : 0;
+        return shedQueueSize;
+    }
+
+    public void setShedQueueSize(int shedQueueSize) {
+        this.shedQueueSize = shedQueueSize;
+    }
+
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(int retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public int getReservedThreads() {
+        return reservedThreads;
+    }
+
+    public void setReservedThreads(int reservedThreads) {
+        this.reservedThreads = reservedThreads;
+    }
+
+    public int getAcceptors() {
+        return acceptors;
+    }
+
+    public void setAcceptors(int acceptors) {
+        this.acceptors = acceptors;
+    }
+
+    public int getSelectors() {
+        return selectors;
+    }
+
+    public void setSelectors(int selectors) {
+        this.selectors = selectors;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Returns the configured Executor, a virtual thread per task executor if virtualThreads is set and the runtime
+     * supports it, or null if the engine should create its own pool.
+     */
+    public synchronized Executor resolveExecutor() {
+        if (executor == null && virtualThreads) {
+            try {
+                executor = (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (Exception ex) {
+                logger.warn("Virtual threads are not supported by this runtime, using thread pool instead.");
+                virtualThreads = false;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Wraps a job so that its time spent in the queue is recorded.
+     */
+    public Runnable queued(Runnable job) {
+        long enqueued = System.currentTimeMillis();
+        queued.incrementAndGet();
+        return new Job(job, enqueued);
+    }
+
+    /**
+     * Called by the engine when a job returned by queued could not be accepted.
+     */
+    public void rejected(Runnable job) {
+        if (job instanceof Job && ((Job) job).dequeue()) {
+            rejected.incrementAndGet();
+            queueWait.fail();
+        }
+    }
+
+    /**
+     * Executes a job through the executor, recording queue wait and rejections.
+     */
+    public void execute(Executor executor, Runnable job) {
+        Runnable wrapped = queued(job);
+        try {
+            executor.execute(wrapped);
+        } catch (RejectedExecutionException ex) {
+            rejected(wrapped);
+            throw ex;
+        }
+    }
+
+    public boolean isOverloaded() {
+        int threshold = getShedQueueSize();
+        return threshold > 0 && queued.get() >= threshold;
+    }
+
+    public void shed() {
+        shed.incrementAndGet();
+    }
+
+    public void register(String defaultName) {
+        String mbeanName = "net.e6tech:type=ThreadModel,name=" + (name != null ? name : defaultName);
+        try {
+            JMXService.registerIfAbsent(mbeanName, () -> this);
+        } catch (Exception ex) {
+            logger.warn("Cannot register " + mbeanName, ex);
+        }
+    }
+
+    @Override
+    public int getQueueSize() {
+        return queued.get();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public long getShedCount() {
+        return shed.get();
+    }
+
+    @Override
+    public long getQueueWaitCount() {
+        return queueWait.getCount();
+    }
+
+    @Override
+    public double getQueueWaitAverage() {
+        return queueWait.getAverage();
+    }
+
+    @Override
+    public double getQueueWaitMax() {
+        return queueWait.getMax();
+    }
+
+    private class Job implements Runnable {
+        private final Runnable job;
+        private final long enqueued;
+        private boolean dequeued = false; // a job is either run or rejected, never both.
+
+        Job(Runnable job, long enqueued) {
+            this.job = job;
+            this.enqueued = enqueued;
+        }
+
+        boolean dequeue() {
+            if (!dequeued) {
+                dequeued = true;
+                queued.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            if (dequeue())
+                queueWait.add((double) System.currentTimeMillis() - enqueued);
+            job.run();
+        }
+    }
+}
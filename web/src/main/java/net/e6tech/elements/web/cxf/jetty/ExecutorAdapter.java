@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.web.cxf.jetty;
+
+import net.e6tech.elements.web.cxf.ThreadModel;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * Lets Jetty run on an arbitrary Executor, e.g. a virtual thread per task executor.  Since such an executor
+ * has no notion of pool size, Jetty is never told that it is low on threads.
+ */
+public class ExecutorAdapter extends AbstractLifeCycle implements ThreadPool {
+    private final Executor executor;
+    private final ThreadModel threadModel;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    public ExecutorAdapter(Executor executor, ThreadModel threadModel) {
+        this.executor = executor;
+        this.threadModel = threadModel;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public void execute(Runnable job) {
+        threadModel.execute(executor, job);
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        stopped.await();
+    }
+
+    @Override
+    public int getThreads() {
+        return 0;
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        // the executor may be shared by other servers so it is not shut down here.
+        stopped.countDown();
+        super.doStop();
+    }
+}
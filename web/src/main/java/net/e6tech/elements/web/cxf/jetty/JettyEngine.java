@@ -25,6 +25,7 @@ import net.e6tech.elements.common.util.SystemException;
 import net.e6tech.elements.web.cxf.CXFServer;
 import net.e6tech.elements.web.cxf.ServerController;
 import net.e6tech.elements.web.cxf.ServerEngine;
+import net.e6tech.elements.web.cxf.ThreadModel;
 import org.apache.cxf.endpoint.Server;
 import org.apache.cxf.jaxrs.JAXRSServerFactoryBean;
 import org.apache.cxf.jaxws.JaxWsServerFactoryBean;
@@ -32,12 +33,17 @@ import org.apache.cxf.message.Message;
 import org.apache.cxf.transport.Destination;
 import org.apache.cxf.transport.http_jetty.JettyHTTPDestination;
 import org.apache.cxf.transport.http_jetty.JettyHTTPServerEngine;
+import org.apache.cxf.transport.http_jetty.JettyHTTPServerEngineFactory;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.util.thread.ExecutorThreadPool;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
 
+import java.net.URL;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
@@ -52,6 +58,8 @@ public class JettyEngine implements ServerEngine {
     private static Logger logger = Logger.getLogger();
 
     private QueuedThreadPool queuedThreadPool;
+    private ThreadPool threadPool;
+    private ThreadModel threadModel = new ThreadModel();
     private boolean useThreadPool = false;
     private Provision provision;
     private WorkerPoolConfig workerPoolConfig = new WorkerPoolConfig();
@@ -66,6 +74,16 @@ public class JettyEngine implements ServerEngine {
         this.queuedThreadPool = queuedThreadPool;
     }
 
+    @Override
+    public ThreadModel getThreadModel() {
+        return threadModel;
+    }
+
+    @Inject(optional = true)
+    public void setThreadModel(ThreadModel threadModel) {
+        this.threadModel = threadModel;
+    }
+
     public Provision getProvision() {
         return provision;
     }
@@ -117,9 +135,11 @@ public class JettyEngine implements ServerEngine {
         }
 
         Server server;
+        boolean customConnector = false;
         if (controller.getFactory() instanceof JAXRSServerFactoryBean) {
             JAXRSServerFactoryBean bean = (JAXRSServerFactoryBean) controller.getFactory();
             bean.setStart(false);
+            customConnector = setupConnector(bean.getBus().getExtension(JettyHTTPServerEngineFactory.class), controller.getURL());
             server = bean.create();
         } else if (controller.getFactory() instanceof JaxWsServerFactoryBean) {
             JaxWsServerFactoryBean bean = (JaxWsServerFactoryBean) controller.getFactory();
@@ -146,13 +166,54 @@ public class JettyEngine implements ServerEngine {
         // The server doesn't like it if otherwise.
         server.start();
 
-        if (engine != null) {
+        if (engine != null && !customConnector) {
             startThreadPool(engine);
         }
     }
 
+    /*
+     * Jetty's acceptor and selector counts can only be set when the connector is created so that a connector
+     * is created here, with the thread pool, before CXF creates the Jetty server.  Only applies to http since
+     * CXF sets up https connectors with its TLS parameters.
+     */
+    private boolean setupConnector(JettyHTTPServerEngineFactory factory, URL url) {
+        if (factory == null || !"http".equals(url.getProtocol())
+                || (threadModel.getAcceptors() < 0 && threadModel.getSelectors() < 0)
+                || factory.retrieveJettyHTTPServerEngine(url.getPort()) != null)
+            return false;
+        try {
+            JettyHTTPServerEngine engine = factory.createJettyHTTPServerEngine(url.getHost(), url.getPort(), url.getProtocol());
+            org.eclipse.jetty.server.Server jetty = new org.eclipse.jetty.server.Server(threadPool());
+            ServerConnector connector = new ServerConnector(jetty, threadModel.getAcceptors(), threadModel.getSelectors());
+            connector.setHost(url.getHost());
+            connector.setPort(url.getPort());
+            engine.setConnector(connector);
+            return true;
+        } catch (Exception ex) {
+            throw new SystemException(ex);
+        }
+    }
+
+    private synchronized ThreadPool threadPool() {
+        if (threadPool == null) {
+            Executor executor = threadModel.resolveExecutor();
+            if (queuedThreadPool != null) {  // injected
+                threadPool = queuedThreadPool;
+            } else if (executor != null) {
+                threadPool = new ExecutorAdapter(executor, threadModel);
+            } else {
+                queuedThreadPool = new MeteredThreadPool(threadModel);
+                threadPool = queuedThreadPool;
+            }
+            threadModel.register("Jetty");
+        }
+        return threadPool;
+    }
+
     private void startThreadPool(JettyHTTPServerEngine engine) {
-        if (queuedThreadPool != null) {
+        if (threadPool != null) {
+            engine.setThreadPool(threadPool);
+        } else if (queuedThreadPool != null) {
             engine.setThreadPool(queuedThreadPool);
         } else if (useThreadPool && provision != null && provision.getExecutor() instanceof ThreadPoolExecutor) {
             try {
@@ -161,8 +222,7 @@ public class JettyEngine implements ServerEngine {
                 logger.warn("Cannot start ActorThreadPool", ex);
             }
         } else {
-            queuedThreadPool = new QueuedThreadPool(256, 10, 120000);
-            engine.setThreadPool(queuedThreadPool);
+            engine.setThreadPool(threadPool());
         }
     }
 
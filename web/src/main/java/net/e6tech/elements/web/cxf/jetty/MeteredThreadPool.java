@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.web.cxf.jetty;
+
+import net.e6tech.elements.web.cxf.ThreadModel;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * QueuedThreadPool configured by a ThreadModel.  Jobs are timed while queued and counted when the bounded
+ * queue rejects them.
+ */
+public class MeteredThreadPool extends QueuedThreadPool {
+    private final ThreadModel threadModel;
+
+    public MeteredThreadPool(ThreadModel threadModel) {
+        super(threadModel.getMaxThreads(), threadModel.getMinThreads(), threadModel.getIdleTimeout(),
+                threadModel.isBounded() ? new BlockingArrayQueue<>(threadModel.getQueueCapacity()) : null);
+        this.threadModel = threadModel;
+        if (threadModel.getReservedThreads() >= 0)
+            setReservedThreads(threadModel.getReservedThreads());
+        setName("jetty-" + (threadModel.getName() != null ? threadModel.getName() : "qtp"));
+    }
+
+    public ThreadModel getThreadModel() {
+        return threadModel;
+    }
+
+    @Override
+    public void execute(Runnable job) {
+        threadModel.execute(super::execute, job);
+    }
+}
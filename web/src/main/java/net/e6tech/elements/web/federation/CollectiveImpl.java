@@ -12,6 +12,7 @@ import net.e6tech.elements.common.subscribe.Subscriber;
 import net.e6tech.elements.common.util.SystemException;
 import net.e6tech.elements.common.util.concurrent.Async;
 import net.e6tech.elements.web.cxf.JaxRSLauncher;
+import net.e6tech.elements.web.federation.invocation.InvokerRegistry;
 
 import javax.annotation.Nonnull;
 import java.lang.reflect.InvocationHandler;
@@ -336,6 +337,7 @@ public abstract class CollectiveImpl implements Startable, Collective, Registry
         createLauncher();
         createServices();
         startServer();
+        startRegistry();
         startBeacon();
         started = true;
         provision.getResourceManager().getNotificationCenter().addNotificationListener(ShutdownNotification.class,
@@ -460,6 +462,12 @@ public abstract class CollectiveImpl implements Startable, Collective, Registry
         launcher.start();
     }
 
+    protected void startRegistry() {
+        InvokerRegistry registry = getServiceProvider(InvokerRegistry.class);
+        if (registry != null)
+            registry.start();
+    }
+
     protected void startBeacon() {
         beacon.start();
     }
@@ -472,6 +480,9 @@ public abstract class CollectiveImpl implements Startable, Collective, Registry
             if (beacon != null) {
                 beacon.shutdown();
             }
+            InvokerRegistry registry = getServiceProvider(InvokerRegistry.class);
+            if (registry != null)
+                registry.shutdown();
             if (launcher != null) {
                 launcher.stop();
             }
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.federation.invocation;
+
+import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.common.util.SystemException;
+import net.e6tech.elements.web.federation.SubZero;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A persistent connection to a remote member's BinaryTransport.  Requests are multiplexed on the same socket and
+ * matched up with their responses by request id, so responses can come back in any order.
+ */
+public class BinaryChannel {
+    private static Logger logger = Logger.getLogger();
+
+    private final String memberId;
+    private final String host;
+    private final int port;
+    private final SubZero subZero;
+    private final int maxFrameSize;
+    private Socket socket;
+    private DataOutputStream out;
+    private final AtomicLong requestId = new AtomicLong();
+    private final Map<Long, CompletableFuture<Frame>> pending = new ConcurrentHashMap<>();
+    private volatile boolean open = false;
+    private volatile long lastConnectionError = 0L;
+    private volatile int consecutiveError = 0;
+
+    BinaryChannel(String memberId, String host, int port, SubZero subZero, int maxFrameSize) {
+        this.memberId = memberId;
+        this.host = host;
+        this.port = port;
+        this.subZero = subZero;
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    public String getMemberId() {
+        return memberId;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public long getLastConnectionError() {
+        return lastConnectionError;
+    }
+
+    public int getConsecutiveError() {
+        return consecutiveError;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    synchronized void connect(int connectionTimeout) throws IOException {
+        if (open)
+            return;
+        Socket s = new Socket();
+        try {
+            s.setTcpNoDelay(true);
+            s.setKeepAlive(true);
+            s.connect(new InetSocketAddress(host, port), connectionTimeout);
+        } catch (IOException ex) {
+            s.close();
+            failed();
+            throw ex;
+        }
+        socket = s;
+        out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+        open = true;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+        Thread reader = new Thread(() -> read(s, in), "binary-channel-" + memberId);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Sends the request and waits for its response.
+     * @return null if the remote member does not have the path registered, same as InvokerRegistryAPI.invoke.
+     * @throws IOException if the request could not be sent.  Caller is free to retry using a different transport
+     * since the remote side has not seen the request.
+     */
+    InvokerRegistryAPI.Response invoke(InvokerRegistryAPI.Request request, long timeout) throws IOException {
+        if (!open)
+            throw new IOException("Channel to " + host + ":" + port + " is closed.");
+
+        long id = requestId.incrementAndGet();
+        CompletableFuture<Frame> future = new CompletableFuture<>();
+        pending.put(id, future);
+        try {
+            Frame frame = new Frame(id, Frame.REQUEST, request.getPath(), request.getFrozen());
+            synchronized (this) {
+                if (!open)
+                    throw new IOException("Channel to " + host + ":" + port + " is closed.");
+                frame.write(out);
+                out.flush();
+            }
+        } catch (IOException ex) {
+            pending.remove(id);
+            close(ex);
+            throw ex;
+        }
+
+        Frame frame;
+        try {
+            frame = (timeout > 0) ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+        } catch (TimeoutException ex) {
+            pending.remove(id);
+            failed();
+            throw new SystemException("Timed out waiting for response from " + host + ":" + port, ex);
+        } catch (InterruptedException ex) {
+            pending.remove(id);
+            Thread.currentThread().interrupt();
+            throw new SystemException(ex);
+        } catch (ExecutionException ex) {
+            // the request has been sent so it is not safe to fall back to another transport.
+            throw new SystemException(ex.getCause());
+        }
+
+        consecutiveError = 0;
+        lastConnectionError = 0L;
+        switch (frame.getType()) {
+            case Frame.NOT_FOUND:
+                return null;
+            case Frame.EXCEPTION: {
+                InvokerRegistryAPI.Response response = new InvokerRegistryAPI.Response();
+                response.setException(subZero.thaw(frame.getPayload()));
+                return response;
+            }
+            default: {
+                InvokerRegistryAPI.Response response = new InvokerRegistryAPI.Response();
+                response.setFrozen(frame.getPayload());
+                return response;
+            }
+        }
+    }
+
+    private void read(Socket s, DataInputStream in) {
+        try {
+            while (!s.isClosed()) {
+                Frame frame = Frame.read(in, maxFrameSize);
+                CompletableFuture<Frame> future = pending.remove(frame.getId());
+                if (future != null)
+                    future.complete(frame);
+            }
+        } catch (IOException ex) {
+            if (open)
+                logger.debug("Binary channel to {}:{} closed: {}", host, port, ex.getMessage());
+            close(ex);
+        }
+    }
+
+    private void failed() {
+        lastConnectionError = System.currentTimeMillis();
+        if (consecutiveError < Integer.MAX_VALUE / 2)
+            consecutiveError ++;
+    }
+
+    void close(Throwable cause) {
+        synchronized (this) {
+            if (!open)
+                return;
+            open = false;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        if (cause != null)
+            failed();
+        IOException ex = new IOException("Channel to " + host + ":" + port + " closed.", cause);
+        pending.values().forEach(f -> f.completeExceptionally(ex));
+        pending.clear();
+    }
+}
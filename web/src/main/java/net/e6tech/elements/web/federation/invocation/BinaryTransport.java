@@ -0,0 +1,275 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.federation.invocation;
+
+import net.e6tech.elements.common.federation.Frequency;
+import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.common.util.SystemException;
+import net.e6tech.elements.web.federation.SubZero;
+
+import java.io.*;
+import java.net.*;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Binary transport for the invoker registry.  Members keep persistent connections to each other and
+ * exchange length prefixed frames carrying Kryo payloads (see Frame).  It is used in place of
+ * InvokerRegistryAPI.invoke; the REST API is still used for discovering routes and the binary port, and remains
+ * the fallback whenever a channel cannot be established.
+ */
+public class BinaryTransport {
+    private static Logger logger = Logger.getLogger();
+
+    private InvokerRegistry registry;
+    private SubZero subZero;
+    private Executor executor;
+    private String bindAddress;  // null binds all interfaces, InvokerRegistryImpl defaults it to the advertised host.
+    private int port = 0;  // 0 means an ephemeral port.
+    private int maxFrameSize = 64 * 1024 * 1024;
+    private int connectionTimeout = 15000;
+    private long retryInterval = 5000L; // how long to wait before reconnecting to a failed member
+    private ServerSocket serverSocket;
+    private Set<Socket> accepted = ConcurrentHashMap.newKeySet();
+    private Map<String, BinaryChannel> channels = new ConcurrentHashMap<>();
+    private volatile boolean started = false;
+
+    public BinaryTransport(InvokerRegistry registry, SubZero subZero, Executor executor) {
+        this.registry = registry;
+        this.subZero = subZero;
+        this.executor = executor;
+    }
+
+    public String getBindAddress() {
+        return bindAddress;
+    }
+
+    public void setBindAddress(String bindAddress) {
+        this.bindAddress = bindAddress;
+    }
+
+    /**
+     * @return the configured port before start, the actual listening port after.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    public void setMaxFrameSize(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    public int getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(int connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public long getRetryInterval() {
+        return retryInterval;
+    }
+
+    public void setRetryInterval(long retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public Map<String, BinaryChannel> getChannels() {
+        return channels;
+    }
+
+    public synchronized void start() {
+        if (started)
+            return;
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(bindAddress == null ? new InetSocketAddress(port) : new InetSocketAddress(bindAddress, port));
+            port = serverSocket.getLocalPort();
+        } catch (IOException ex) {
+            throw new SystemException(ex);
+        }
+        started = true;
+        Thread acceptor = new Thread(this::accept, "binary-transport-" + port);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public synchronized void shutdown() {
+        if (!started)
+            return;
+        started = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        accepted.forEach(s -> {
+            try {
+                s.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        });
+        accepted.clear();
+        channels.values().forEach(c -> c.close(null));
+        channels.clear();
+    }
+
+    /**
+     * Returns a connected channel to the member or null if the member should be reached through REST, either because
+     * it does not run a binary transport or because a recent connection attempt failed.
+     * @param frequency remote member
+     * @param remotePort binary port advertised by the remote member
+     */
+    public BinaryChannel channel(Frequency frequency, int remotePort) {
+        if (remotePort <= 0)
+            return null;
+        BinaryChannel[] replaced = new BinaryChannel[1];
+        // created and replaced atomically so that concurrent callers share one channel per member.
+        BinaryChannel channel = channels.compute(frequency.memberId(), (memberId, existing) -> {
+            if (existing != null && existing.getPort() == remotePort)
+                return existing;
+            replaced[0] = existing;
+            String host;
+            try {
+                host = new URL(frequency.getMember().getAddress()).getHost();
+            } catch (MalformedURLException e) {
+                return null;
+            }
+            return new BinaryChannel(memberId, host, remotePort, subZero, maxFrameSize);
+        });
+        if (replaced[0] != null)
+            replaced[0].close(null);  // the member restarted on another port.
+        if (channel == null)
+            return null;
+
+        if (!channel.isOpen()) {
+            if (channel.getConsecutiveError() > 0 && System.currentTimeMillis() - channel.getLastConnectionError() < retryInterval)
+                return null;
+            try {
+                channel.connect(connectionTimeout);
+            } catch (IOException ex) {
+                logger.debug("Unable to connect to binary transport of member {}: {}", frequency.memberId(), ex.getMessage());
+                return null;
+            }
+        }
+        return channel;
+    }
+
+    /**
+     * Health as seen by the binary channel.  A member without a channel is considered healthy.
+     */
+    public boolean isHealthy(String memberId, int unhealthyThreshold) {
+        BinaryChannel channel = channels.get(memberId);
+        if (channel == null)
+            return true;
+        return channel.getConsecutiveError() < unhealthyThreshold
+                || System.currentTimeMillis() - channel.getLastConnectionError() >= retryInterval;
+    }
+
+    public void remove(String memberId) {
+        BinaryChannel channel = channels.remove(memberId);
+        if (channel != null)
+            channel.close(null);
+    }
+
+    private void accept() {
+        while (started) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                socket.setKeepAlive(true);
+                accepted.add(socket);
+                Thread thread = new Thread(() -> serve(socket), "binary-transport-" + port + "-" + socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException ex) {
+                if (started)
+                    logger.warn("Binary transport error accepting connection", ex);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            while (started && !socket.isClosed()) {
+                Frame frame = Frame.read(in, maxFrameSize);
+                if (frame.getType() != Frame.REQUEST)
+                    continue;
+                executor.execute(() -> respond(frame, out));
+            }
+        } catch (IOException ex) {
+            // connection closed by the remote member.
+        } finally {
+            accepted.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private void respond(Frame request, DataOutputStream out) {
+        Frame response;
+        if (!registry.routes().contains(request.getPath())) {
+            response = new Frame(request.getId(), Frame.NOT_FOUND, null, null);
+        } else {
+            try {
+                Object[] args = request.getPayload() == null ? null : subZero.thaw(request.getPayload());
+                Object ret = registry.invoke(request.getPath(), args);
+                response = new Frame(request.getId(), Frame.RESPONSE, null, subZero.freeze(ret));
+            } catch (Exception ex) {
+                response = new Frame(request.getId(), Frame.EXCEPTION, null, freezeException(ex));
+            }
+        }
+
+        try {
+            synchronized (out) {
+                response.write(out);
+                out.flush();
+            }
+        } catch (IOException ex) {
+            logger.debug("Unable to send binary response: {}", ex.getMessage());
+        }
+    }
+
+    private byte[] freezeException(Exception ex) {
+        try {
+            return subZero.freeze(ex);
+        } catch (Exception e) {
+            return subZero.freeze(new SystemException(ex.getClass().getName() + ": " + ex.getMessage()));
+        }
+    }
+}
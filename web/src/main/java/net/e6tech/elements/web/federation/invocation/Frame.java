@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.federation.invocation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Length prefixed frame used by the binary transport.
+ * Layout: int length (excluding itself), long request id, byte type, payload.
+ * A request payload is the UTF encoded path followed by the frozen (Kryo) arguments; the other
+ * types carry the frozen return value or exception as is.
+ */
+class Frame {
+    static final byte REQUEST = 1;
+    static final byte RESPONSE = 2;
+    static final byte EXCEPTION = 3;
+    static final byte NOT_FOUND = 4;
+
+    private static final int HEADER = 9; // id + type
+
+    private long id;
+    private byte type;
+    private String path;
+    private byte[] payload;
+
+    Frame(long id, byte type, String path, byte[] payload) {
+        this.id = id;
+        this.type = type;
+        this.path = path;
+        this.payload = payload;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    byte getType() {
+        return type;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Writes the frame.  Caller is responsible for synchronizing on the stream since frames from different
+     * requests are multiplexed on the same connection.
+     */
+    void write(DataOutputStream out) throws IOException {
+        byte[] pathBytes = null;
+        if (type == REQUEST) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(path.length() + 2);
+            new DataOutputStream(bos).writeUTF(path);
+            pathBytes = bos.toByteArray();
+        }
+        int length = HEADER + (pathBytes == null ? 0 : pathBytes.length) + (payload == null ? 0 : payload.length);
+        out.writeInt(length);
+        out.writeLong(id);
+        out.writeByte(type);
+        if (pathBytes != null)
+            out.write(pathBytes);
+        if (payload != null)
+            out.write(payload);
+    }
+
+    static Frame read(DataInputStream in, int maxFrameSize) throws IOException {
+        int length = in.readInt();
+        if (length < HEADER || length > maxFrameSize)
+            throw new IOException("Invalid frame length " + length);
+        long id = in.readLong();
+        byte type = in.readByte();
+        byte[] body = new byte[length - HEADER];
+        in.readFully(body);
+        String path = null;
+        byte[] payload = body;
+        if (type == REQUEST) {
+            DataInputStream din = new DataInputStream(new ByteArrayInputStream(body));
+            path = din.readUTF();
+            int offset = body.length - din.available();
+            payload = new byte[body.length - offset];
+            System.arraycopy(body, offset, payload, 0, payload.length);
+        }
+        return new Frame(id, type, path, payload.length == 0 ? null : payload);
+    }
+}
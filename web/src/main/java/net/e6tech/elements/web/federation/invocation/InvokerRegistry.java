@@ -39,4 +39,9 @@ public interface InvokerRegistry extends Registry {
 
     Object invoke(String path, Object[] arguments);
 
+    /**
+     * @return port of the binary transport or -1 if this registry only accepts REST invocations.
+     */
+    int binaryPort();
+
 }
@@ -56,6 +56,14 @@ public class InvokerRegistryAPI {
         return registry.routes();
     }
 
+    @GET
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("binary")
+    public int binaryPort() {
+        return registry.binaryPort();
+    }
+
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
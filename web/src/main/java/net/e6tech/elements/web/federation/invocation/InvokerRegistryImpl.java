@@ -28,12 +28,17 @@ import net.e6tech.elements.common.util.SystemException;
 import net.e6tech.elements.common.util.concurrent.Async;
 import net.e6tech.elements.network.cluster.Local;
 import net.e6tech.elements.web.federation.CollectiveImpl;
+import net.e6tech.elements.web.federation.HailingFrequency;
 import net.e6tech.elements.web.federation.Service;
 
+import java.io.IOException;
+
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.Function;
@@ -52,10 +57,86 @@ public class InvokerRegistryImpl implements InvokerRegistry, Initializable {
     private ConcurrentMap<String, Function<Object[], Object>> registrations = new ConcurrentHashMap<>();
     private volatile int roundRobin = new Random().nextInt(Integer.MAX_VALUE / 2);
     private Executor executor = runnable -> new Thread(runnable).start();
+    private Cache<String, Integer> binaryPorts = CacheBuilder.newBuilder()
+            .concurrencyLevel(32)
+            .initialCapacity(16)
+            .expireAfterWrite(60 * 1000L, TimeUnit.MILLISECONDS)
+            .build();
+    private boolean binaryEnabled = false;
+    private int binaryPort = 0; // 0 means an ephemeral port.
+    private String bindAddress; // defaults to the host of the member's advertised address.
+    private int unhealthyThreshold = 3;
+    private long unhealthyInterval = 5000L;
+    private BinaryTransport transport;
+
+    @Override
+    public synchronized void start() {
+        if (binaryEnabled && transport == null) {
+            transport = new BinaryTransport(this, collective.getSubZero(), executor);
+            transport.setPort(binaryPort);
+            transport.setBindAddress(bindAddress != null ? bindAddress : advertisedHost());
+            transport.setConnectionTimeout(collective.getConnectionTimeout());
+            transport.setRetryInterval(unhealthyInterval);
+            transport.start();
+        }
+    }
+
+    public boolean isBinaryEnabled() {
+        return binaryEnabled;
+    }
+
+    public void setBinaryEnabled(boolean binaryEnabled) {
+        this.binaryEnabled = binaryEnabled;
+    }
+
+    public int getBinaryPort() {
+        return binaryPort;
+    }
 
+    public void setBinaryPort(int binaryPort) {
+        this.binaryPort = binaryPort;
+    }
+
+    public String getBindAddress() {
+        return bindAddress;
+    }
+
+    public void setBindAddress(String bindAddress) {
+        this.bindAddress = bindAddress;
+    }
+
+    // peers connect to the host of the advertised address, see BinaryTransport.channel.
+    private String advertisedHost() {
+        try {
+            return new URL(collective.getHostAddress()).getHost();
+        } catch (MalformedURLException e) {
+            throw new SystemException("Invalid host address " + collective.getHostAddress(), e);
+        }
+    }
+
+    public int getUnhealthyThreshold() {
+        return unhealthyThreshold;
+    }
+
+    public void setUnhealthyThreshold(int unhealthyThreshold) {
+        this.unhealthyThreshold = unhealthyThreshold;
+    }
+
+    public long getUnhealthyInterval() {
+        return unhealthyInterval;
+    }
+
+    public void setUnhealthyInterval(long unhealthyInterval) {
+        this.unhealthyInterval = unhealthyInterval;
+    }
+
+    public BinaryTransport getTransport() {
+        return transport;
+    }
 
     @Override
-    public void start() {
+    public int binaryPort() {
+        return (transport != null && transport.isStarted()) ? transport.getPort() : -1;
     }
 
     public Executor getExecutor() {
@@ -83,7 +164,12 @@ public class InvokerRegistryImpl implements InvokerRegistry, Initializable {
     }
 
     @Override
-    public void shutdown() {
+    public synchronized void shutdown() {
+        if (transport != null) {
+            transport.shutdown();
+            transport = null;
+        }
+        binaryPorts.invalidateAll();
     }
 
     @Override
@@ -197,22 +283,25 @@ public class InvokerRegistryImpl implements InvokerRegistry, Initializable {
                 }
                 int select = roundRobin % applicable.size();
                 for (int i = 0; i < applicable.size(); i++) {
-                    Frequency frequency = applicable.get(select);
+                    Frequency frequency = applicable.get((select + i) % applicable.size());
+                    boolean local = collective.getHostedMembers().containsKey(frequency.memberId());
+                    boolean last = i == applicable.size() - 1;
 
                     // if routing is remote and current frequency is local, skip unless this is the last item.
-                    if (collective.getHostedMembers().containsKey(frequency.memberId()) && routing == Routing.remote && i < applicable.size() - 1) {
+                    if (local && routing == Routing.remote && !last) {
                         continue;
                     }
 
-                    if (collective.getHostedMembers().containsKey(frequency.memberId())) { // local call, if true
+                    if (local) { // local call, if true
                         InvokerRegistry registry = collective.getServiceProvider(InvokerRegistry.class);
                         return (R) registry.invoke(path, args);
                     } else {
-                        InvokerRegistryAPI api = frequency.getService(InvokerRegistryAPI.class);
+                        // avoid members that have been failing recently unless there is no one else to ask.
+                        if (!last && !isHealthy(frequency))
+                            continue;
                         InvokerRegistryAPI.Request request = new InvokerRegistryAPI.Request(path, args, collective.getSubZero());
-                        InvokerRegistryAPI.Response response = api.invoke(request);
+                        InvokerRegistryAPI.Response response = invokeRemote(frequency, request);
                         if (response == null) {
-                            select = (select + 1) % applicable.size();
                             continue;
                         }
                         return collective.getSubZero().thaw(response.getFrozen());
@@ -224,6 +313,50 @@ public class InvokerRegistryImpl implements InvokerRegistry, Initializable {
         };
     }
 
+    private InvokerRegistryAPI.Response invokeRemote(Frequency frequency, InvokerRegistryAPI.Request request) {
+        BinaryTransport t = transport;
+        if (t != null) {
+            BinaryChannel channel = t.channel(frequency, binaryPort(frequency));
+            if (channel != null) {
+                try {
+                    return channel.invoke(request, collective.getReadTimeout());
+                } catch (IOException ex) {
+                    // request did not go out, fall back to REST.
+                }
+            }
+        }
+        InvokerRegistryAPI api = frequency.getService(InvokerRegistryAPI.class);
+        return api.invoke(request);
+    }
+
+    private int binaryPort(Frequency frequency) {
+        Integer port = binaryPorts.getIfPresent(frequency.memberId());
+        if (port == null) {
+            port = -1;
+            InvokerRegistryAPI api = frequency.getService(InvokerRegistryAPI.class);
+            if (api != null) {
+                try {
+                    port = api.binaryPort();
+                } catch (Exception ex) {
+                    // older members do not have the binary endpoint.
+                }
+            }
+            binaryPorts.put(frequency.memberId(), port);
+        }
+        return port;
+    }
+
+    private boolean isHealthy(Frequency frequency) {
+        if (frequency instanceof HailingFrequency) {
+            HailingFrequency hailing = (HailingFrequency) frequency;
+            if (hailing.getConsecutiveError() >= unhealthyThreshold
+                    && System.currentTimeMillis() - hailing.getLastConnectionError() < unhealthyInterval)
+                return false;
+        }
+        BinaryTransport t = transport;
+        return t == null || t.isHealthy(frequency.memberId(), unhealthyThreshold);
+    }
+
     private Set<String> routes(Frequency frequency) {
         Set<String> paths = cache.getIfPresent(frequency.memberId());
         if (paths == null) {
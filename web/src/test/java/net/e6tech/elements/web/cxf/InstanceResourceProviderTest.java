@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.web.cxf;
+
+import net.e6tech.elements.common.interceptor.Interceptor;
+import net.e6tech.elements.common.resources.Provision;
+import net.e6tech.elements.common.resources.ResourceManager;
+import net.e6tech.elements.common.resources.ResourcesFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InstanceResourceProviderTest {
+    private JaxRSServer server;
+    private ResourcesFactory factory;
+    private Greeter prototype;
+
+    @BeforeEach
+    void setup() {
+        ResourceManager resourceManager = new ResourceManager();
+        Provision provision = resourceManager.loadProvision(Provision.class);
+        factory = new ResourcesFactory();
+        factory.setProvision(provision);
+        server = new JaxRSServer();
+        server.setInterceptor(new Interceptor());
+        prototype = new Greeter();
+        prototype.setGreeting("hello");
+    }
+
+    @Test
+    void pooled() {
+        InstanceResourceProvider provider = new InstanceResourceProvider(server, Greeter.class, prototype, null, factory, null);
+        provider.setPoolSize(1);
+
+        // borrow
+        Object first = provider.createInstance(null);
+        Object second = provider.createInstance(null);
+        assertNotSame(first, second);
+        assertTrue(Interceptor.isProxyObject(first));
+        assertEquals("hello", ((Greeter) first).getGreeting());
+
+        // return, only poolSize instances are kept.
+        provider.releaseInstance(null, first);
+        provider.releaseInstance(null, second);
+
+        // reuse
+        assertSame(first, provider.createInstance(null));
+        Object third = provider.createInstance(null);
+        assertNotSame(first, third);
+        assertNotSame(second, third);
+        assertEquals("hello", ((Greeter) third).getGreeting());
+    }
+
+    @Test
+    void notPooled() {
+        InstanceResourceProvider provider = new InstanceResourceProvider(server, Greeter.class, prototype, null, factory, null);
+        Object first = provider.createInstance(null);
+        provider.releaseInstance(null, first);
+        assertNotSame(first, provider.createInstance(null));
+    }
+
+    public static class Greeter {
+        private String greeting;
+
+        public String getGreeting() {
+            return greeting;
+        }
+
+        public void setGreeting(String greeting) {
+            this.greeting = greeting;
+        }
+
+        public String greet(String name) {
+            return greeting + " " + name;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.cxf;
+
+import net.e6tech.elements.common.inject.Inject;
+import net.e6tech.elements.common.launch.LaunchController;
+import net.e6tech.elements.common.resources.Provision;
+import net.e6tech.elements.network.restful.RestfulProxy;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MethodMetadataTest {
+    private static final int ITERATIONS = 1000000;
+
+    public Provision provision;
+
+    public Provision getProvision() {
+        return provision;
+    }
+
+    @Inject
+    public void setProvision(Provision provision) {
+        this.provision = provision;
+    }
+
+    @Test
+    void checkInvocation() throws Exception {
+        Method method = Sample.class.getMethod("get", String.class, String.class, String.class);
+        MethodMetadata metadata = new MethodMetadata(method);
+        metadata.checkInvocation(new Object[] {"id", null, null});
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> metadata.checkInvocation(new Object[] {" ", "", null}));
+        assertEquals("path parameter id cannot be null. \nquery parameter q cannot be null. \n", ex.getMessage());
+    }
+
+    @Test
+    @Disabled("benchmark")
+    void benchmarkCheck() throws Exception {
+        Method method = Sample.class.getMethod("get", String.class, String.class, String.class);
+        Object[] args = new Object[] {"id", "q", "x"};
+        MethodMetadata metadata = new MethodMetadata(method);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            legacyCheck(method, args);
+            metadata.checkInvocation(args);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            legacyCheck(method, args);
+        long legacy = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            metadata.checkInvocation(args);
+        long precomputed = System.nanoTime() - start;
+
+        System.out.println("per call check: reflection=" + legacy / ITERATIONS + "ns precomputed=" + precomputed / ITERATIONS + "ns");
+    }
+
+    @Test
+    @Disabled("benchmark")
+    void benchmarkJetty() {
+        new LaunchController().launchScript("conf/provisioning/jaxrs/simple_hello.groovy")
+                .property("serverEngineClass", "net.e6tech.elements.web.cxf.jetty.JettyEngine")
+                .inject(this).launch();
+        try {
+            RestfulProxy proxy = new RestfulProxy("http://localhost:" + 9000 + "/restful");
+            HelloWorldRS api = proxy.newProxy(HelloWorldRS.class);
+            for (int i = 0; i < 1000; i++)
+                api.sayHi("warm up");
+
+            int iterations = 5000;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                api.sayHi("");
+            long elapsed = System.nanoTime() - start;
+            System.out.println("empty JAX-RS call through Jetty: " + elapsed / iterations / 1000 + "us");
+        } finally {
+            provision.getResourceManager().shutdown();
+        }
+    }
+
+    // per request parameter inspection done before MethodMetadata.
+    private void legacyCheck(Method method, Object[] args) {
+        Parameter[] params = method.getParameters();
+        int idx = 0;
+        StringBuilder builder = null;
+        for (Parameter param : params) {
+            QueryParam queryParam =  param.getAnnotation(QueryParam.class);
+            PathParam pathParam =  param.getAnnotation(PathParam.class);
+            if (args[idx] == null || (args[idx] instanceof String && ((String) args[idx]).trim().isEmpty())) {
+                if (pathParam != null) {
+                    builder = new StringBuilder();
+                }
+                if (param.getAnnotation(Nonnull.class) != null && queryParam != null && builder == null) {
+                    builder = new StringBuilder();
+                }
+            }
+            idx++;
+        }
+        if (builder != null) {
+            throw new IllegalArgumentException(builder.toString());
+        }
+    }
+
+    public static class Sample {
+        public String get(@PathParam("id") String id, @Nonnull @QueryParam("q") String q, @QueryParam("x") String x) {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.web.cxf;
+
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The filter is driven with request and response contexts stubbed by dynamic proxies.
+ */
+public class ResponseOptimizerTest {
+    private static final Instant MODIFIED = Instant.parse("2022-03-01T10:15:30Z");
+
+    private CXFServer server = new CXFServer();
+    private ResponseOptimizer optimizer = new ResponseOptimizer(server);
+
+    @Test
+    void matches() {
+        EntityTag tag = new EntityTag("abc");
+        assertTrue(ResponseOptimizer.matches("\"abc\"", tag));
+        assertTrue(ResponseOptimizer.matches("W/\"abc\"", tag));
+        assertTrue(ResponseOptimizer.matches("\"xyz\", \"abc\"", tag));
+        assertTrue(ResponseOptimizer.matches("*", tag));
+        assertFalse(ResponseOptimizer.matches("\"xyz\"", tag));
+        assertFalse(ResponseOptimizer.matches(null, tag));
+    }
+
+    @Test
+    void encoding() {
+        assertEquals("gzip", ResponseOptimizer.encoding("gzip, deflate, br"));
+        assertEquals("deflate", ResponseOptimizer.encoding("deflate"));
+        assertEquals("deflate", ResponseOptimizer.encoding("gzip;q=0, deflate"));
+        assertNull(ResponseOptimizer.encoding("br"));
+        assertNull(ResponseOptimizer.encoding(null));
+    }
+
+    @Test
+    void compress() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++)
+            builder.append("{\"id\":").append(i).append(",\"name\":\"item\"}");
+        byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = ResponseOptimizer.compress(bytes, "gzip");
+        assertTrue(compressed.length < bytes.length);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0)
+                out.write(buffer, 0, n);
+        }
+        assertArrayEquals(bytes, out.toByteArray());
+        assertEquals(ResponseOptimizer.digest(bytes), ResponseOptimizer.digest(out.toByteArray()));
+    }
+
+    @Test
+    void ifNoneMatchTagged() throws IOException {
+        Tagged entity = new Tagged("v1");
+        Response response = new Response(entity);
+        optimizer.filter(request(HttpHeaders.IF_NONE_MATCH, "\"v1\""), response.context());
+        assertEquals(304, response.status);
+        assertNull(response.entity);
+        assertEquals(new EntityTag("v1"), response.headers.getFirst(HttpHeaders.ETAG));
+        assertFalse(response.headers.containsKey(HttpHeaders.CONTENT_TYPE));
+
+        response = new Response(entity);
+        optimizer.filter(request(HttpHeaders.IF_NONE_MATCH, "\"v0\""), response.context());
+        assertEquals(200, response.status);
+        assertSame(entity, response.entity);
+        assertEquals(new EntityTag("v1"), response.headers.getFirst(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void ifNoneMatchHashed() throws IOException {
+        server.setEtag(true);
+        byte[] bytes = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        Response response = new Response(bytes);
+        optimizer.filter(request(), response.context());
+        assertEquals(200, response.status);
+        EntityTag tag = (EntityTag) response.headers.getFirst(HttpHeaders.ETAG);
+        assertEquals(ResponseOptimizer.digest(bytes), tag.getValue());
+
+        response = new Response(bytes);
+        optimizer.filter(request(HttpHeaders.IF_NONE_MATCH, "\"" + tag.getValue() + "\""), response.context());
+        assertEquals(304, response.status);
+        assertNull(response.entity);
+        assertEquals(tag, response.headers.getFirst(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void ifModifiedSince() throws IOException {
+        Response response = new Response("catalog").lastModified(MODIFIED);
+        optimizer.filter(request(HttpHeaders.IF_MODIFIED_SINCE, httpDate(MODIFIED)), response.context());
+        assertEquals(304, response.status);
+        assertNull(response.entity);
+        assertEquals(Date.from(MODIFIED), response.headers.getFirst(HttpHeaders.LAST_MODIFIED));
+
+        response = new Response("catalog").lastModified(MODIFIED);
+        optimizer.filter(request(HttpHeaders.IF_MODIFIED_SINCE, httpDate(MODIFIED.minusSeconds(1))), response.context());
+        assertEquals(200, response.status);
+        assertEquals("catalog", response.entity);
+
+        response = new Response("catalog").lastModified(MODIFIED);
+        optimizer.filter(request(HttpHeaders.IF_MODIFIED_SINCE, "not a date"), response.context());
+        assertEquals(200, response.status);
+    }
+
+    @Test
+    void ifNoneMatchTakesPrecedence() throws IOException {
+        Response response = new Response(new Tagged("v1")).lastModified(MODIFIED);
+        optimizer.filter(request(HttpHeaders.IF_NONE_MATCH, "\"v0\"",
+                HttpHeaders.IF_MODIFIED_SINCE, httpDate(MODIFIED.plusSeconds(60))), response.context());
+        assertEquals(200, response.status);
+    }
+
+    @Test
+    void compressed() throws IOException {
+        server.setCompression(true);
+        server.setCompressionThreshold(0);
+        byte[] bytes = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        Response response = new Response(bytes);
+        optimizer.filter(request(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"), response.context());
+        assertEquals(200, response.status);
+        assertEquals("gzip", response.headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.headers.getFirst(HttpHeaders.VARY));
+        assertArrayEquals(bytes, gunzip((byte[]) response.entity));
+    }
+
+    private static String httpDate(Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atOffset(ZoneOffset.UTC));
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0)
+                out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static ContainerRequestContext request(String ... headers) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < headers.length; i += 2)
+            map.put(headers[i], headers[i + 1]);
+        return proxy(ContainerRequestContext.class, (method, args) -> {
+            switch (method) {
+                case "getMethod": return "GET";
+                case "getHeaderString": return map.get((String) args[0]);
+                default: throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, Stub stub) {
+        return type.cast(Proxy.newProxyInstance(ResponseOptimizerTest.class.getClassLoader(), new Class[] {type},
+                (proxy, method, args) -> stub.invoke(method.getName(), args)));
+    }
+
+    private interface Stub {
+        Object invoke(String method, Object[] args);
+    }
+
+    // state of a response as seen through ContainerResponseContext.
+    private static class Response {
+        int status = 200;
+        Object entity;
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+
+        Response(Object entity) {
+            this.entity = entity;
+            headers.putSingle(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_TYPE);
+        }
+
+        Response lastModified(Instant instant) {
+            headers.putSingle(HttpHeaders.LAST_MODIFIED, Date.from(instant));
+            return this;
+        }
+
+        ContainerResponseContext context() {
+            return proxy(ContainerResponseContext.class, (method, args) -> {
+                switch (method) {
+                    case "getStatus": return status;
+                    case "setStatus": status = (Integer) args[0]; return null;
+                    case "hasEntity": return entity != null;
+                    case "getEntity": return entity;
+                    case "setEntity": entity = args[0]; return null;
+                    case "getEntityClass": return entity == null ? null : entity.getClass();
+                    case "getEntityType": return entity == null ? null : entity.getClass();
+                    case "getEntityAnnotations": return new Annotation[0];
+                    case "getMediaType": return MediaType.APPLICATION_JSON_TYPE;
+                    case "getHeaders": return headers;
+                    case "getEntityTag": return headers.getFirst(HttpHeaders.ETAG);
+                    case "getLastModified": return headers.getFirst(HttpHeaders.LAST_MODIFIED);
+                    default: throw new UnsupportedOperationException(method);
+                }
+            });
+        }
+    }
+
+    private static class Tagged implements EntityTagged {
+        private final String tag;
+
+        Tagged(String tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public String entityTag() {
+            return tag;
+        }
+    }
+}
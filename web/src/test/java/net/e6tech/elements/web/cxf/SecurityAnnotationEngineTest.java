@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.web.cxf;
+
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.security.DenyAll;
+import javax.annotation.security.PermitAll;
+import javax.annotation.security.RolesAllowed;
+import javax.ws.rs.GET;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecurityAnnotationEngineTest {
+
+    @Test
+    void cachedRoles() throws Exception {
+        SecurityAnnotationEngine engine = new SecurityAnnotationEngine().register(Secured.class);
+        Method update = Secured.class.getMethod("update", String.class);
+        Set<String> roles = engine.lookupRoles(Secured.class, update);
+        assertEquals(Collections.singleton("Admin"), roles);
+        // the resolved set is returned as is on later lookups.
+        assertSame(roles, engine.lookupRoles(Secured.class, update));
+        assertSame(roles, engine.lookupRoles(new Secured(), update, null));
+
+        assertTrue(engine.hasAccess(new Secured(), update, null, "Admin"));
+        assertFalse(engine.hasAccess(new Secured(), update, null, "User"));
+        assertFalse(engine.hasAccess(new Secured(), Secured.class.getMethod("delete"), null, "Admin"));
+        assertTrue(engine.hasAccess(new Secured(), Secured.class.getMethod("ping"), null, "User"));
+    }
+
+    @Test
+    void registerClearsCache() throws Exception {
+        SecurityAnnotationEngine engine = new SecurityAnnotationEngine();
+        Method update = Secured.class.getMethod("update", String.class);
+        // resolved and cached before the class is registered.
+        assertTrue(engine.lookupRoles(Secured.class, update).isEmpty());
+        assertTrue(engine.lookupRoles(Secured.class, update).isEmpty());
+
+        engine.register(Secured.class);
+        assertEquals(Collections.singleton("Admin"), engine.lookupRoles(Secured.class, update));
+    }
+
+    @Test
+    void readOnly() throws Exception {
+        SecurityAnnotationEngine engine = new SecurityAnnotationEngine().register(Secured.class);
+        Set<String> readOnly = Collections.singleton("ReadOnly");
+        Secured instance = new Secured();
+        assertTrue(engine.hasAccess(instance, Secured.class.getMethod("get"), null, readOnly));
+        assertFalse(engine.hasAccess(instance, Secured.class.getMethod("update", String.class), null, readOnly));
+        // decided once per method, the second call is served from the cache.
+        assertTrue(engine.hasAccess(instance, Secured.class.getMethod("get"), null, readOnly));
+        assertFalse(engine.hasAccess(instance, Secured.class.getMethod("update", String.class), null, readOnly));
+    }
+
+    public static class Secured {
+        @RolesAllowed("Admin")
+        public void update(String value) {
+        }
+
+        @GET
+        @RolesAllowed("Admin")
+        public String get() {
+            return "value";
+        }
+
+        @DenyAll
+        public void delete() {
+        }
+
+        @PermitAll
+        public void ping() {
+        }
+    }
+}
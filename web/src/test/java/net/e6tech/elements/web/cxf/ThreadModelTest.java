@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.e6tech.elements.web.cxf;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThreadModelTest {
+
+    @Test
+    void queueAndReject() throws Exception {
+        ThreadModel model = new ThreadModel(1, 1);
+        model.setQueueCapacity(4);
+        assertEquals(3, model.getShedQueueSize());
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(4));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(5);
+        try {
+            Runnable blocked = () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            };
+            for (int i = 0; i < 5; i++)
+                model.execute(executor, blocked);
+            assertThrows(RejectedExecutionException.class, () -> model.execute(executor, blocked));
+
+            assertEquals(1, model.getRejectedCount());
+            assertTrue(model.getQueueSize() >= 4);
+            assertTrue(model.isOverloaded());
+
+            Thread.sleep(20);
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(0, model.getQueueSize());
+            assertFalse(model.isOverloaded());
+            assertEquals(5, model.getQueueWaitCount());
+            assertTrue(model.getQueueWaitMax() >= 20);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void unbounded() {
+        ThreadModel model = new ThreadModel();
+        assertFalse(model.isBounded());
+        assertEquals(0, model.getShedQueueSize());
+        assertFalse(model.isOverloaded());
+    }
+}
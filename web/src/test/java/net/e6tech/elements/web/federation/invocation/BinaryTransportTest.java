@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015-2022 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.federation.invocation;
+
+import net.e6tech.elements.common.federation.Registry;
+import net.e6tech.elements.common.resources.Provision;
+import net.e6tech.elements.common.resources.ResourceManager;
+import net.e6tech.elements.common.util.concurrent.Async;
+import net.e6tech.elements.web.federation.FederationImpl;
+import net.e6tech.elements.web.federation.Host;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares REST and binary transport latency between two local members.
+ */
+public class BinaryTransportTest {
+    private static final int WARM_UP = 200;
+    private static final int ITERATIONS = 2000;
+    private static final List<FederationImpl> federations = new ArrayList<>();
+
+    private static FederationImpl setupServer(int port, int seedPort, boolean binary) {
+        ResourceManager rm = new ResourceManager();
+        rm.loadProvision(Provision.class);
+
+        FederationImpl federation = rm.newInstance(FederationImpl.class);
+        federation.setHostAddress("http://127.0.0.1:" + port + "/restful");
+        federation.setHosts(new Host[] { new Host("" + port)});
+        federation.setSeeds(new String[]{ "http://127.0.0.1:" + seedPort + "/restful"});
+        InvokerRegistryImpl registry = new InvokerRegistryImpl();
+        registry.setBinaryEnabled(binary);
+        registry.setCollective(federation);
+        registry.initialize(null);
+        registry.register("echo", Echo.class, text -> text, null);
+        federation.start();
+        federations.add(federation);
+        return federation;
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        try {
+            federations.forEach(FederationImpl::shutdown);
+        } finally {
+            federations.clear();
+        }
+    }
+
+    @Test
+    void compare() throws Exception {
+        FederationImpl rest = setupServer(3929, 3929, false);
+        setupServer(3930, 3929, false);
+        FederationImpl binary = setupServer(3931, 3931, true);
+        setupServer(3932, 3931, true);
+
+        long[] restLatency = benchmark(rest);
+        long[] binaryLatency = benchmark(binary);
+
+        InvokerRegistryImpl registry = binary.getServiceProvider(InvokerRegistryImpl.class);
+        assertTrue(registry.binaryPort() > 0);
+        assertEquals(1, registry.getTransport().getChannels().size());
+        assertEquals("127.0.0.1", registry.getTransport().getBindAddress());
+
+        System.out.println("REST   p50=" + percentile(restLatency, 50) + "us p99=" + percentile(restLatency, 99) + "us");
+        System.out.println("binary p50=" + percentile(binaryLatency, 50) + "us p99=" + percentile(binaryLatency, 99) + "us");
+    }
+
+    private long[] benchmark(FederationImpl federation) throws Exception {
+        InvokerRegistry registry = federation.getServiceProvider(InvokerRegistry.class);
+        long deadline = System.currentTimeMillis() + 30000L;
+        while (registry.routes("echo", Echo.class).size() < 2) {
+            assertTrue(System.currentTimeMillis() < deadline, "members did not join");
+            Thread.sleep(50L);
+        }
+
+        Async<Echo> async = registry.async("echo", Echo.class, 0, Registry.Routing.remote);
+        for (int i = 0; i < WARM_UP; i++)
+            async.apply(x -> x.echo("warm up")).toCompletableFuture().get();
+
+        long[] latency = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            async.apply(x -> x.echo("hello")).toCompletableFuture().get();
+            latency[i] = (System.nanoTime() - start) / 1000;
+        }
+        Arrays.sort(latency);
+        return latency;
+    }
+
+    private long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    public interface Echo {
+        String echo(String text);
+    }
+}